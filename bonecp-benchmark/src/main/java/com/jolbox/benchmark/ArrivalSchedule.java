@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.util.Random;
+
+/** Generates the times at which requests should be issued in an open-loop load scenario. Requests are issued
+ * at these times regardless of how long earlier requests took, so queueing delay shows up in the measured
+ * latency instead of silently lowering the offered load (coordinated omission).
+ * 
+ * @author wallacew
+ *
+ */
+public abstract class ArrivalSchedule {
+
+	/** Generates the intended start times of all requests in a run.
+	 * @param durationInNanos length of the run
+	 * @param random source of randomness (seeded for reproducible runs)
+	 * @return sorted offsets (in ns) from the start of the run
+	 */
+	public abstract long[] generate(long durationInNanos, Random random);
+
+	/** Returns an exponentially distributed gap for the given rate.
+	 * @param ratePerSecond events per second
+	 * @param random source of randomness
+	 * @return gap in ns
+	 */
+	protected static long exponentialGap(double ratePerSecond, Random random){
+		return (long)(-Math.log(1.0 - random.nextDouble()) * 1000000000.0 / ratePerSecond);
+	}
+
+	/** Copies (and truncates or pads) an array.
+	 * @param array source
+	 * @param length new length
+	 * @return copy
+	 */
+	protected static long[] copyOf(long[] array, int length){
+		long[] result = new long[length];
+		System.arraycopy(array, 0, result, 0, Math.min(length, array.length));
+		return result;
+	}
+
+	/** Poisson arrivals: independent requests at the given mean rate.
+	 * @param ratePerSecond mean requests per second
+	 * @return schedule
+	 */
+	public static ArrivalSchedule poisson(final double ratePerSecond){
+		return new ArrivalSchedule() {
+			@Override
+			public long[] generate(long durationInNanos, Random random) {
+				long[] result = new long[Math.max(16, (int)(durationInNanos / 1000000000.0 * ratePerSecond * 1.2))];
+				int count = 0;
+				long time = exponentialGap(ratePerSecond, random);
+				while (time < durationInNanos){
+					if (count == result.length){
+						result = copyOf(result, result.length * 2);
+					}
+					result[count++] = time;
+					time += exponentialGap(ratePerSecond, random);
+				}
+				return copyOf(result, count);
+			}
+
+			@Override
+			public String toString() {
+				return "poisson";
+			}
+		};
+	}
+
+	/** Bursty arrivals: bursts of burstSize simultaneous requests, the bursts themselves arriving as a Poisson 
+	 * process so that the mean rate is still ratePerSecond.
+	 * @param ratePerSecond mean requests per second
+	 * @param burstSize requests per burst
+	 * @return schedule
+	 */
+	public static ArrivalSchedule bursty(final double ratePerSecond, final int burstSize){
+		final ArrivalSchedule bursts = poisson(ratePerSecond / burstSize);
+		return new ArrivalSchedule() {
+			@Override
+			public long[] generate(long durationInNanos, Random random) {
+				long[] burstTimes = bursts.generate(durationInNanos, random);
+				long[] result = new long[burstTimes.length * burstSize];
+				for (int i=0; i < result.length; i++){
+					result[i] = burstTimes[i / burstSize];
+				}
+				return result;
+			}
+
+			@Override
+			public String toString() {
+				return "bursty-"+burstSize;
+			}
+		};
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.jolbox.bonecp.SimulatedJDBCDriver;
+
+/** Head-to-head comparison of connection pools. Every pool (see {@link PoolAdapter}) runs the same 
+ * {@link ComparisonWorkload} against the simulated driver with no latency, so the figures reflect pool overhead 
+ * only. Besides throughput, the harness reports the CPU time and the bytes allocated per operation by the 
+ * calling threads, which is what an application actually pays for each checkout. Proxool needs 
+ * --add-opens java.base/java.lang=ALL-UNNAMED when run on JDK 9 or later.
+ * <pre>
+ * java com.jolbox.benchmark.ComparisonHarness -t 1,8,64 -n 100000 -o compare
+ * </pre>
+ * 
+ * @author wallacew
+ *
+ */
+public class ComparisonHarness {
+	/** Driver every pool is pointed at. */
+	private static final String DRIVER = SimulatedJDBCDriver.class.getName();
+	/** Database every pool is pointed at. */
+	private static final String URL = "jdbc:sim:comparison";
+
+	/** Runs one workload against one pool.
+	 * @param adapter pool to test
+	 * @param workload workload to run
+	 * @param threads number of concurrent threads
+	 * @param poolSize connections in the pool
+	 * @param operationsPerThread operations each thread performs (after an equal number of warm up operations)
+	 * @return reported values
+	 * @throws Exception on error
+	 */
+	public Map<String, Object> run(PoolAdapter adapter, final ComparisonWorkload workload, int threads, int poolSize, 
+			final int operationsPerThread) throws Exception{
+		final DataSource ds = adapter.create(DRIVER, URL, poolSize, workload.getStatementCacheSize());
+		try {
+			final CountDownLatch ready = new CountDownLatch(threads);
+			final CountDownLatch start = new CountDownLatch(1);
+			final CountDownLatch done = new CountDownLatch(threads);
+			final AtomicLong cpu = new AtomicLong();
+			final AtomicLong allocated = new AtomicLong();
+			final AtomicLong failures = new AtomicLong();
+			for (int t=0; t < threads; t++){
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						try {
+							perform(ds, workload, operationsPerThread, failures); // warm up
+							ready.countDown();
+							start.await();
+							long cpuStart = ThreadCosts.currentThreadCpuTime();
+							long allocatedStart = ThreadCosts.currentThreadAllocatedBytes();
+							perform(ds, workload, operationsPerThread, failures);
+							cpu.addAndGet(ThreadCosts.currentThreadCpuTime() - cpuStart);
+							allocated.addAndGet(ThreadCosts.currentThreadAllocatedBytes() - allocatedStart);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} finally {
+							done.countDown();
+						}
+					}
+				}, "comparison-"+t);
+				thread.setDaemon(true);
+				thread.start();
+			}
+			ready.await();
+			long startTime = System.nanoTime();
+			start.countDown();
+			done.await();
+			long elapsed = System.nanoTime() - startTime;
+
+			long operations = (long) threads * operationsPerThread;
+			Map<String, Object> result = new LinkedHashMap<String, Object>();
+			result.put("pool", adapter.getName());
+			result.put("workload", workload.name());
+			result.put("threads", threads);
+			result.put("poolSize", poolSize);
+			result.put("operations", operations);
+			result.put("failures", failures.get());
+			result.put("opsPerSecond", Math.round(operations * 1000000000.0 / elapsed));
+			result.put("nsPerOp", Math.round((double) elapsed * threads / operations));
+			result.put("cpuNsPerOp", Math.round((double) cpu.get() / operations));
+			result.put("bytesPerOp", ThreadCosts.currentThreadAllocatedBytes() < 0 ? -1 : Math.round((double) allocated.get() / operations));
+			return result;
+		} finally {
+			adapter.close(ds);
+		}
+	}
+
+	/** Performs the workload a number of times.
+	 * @param ds datasource
+	 * @param workload workload
+	 * @param operations number of operations
+	 * @param failures incremented on failure
+	 */
+	private static void perform(DataSource ds, ComparisonWorkload workload, int operations, AtomicLong failures){
+		for (int i=0; i < operations; i++){
+			try {
+				workload.perform(ds);
+			} catch (Exception e) {
+				failures.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Runs the comparison.
+	 * @param args see -h
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, PoolAdapter> adapters = PoolAdapters.all();
+		Options options = new Options();
+		options.addOption("p", "pools", true, "Comma separated pools to compare (default all: "+adapters.keySet()+")");
+		options.addOption("w", "workloads", true, "Comma separated workloads (default all)");
+		options.addOption("t", "threads", true, "Comma separated thread counts (default 1,4,16,64)");
+		options.addOption("s", "poolsize", true, "Pool size (default 20)");
+		options.addOption("n", "operations", true, "Operations per thread (default 50000)");
+		options.addOption("o", "output", true, "Output file prefix; writes <prefix>.csv and <prefix>.json (default: CSV to stdout)");
+		options.addOption("h", "help", false, "Help");
+
+		CommandLineParser parser = new PosixParser();
+		CommandLine cmd;
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e){
+			cmd = null;
+		}
+		if (cmd == null || cmd.hasOption("h")){
+			new HelpFormatter().printHelp("ComparisonHarness", options);
+			return;
+		}
+
+		SimulatedJDBCDriver.register();
+		List<PoolAdapter> pools = new ArrayList<PoolAdapter>();
+		if (cmd.hasOption("p")){
+			for (String name: cmd.getOptionValue("p").split(",")){
+				PoolAdapter adapter = adapters.get(name.trim().toUpperCase());
+				if (adapter == null){
+					throw new IllegalArgumentException("Unknown pool "+name+", expected one of "+adapters.keySet());
+				}
+				pools.add(adapter);
+			}
+		} else {
+			pools.addAll(adapters.values());
+		}
+		List<ComparisonWorkload> workloads = new ArrayList<ComparisonWorkload>();
+		if (cmd.hasOption("w")){
+			for (String name: cmd.getOptionValue("w").split(",")){
+				workloads.add(ComparisonWorkload.valueOf(name.trim().toUpperCase()));
+			}
+		} else {
+			for (ComparisonWorkload workload: ComparisonWorkload.values()){
+				workloads.add(workload);
+			}
+		}
+		int poolSize = Integer.parseInt(cmd.getOptionValue("s", "20"));
+		int operations = Integer.parseInt(cmd.getOptionValue("n", "50000"));
+
+		ComparisonHarness harness = new ComparisonHarness();
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (ComparisonWorkload workload: workloads){
+			for (String threads: cmd.getOptionValue("t", "1,4,16,64").split(",")){
+				for (PoolAdapter pool: pools){
+					System.err.println("Running "+pool.getName()+" "+workload+" threads="+threads.trim());
+					rows.add(harness.run(pool, workload, Integer.parseInt(threads.trim()), poolSize, operations));
+				}
+			}
+		}
+
+		String prefix = cmd.getOptionValue("o");
+		if (prefix == null){
+			ScenarioResult.writeCsvRows(rows, new OutputStreamWriter(System.out));
+			return;
+		}
+		Writer writer = new FileWriter(prefix+".csv");
+		try {
+			ScenarioResult.writeCsvRows(rows, writer);
+		} finally {
+			writer.close();
+		}
+		writer = new FileWriter(prefix+".json");
+		try {
+			ScenarioResult.writeJsonRows(rows, writer);
+		} finally {
+			writer.close();
+		}
+		System.err.println("Results written to "+prefix+".csv and "+prefix+".json");
+	}
+}
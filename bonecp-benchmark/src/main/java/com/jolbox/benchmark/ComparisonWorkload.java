@@ -0,0 +1,75 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/** The operations the comparison harness measures. Every pool runs exactly the same code.
+ * @author wallacew
+ *
+ */
+public enum ComparisonWorkload {
+	/** getConnection() followed by close(). */
+	GET_CLOSE(0) {
+		@Override
+		public void perform(DataSource ds) throws SQLException {
+			ds.getConnection().close();
+		}
+	},
+	/** getConnection(), prepareStatement(), execute() and close everything. Statement caching enabled. */
+	PREPARE_EXECUTE(10) {
+		@Override
+		public void perform(DataSource ds) throws SQLException {
+			Connection connection = ds.getConnection();
+			try {
+				PreparedStatement ps = connection.prepareStatement(QUERY);
+				ps.execute();
+				ps.close();
+			} finally {
+				connection.close();
+			}
+		}
+	};
+
+	/** Query used by workloads that execute statements. */
+	public static final String QUERY = "SELECT 1";
+	/** Statements to cache per connection when running this workload. */
+	private final int statementCacheSize;
+
+	/** Constructor.
+	 * @param statementCacheSize statements to cache per connection
+	 */
+	private ComparisonWorkload(int statementCacheSize){
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/** Performs one operation.
+	 * @param ds datasource to use
+	 * @throws SQLException on error
+	 */
+	public abstract void perform(DataSource ds) throws SQLException;
+
+	/** Returns the statementCacheSize field.
+	 * @return statementCacheSize
+	 */
+	public int getStatementCacheSize() {
+		return this.statementCacheSize;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A thread-safe, fixed-size log-linear histogram of latencies in nanoseconds. Values are kept with a relative
+ * precision of about 6% (16 buckets per power of two), which is plenty for percentiles, and recording a value 
+ * never allocates.
+ * 
+ * @author wallacew
+ *
+ */
+public class LatencyHistogram {
+	/** Sub-buckets per power of two, as bits. */
+	private static final int PRECISION_BITS = 4;
+	/** Sub-buckets per power of two. */
+	private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+	/** Total number of buckets, enough for any positive long. */
+	private static final int BUCKETS = (64 - PRECISION_BITS) * SUB_BUCKETS;
+	/** Counts per bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** Number of values recorded. */
+	private final AtomicLong count = new AtomicLong();
+	/** Sum of values recorded. */
+	private final AtomicLong sum = new AtomicLong();
+	/** Largest value recorded. */
+	private final AtomicLong max = new AtomicLong();
+
+	/** Returns the bucket a value falls into.
+	 * @param value value
+	 * @return bucket index
+	 */
+	protected static int bucketOf(long value){
+		if (value < SUB_BUCKETS){
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - PRECISION_BITS + 1) * SUB_BUCKETS + (int)((value >>> (exponent - PRECISION_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	/** Returns the smallest value that falls into the given bucket.
+	 * @param bucket bucket index
+	 * @return lowest value of the bucket
+	 */
+	protected static long lowestValueOf(int bucket){
+		if (bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + PRECISION_BITS - 1;
+		return ((long)(SUB_BUCKETS + bucket % SUB_BUCKETS)) << (exponent - PRECISION_BITS);
+	}
+
+	/** Records a value.
+	 * @param valueInNanos value to record (negative values are recorded as 0)
+	 */
+	public void record(long valueInNanos){
+		long value = Math.max(0, valueInNanos);
+		this.counts.incrementAndGet(bucketOf(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long currentMax;
+		while (value > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax, value)){
+			// retry
+		}
+	}
+
+	/** Returns the number of values recorded.
+	 * @return count
+	 */
+	public long getCount(){
+		return this.count.get();
+	}
+
+	/** Returns the largest value recorded.
+	 * @return max in ns
+	 */
+	public long getMax(){
+		return this.max.get();
+	}
+
+	/** Returns the mean of the values recorded.
+	 * @return mean in ns
+	 */
+	public double getMean(){
+		long n = this.count.get();
+		return n == 0 ? 0 : (double)this.sum.get() / n;
+	}
+
+	/** Returns the value at the given percentile (upper bound of the bucket it falls into).
+	 * @param percentile 0..100
+	 * @return value in ns
+	 */
+	public long getValueAtPercentile(double percentile){
+		long n = this.count.get();
+		if (n == 0){
+			return 0;
+		}
+		long target = Math.max(1, (long)Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i=0; i < BUCKETS; i++){
+			seen += this.counts.get(i);
+			if (seen >= target){
+				long upper = i + 1 < BUCKETS ? lowestValueOf(i + 1) - 1 : Long.MAX_VALUE;
+				return Math.min(upper, getMax());
+			}
+		}
+		return getMax();
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/** Describes an open-loop load scenario: when requests arrive, how long to run for and what each request does.
+ * Each request obtains a connection, executes the query (its latency comes from the database, eg the simulated
+ * driver), optionally holds on to the connection for a while longer and closes it again.
+ * 
+ * @author wallacew
+ *
+ */
+public class LoadScenario {
+	/** Name used in results. */
+	private String name = "scenario";
+	/** Request arrival times. */
+	private ArrivalSchedule arrivalSchedule = ArrivalSchedule.poisson(1000);
+	/** Length of the measured run. */
+	private long durationInMs = 10000;
+	/** Length of the (unmeasured) warm up run. */
+	private long warmupInMs = 2000;
+	/** Query to execute on each request, or null to just obtain and close the connection. */
+	private String query = "SELECT 1";
+	/** Extra time each request holds on to its connection after the query. */
+	private long holdTimeInMs = 0;
+	/** Max number of requests being serviced concurrently (further requests queue up, and their wait is measured). */
+	private int maxConcurrentRequests = 500;
+	/** Seed for the arrival schedule. */
+	private long seed = 42;
+
+	/** Returns the name field.
+	 * @return name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/** Sets the name.
+	 * @param name the name to set
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/** Returns the arrivalSchedule field.
+	 * @return arrivalSchedule
+	 */
+	public ArrivalSchedule getArrivalSchedule() {
+		return this.arrivalSchedule;
+	}
+
+	/** Sets the arrivalSchedule.
+	 * @param arrivalSchedule the arrivalSchedule to set
+	 */
+	public void setArrivalSchedule(ArrivalSchedule arrivalSchedule) {
+		this.arrivalSchedule = arrivalSchedule;
+	}
+
+	/** Returns the duration.
+	 * @param timeUnit time granularity
+	 * @return duration
+	 */
+	public long getDuration(TimeUnit timeUnit) {
+		return timeUnit.convert(this.durationInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Sets the duration of the measured run.
+	 * @param duration the duration to set
+	 * @param timeUnit time granularity
+	 */
+	public void setDuration(long duration, TimeUnit timeUnit) {
+		this.durationInMs = TimeUnit.MILLISECONDS.convert(duration, timeUnit);
+	}
+
+	/** Returns the warmup.
+	 * @param timeUnit time granularity
+	 * @return warmup
+	 */
+	public long getWarmup(TimeUnit timeUnit) {
+		return timeUnit.convert(this.warmupInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Sets the duration of the warm up run, which uses the same arrival schedule but is not measured.
+	 * @param warmup the warmup to set
+	 * @param timeUnit time granularity
+	 */
+	public void setWarmup(long warmup, TimeUnit timeUnit) {
+		this.warmupInMs = TimeUnit.MILLISECONDS.convert(warmup, timeUnit);
+	}
+
+	/** Returns the query field.
+	 * @return query
+	 */
+	public String getQuery() {
+		return this.query;
+	}
+
+	/** Sets the query to execute on each request. Null = don't execute anything.
+	 * @param query the query to set
+	 */
+	public void setQuery(String query) {
+		this.query = query;
+	}
+
+	/** Returns the holdTime.
+	 * @param timeUnit time granularity
+	 * @return holdTime
+	 */
+	public long getHoldTime(TimeUnit timeUnit) {
+		return timeUnit.convert(this.holdTimeInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Sets the time each request holds on to its connection after executing the query.
+	 * @param holdTime the holdTime to set
+	 * @param timeUnit time granularity
+	 */
+	public void setHoldTime(long holdTime, TimeUnit timeUnit) {
+		this.holdTimeInMs = TimeUnit.MILLISECONDS.convert(holdTime, timeUnit);
+	}
+
+	/** Returns the maxConcurrentRequests field.
+	 * @return maxConcurrentRequests
+	 */
+	public int getMaxConcurrentRequests() {
+		return this.maxConcurrentRequests;
+	}
+
+	/** Sets the max number of requests serviced concurrently, ie the number of client threads.
+	 * @param maxConcurrentRequests the maxConcurrentRequests to set
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/** Returns the seed field.
+	 * @return seed
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/** Sets the seed used to generate the arrival schedule.
+	 * @param seed the seed to set
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
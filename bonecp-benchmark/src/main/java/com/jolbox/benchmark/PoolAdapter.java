@@ -0,0 +1,50 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import javax.sql.DataSource;
+
+/** Plugs a connection pool implementation into the comparison harness. Adapters should configure their pool
+ * as equivalently as possible: a fixed size pool of poolSize connections with no testing, ageing or idle 
+ * eviction, and statement caching only if statementCacheSize is > 0. See {@link PoolAdapters} for the stock 
+ * adapters.
+ * 
+ * @author wallacew
+ *
+ */
+public interface PoolAdapter {
+
+	/** Returns the name used in results.
+	 * @return name
+	 */
+	String getName();
+
+	/** Creates (and starts) a pool.
+	 * @param driverClass jdbc driver class name
+	 * @param url jdbc url
+	 * @param poolSize number of connections
+	 * @param statementCacheSize statements to cache per connection, 0 = off
+	 * @return datasource
+	 * @throws Exception on error
+	 */
+	DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception;
+
+	/** Shuts down a pool created by this adapter.
+	 * @param ds datasource returned by create
+	 * @throws Exception on error
+	 */
+	void close(DataSource ds) throws Exception;
+}
@@ -0,0 +1,256 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.logicalcobwebs.proxool.ProxoolDataSource;
+import org.logicalcobwebs.proxool.ProxoolFacade;
+
+import snaq.db.DBPoolDataSource;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/** The stock pool adapters used by {@link ComparisonHarness}.
+ * @author wallacew
+ *
+ */
+public class PoolAdapters {
+	/** Credentials used for all pools. */
+	private static final String USERNAME = "sa";
+	/** Credentials used for all pools. */
+	private static final String PASSWORD = "";
+
+	/** Utility class. */
+	private PoolAdapters(){
+		// no instances
+	}
+
+	/** Returns all stock adapters, by name.
+	 * @return adapters
+	 */
+	public static Map<String, PoolAdapter> all(){
+		Map<String, PoolAdapter> result = new LinkedHashMap<String, PoolAdapter>();
+		for (PoolAdapter adapter: new PoolAdapter[]{boneCP(1, "DEFAULT"), boneCP(4, "DEFAULT"), boneCP(1, "CACHED"), 
+				c3p0(), dbcp(), tomcatJdbc(), proxool(), dbPool()}){
+			result.put(adapter.getName(), adapter);
+		}
+		return result;
+	}
+
+	/** BoneCP.
+	 * @param partitions partition count
+	 * @param strategy pool strategy
+	 * @return adapter
+	 */
+	public static PoolAdapter boneCP(final int partitions, final String strategy){
+		return new PoolAdapter() {
+			public String getName() {
+				return "BONECP_"+partitions+"_PARTITIONS"+(strategy.equals("DEFAULT") ? "" : "_"+strategy);
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				BoneCPDataSource ds = new BoneCPDataSource();
+				ds.setDriverClass(driverClass);
+				ds.setJdbcUrl(url);
+				ds.setUsername(USERNAME);
+				ds.setPassword(PASSWORD);
+				ds.setDisableConnectionTracking(true);
+				ds.setStatementsCacheSize(statementCacheSize);
+				ds.setPartitionCount(partitions);
+				ds.setMinConnectionsPerPartition(Math.max(1, poolSize / partitions));
+				ds.setMaxConnectionsPerPartition(Math.max(1, poolSize / partitions));
+				ds.setPoolStrategy(strategy);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) {
+				((BoneCPDataSource) ds).close();
+			}
+		};
+	}
+
+	/** C3P0.
+	 * @return adapter
+	 */
+	public static PoolAdapter c3p0(){
+		return new PoolAdapter() {
+			public String getName() {
+				return "C3P0";
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				ComboPooledDataSource ds = new ComboPooledDataSource();
+				ds.setDriverClass(driverClass);
+				ds.setJdbcUrl(url);
+				ds.setUser(USERNAME);
+				ds.setPassword(PASSWORD);
+				ds.setMaxIdleTime(0);
+				ds.setMaxIdleTimeExcessConnections(0);
+				ds.setIdleConnectionTestPeriod(0);
+				ds.setMaxConnectionAge(0);
+				ds.setMaxStatementsPerConnection(statementCacheSize);
+				ds.setMinPoolSize(poolSize);
+				ds.setInitialPoolSize(poolSize);
+				ds.setMaxPoolSize(poolSize);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) {
+				((ComboPooledDataSource) ds).close();
+			}
+		};
+	}
+
+	/** Apache commons-dbcp.
+	 * @return adapter
+	 */
+	public static PoolAdapter dbcp(){
+		return new PoolAdapter() {
+			public String getName() {
+				return "DBCP";
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				BasicDataSource ds = new BasicDataSource();
+				ds.setDriverClassName(driverClass);
+				ds.setUrl(url);
+				ds.setUsername(USERNAME);
+				ds.setPassword(PASSWORD);
+				ds.setMaxIdle(poolSize);
+				ds.setMinIdle(0);
+				ds.setPoolPreparedStatements(statementCacheSize > 0);
+				ds.setMaxOpenPreparedStatements(statementCacheSize);
+				ds.setInitialSize(poolSize);
+				ds.setMaxActive(poolSize);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) throws Exception {
+				((BasicDataSource) ds).close();
+			}
+		};
+	}
+
+	/** Tomcat jdbc-pool.
+	 * @return adapter
+	 */
+	public static PoolAdapter tomcatJdbc(){
+		return new PoolAdapter() {
+			public String getName() {
+				return "TOMCAT_JDBC";
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				PoolProperties config = new PoolProperties();
+				config.setDriverClassName(driverClass);
+				config.setUrl(url);
+				config.setUsername(USERNAME);
+				config.setPassword(PASSWORD);
+				config.setMaxIdle(poolSize);
+				config.setMaxAge(0);
+				config.setInitialSize(poolSize);
+				config.setMaxActive(poolSize);
+				if (statementCacheSize > 0){
+					config.setJdbcInterceptors("StatementCache(max="+(statementCacheSize * poolSize)+")");
+				}
+				org.apache.tomcat.jdbc.pool.DataSource ds = new org.apache.tomcat.jdbc.pool.DataSource();
+				ds.setPoolProperties(config);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) {
+				((org.apache.tomcat.jdbc.pool.DataSource) ds).close();
+			}
+		};
+	}
+
+	/** Proxool (no statement caching).
+	 * @return adapter
+	 */
+	public static PoolAdapter proxool(){
+		return new PoolAdapter() {
+			public String getName() {
+				return "PROXOOL";
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				ProxoolDataSource ds = new ProxoolDataSource();
+				ds.setAlias("benchmark-"+System.nanoTime());
+				ds.setDriver(driverClass);
+				ds.setDriverUrl(url);
+				ds.setUser(USERNAME);
+				ds.setPassword(PASSWORD);
+				ds.setMaximumConnectionLifetime(Integer.MAX_VALUE);
+				ds.setMaximumActiveTime(Long.MAX_VALUE);
+				ds.setTestBeforeUse(false);
+				ds.setMinimumConnectionCount(poolSize);
+				ds.setMaximumConnectionCount(poolSize);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) throws Exception {
+				ProxoolFacade.removeConnectionPool(((ProxoolDataSource) ds).getAlias());
+			}
+		};
+	}
+
+	/** DBPool (no statement caching).
+	 * @return adapter
+	 */
+	public static PoolAdapter dbPool(){
+		return new PoolAdapter() {
+			public String getName() {
+				return "DBPOOL";
+			}
+
+			public DataSource create(String driverClass, String url, int poolSize, int statementCacheSize) throws Exception {
+				DBPoolDataSource ds = new DBPoolDataSource();
+				ds.setName("benchmark-"+System.nanoTime());
+				ds.setDriverClassName(driverClass);
+				ds.setUrl(url);
+				ds.setUser(USERNAME);
+				ds.setPassword(PASSWORD);
+				ds.setMinPool(poolSize);
+				ds.setMaxPool(poolSize);
+				ds.setMaxSize(poolSize);
+				return start(ds);
+			}
+
+			public void close(DataSource ds) {
+				((DBPoolDataSource) ds).release();
+			}
+		};
+	}
+
+	/** Obtains and returns a connection so that lazily started pools are up before measuring.
+	 * @param ds datasource
+	 * @return ds
+	 * @throws Exception on error
+	 */
+	private static DataSource start(DataSource ds) throws Exception{
+		Connection connection = ds.getConnection();
+		connection.close();
+		return ds;
+	}
+}
@@ -0,0 +1,315 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Outcome of one load scenario run. Latencies are measured both from the time a request was supposed to
+ * start (intended) and from the time it actually started (actual); the difference between the two is the
+ * queueing delay a closed-loop benchmark would not see.
+ * 
+ * @author wallacew
+ *
+ */
+public class ScenarioResult {
+	/** Percentiles reported. */
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	/** Settings this run was made with (scenario, pool size, ...), in reporting order. */
+	private final Map<String, String> parameters = new LinkedHashMap<String, String>();
+	/** Intended start to connection obtained. */
+	private final LatencyHistogram acquireFromIntended = new LatencyHistogram();
+	/** Actual start to connection obtained. */
+	private final LatencyHistogram acquireFromActual = new LatencyHistogram();
+	/** Intended start to request completed. */
+	private final LatencyHistogram responseFromIntended = new LatencyHistogram();
+	/** Actual start to request completed. */
+	private final LatencyHistogram responseFromActual = new LatencyHistogram();
+	/** Number of requests that failed. */
+	private final AtomicLong failed = new AtomicLong();
+	/** Number of requests finished (successfully or not). The top bit is set once the run has been cut off. */
+	private final AtomicLong finished = new AtomicLong();
+	/** Number of requests that had not finished when the run was cut off. */
+	private long timedOut;
+	/** Number of requests scheduled. */
+	private long scheduled;
+	/** Wall clock time of the run. */
+	private long elapsedInNanos;
+
+	/** Adds a setting to report along with the results.
+	 * @param key name
+	 * @param value value
+	 * @return this
+	 */
+	public ScenarioResult addParameter(String key, Object value){
+		this.parameters.put(key, String.valueOf(value));
+		return this;
+	}
+
+	/** Records a successful request.
+	 * @param intendedStart when the request should have started (System.nanoTime())
+	 * @param actualStart when the request started
+	 * @param acquired when the connection was obtained
+	 * @param completed when the request completed
+	 */
+	protected void recordSuccess(long intendedStart, long actualStart, long acquired, long completed){
+		if (!claim()){
+			return;
+		}
+		this.acquireFromIntended.record(acquired - intendedStart);
+		this.acquireFromActual.record(acquired - actualStart);
+		this.responseFromIntended.record(completed - intendedStart);
+		this.responseFromActual.record(completed - actualStart);
+	}
+
+	/** Records a failed request. */
+	protected void recordFailure(){
+		if (claim()){
+			this.failed.incrementAndGet();
+		}
+	}
+
+	/** Counts a request as finished, unless the run has been cut off already.
+	 * @return false if the run has been cut off, in which case the request has been counted as timed out.
+	 */
+	private boolean claim(){
+		long current;
+		do {
+			current = this.finished.get();
+			if (current < 0){
+				return false;
+			}
+		} while (!this.finished.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	/** Stops recording. Requests submitted but not finished by now are counted as timed out instead of being
+	 * left out of the results.
+	 * @param submitted number of requests handed over to the clients
+	 */
+	protected void cutOff(long submitted){
+		long current;
+		do {
+			current = this.finished.get();
+		} while (current >= 0 && !this.finished.compareAndSet(current, current | Long.MIN_VALUE));
+		this.timedOut = submitted - (current & Long.MAX_VALUE);
+	}
+
+	/** Sets the number of requests scheduled and the time the run took.
+	 * @param scheduled requests scheduled
+	 * @param elapsedInNanos wall clock time
+	 */
+	protected void setRun(long scheduled, long elapsedInNanos){
+		this.scheduled = scheduled;
+		this.elapsedInNanos = elapsedInNanos;
+	}
+
+	/** Returns the number of requests scheduled.
+	 * @return scheduled
+	 */
+	public long getScheduled() {
+		return this.scheduled;
+	}
+
+	/** Returns the number of requests completed successfully.
+	 * @return completed
+	 */
+	public long getCompleted() {
+		return this.responseFromIntended.getCount();
+	}
+
+	/** Returns the number of requests that failed.
+	 * @return failed
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/** Returns the number of requests that were still queued or running when the run was cut off.
+	 * @return timed out requests
+	 */
+	public long getTimedOut() {
+		return this.timedOut;
+	}
+
+	/** Returns the throughput achieved.
+	 * @return completed requests per second
+	 */
+	public double getThroughput(){
+		return this.elapsedInNanos == 0 ? 0 : getCompleted() * 1000000000.0 / this.elapsedInNanos;
+	}
+
+	/** Returns the histogram of time from intended start to connection obtained.
+	 * @return histogram
+	 */
+	public LatencyHistogram getAcquireFromIntended() {
+		return this.acquireFromIntended;
+	}
+
+	/** Returns the histogram of time from actual start to connection obtained.
+	 * @return histogram
+	 */
+	public LatencyHistogram getAcquireFromActual() {
+		return this.acquireFromActual;
+	}
+
+	/** Returns the histogram of time from intended start to request completed.
+	 * @return histogram
+	 */
+	public LatencyHistogram getResponseFromIntended() {
+		return this.responseFromIntended;
+	}
+
+	/** Returns the histogram of time from actual start to request completed.
+	 * @return histogram
+	 */
+	public LatencyHistogram getResponseFromActual() {
+		return this.responseFromActual;
+	}
+
+	/** Returns the reported values (parameters followed by measurements, latencies in microseconds) in order.
+	 * @return values by column name
+	 */
+	protected Map<String, Object> getValues(){
+		Map<String, Object> result = new LinkedHashMap<String, Object>(this.parameters);
+		result.put("scheduled", this.scheduled);
+		result.put("completed", getCompleted());
+		result.put("failed", getFailed());
+		result.put("timedOut", getTimedOut());
+		result.put("throughput", round(getThroughput()));
+		addHistogram(result, "acquireIntended", this.acquireFromIntended);
+		addHistogram(result, "acquireActual", this.acquireFromActual);
+		addHistogram(result, "responseIntended", this.responseFromIntended);
+		addHistogram(result, "responseActual", this.responseFromActual);
+		return result;
+	}
+
+	/** Adds the summary of a histogram to the reported values.
+	 * @param values values to add to
+	 * @param prefix column name prefix
+	 * @param histogram histogram to summarise
+	 */
+	private static void addHistogram(Map<String, Object> values, String prefix, LatencyHistogram histogram){
+		values.put(prefix+"MeanUs", round(histogram.getMean() / 1000.0));
+		for (double p: PERCENTILES){
+			values.put(prefix+"P"+String.valueOf(p).replace(".0", "").replace('.', '_')+"Us", round(histogram.getValueAtPercentile(p) / 1000.0));
+		}
+		values.put(prefix+"MaxUs", round(histogram.getMax() / 1000.0));
+	}
+
+	/** Rounds to 1 decimal place for reporting.
+	 * @param value value
+	 * @return rounded value
+	 */
+	private static double round(double value){
+		return Math.round(value * 10.0) / 10.0;
+	}
+
+	/** Writes the given results as CSV, one row per run.
+	 * @param results results to write
+	 * @param writer destination
+	 * @throws IOException on write error
+	 */
+	public static void writeCsv(List<ScenarioResult> results, Writer writer) throws IOException{
+		writeCsvRows(toRows(results), writer);
+	}
+
+	/** Writes the given results as a JSON array, one object per run.
+	 * @param results results to write
+	 * @param writer destination
+	 * @throws IOException on write error
+	 */
+	public static void writeJson(List<ScenarioResult> results, Writer writer) throws IOException{
+		writeJsonRows(toRows(results), writer);
+	}
+
+	/** Returns the reported values of each result.
+	 * @param results results
+	 * @return one map of values per result
+	 */
+	private static List<Map<String, Object>> toRows(List<ScenarioResult> results){
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (ScenarioResult result: results){
+			rows.add(result.getValues());
+		}
+		return rows;
+	}
+
+	/** Writes rows of values as CSV, taking the column names from the first row.
+	 * @param rows rows to write
+	 * @param writer destination
+	 * @throws IOException on write error
+	 */
+	protected static void writeCsvRows(List<Map<String, Object>> rows, Writer writer) throws IOException{
+		if (rows.isEmpty()){
+			return;
+		}
+		writer.write(join(rows.get(0).keySet()));
+		writer.write("\n");
+		for (Map<String, Object> row: rows){
+			writer.write(join(row.values()));
+			writer.write("\n");
+		}
+		writer.flush();
+	}
+
+	/** Writes rows of values as a JSON array of objects.
+	 * @param rows rows to write
+	 * @param writer destination
+	 * @throws IOException on write error
+	 */
+	protected static void writeJsonRows(List<Map<String, Object>> rows, Writer writer) throws IOException{
+		writer.write("[");
+		for (int i=0; i < rows.size(); i++){
+			writer.write(i == 0 ? "\n  {" : ",\n  {");
+			boolean first = true;
+			for (Entry<String, Object> entry: rows.get(i).entrySet()){
+				if (!first){
+					writer.write(", ");
+				}
+				first = false;
+				writer.write("\""+entry.getKey()+"\": ");
+				Object value = entry.getValue();
+				writer.write(value instanceof Number ? value.toString() : "\""+value.toString().replace("\\", "\\\\").replace("\"", "\\\"")+"\"");
+			}
+			writer.write("}");
+		}
+		writer.write("\n]\n");
+		writer.flush();
+	}
+
+	/** Joins values with commas, quoting where needed.
+	 * @param values values to join
+	 * @return CSV line
+	 */
+	private static String join(Iterable<?> values){
+		StringBuilder sb = new StringBuilder();
+		for (Object value: values){
+			if (sb.length() > 0){
+				sb.append(',');
+			}
+			String s = String.valueOf(value);
+			sb.append(s.indexOf(',') >= 0 || s.indexOf('"') >= 0 ? "\""+s.replace("\"", "\"\"")+"\"" : s);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.BoneCPDataSource;
+import com.jolbox.bonecp.CustomThreadFactory;
+import com.jolbox.bonecp.SimulatedJDBCDriver;
+
+/** Runs open-loop load scenarios against a DataSource and sweeps pool settings. Unlike BenchmarkTests, requests
+ * are issued according to an arrival schedule rather than as fast as the pool hands out connections, and latency
+ * is measured from the time each request should have started, so a pool that falls behind is charged for the 
+ * queue it builds up (no coordinated omission). Results are written as CSV and JSON.
+ * 
+ * By default runs against the simulated driver in bonecp-test-commons, eg:
+ * <pre>
+ * java com.jolbox.benchmark.ScenarioRunner -r 2000 -a bursty -b 50 -p 10,20,40 -n 1,4 -s DEFAULT,CACHED -o results
+ * </pre>
+ * 
+ * @author wallacew
+ *
+ */
+public class ScenarioRunner {
+	/** Default database to run against. */
+	private static final String DEFAULT_URL = "jdbc:sim:scenario?connectLatency=exp:5&executeLatency=lognormal:1:0.5";
+
+	/** Runs the scenario (warm up first, then the measured run) against the given datasource.
+	 * @param scenario scenario to run
+	 * @param ds datasource to obtain connections from
+	 * @return results of the measured run
+	 * @throws InterruptedException if interrupted
+	 */
+	public ScenarioResult run(LoadScenario scenario, DataSource ds) throws InterruptedException{
+		Random random = new Random(scenario.getSeed());
+		if (scenario.getWarmup(TimeUnit.NANOSECONDS) > 0){
+			runOnce(scenario, ds, scenario.getWarmup(TimeUnit.NANOSECONDS), random);
+		}
+		return runOnce(scenario, ds, scenario.getDuration(TimeUnit.NANOSECONDS), random);
+	}
+
+	/** Issues requests according to the arrival schedule and waits for them to complete.
+	 * @param scenario scenario to run
+	 * @param ds datasource
+	 * @param durationInNanos length of run
+	 * @param random source of randomness
+	 * @return results
+	 * @throws InterruptedException if interrupted
+	 */
+	protected ScenarioResult runOnce(final LoadScenario scenario, final DataSource ds, long durationInNanos, Random random) throws InterruptedException{
+		final ScenarioResult result = new ScenarioResult();
+		long[] schedule = scenario.getArrivalSchedule().generate(durationInNanos, random);
+		ExecutorService clients = Executors.newFixedThreadPool(scenario.getMaxConcurrentRequests(), new CustomThreadFactory("BoneCP-scenario-client", true));
+		long start = System.nanoTime();
+		long submitted = 0;
+		try {
+			for (long offset: schedule){
+				final long intendedStart = start + offset;
+				long delay;
+				while ((delay = intendedStart - System.nanoTime()) > 0){
+					LockSupport.parkNanos(delay);
+				}
+				// requests that can't be serviced right away queue up here; their wait counts against intendedStart.
+				clients.execute(new Runnable() {
+					public void run() {
+						doRequest(scenario, ds, intendedStart, result);
+					}
+				});
+				submitted++;
+			}
+			clients.shutdown();
+			if (!clients.awaitTermination(Math.max(60, durationInNanos / 1000000000L), TimeUnit.SECONDS)){
+				// leaving the stragglers out would flatter the pool, so they're reported as timed out.
+				result.cutOff(submitted);
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+		result.setRun(schedule.length, System.nanoTime() - start);
+		return result;
+	}
+
+	/** Performs one request.
+	 * @param scenario scenario being run
+	 * @param ds datasource
+	 * @param intendedStart when the request should have started
+	 * @param result where to record the outcome
+	 */
+	protected void doRequest(LoadScenario scenario, DataSource ds, long intendedStart, ScenarioResult result){
+		long actualStart = System.nanoTime();
+		try {
+			Connection connection = ds.getConnection();
+			long acquired = System.nanoTime();
+			try {
+				if (scenario.getQuery() != null){
+					PreparedStatement ps = connection.prepareStatement(scenario.getQuery());
+					ps.execute();
+					ps.close();
+				}
+				long holdTime = scenario.getHoldTime(TimeUnit.MILLISECONDS);
+				if (holdTime > 0){
+					Thread.sleep(holdTime);
+				}
+			} finally {
+				connection.close();
+			}
+			result.recordSuccess(intendedStart, actualStart, acquired, System.nanoTime());
+		} catch (Exception e) {
+			result.recordFailure();
+		}
+	}
+
+	/** Parses a comma separated list of ints.
+	 * @param value list
+	 * @return ints
+	 */
+	private static int[] parseInts(String value){
+		String[] parts = value.split(",");
+		int[] result = new int[parts.length];
+		for (int i=0; i < parts.length; i++){
+			result[i] = Integer.parseInt(parts[i].trim());
+		}
+		return result;
+	}
+
+	/**
+	 * Sweeps pool size, partition count and pool strategy for the given load.
+	 * @param args see -h
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		Options options = new Options();
+		options.addOption("u", "url", true, "JDBC url (default: simulated database)");
+		options.addOption("r", "rate", true, "Mean requests per second (default 1000)");
+		options.addOption("a", "arrival", true, "Arrival process: poisson or bursty (default poisson)");
+		options.addOption("b", "burst", true, "Requests per burst for bursty arrivals (default 20)");
+		options.addOption("d", "duration", true, "Measured run length in seconds (default 10)");
+		options.addOption("w", "warmup", true, "Warm up length in seconds (default 2)");
+		options.addOption("p", "poolsizes", true, "Comma separated total pool sizes (default 10,20,50)");
+		options.addOption("n", "partitions", true, "Comma separated partition counts (default 1,2,4)");
+		options.addOption("s", "strategies", true, "Comma separated pool strategies (default DEFAULT,CACHED)");
+		options.addOption("c", "clients", true, "Max concurrent requests (default 500)");
+		options.addOption("t", "timeout", true, "Connection timeout in ms (default 1000)");
+		options.addOption("o", "output", true, "Output file prefix; writes <prefix>.csv and <prefix>.json (default: CSV to stdout)");
+		options.addOption("h", "help", false, "Help");
+
+		CommandLineParser parser = new PosixParser();
+		CommandLine cmd;
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e){
+			cmd = null;
+		}
+		if (cmd == null || cmd.hasOption("h")){
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.printHelp("ScenarioRunner", options);
+			return;
+		}
+
+		SimulatedJDBCDriver.register();
+		String url = cmd.getOptionValue("u", DEFAULT_URL);
+		double rate = Double.parseDouble(cmd.getOptionValue("r", "1000"));
+		String arrival = cmd.getOptionValue("a", "poisson");
+
+		LoadScenario scenario = new LoadScenario();
+		scenario.setArrivalSchedule(arrival.equalsIgnoreCase("bursty") 
+				? ArrivalSchedule.bursty(rate, Integer.parseInt(cmd.getOptionValue("b", "20"))) : ArrivalSchedule.poisson(rate));
+		scenario.setName(scenario.getArrivalSchedule()+"@"+rate);
+		scenario.setDuration(Long.parseLong(cmd.getOptionValue("d", "10")), TimeUnit.SECONDS);
+		scenario.setWarmup(Long.parseLong(cmd.getOptionValue("w", "2")), TimeUnit.SECONDS);
+		scenario.setMaxConcurrentRequests(Integer.parseInt(cmd.getOptionValue("c", "500")));
+
+		ScenarioRunner runner = new ScenarioRunner();
+		List<ScenarioResult> results = new ArrayList<ScenarioResult>();
+		for (String strategy: cmd.getOptionValue("s", "DEFAULT,CACHED").split(",")){
+			for (int partitions: parseInts(cmd.getOptionValue("n", "1,2,4"))){
+				for (int poolSize: parseInts(cmd.getOptionValue("p", "10,20,50"))){
+					BoneCPConfig config = new BoneCPConfig();
+					config.setJdbcUrl(url);
+					config.setUsername("sa");
+					config.setPassword("");
+					config.setPartitionCount(partitions);
+					config.setMinConnectionsPerPartition(Math.max(1, poolSize / partitions));
+					config.setMaxConnectionsPerPartition(Math.max(1, poolSize / partitions));
+					config.setPoolStrategy(strategy.trim());
+					config.setConnectionTimeout(Long.parseLong(cmd.getOptionValue("t", "1000")), TimeUnit.MILLISECONDS);
+					BoneCPDataSource ds = new BoneCPDataSource(config);
+					try {
+						System.err.println("Running "+scenario.getName()+" strategy="+strategy+" partitions="+partitions+" poolSize="+poolSize);
+						ScenarioResult result = runner.run(scenario, ds);
+						result.addParameter("scenario", scenario.getName());
+						result.addParameter("strategy", strategy.trim());
+						result.addParameter("partitions", partitions);
+						result.addParameter("poolSize", poolSize);
+						results.add(result);
+					} finally {
+						ds.close();
+					}
+				}
+			}
+		}
+		writeResults(results, cmd.getOptionValue("o"));
+	}
+
+	/** Writes out the results.
+	 * @param results results to write
+	 * @param prefix file prefix, or null for stdout
+	 * @throws IOException on error
+	 */
+	private static void writeResults(List<ScenarioResult> results, String prefix) throws IOException{
+		if (prefix == null){
+			ScenarioResult.writeCsv(results, new OutputStreamWriter(System.out));
+			return;
+		}
+		Writer writer = new FileWriter(prefix+".csv");
+		try {
+			ScenarioResult.writeCsv(results, writer);
+		} finally {
+			writer.close();
+		}
+		writer = new FileWriter(prefix+".json");
+		try {
+			ScenarioResult.writeJson(results, writer);
+		} finally {
+			writer.close();
+		}
+		System.err.println("Results written to "+prefix+".csv and "+prefix+".json");
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/** Reads the CPU time and allocated bytes of the current thread. Allocation counters are a HotSpot extension 
+ * (com.sun.management.ThreadMXBean) and are looked up reflectively; if unavailable, -1 is returned.
+ * 
+ * @author wallacew
+ *
+ */
+public class ThreadCosts {
+	/** Thread management bean. */
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	/** com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long), or null if unsupported. */
+	private static final Method getThreadAllocatedBytes;
+
+	static {
+		Method method = null;
+		try {
+			method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			method.invoke(threadBean, Thread.currentThread().getId());
+		} catch (Throwable t) {
+			method = null;
+		}
+		getThreadAllocatedBytes = method;
+		if (threadBean.isCurrentThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()){
+			threadBean.setThreadCpuTimeEnabled(true);
+		}
+	}
+
+	/** Utility class. */
+	private ThreadCosts(){
+		// no instances
+	}
+
+	/** Returns the CPU time used by the current thread.
+	 * @return time in ns, or -1 if not supported
+	 */
+	public static long currentThreadCpuTime(){
+		return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1;
+	}
+
+	/** Returns the number of bytes allocated by the current thread so far.
+	 * @return bytes, or -1 if not supported
+	 */
+	public static long currentThreadAllocatedBytes(){
+		if (getThreadAllocatedBytes == null){
+			return -1;
+		}
+		try {
+			return (Long) getThreadAllocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.util.Random;
+
+/** Stock latency distributions for the simulated driver. All values are given in milliseconds (fractions 
+ * allowed). A distribution may also be described as a string, eg for use in a jdbc:sim: URL: 
+ * <pre>
+ * none
+ * fixed:5
+ * uniform:1:10
+ * exp:2.5                 (exponential with the given mean)
+ * lognormal:2:0.5         (log-normal with the given median and shape)
+ * bimodal:1:50:0.01       (1ms normally, 50ms with probability 0.01)
+ * </pre>
+ * @author wallacew
+ *
+ */
+public class LatencyDistributions {
+
+	/** No latency at all. */
+	public static final LatencyDistribution NONE = new LatencyDistribution() {
+		public long nextLatencyInNanos() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return "none";
+		}
+	};
+
+	/** One random generator per thread to avoid contention in benchmarks. */
+	private static final ThreadLocal<Random> random = new ThreadLocal<Random>(){
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+
+	/** Utility class. */
+	private LatencyDistributions(){
+		// no instances
+	}
+
+	/** Returns the random generator of the calling thread.
+	 * @return a random generator
+	 */
+	protected static Random random(){
+		return random.get();
+	}
+
+	/** Converts ms to ns.
+	 * @param ms milliseconds
+	 * @return nanoseconds
+	 */
+	private static long toNanos(double ms){
+		return (long)(ms * 1000000.0);
+	}
+
+	/** Always the same latency.
+	 * @param ms latency
+	 * @return distribution
+	 */
+	public static LatencyDistribution fixed(final double ms){
+		final long nanos = toNanos(ms);
+		return new LatencyDistribution() {
+			public long nextLatencyInNanos() {
+				return nanos;
+			}
+
+			@Override
+			public String toString() {
+				return "fixed:"+ms;
+			}
+		};
+	}
+
+	/** Uniformly distributed latency.
+	 * @param minMs lower bound
+	 * @param maxMs upper bound
+	 * @return distribution
+	 */
+	public static LatencyDistribution uniform(final double minMs, final double maxMs){
+		return new LatencyDistribution() {
+			public long nextLatencyInNanos() {
+				return toNanos(minMs + random().nextDouble() * (maxMs - minMs));
+			}
+
+			@Override
+			public String toString() {
+				return "uniform:"+minMs+":"+maxMs;
+			}
+		};
+	}
+
+	/** Exponentially distributed latency.
+	 * @param meanMs mean latency
+	 * @return distribution
+	 */
+	public static LatencyDistribution exponential(final double meanMs){
+		return new LatencyDistribution() {
+			public long nextLatencyInNanos() {
+				return toNanos(-meanMs * Math.log(1.0 - random().nextDouble()));
+			}
+
+			@Override
+			public String toString() {
+				return "exp:"+meanMs;
+			}
+		};
+	}
+
+	/** Log-normally distributed latency, a good fit for typical query times with a long tail.
+	 * @param medianMs median latency
+	 * @param sigma shape parameter (larger = longer tail)
+	 * @return distribution
+	 */
+	public static LatencyDistribution logNormal(final double medianMs, final double sigma){
+		return new LatencyDistribution() {
+			public long nextLatencyInNanos() {
+				return toNanos(medianMs * Math.exp(sigma * random().nextGaussian()));
+			}
+
+			@Override
+			public String toString() {
+				return "lognormal:"+medianMs+":"+sigma;
+			}
+		};
+	}
+
+	/** Mostly fast, occasionally slow (eg lock waits, GC pauses on the server).
+	 * @param fastMs usual latency
+	 * @param slowMs outlier latency
+	 * @param slowProbability probability (0..1) of an outlier
+	 * @return distribution
+	 */
+	public static LatencyDistribution bimodal(final double fastMs, final double slowMs, final double slowProbability){
+		final long fast = toNanos(fastMs);
+		final long slow = toNanos(slowMs);
+		return new LatencyDistribution() {
+			public long nextLatencyInNanos() {
+				return random().nextDouble() < slowProbability ? slow : fast;
+			}
+
+			@Override
+			public String toString() {
+				return "bimodal:"+fastMs+":"+slowMs+":"+slowProbability;
+			}
+		};
+	}
+
+	/** Parses a distribution description (see class comment).
+	 * @param spec description
+	 * @return distribution
+	 * @throws IllegalArgumentException if the description cannot be parsed
+	 */
+	public static LatencyDistribution parse(String spec){
+		if (spec == null || spec.trim().length() == 0 || spec.trim().equalsIgnoreCase("none")){
+			return NONE;
+		}
+		String[] parts = spec.trim().split(":");
+		try {
+			String type = parts[0].toLowerCase();
+			if (parts.length == 1){
+				return fixed(Double.parseDouble(parts[0]));
+			}
+			if (type.equals("fixed") && parts.length == 2){
+				return fixed(Double.parseDouble(parts[1]));
+			}
+			if (type.equals("uniform") && parts.length == 3){
+				return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+			}
+			if ((type.equals("exp") || type.equals("exponential")) && parts.length == 2){
+				return exponential(Double.parseDouble(parts[1]));
+			}
+			if (type.equals("lognormal") && parts.length == 3){
+				return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+			}
+			if (type.equals("bimodal") && parts.length == 4){
+				return bimodal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+			}
+		} catch (NumberFormatException e){
+			// fall through
+		}
+		throw new IllegalArgumentException("Unable to parse latency distribution: "+spec);
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/** Behaviour of a connection handed out by the simulated driver. Implemented as a dynamic proxy over
+ * {@link MockConnection} (and friends) so that it works regardless of the JDBC version of the running JDK.
+ * 
+ * @author wallacew
+ *
+ */
+class SimulatedConnection implements InvocationHandler {
+	/** Database we belong to. */
+	private final SimulatedDatabase database;
+	/** Default behaviour for calls we don't simulate. */
+	private final MockConnection delegate = new MockConnection();
+	/** Proxy handed out to the application. */
+	private final Connection proxy;
+	/** True once closed. */
+	private volatile boolean closed;
+	/** If set, the connection is broken and all calls fail with this state. */
+	private volatile String brokenState;
+	/** Read-only flag as last set, like a real driver keeps it. */
+	private volatile boolean readOnly;
+
+	/** Constructor.
+	 * @param database database we belong to
+	 */
+	SimulatedConnection(SimulatedDatabase database){
+		this.database = database;
+		this.proxy = (Connection) Proxy.newProxyInstance(SimulatedConnection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+	}
+
+	/** Returns the connection to hand out.
+	 * @return connection proxy
+	 */
+	Connection getProxy(){
+		return this.proxy;
+	}
+
+	/** Marks this connection as broken.
+	 * @param sqlState state all further calls fail with
+	 */
+	void markBroken(String sqlState){
+		this.brokenState = sqlState;
+	}
+
+	/** Throws if the connection may not be used.
+	 * @throws SQLException if closed or broken
+	 */
+	void checkOpen() throws SQLException{
+		if (this.closed){
+			throw new SQLException("Connection is closed", SimulatedDatabase.CONNECTION_CLOSED_STATE);
+		}
+		String state = this.brokenState;
+		if (state != null){
+			throw new SQLException("Simulated connection is broken (SQLState "+state+")", state);
+		}
+	}
+
+	/** Performs a round trip on this connection, breaking the connection if the failure calls for it.
+	 * @param op operation
+	 * @throws SQLException on simulated failure
+	 */
+	void roundTrip(SimulatedOperation op) throws SQLException{
+		checkOpen();
+		try {
+			this.database.roundTrip(op);
+		} catch (SQLException e){
+			if (SimulatedFault.isConnectionFatal(e.getSQLState())){
+				markBroken(e.getSQLState());
+			}
+			throw e;
+		}
+	}
+
+	/** {@inheritDoc}
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if (name.equals("equals")){
+			return proxyInstance == args[0];
+		}
+		if (name.equals("hashCode")){
+			return System.identityHashCode(proxyInstance);
+		}
+		if (name.equals("toString")){
+			return "SimulatedConnection@"+Integer.toHexString(System.identityHashCode(proxyInstance))+" ("+this.database.getName()+")";
+		}
+		if (name.equals("close")){
+			close();
+			return null;
+		}
+		if (name.equals("isClosed")){
+			return this.closed;
+		}
+		if (name.equals("isValid")){
+			try {
+				roundTrip(SimulatedOperation.EXECUTE);
+				return true;
+			} catch (SQLException e){
+				return false;
+			}
+		}
+		if (name.equals("prepareStatement") || name.equals("prepareCall")){
+			roundTrip(SimulatedOperation.PREPARE);
+			return wrapStatement((Statement) delegate(method, args), method.getReturnType());
+		}
+		if (name.equals("createStatement")){
+			checkOpen();
+			return wrapStatement((Statement) delegate(method, args), Statement.class);
+		}
+		if (name.equals("commit") || name.equals("rollback")){
+			roundTrip(SimulatedOperation.EXECUTE);
+			return null;
+		}
+		if (name.equals("setReadOnly")){
+			checkOpen();
+			this.readOnly = (Boolean) args[0];
+			return null;
+		}
+		if (name.equals("isReadOnly")){
+			checkOpen();
+			return this.readOnly;
+		}
+		if (name.equals("getMetaData")){
+			checkOpen();
+			return Proxy.newProxyInstance(SimulatedConnection.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class}, new MetaData());
+		}
+		checkOpen();
+		return delegate(method, args);
+	}
+
+	/** Closes this connection.
+	 * @throws SQLException on simulated failure
+	 */
+	private void close() throws SQLException{
+		if (this.closed){
+			return;
+		}
+		this.closed = true;
+		try {
+			if (this.brokenState == null){
+				this.database.roundTrip(SimulatedOperation.CLOSE);
+			}
+		} finally {
+			this.database.connectionClosed(this);
+		}
+	}
+
+	/** Calls the default implementation.
+	 * @param method method to call
+	 * @param args arguments
+	 * @return result
+	 * @throws Throwable on error
+	 */
+	private Object delegate(Method method, Object[] args) throws Throwable{
+		try {
+			return method.invoke(this.delegate, args);
+		} catch (InvocationTargetException e){
+			throw e.getCause();
+		}
+	}
+
+	/** Wraps a statement so that executions are simulated.
+	 * @param statement statement to wrap
+	 * @param type interface to expose
+	 * @return wrapped statement
+	 */
+	private Object wrapStatement(Statement statement, Class<?> type){
+		Class<?> iface = CallableStatement.class.isAssignableFrom(type) ? CallableStatement.class 
+				: PreparedStatement.class.isAssignableFrom(type) ? PreparedStatement.class : Statement.class;
+		return Proxy.newProxyInstance(SimulatedConnection.class.getClassLoader(), new Class<?>[]{iface}, new StatementBehaviour(statement));
+	}
+
+	/** Statement behaviour: executions are round trips. */
+	private class StatementBehaviour implements InvocationHandler {
+		/** Default behaviour. */
+		private final Statement statement;
+
+		/** Constructor.
+		 * @param statement default behaviour.
+		 */
+		StatementBehaviour(Statement statement){
+			this.statement = statement;
+		}
+
+		/** {@inheritDoc}
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals")){
+				return proxyInstance == args[0];
+			}
+			if (name.equals("hashCode")){
+				return System.identityHashCode(proxyInstance);
+			}
+			if (name.equals("getConnection")){
+				return SimulatedConnection.this.proxy;
+			}
+			if (name.startsWith("execute")){
+				roundTrip(SimulatedOperation.EXECUTE);
+			}
+			Object result;
+			try {
+				result = method.invoke(this.statement, args);
+			} catch (InvocationTargetException e){
+				throw e.getCause();
+			}
+			if (result == null && method.getReturnType() == ResultSet.class){
+				result = new MockResultSet();
+			}
+			return result;
+		}
+	}
+
+	/** Metadata behaviour: queries returning a result set are round trips, everything else is answered locally. */
+	private class MetaData implements InvocationHandler {
+
+		/** {@inheritDoc}
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			Class<?> type = method.getReturnType();
+			if (name.equals("equals")){
+				return proxyInstance == args[0];
+			}
+			if (name.equals("hashCode")){
+				return System.identityHashCode(proxyInstance);
+			}
+			if (name.equals("getConnection")){
+				return SimulatedConnection.this.proxy;
+			}
+			if (name.equals("getDatabaseProductName")){
+				return "Simulated";
+			}
+			if (name.equals("supportsBatchUpdates")){
+				return Boolean.TRUE;
+			}
+			if (type == ResultSet.class){
+				roundTrip(SimulatedOperation.EXECUTE);
+				return new MockResultSet();
+			}
+			if (type == boolean.class){
+				return Boolean.FALSE;
+			}
+			if (type == int.class){
+				return Integer.valueOf(0);
+			}
+			if (type == long.class){
+				return Long.valueOf(0);
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A simulated database server used by {@link SimulatedJDBCDriver}. Each database has per-operation latency
+ * distributions, an optional server-side connection limit, scripted or probabilistic faults and per-call 
+ * counters, so that pool scheduling and recovery behaviour can be tested and benchmarked without a real 
+ * database.
+ * 
+ * Databases are looked up by name; a jdbc:sim:name URL refers to the database of the same name, creating 
+ * it from the URL parameters on first use (see {@link SimulatedJDBCDriver}). Configure a database 
+ * programmatically via {@link #getOrCreate(String)} and the setters below. All methods are thread-safe and 
+ * settings may be changed while connections are open.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedDatabase {
+	/** SQLState used when the connection limit is hit (postgres' too_many_connections). */
+	public static final String TOO_MANY_CONNECTIONS_STATE = "53300";
+	/** SQLState used when using a closed connection. */
+	public static final String CONNECTION_CLOSED_STATE = "08003";
+	/** Databases by name. */
+	private static final ConcurrentMap<String, SimulatedDatabase> databases = new ConcurrentHashMap<String, SimulatedDatabase>();
+	/** Number of operations. */
+	private static final int OPERATIONS = SimulatedOperation.values().length;
+
+	/** Name of this database. */
+	private final String name;
+	/** Latency per operation. */
+	private final LatencyDistribution[] latencies = new LatencyDistribution[OPERATIONS];
+	/** Max number of open connections, 0 = unlimited. */
+	private volatile int maxConnections;
+	/** Configured faults. */
+	private final List<SimulatedFault> faults = new CopyOnWriteArrayList<SimulatedFault>();
+	/** Number of upcoming calls to fail, per operation. */
+	private final AtomicInteger[] pendingFailures = new AtomicInteger[OPERATIONS];
+	/** SQLState for the upcoming failures, per operation. */
+	private final String[] pendingFailureStates = new String[OPERATIONS];
+	/** Number of calls, per operation. */
+	private final AtomicLong[] calls = new AtomicLong[OPERATIONS];
+	/** Number of injected faults, per operation. */
+	private final AtomicLong[] faultsInjected = new AtomicLong[OPERATIONS];
+	/** Currently open connections. */
+	private final AtomicInteger openConnections = new AtomicInteger();
+	/** Highest number of connections open at the same time. */
+	private final AtomicInteger peakOpenConnections = new AtomicInteger();
+	/** Number of connections successfully opened. */
+	private final AtomicLong connectionsOpened = new AtomicLong();
+	/** Number of connection attempts rejected due to maxConnections. */
+	private final AtomicLong connectionsRejected = new AtomicLong();
+	/** Open connections, so that they can be killed off. */
+	private final ConcurrentMap<SimulatedConnection, Boolean> liveConnections = new ConcurrentHashMap<SimulatedConnection, Boolean>();
+
+	/** Constructor. 
+	 * @param name name of this database
+	 */
+	protected SimulatedDatabase(String name){
+		this.name = name;
+		for (int i=0; i < OPERATIONS; i++){
+			this.latencies[i] = LatencyDistributions.NONE;
+			this.pendingFailures[i] = new AtomicInteger();
+			this.calls[i] = new AtomicLong();
+			this.faultsInjected[i] = new AtomicLong();
+		}
+	}
+
+	/** Returns the database with the given name, creating a new one (with no latency, faults or limits) if needed.
+	 * @param name database name
+	 * @return database
+	 */
+	public static SimulatedDatabase getOrCreate(String name){
+		SimulatedDatabase result = databases.get(name);
+		if (result == null){
+			SimulatedDatabase newDatabase = new SimulatedDatabase(name);
+			result = databases.putIfAbsent(name, newDatabase);
+			if (result == null){
+				result = newDatabase;
+			}
+		}
+		return result;
+	}
+
+	/** Returns the database with the given name.
+	 * @param name database name
+	 * @return database, or null if no such database exists.
+	 */
+	public static SimulatedDatabase get(String name){
+		return databases.get(name);
+	}
+
+	/** Forgets about the given database. Connections already open keep on working.
+	 * @param name database name
+	 */
+	public static void remove(String name){
+		databases.remove(name);
+	}
+
+	/** Applies settings given as properties (eg taken from a jdbc:sim: URL). Recognised keys: connectLatency,
+	 * prepareLatency, executeLatency, closeLatency (see {@link LatencyDistributions}), maxConnections, 
+	 * faultProbability, faultState (default 08S01) and faultOperation (default EXECUTE).
+	 * @param properties settings to apply
+	 */
+	public void configure(Properties properties){
+		for (SimulatedOperation op: SimulatedOperation.values()){
+			String spec = properties.getProperty(op.name().toLowerCase()+"Latency");
+			if (spec != null){
+				setLatency(op, LatencyDistributions.parse(spec));
+			}
+		}
+		String max = properties.getProperty("maxConnections");
+		if (max != null){
+			setMaxConnections(Integer.parseInt(max.trim()));
+		}
+		String probability = properties.getProperty("faultProbability");
+		if (probability != null){
+			SimulatedOperation op = SimulatedOperation.valueOf(properties.getProperty("faultOperation", "EXECUTE").trim().toUpperCase());
+			addFault(SimulatedFault.withProbability(op, Double.parseDouble(probability.trim()), properties.getProperty("faultState", "08S01").trim()));
+		}
+	}
+
+	/** Opens a new simulated connection.
+	 * @return connection
+	 * @throws SQLException on simulated failure or if the connection limit has been reached
+	 */
+	protected Connection connect() throws SQLException{
+		roundTrip(SimulatedOperation.CONNECT);
+		int open;
+		do {
+			open = this.openConnections.get();
+			int max = this.maxConnections;
+			if (max > 0 && open >= max){
+				this.connectionsRejected.incrementAndGet();
+				throw new SQLException("Simulated database "+this.name+": too many connections (max "+max+")", TOO_MANY_CONNECTIONS_STATE);
+			}
+		} while (!this.openConnections.compareAndSet(open, open+1));
+
+		int peak;
+		do {
+			peak = this.peakOpenConnections.get();
+		} while (open + 1 > peak && !this.peakOpenConnections.compareAndSet(peak, open + 1));
+		this.connectionsOpened.incrementAndGet();
+
+		SimulatedConnection connection = new SimulatedConnection(this);
+		this.liveConnections.put(connection, Boolean.TRUE);
+		return connection.getProxy();
+	}
+
+	/** Called once a simulated connection has been closed.
+	 * @param connection connection that was closed
+	 */
+	protected void connectionClosed(SimulatedConnection connection){
+		if (this.liveConnections.remove(connection) != null){
+			this.openConnections.decrementAndGet();
+		}
+	}
+
+	/** Simulates a round trip to the database: counts the call, waits for the configured latency and throws
+	 * if a fault fires.
+	 * @param op operation being performed
+	 * @throws SQLException on simulated failure
+	 */
+	protected void roundTrip(SimulatedOperation op) throws SQLException{
+		int i = op.ordinal();
+		long callNumber = this.calls[i].incrementAndGet();
+		pause(this.latencies[i].nextLatencyInNanos());
+
+		SQLException e = null;
+		AtomicInteger pending = this.pendingFailures[i];
+		int count;
+		while ((count = pending.get()) > 0){
+			if (pending.compareAndSet(count, count - 1)){
+				e = SimulatedFault.createException(op, this.pendingFailureStates[i]);
+				break;
+			}
+		}
+		for (int f=0; e == null && f < this.faults.size(); f++){
+			e = this.faults.get(f).check(op, callNumber);
+		}
+		if (e != null){
+			this.faultsInjected[i].incrementAndGet();
+			throw e;
+		}
+	}
+
+	/** Waits for the given time without holding on to any locks.
+	 * @param nanos time to wait
+	 */
+	private static void pause(long nanos){
+		if (nanos <= 0){
+			return;
+		}
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos;
+		while (remaining > 0){
+			LockSupport.parkNanos(remaining);
+			if (Thread.currentThread().isInterrupted()){
+				return;
+			}
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+	/** Breaks every open connection, eg to simulate a database restart (57P01) or a network partition (08S01). 
+	 * Further calls on these connections fail with the given state.
+	 * @param sqlState state to fail with
+	 * @return number of connections killed
+	 */
+	public int killAllConnections(String sqlState){
+		int result = 0;
+		for (SimulatedConnection connection: this.liveConnections.keySet()){
+			connection.markBroken(sqlState);
+			result++;
+		}
+		return result;
+	}
+
+	/** Fails the next count calls of the given operation.
+	 * @param op operation to fail
+	 * @param count number of calls to fail
+	 * @param sqlState state to fail with
+	 */
+	public synchronized void failNext(SimulatedOperation op, int count, String sqlState){
+		this.pendingFailureStates[op.ordinal()] = sqlState;
+		this.pendingFailures[op.ordinal()].set(count);
+	}
+
+	/** Adds a fault.
+	 * @param fault fault to add
+	 */
+	public void addFault(SimulatedFault fault){
+		this.faults.add(fault);
+	}
+
+	/** Removes all configured and pending faults. */
+	public void clearFaults(){
+		this.faults.clear();
+		for (AtomicInteger pending: this.pendingFailures){
+			pending.set(0);
+		}
+	}
+
+	/** Sets the latency of the given operation.
+	 * @param op operation
+	 * @param latency latency distribution to use
+	 */
+	public void setLatency(SimulatedOperation op, LatencyDistribution latency){
+		this.latencies[op.ordinal()] = latency == null ? LatencyDistributions.NONE : latency;
+	}
+
+	/** Returns the latency of the given operation.
+	 * @param op operation
+	 * @return latency distribution
+	 */
+	public LatencyDistribution getLatency(SimulatedOperation op){
+		return this.latencies[op.ordinal()];
+	}
+
+	/** Sets the max number of connections the database will accept. 0 = unlimited.
+	 * @param maxConnections the maxConnections to set
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/** Returns the maxConnections field.
+	 * @return maxConnections
+	 */
+	public int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	/** Returns the number of calls of the given operation.
+	 * @param op operation
+	 * @return number of calls
+	 */
+	public long getCalls(SimulatedOperation op){
+		return this.calls[op.ordinal()].get();
+	}
+
+	/** Returns the number of faults injected into the given operation.
+	 * @param op operation
+	 * @return number of faults
+	 */
+	public long getFaultsInjected(SimulatedOperation op){
+		return this.faultsInjected[op.ordinal()].get();
+	}
+
+	/** Returns the number of currently open connections.
+	 * @return open connections
+	 */
+	public int getOpenConnections() {
+		return this.openConnections.get();
+	}
+
+	/** Returns the highest number of connections that were open at the same time.
+	 * @return peak open connections
+	 */
+	public int getPeakOpenConnections() {
+		return this.peakOpenConnections.get();
+	}
+
+	/** Returns the number of connections opened.
+	 * @return connections opened
+	 */
+	public long getConnectionsOpened() {
+		return this.connectionsOpened.get();
+	}
+
+	/** Returns the number of connection attempts rejected because of maxConnections.
+	 * @return connections rejected
+	 */
+	public long getConnectionsRejected() {
+		return this.connectionsRejected.get();
+	}
+
+	/** Resets all counters (except the number of currently open connections). */
+	public void resetCounters(){
+		for (int i=0; i < OPERATIONS; i++){
+			this.calls[i].set(0);
+			this.faultsInjected[i].set(0);
+		}
+		this.peakOpenConnections.set(this.openConnections.get());
+		this.connectionsOpened.set(0);
+		this.connectionsRejected.set(0);
+	}
+
+	/** Returns the name field.
+	 * @return name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("SimulatedDatabase ").append(this.name).append(": open=").append(getOpenConnections())
+				.append(", peak=").append(getPeakOpenConnections()).append(", rejected=").append(getConnectionsRejected());
+		for (SimulatedOperation op: SimulatedOperation.values()){
+			sb.append(", ").append(op).append("=").append(getCalls(op)).append("/").append(getFaultsInjected(op));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/** A fault injected by the simulated database: either scripted (fail on given call numbers) or probabilistic.
+ * Call numbers count the calls of the given operation across the whole simulated database, starting at 1.
+ * 
+ * If the SQLState denotes a broken connection (class 08, or 57P01..57P03 "admin shutdown"/"crash shutdown"/
+ * "cannot connect now") the connection the fault occurred on stays broken and every further call on it fails 
+ * with the same state, as it would with a real database.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedFault {
+	/** Operation this fault applies to. */
+	private final SimulatedOperation operation;
+	/** SQLState to fail with. */
+	private final String sqlState;
+	/** Probability of failing (0..1). Ignored if callNumbers is set. */
+	private final double probability;
+	/** Sorted call numbers to fail on, or null. */
+	private final long[] callNumbers;
+	/** If > 0, fail every nth call. */
+	private final long everyNth;
+
+	/** Constructor. 
+	 * @param operation operation to fail
+	 * @param sqlState state to fail with
+	 * @param probability probability of failure
+	 * @param callNumbers call numbers to fail on
+	 * @param everyNth fail every nth call 
+	 */
+	private SimulatedFault(SimulatedOperation operation, String sqlState, double probability, long[] callNumbers, long everyNth){
+		this.operation = operation;
+		this.sqlState = sqlState;
+		this.probability = probability;
+		this.callNumbers = callNumbers;
+		this.everyNth = everyNth;
+	}
+
+	/** Fails each call of the given operation with the given probability.
+	 * @param operation operation to fail
+	 * @param probability probability (0..1)
+	 * @param sqlState state to fail with, eg 08S01
+	 * @return fault
+	 */
+	public static SimulatedFault withProbability(SimulatedOperation operation, double probability, String sqlState){
+		return new SimulatedFault(operation, sqlState, probability, null, 0);
+	}
+
+	/** Fails exactly the given calls of the operation.
+	 * @param operation operation to fail
+	 * @param sqlState state to fail with, eg 57P01
+	 * @param callNumbers call numbers (1 = first call) to fail on
+	 * @return fault
+	 */
+	public static SimulatedFault onCalls(SimulatedOperation operation, String sqlState, long... callNumbers){
+		long[] sorted = callNumbers.clone();
+		Arrays.sort(sorted);
+		return new SimulatedFault(operation, sqlState, 0, sorted, 0);
+	}
+
+	/** Fails every nth call of the operation.
+	 * @param operation operation to fail
+	 * @param n period
+	 * @param sqlState state to fail with
+	 * @return fault
+	 */
+	public static SimulatedFault everyNthCall(SimulatedOperation operation, long n, String sqlState){
+		if (n <= 0){
+			throw new IllegalArgumentException("n must be > 0");
+		}
+		return new SimulatedFault(operation, sqlState, 0, null, n);
+	}
+
+	/** Returns an exception if this fault fires for the given call. 
+	 * @param op operation being performed
+	 * @param callNumber call number of this operation
+	 * @return exception to throw, or null.
+	 */
+	protected SQLException check(SimulatedOperation op, long callNumber){
+		if (op != this.operation){
+			return null;
+		}
+		boolean fire;
+		if (this.callNumbers != null){
+			fire = Arrays.binarySearch(this.callNumbers, callNumber) >= 0;
+		} else if (this.everyNth > 0){
+			fire = callNumber % this.everyNth == 0;
+		} else {
+			fire = this.probability > 0 && LatencyDistributions.random().nextDouble() < this.probability;
+		}
+		return fire ? createException(op, this.sqlState) : null;
+	}
+
+	/** Creates the exception for a simulated failure.
+	 * @param op operation that failed
+	 * @param sqlState state
+	 * @return exception
+	 */
+	protected static SQLException createException(SimulatedOperation op, String sqlState){
+		return new SQLException("Simulated failure during "+op+" (SQLState "+sqlState+")", sqlState);
+	}
+
+	/** Returns true if the given state leaves the connection unusable.
+	 * @param sqlState state to check
+	 * @return true if the connection should be considered broken
+	 */
+	public static boolean isConnectionFatal(String sqlState){
+		return sqlState != null && (sqlState.startsWith("08") || sqlState.equals("57P01") 
+				|| sqlState.equals("57P02") || sqlState.equals("57P03"));
+	}
+
+	/** Returns the operation field.
+	 * @return operation
+	 */
+	public SimulatedOperation getOperation() {
+		return this.operation;
+	}
+
+	/** Returns the sqlState field.
+	 * @return sqlState
+	 */
+	public String getSqlState() {
+		return this.sqlState;
+	}
+}
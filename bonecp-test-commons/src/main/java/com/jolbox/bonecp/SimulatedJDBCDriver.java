@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+// #ifdef JDK7
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+// #endif JDK7
+
+/** A simulated jdbc driver with configurable latency, connection limits and faults, for testing and 
+ * benchmarking pool behaviour offline. Unlike {@link MockJDBCDriver}, connect() is not synchronized so 
+ * connection storms behave as they would against a real database.
+ * 
+ * Accepts URLs of the form:
+ * <pre>
+ * jdbc:sim:name
+ * jdbc:sim:name?maxConnections=20&amp;connectLatency=exp:5&amp;executeLatency=lognormal:1:0.5&amp;faultProbability=0.001&amp;faultState=08S01
+ * </pre>
+ * The name selects the {@link SimulatedDatabase} to talk to; the parameters are only applied when that database
+ * is first created. Databases may also be set up beforehand via {@link SimulatedDatabase#getOrCreate(String)}.
+ * The driver registers itself with DriverManager when the class is loaded.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedJDBCDriver implements Driver {
+	/** URL prefix we accept. */
+	public static final String URL_PREFIX = "jdbc:sim:";
+	/** Registered instance. */
+	private static final SimulatedJDBCDriver instance = new SimulatedJDBCDriver();
+
+	static {
+		try {
+			DriverManager.registerDriver(instance);
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** Makes sure the driver is loaded and registered.
+	 * @return driver instance
+	 */
+	public static SimulatedJDBCDriver register(){
+		return instance;
+	}
+
+	/** Returns the database a URL refers to, creating (and configuring) it if required.
+	 * @param url jdbc:sim: url
+	 * @return database
+	 */
+	public static SimulatedDatabase getDatabase(String url){
+		String spec = url.substring(URL_PREFIX.length());
+		int paramStart = spec.indexOf('?');
+		String name = paramStart < 0 ? spec : spec.substring(0, paramStart);
+		SimulatedDatabase result = SimulatedDatabase.get(name);
+		if (result == null){
+			Properties properties = new Properties();
+			if (paramStart >= 0){
+				for (String param: spec.substring(paramStart + 1).split("&")){
+					int eq = param.indexOf('=');
+					if (eq > 0){
+						properties.setProperty(param.substring(0, eq), param.substring(eq + 1));
+					}
+				}
+			}
+			synchronized (SimulatedJDBCDriver.class) {
+				result = SimulatedDatabase.get(name);
+				if (result == null){
+					result = SimulatedDatabase.getOrCreate(name);
+					result.configure(properties);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#acceptsURL(java.lang.String)
+	 */
+	// @Override
+	public boolean acceptsURL(String url) throws SQLException {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#connect(java.lang.String, java.util.Properties)
+	 */
+	// @Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)){
+			return null;
+		}
+		return getDatabase(url).connect();
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getMajorVersion()
+	 */
+	// @Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getMinorVersion()
+	 */
+	// @Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getPropertyInfo(java.lang.String, java.util.Properties)
+	 */
+	// @Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+		return new DriverPropertyInfo[0];
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#jdbcCompliant()
+	 */
+	// @Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	// #ifdef JDK7
+//	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return null;
+	}
+	// #endif JDK7
+}
@@ -0,0 +1,33 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.jolbox.bonecp;
+
+/** The kinds of round trip the simulated database distinguishes between, each with its own latency, faults
+ * and counters.
+ * @author wallacew
+ *
+ */
+public enum SimulatedOperation {
+	/** Opening a new physical connection. */
+	CONNECT,
+	/** prepareStatement/prepareCall. */
+	PREPARE,
+	/** Statement execution, commit, rollback, isValid and metadata queries. */
+	EXECUTE,
+	/** Closing a physical connection. */
+	CLOSE
+}
@@ -54,7 +54,7 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 
 
 		if (this.pool.statisticsEnabled){
-			statsObtainTime = System.nanoTime();
+			statsObtainTime = BoneCP.getClock(this.pool).nanoTime();
 			this.pool.statistics.incrementConnectionsRequested();
 		}
 		
@@ -71,7 +71,7 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 		handle.renewConnection(); // mark it as being logically "open"
 
 		// Give an application a chance to do something with it.
-		if (handle.getConnectionHook() != null){
+		if (handle.getConnectionHook() != null && handle.getConnectionHookEvents().isOnCheckOut()){
 			handle.getConnectionHook().onCheckOut(handle);
 		}
 
@@ -79,17 +79,28 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 			this.pool.watchConnection(handle);
 		}
 
+		if (this.pool.leakDetector != null){
+			this.pool.leakDetector.track(handle);
+		}
+
 		if (this.pool.statisticsEnabled){
-			this.pool.statistics.addCumulativeConnectionWaitTime(System.nanoTime()-statsObtainTime);
+			this.pool.statistics.addCumulativeConnectionWaitTime(BoneCP.getClock(this.pool).nanoTime()-statsObtainTime);
 		}
 	}
 
 	public Connection getConnection() throws SQLException {
+		long allocationStart = this.pool.allocationSamplingRate > 0 ? this.pool.startAllocationSample() : -1;
 		long statsObtainTime = preConnection();
 		
 		ConnectionHandle result = (ConnectionHandle) getConnectionInternal();
 		if (result != null){
 			postConnection(result, statsObtainTime);
+			if (allocationStart >= 0){
+				long allocated = PoolUtil.threadAllocatedBytesSince(allocationStart);
+				if (allocated >= 0){
+					this.pool.statistics.addCheckoutAllocation(allocated);
+				}
+			}
 		}
 		
 		return result;
@@ -0,0 +1,339 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jolbox.bonecp.hooks.AcquireFailConfig;
+import com.jolbox.bonecp.hooks.ConnectionHook;
+import com.jolbox.bonecp.hooks.ConnectionState;
+
+/**
+ * Hook wrapper that moves onCheckIn, onCheckOut, onBeforeStatementExecute, onAfterStatementExecute and 
+ * onQueryExecuteTimeLimitExceeded off the application thread (see asyncHookQueueSize). Events are written into a 
+ * preallocated ring buffer and handed to the wrapped hook in batches by a single consumer thread, in the order 
+ * they were published. All other callbacks either return a value to the pool or are rare, and are invoked directly.
+ * 
+ * By the time an asynchronous callback runs, the connection or statement it refers to may have moved on (it may
+ * even have been closed); statement parameters are copied when the event is published.
+ *
+ * @author wallacew
+ *
+ */
+public class AsyncHookDispatcher implements ConnectionHook, Runnable {
+	/** Event type. */
+	protected static final int CHECK_IN = 1;
+	/** Event type. */
+	protected static final int CHECK_OUT = 2;
+	/** Event type. */
+	protected static final int BEFORE_STATEMENT_EXECUTE = 3;
+	/** Event type. */
+	protected static final int AFTER_STATEMENT_EXECUTE = 4;
+	/** Event type. */
+	protected static final int QUERY_EXECUTE_TIME_LIMIT_EXCEEDED = 5;
+	/** How long the consumer sleeps when there is nothing to do (it is woken up earlier by new events). */
+	private static final long IDLE_PARK_TIME_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	/** How long a producer waits between checks for free space when blocking. */
+	private static final long FULL_PARK_TIME_IN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	/** Set as the next sequence number once the consumer has exited: any sequence claimed after that is negative. */
+	private static final long CONSUMER_EXITED = Long.MIN_VALUE;
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(AsyncHookDispatcher.class);
+	/** The application's hook. */
+	private final ConnectionHook hook;
+	/** Ring buffer. */
+	private final AsyncHookEvent[] ring;
+	/** ring.length - 1 (ring.length is a power of 2). */
+	private final int mask;
+	/** If true, publishers wait for space when the ring is full, otherwise the event is dropped. */
+	private final boolean blockWhenFull;
+	/** Statistics handle (for dropped events). */
+	private final Statistics statistics;
+	/** Next sequence number to hand out (negative once the consumer has exited). */
+	private final AtomicLong claimed = new AtomicLong();
+	/** All events with a lower sequence number have been dispatched. */
+	private volatile long consumed;
+	/** False once shutdown has been called. */
+	private volatile boolean running = true;
+	/** True while the consumer is (about to be) parked. */
+	private volatile boolean consumerWaiting;
+	/** Consumer thread. */
+	private volatile Thread consumer;
+
+	/** Constructor.
+	 * @param hook the application's hook
+	 * @param queueSize ring buffer size (rounded up to a power of 2)
+	 * @param blockWhenFull if true, wait for space when the ring buffer is full instead of dropping the event
+	 * @param statistics statistics handle
+	 */
+	public AsyncHookDispatcher(ConnectionHook hook, int queueSize, boolean blockWhenFull, Statistics statistics){
+		this.hook = hook;
+		int size = Integer.highestOneBit(Math.max(queueSize, 1));
+		if (size < queueSize){
+			size <<= 1;
+		}
+		this.ring = new AsyncHookEvent[size];
+		for (int i=0; i < size; i++){
+			this.ring[i] = new AsyncHookEvent();
+		}
+		this.mask = size - 1;
+		this.blockWhenFull = blockWhenFull;
+		this.statistics = statistics;
+	}
+
+	/** Returns the hook that events are dispatched to.
+	 * @return the application's hook
+	 */
+	public ConnectionHook getHook() {
+		return this.hook;
+	}
+
+	/** Returns the ring buffer size.
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return this.ring.length;
+	}
+
+	/** Returns the number of events published but not yet dispatched.
+	 * @return backlog
+	 */
+	public long getBacklog() {
+		long sequence = this.claimed.get();
+		return sequence < 0 ? 0 : Math.max(0, sequence - this.consumed);
+	}
+
+	/** Publishes an event, or dispatches it directly once shut down.
+	 * @param type event type
+	 * @param connection connection handle
+	 * @param statement statement, if any
+	 * @param sql sql, if any
+	 * @param logParams statement parameters, if any
+	 * @param timeElapsedInNs query time, if any
+	 */
+	private void publish(int type, ConnectionHandle connection, Statement statement, String sql, Map<Object, Object> logParams, long timeElapsedInNs){
+		if (!this.running){
+			dispatch(type, connection, statement, sql, logParams, timeElapsedInNs);
+			return;
+		}
+
+		long sequence;
+		if (this.blockWhenFull){
+			sequence = this.claimed.getAndIncrement();
+			if (sequence < 0){ // shut down and drained in the meantime
+				dispatch(type, connection, statement, sql, logParams, timeElapsedInNs);
+				return;
+			}
+			while (sequence - this.consumed >= this.ring.length){ // the consumer keeps draining until it gets to us, even once shut down
+				LockSupport.parkNanos(FULL_PARK_TIME_IN_NANOS);
+			}
+		} else {
+			do {
+				sequence = this.claimed.get();
+				if (sequence < 0){ // shut down and drained in the meantime
+					dispatch(type, connection, statement, sql, logParams, timeElapsedInNs);
+					return;
+				}
+				if (sequence - this.consumed >= this.ring.length){
+					this.statistics.incrementHookEventsDropped();
+					return;
+				}
+			} while (!this.claimed.compareAndSet(sequence, sequence + 1));
+		}
+
+		AsyncHookEvent event = this.ring[(int) (sequence & this.mask)];
+		event.type = type;
+		event.connection = connection;
+		event.statement = statement;
+		event.sql = sql;
+		event.params = copyParams(logParams);
+		event.timeElapsedInNs = timeElapsedInNs;
+		event.sequence = sequence; // publish
+
+		if (this.consumerWaiting){
+			LockSupport.unpark(this.consumer);
+		}
+	}
+
+	/** Copies statement parameters into a compact array.
+	 * @param logParams parameters
+	 * @return alternating keys and values, or null if there are none
+	 */
+	private static Object[] copyParams(Map<Object, Object> logParams){
+		if (logParams == null || logParams.isEmpty()){
+			return null;
+		}
+		Object[] result = new Object[logParams.size() * 2];
+		int i = 0;
+		for (Map.Entry<Object, Object> entry: logParams.entrySet()){
+			result[i++] = entry.getKey();
+			result[i++] = entry.getValue();
+		}
+		return result;
+	}
+
+	/** Consumer loop: dispatches published events in batches until shut down and every claimed sequence has been dispatched. */
+	public void run() {
+		this.consumer = Thread.currentThread();
+		long next = this.consumed;
+		while (true){
+			AsyncHookEvent event = this.ring[(int) (next & this.mask)];
+			if (event.sequence == next){
+				long batchEnd = next + this.ring.length;
+				do {
+					Map<Object, Object> params = new TreeMap<Object, Object>();
+					if (event.params != null){
+						for (int i=0; i < event.params.length; i += 2){
+							params.put(event.params[i], event.params[i + 1]);
+						}
+					}
+					dispatch(event.type, event.connection, event.statement, event.sql, params, event.timeElapsedInNs);
+					event.clear();
+					next++;
+					event = this.ring[(int) (next & this.mask)];
+				} while (event.sequence == next && next < batchEnd);
+				this.consumed = next; // free up the whole batch at once
+				continue;
+			}
+
+			// only exit once nothing is claimed but not yet published; publishers coming later see a negative sequence.
+			if (!this.running && this.claimed.compareAndSet(next, CONSUMER_EXITED)){
+				break;
+			}
+			this.consumerWaiting = true;
+			if (event.sequence != next){
+				LockSupport.parkNanos(this, IDLE_PARK_TIME_IN_NANOS);
+			}
+			this.consumerWaiting = false;
+		}
+	}
+
+	/** Invokes the application's hook.
+	 * @param type event type
+	 * @param connection connection handle
+	 * @param statement statement, if any
+	 * @param sql sql, if any
+	 * @param logParams statement parameters, if any
+	 * @param timeElapsedInNs query time, if any
+	 */
+	private void dispatch(int type, ConnectionHandle connection, Statement statement, String sql, Map<Object, Object> logParams, long timeElapsedInNs){
+		try {
+			switch (type){
+			case CHECK_IN:
+				this.hook.onCheckIn(connection);
+				break;
+			case CHECK_OUT:
+				this.hook.onCheckOut(connection);
+				break;
+			case BEFORE_STATEMENT_EXECUTE:
+				this.hook.onBeforeStatementExecute(connection, (StatementHandle) statement, sql, logParams);
+				break;
+			case AFTER_STATEMENT_EXECUTE:
+				this.hook.onAfterStatementExecute(connection, (StatementHandle) statement, sql, logParams);
+				break;
+			case QUERY_EXECUTE_TIME_LIMIT_EXCEEDED:
+				this.hook.onQueryExecuteTimeLimitExceeded(connection, statement, sql, logParams, timeElapsedInNs);
+				break;
+			default:
+				break;
+			}
+		} catch (Throwable t) {
+			logger.error("Connection hook threw an exception", t);
+		}
+	}
+
+	/** Stops the consumer once all published events, including those still being published by other threads, 
+	 * have been dispatched. Events published afterwards are dispatched on the calling thread.
+	 */
+	public void shutdown(){
+		this.running = false;
+		Thread thread = this.consumer;
+		if (thread != null){
+			LockSupport.unpark(thread);
+		}
+	}
+
+	// @Override
+	public void onCheckIn(ConnectionHandle connection) {
+		publish(CHECK_IN, connection, null, null, null, 0);
+	}
+
+	// @Override
+	public void onCheckOut(ConnectionHandle connection) {
+		publish(CHECK_OUT, connection, null, null, null, 0);
+	}
+
+	// @Override
+	public void onBeforeStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+		publish(BEFORE_STATEMENT_EXECUTE, conn, statement, sql, params, 0);
+	}
+
+	// @Override
+	public void onAfterStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+		publish(AFTER_STATEMENT_EXECUTE, conn, statement, sql, params, 0);
+	}
+
+	// @Override
+	public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, Map<Object, Object> logParams, long timeElapsedInNs) {
+		publish(QUERY_EXECUTE_TIME_LIMIT_EXCEEDED, conn, statement, sql, logParams, timeElapsedInNs);
+	}
+
+	// @Override
+	@Deprecated
+	public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, Map<Object, Object> logParams) {
+		this.hook.onQueryExecuteTimeLimitExceeded(conn, statement, sql, logParams);
+	}
+
+	// @Override
+	@Deprecated
+	public void onQueryExecuteTimeLimitExceeded(String sql, Map<Object, Object> logParams) {
+		this.hook.onQueryExecuteTimeLimitExceeded(sql, logParams);
+	}
+
+	// @Override
+	public void onAcquire(ConnectionHandle connection) {
+		this.hook.onAcquire(connection);
+	}
+
+	// @Override
+	public void onDestroy(ConnectionHandle connection) {
+		this.hook.onDestroy(connection);
+	}
+
+	// @Override
+	public boolean onAcquireFail(Throwable t, AcquireFailConfig acquireConfig) {
+		return this.hook.onAcquireFail(t, acquireConfig);
+	}
+
+	// @Override
+	public boolean onConnectionException(ConnectionHandle connection, String state, Throwable t) {
+		return this.hook.onConnectionException(connection, state, t);
+	}
+
+	// @Override
+	public ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e) {
+		return this.hook.onMarkPossiblyBroken(connection, state, e);
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Statement;
+
+/**
+ * A slot in the {@link AsyncHookDispatcher} ring buffer. Slots are allocated once and reused, a slot is 
+ * published by writing its sequence number (after all other fields).
+ *
+ * @author wallacew
+ *
+ */
+class AsyncHookEvent {
+	/** Sequence number of the event currently held in this slot, -1 if none yet. */
+	volatile long sequence = -1;
+	/** Callback to invoke (one of the AsyncHookDispatcher event constants). */
+	int type;
+	/** Connection handle. */
+	ConnectionHandle connection;
+	/** Statement, if any. */
+	Statement statement;
+	/** SQL, if any. */
+	String sql;
+	/** Statement parameters as alternating key/value pairs, or null if none. */
+	Object[] params;
+	/** Query execution time (onQueryExecuteTimeLimitExceeded only). */
+	long timeElapsedInNs;
+
+	/** Drops references once the event has been dispatched. */
+	void clear(){
+		this.connection = null;
+		this.statement = null;
+		this.sql = null;
+		this.params = null;
+	}
+}
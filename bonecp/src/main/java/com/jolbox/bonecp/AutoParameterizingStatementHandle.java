@@ -0,0 +1,280 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * Statement handle that runs execute(String), executeQuery(String) and executeUpdate(String) as prepared statements
+ * (taken from the statement cache) whenever the SQL contains numeric literals that can be turned into parameters. This lets 
+ * applications that build SQL by concatenating values benefit from statement caching. See 
+ * BoneCPConfig.setAutoParameterizeStatements() and {@link SqlNormalizer#parameterize(String)}.
+ * 
+ * Statements on which the application changes settings such as maxRows or queryTimeout are executed as is, since
+ * those settings would otherwise leak into the cached prepared statement. Result sets obtained via the prepared
+ * path return the prepared statement from ResultSet.getStatement().
+ *
+ * @author wallacew
+ *
+ */
+public class AutoParameterizingStatementHandle extends StatementHandle {
+	/** Marker for result set options that were not specified when the statement was created. */
+	protected static final int UNSPECIFIED = -1;
+	/** Result set type requested when the statement was created. */
+	private final int resultSetType;
+	/** Result set concurrency requested when the statement was created. */
+	private final int resultSetConcurrency;
+	/** Result set holdability requested when the statement was created. */
+	private final int resultSetHoldability;
+	/** Prepared statement used by the last execution, or null if it ran on the plain statement. */
+	private PreparedStatement prepared;
+	/** True once the application changes any statement settings. */
+	private boolean customized;
+
+	/** Constructor.
+	 * @param internalStatement statement to use for statements that cannot be parameterized
+	 * @param connectionHandle handle to the connection this statement is tied to
+	 * @param logStatementsEnabled set to true to enable sql logging
+	 * @param resultSetType result set type, or UNSPECIFIED
+	 * @param resultSetConcurrency result set concurrency, or UNSPECIFIED
+	 * @param resultSetHoldability result set holdability, or UNSPECIFIED
+	 */
+	public AutoParameterizingStatementHandle(Statement internalStatement, ConnectionHandle connectionHandle, boolean logStatementsEnabled,
+			int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+		super(internalStatement, connectionHandle, logStatementsEnabled);
+		this.resultSetType = resultSetType;
+		this.resultSetConcurrency = resultSetConcurrency;
+		this.resultSetHoldability = resultSetHoldability;
+	}
+
+	/** Returns the parameterized form of the given statement.
+	 * @param sql statement
+	 * @return parameterized statement, or null if it should be executed as is
+	 */
+	private ParameterizedSql parameterize(String sql){
+		if (this.customized || sql == null){
+			return null;
+		}
+		ParameterizedSql result = SqlNormalizer.parameterize(sql);
+		return result.isParameterized() ? result : null;
+	}
+
+	/** Obtains (normally from the statement cache) and binds a prepared statement.
+	 * @param parameterizedSql statement to prepare
+	 * @return prepared statement, ready to execute
+	 * @throws SQLException on error
+	 */
+	private PreparedStatement prepare(ParameterizedSql parameterizedSql) throws SQLException {
+		releasePrepared();
+		PreparedStatement result;
+		if (this.resultSetHoldability != UNSPECIFIED){
+			result = this.connectionHandle.prepareStatement(parameterizedSql.getSql(), this.resultSetType, this.resultSetConcurrency, this.resultSetHoldability);
+		} else if (this.resultSetType != UNSPECIFIED){
+			result = this.connectionHandle.prepareStatement(parameterizedSql.getSql(), this.resultSetType, this.resultSetConcurrency);
+		} else {
+			result = this.connectionHandle.prepareStatement(parameterizedSql.getSql());
+		}
+		this.prepared = result;
+		parameterizedSql.bind(result);
+		return result;
+	}
+
+	/** Hands the prepared statement used by the last execution back to the cache.
+	 * @throws SQLException on error
+	 */
+	private void releasePrepared() throws SQLException {
+		if (this.prepared != null){
+			PreparedStatement statement = this.prepared;
+			this.prepared = null;
+			statement.close();
+		}
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+		checkClosed();
+		ParameterizedSql parameterizedSql = parameterize(sql);
+		if (parameterizedSql == null){
+			releasePrepared();
+			return super.execute(sql);
+		}
+		return prepare(parameterizedSql).execute();
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		checkClosed();
+		ParameterizedSql parameterizedSql = parameterize(sql);
+		if (parameterizedSql == null){
+			releasePrepared();
+			return super.executeQuery(sql);
+		}
+		return prepare(parameterizedSql).executeQuery();
+	}
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+		checkClosed();
+		ParameterizedSql parameterizedSql = parameterize(sql);
+		if (parameterizedSql == null){
+			releasePrepared();
+			return super.executeUpdate(sql);
+		}
+		return prepare(parameterizedSql).executeUpdate();
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		releasePrepared();
+		return super.execute(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		releasePrepared();
+		return super.execute(sql, columnIndexes);
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		releasePrepared();
+		return super.execute(sql, columnNames);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		releasePrepared();
+		return super.executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		releasePrepared();
+		return super.executeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		releasePrepared();
+		return super.executeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		releasePrepared();
+		return super.executeBatch();
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return this.prepared == null ? super.getGeneratedKeys() : this.prepared.getGeneratedKeys();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return this.prepared == null ? super.getWarnings() : this.prepared.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		if (this.prepared == null){
+			super.clearWarnings();
+		} else {
+			this.prepared.clearWarnings();
+		}
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return this.prepared == null ? super.getResultSet() : this.prepared.getResultSet();
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return this.prepared == null ? super.getUpdateCount() : this.prepared.getUpdateCount();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		return this.prepared == null ? super.getMoreResults() : this.prepared.getMoreResults();
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+		return this.prepared == null ? super.getMoreResults(current) : this.prepared.getMoreResults(current);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		if (this.prepared == null){
+			super.cancel();
+		} else {
+			this.prepared.cancel();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		releasePrepared();
+		super.close();
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		this.customized = true;
+		super.setCursorName(name);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		this.customized = true;
+		super.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		this.customized = true;
+		super.setFetchDirection(direction);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		this.customized = true;
+		super.setFetchSize(rows);
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		this.customized = true;
+		super.setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		this.customized = true;
+		super.setMaxRows(max);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		this.customized = true;
+		super.setQueryTimeout(seconds);
+	}
+}
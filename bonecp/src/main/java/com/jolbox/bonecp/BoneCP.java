@@ -29,16 +29,20 @@ import java.sql.Statement;
 import java.util.AbstractMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -78,16 +82,20 @@ public class BoneCP implements Serializable, Closeable {
 	public static final String MBEAN_CONFIG = "com.jolbox.bonecp:type=BoneCPConfig";
 	/** JMX constant. */
 	public static final String MBEAN_BONECP = "com.jolbox.bonecp:type=BoneCP";
+	/** JMX constant. */
+	public static final String MBEAN_TUNING = "com.jolbox.bonecp:type=BoneCPTuning";
 	/** Constant for keep-alive test */
 	private static final String[] METADATATABLE = new String[] {"TABLE"};
 	/** Constant for keep-alive test */
 	private static final String KEEPALIVEMETADATA = "BONECPKEEPALIVE";
 	/** Create more connections when we hit x% of our possible number of connections. */
-	protected final int poolAvailabilityThreshold;
-	/** Number of partitions passed in constructor. **/
-	protected int partitionCount;
-	/** Partitions handle. */
-	protected ConnectionPartition[] partitions;
+	protected volatile int poolAvailabilityThreshold;
+	/** Number of partitions passed in constructor (or set by the last repartition). **/
+	protected volatile int partitionCount;
+	/** Partitions handle. Replaced as a whole on repartition so read it once per use. */
+	protected volatile ConnectionPartition[] partitions;
+	/** Partitions replaced by a repartition that still own connections in use. */
+	protected final Queue<ConnectionPartition> retiredPartitions = new ConcurrentLinkedQueue<ConnectionPartition>();
 	/** Handle to factory that creates 1 thread per partition that periodically wakes up and performs some
 	 * activity on the connection.
 	 */
@@ -114,6 +122,22 @@ public class BoneCP implements Serializable, Closeable {
 	protected boolean closeConnectionWatch = false;
 	/** Threads monitoring for bad connection requests. */
 	private ExecutorService closeConnectionExecutor;
+	/** Threads closing off (and replacing) expired or broken connections. Null if disabled. */
+	@VisibleForTesting protected ExecutorService retirementExecutor;
+	/** Threads restoring the session state of returned connections. Null if disabled. */
+	@VisibleForTesting protected ExecutorService resetExecutor;
+	/** Tracks checked out connections to report possible leaks. Null if disabled. */
+	protected LeakDetectionThread leakDetector;
+	/** Runs the leak detector. Null if disabled. */
+	private ScheduledExecutorService leakDetectionScheduler;
+	/** Dispatches hook callbacks off the application threads, or null if asyncHookQueueSize is not set. */
+	protected AsyncHookDispatcher asyncHookDispatcher;
+	/** Runs the asynchronous hook dispatcher. */
+	private ExecutorService asyncHookExecutor;
+	/** Source of time for connection bookkeeping and latency measurement. */
+	protected PoolClock clock = SystemClock.INSTANCE;
+	/** Refreshes the clock if coarseClockResolutionInMs is set. Null otherwise. */
+	private ScheduledExecutorService clockScheduler;
 	/** set to true if the connection pool has been flagged as shutting down. */
 	protected volatile boolean poolShuttingDown;
 	/** Placeholder to give more useful info in case of a double shutdown. */
@@ -123,13 +147,17 @@ public class BoneCP implements Serializable, Closeable {
 	/** Watch for connections that should have been safely closed but the application forgot. */
 	private transient FinalizableReferenceQueue finalizableRefQueue;
 	/** Time to wait before timing out the connection. Default in config is Long.MAX_VALUE milliseconds. */
-	protected long connectionTimeoutInMs;
+	protected volatile long connectionTimeoutInMs;
 	/** No of ms to wait for thread.join() in connection watch thread. */
 	private long closeConnectionWatchTimeoutInMs;
 	/** if true, we care about statistics. */
 	protected boolean statisticsEnabled;
 	/** statistics handle. */
 	protected Statistics statistics = new Statistics(this);
+	/** If > 0, measure the allocation of every nth checkout. */
+	protected int allocationSamplingRate;
+	/** Counts checkouts to pick the ones to measure. */
+	private final AtomicLong allocationSampleCounter = new AtomicLong();
 	/** Config setting. */
 	@VisibleForTesting protected boolean nullOnConnectionTimeout;
 	/** Config setting. */
@@ -141,6 +169,20 @@ public class BoneCP implements Serializable, Closeable {
 	protected ConnectionStrategy connectionStrategy;
 	/** If true, there are no connections to be taken. */
 	private AtomicBoolean dbIsDown = new AtomicBoolean();
+	/** Guards connection acquisition while the database is down. Null if disabled. */
+	protected CircuitBreaker circuitBreaker;
+	/** Decides what an SQLException means for the connection and the database. Null to use the default rules. */
+	protected SQLStateClassifier sqlStateClassifier;
+	/** Validates idle connections before the pool is flushed on a database failure. Null if disabled. */
+	protected DatabaseFailureValidator failureValidator;
+	/** Warms up new connections before they are handed out. Null if disabled. */
+	protected ConnectionWarmUp connectionWarmUp;
+	/** Sets up the session of new connections. */
+	protected SessionInitializer sessionInitializer = new SessionInitializer(this);
+	/** Callbacks implemented by the configured connection hook. */
+	protected ConnectionHookEvents connectionHookEvents = ConnectionHookEvents.NONE;
+	/** Tracks whether enough initial connections are open. */
+	protected PoolReadiness readiness;
 	/** Config setting. */
 	@VisibleForTesting protected Properties clientInfo;
 	/** If false, we haven't made a dummy driver call first. */
@@ -160,7 +202,16 @@ public class BoneCP implements Serializable, Closeable {
 			this.poolShuttingDown = true;
 			this.shutdownStackTrace = captureStackTrace(SHUTDOWN_LOCATION_TRACE);
 			this.keepAliveScheduler.shutdownNow(); // stop threads from firing.
+			if (this.readiness != null){
+				this.readiness.cancel();
+			}
 			this.maxAliveScheduler.shutdownNow(); // stop threads from firing.
+			if (this.leakDetectionScheduler != null){
+				this.leakDetectionScheduler.shutdownNow();
+			}
+			if (this.clockScheduler != null){
+				this.clockScheduler.shutdownNow();
+			}
 			this.connectionsScheduler.shutdownNow(); // stop threads from firing.
 			this.asyncExecutor.shutdownNow();
 
@@ -175,11 +226,33 @@ public class BoneCP implements Serializable, Closeable {
 					this.closeConnectionExecutor.shutdownNow();
 					this.closeConnectionExecutor.awaitTermination(5, TimeUnit.SECONDS);
 				}
+
+				if (this.retirementExecutor != null){
+					// let any pending retirements close off their connections.
+					this.retirementExecutor.shutdown();
+					this.retirementExecutor.awaitTermination(5, TimeUnit.SECONDS);
+				}
+
+				if (this.resetExecutor != null){
+					// pending resets place their connections back so that they get closed off below.
+					this.resetExecutor.shutdown();
+					this.resetExecutor.awaitTermination(5, TimeUnit.SECONDS);
+				}
 				
 			} catch (InterruptedException e) {
 				// do nothing
 			}
 			this.connectionStrategy.terminateAllConnections();
+			if (this.asyncHookDispatcher != null){
+				// deliver whatever is still queued before we go.
+				this.asyncHookDispatcher.shutdown();
+				this.asyncHookExecutor.shutdown();
+				try {
+					this.asyncHookExecutor.awaitTermination(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// do nothing
+				}
+			}
 			unregisterDriver();
 			registerUnregisterJMX(false);
 			if (finalizableRefQueue != null) {
@@ -222,6 +295,104 @@ public class BoneCP implements Serializable, Closeable {
 		}
 	}
  
+	/** Hands over a connection whose session state has been changed by the application to the reset threads.
+	 * @param connectionHandle connection to reset
+	 * @return true if the connection was accepted, false if it must be dealt with by the caller.
+	 */
+	protected boolean resetConnectionInBackground(final ConnectionHandle connectionHandle){
+		try {
+			this.resetExecutor.execute(new Runnable() {
+				public void run() {
+					resetConnection(connectionHandle);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false; // shutting down
+		}
+	}
+
+	/** Restores the session state of the given connection and places it back in its partition. If the reset 
+	 * fails, the connection is destroyed instead.
+	 * @param connectionHandle connection to reset
+	 */
+	protected void resetConnection(ConnectionHandle connectionHandle){
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		try {
+			connectionHandle.resetSessionState();
+			// We're not on the application's thread so bypass any thread-local caching. 
+			if (offerFreeConnection(connectionHandle)){
+				return;
+			}
+		} catch (SQLException e) {
+			logger.debug("Unable to reset connection, closing it off", e);
+		}
+		destroyConnection(connectionHandle);
+		maybeSignalForMoreConnections(connectionPartition);
+	}
+
+	/** Hands over an expired or possibly broken connection to the retirement threads.
+	 * @param connectionHandle connection to retire
+	 * @return true if the connection was accepted, false if it must be dealt with by the caller.
+	 */
+	protected boolean retireConnectionInBackground(final ConnectionHandle connectionHandle){
+		try {
+			this.retirementExecutor.execute(new Runnable() {
+				public void run() {
+					retireConnection(connectionHandle);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false; // shutting down
+		}
+	}
+
+	/** Retires an expired or possibly broken connection: a replacement is opened first and the old connection 
+	 * is closed off afterwards. A possibly broken connection that passes a connection test is put back instead.
+	 * @param connectionHandle connection to retire
+	 */
+	protected void retireConnection(ConnectionHandle connectionHandle){
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		if (!connectionHandle.isExpired() && !this.poolShuttingDown && isConnectionHandleAlive(connectionHandle)){
+			// false alarm. We're not on the application's thread so bypass any thread-local caching. 
+			connectionHandle.setConnectionLastUsedInMs(this.clock.currentTimeMillis());
+			if (offerFreeConnection(connectionHandle)){
+				return;
+			}
+		}
+
+		boolean replaced = precreateReplacementConnection(connectionPartition);
+		try {
+			connectionHandle.internalClose();
+		} catch (SQLException e) {
+			logger.debug("Error in attempting to close retired connection", e);
+		}
+		postDestroyConnection(connectionHandle);
+		if (!replaced){
+			maybeSignalForMoreConnections(connectionPartition);
+		}
+	}
+
+	/** Opens a new connection and adds it to the given partition ahead of retiring an old one so that
+	 * the partition's capacity is never reduced while the old connection is being closed off. Nothing is opened 
+	 * for a partition that is to shrink (over capacity) or that has been replaced by a repartition.
+	 * @param partition partition to add the replacement connection to.
+	 * @return true if a replacement connection was added.
+	 */
+	protected boolean precreateReplacementConnection(ConnectionPartition partition){
+		if (this.poolShuttingDown || this.dbIsDown.get() || partition.isOverCapacity() || partition.isRetired()){
+			return false;
+		}
+		try {
+			partition.addFreeConnection(new ConnectionHandle(null, partition, this, false));
+			return true;
+		} catch (SQLException e) {
+			logger.error("Unable to create replacement connection", e);
+			return false;
+		}
+	}
+
 	/** Update counters and call hooks.
 	 * @param handle connection handle.
 	 */
@@ -274,6 +445,9 @@ public class BoneCP implements Serializable, Closeable {
 				}
 				
 				this.getDbIsDown().set(false);
+				if (this.circuitBreaker != null){
+					this.circuitBreaker.recordSuccess();
+				}
 				
 				connectionHandle.setInternalConnection(result);
 				
@@ -283,10 +457,15 @@ public class BoneCP implements Serializable, Closeable {
 				}
 
 				
-				ConnectionHandle.sendInitSQL(result, this.getConfig().getInitSQL());
+				this.sessionInitializer.initialize(result);
 			} catch (SQLException e) {
-				// call the hook, if available.
-				if (connectionHook != null){
+				if (this.circuitBreaker != null){
+					this.circuitBreaker.recordFailure(e);
+				}
+				if (this.circuitBreaker != null && this.circuitBreaker.isOpen()){
+					tryAgain = false; // the breaker's probe takes over checking for the database.
+				} else if (connectionHook != null){
+					// call the hook, if available.
 					tryAgain = connectionHook.onAcquireFail(e, acquireConfig);
 				} else {
 					logger.error(String.format("Failed to acquire connection to %s. Sleeping for %d ms. Attempts left: %d", url, acquireRetryDelayInMs, acquireRetryAttempts), e);
@@ -396,6 +575,13 @@ public class BoneCP implements Serializable, Closeable {
 		this.config.sanitize();
 
 		this.statisticsEnabled = this.config.isStatisticsEnabled();
+		this.allocationSamplingRate = this.config.getAllocationSamplingRate();
+		if (this.statisticsEnabled && this.config.getSqlStatisticsSize() > 0){
+			this.statistics.setSqlStatisticsTable(new SqlStatistics(this.config.getSqlStatisticsSize()));
+		}
+		if (this.config.getSlowQueryThresholdInMs() > 0 && this.config.getSlowQueryLogSize() > 0){
+			this.statistics.setSlowQueryLog(new SlowQueryLog(this.config.getSlowQueryLogSize(), this.config.getSlowQueryThreshold(TimeUnit.NANOSECONDS)));
+		}
 		this.closeConnectionWatchTimeoutInMs = this.config.getCloseConnectionWatchTimeoutInMs();
 		this.poolAvailabilityThreshold = this.config.getPoolAvailabilityThreshold();
 		this.connectionTimeoutInMs = this.config.getConnectionTimeoutInMs();
@@ -428,6 +614,15 @@ public class BoneCP implements Serializable, Closeable {
 		}
 
 		this.asyncExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+		this.sqlStateClassifier = this.config.getSqlStateClassifier();
+		this.connectionWarmUp = this.config.getConnectionWarmUp();
+		if (this.connectionWarmUp == null && DefaultConnectionWarmUp.isConfigured(this.config)){
+			this.connectionWarmUp = new DefaultConnectionWarmUp();
+		}
+		if (this.config.getFailureValidationSampleSize() > 0){
+			this.failureValidator = new DatabaseFailureValidator(this, this.config.getFailureValidationSampleSize(), 
+					this.config.getFailureValidationTimeoutInMs(), this.asyncExecutor);
+		}
 
 		this.partitions = new ConnectionPartition[this.config.getPartitionCount()];
 		String suffix = "";
@@ -437,11 +632,24 @@ public class BoneCP implements Serializable, Closeable {
 		}
 
 
+		if (this.config.getClock() != null){
+			this.clock = this.config.getClock();
+		} else if (this.config.getCoarseClockResolutionInMs() > 0){
+			CoarseClock coarseClock = new CoarseClock();
+			this.clock = coarseClock;
+			this.clockScheduler = Executors.newScheduledThreadPool(1, new CustomThreadFactory("BoneCP-clock-thread"+suffix, true));
+			this.clockScheduler.scheduleAtFixedRate(coarseClock, this.config.getCoarseClockResolutionInMs(), this.config.getCoarseClockResolutionInMs(), TimeUnit.MILLISECONDS);
+		}
+
 		this.keepAliveScheduler =  Executors.newScheduledThreadPool(this.config.getPartitionCount(), new CustomThreadFactory("BoneCP-keep-alive-scheduler"+suffix, true));
 		this.maxAliveScheduler =  Executors.newScheduledThreadPool(this.config.getPartitionCount(), new CustomThreadFactory("BoneCP-max-alive-scheduler"+suffix, true));
-		this.connectionsScheduler =  Executors.newFixedThreadPool(this.config.getPartitionCount(), new CustomThreadFactory("BoneCP-pool-watch-thread"+suffix, true));
+		// one thread per partition, not fixed since the pool can be repartitioned.
+		this.connectionsScheduler =  Executors.newCachedThreadPool(new CustomThreadFactory("BoneCP-pool-watch-thread"+suffix, true));
 
 		this.partitionCount = this.config.getPartitionCount();
+		if (this.config.getCircuitBreakerFailureThreshold() > 0){
+			this.circuitBreaker = new CircuitBreaker(this, this.config.getCircuitBreakerFailureThreshold(), this.config.getCircuitBreakerOpenTimeInMs());
+		}
 		this.closeConnectionWatch = this.config.isCloseConnectionWatch();
 		this.cachedPoolStrategy = this.config.getPoolStrategy() != null && this.config.getPoolStrategy().equalsIgnoreCase("CACHED");
 		if (this.cachedPoolStrategy){
@@ -449,60 +657,101 @@ public class BoneCP implements Serializable, Closeable {
 		} else {
 			this.connectionStrategy = new DefaultConnectionStrategy(this);
 		}
-		boolean queueLIFO = this.config.getServiceOrder() != null && this.config.getServiceOrder().equalsIgnoreCase("LIFO");
 		if (this.closeConnectionWatch){
 			logger.warn(THREAD_CLOSE_CONNECTION_WARNING);
 			this.closeConnectionExecutor =  Executors.newCachedThreadPool(new CustomThreadFactory("BoneCP-connection-watch-thread"+suffix, true));
 
 		}
+		if (this.config.isRetireConnectionsInBackground()){
+			this.retirementExecutor = Executors.newFixedThreadPool(this.config.getPartitionCount(), new CustomThreadFactory("BoneCP-connection-retirement-thread"+suffix, true));
+		}
+		if (this.config.isResetConnectionInBackground()){
+			this.resetExecutor = Executors.newFixedThreadPool(this.config.getPartitionCount(), new CustomThreadFactory("BoneCP-connection-reset-thread"+suffix, true));
+		}
+		long leakDetectionThresholdInMs = this.config.getLeakDetectionThresholdInMs();
+		if (leakDetectionThresholdInMs > 0){
+			this.leakDetector = new LeakDetectionThread(this, leakDetectionThresholdInMs);
+			// a single thread scans all checked out connections; run often enough to report a leak reasonably close to the threshold.
+			long scanIntervalInMs = Math.max(100, Math.min(leakDetectionThresholdInMs / 2, 10000));
+			this.leakDetectionScheduler = Executors.newScheduledThreadPool(1, new CustomThreadFactory("BoneCP-leak-detection-thread"+suffix, true));
+			this.leakDetectionScheduler.scheduleWithFixedDelay(this.leakDetector, scanIntervalInMs, scanIntervalInMs, TimeUnit.MILLISECONDS);
+		}
+		if (this.config.getConnectionHook() != null && this.config.getAsyncHookQueueSize() > 0){
+			// our config is a private copy, so connections and statements pick up the wrapper from here on.
+			this.asyncHookDispatcher = new AsyncHookDispatcher(this.config.getConnectionHook(), this.config.getAsyncHookQueueSize(), this.config.isAsyncHookBlockWhenFull(), this.statistics);
+			this.config.setConnectionHook(this.asyncHookDispatcher);
+			this.asyncHookExecutor = Executors.newSingleThreadExecutor(new CustomThreadFactory("BoneCP-hook-dispatch-thread"+suffix, true));
+			this.asyncHookExecutor.execute(this.asyncHookDispatcher);
+		}
+		// work out up front which callbacks are worth making; connections and statements pick this up from here.
+		this.connectionHookEvents = ConnectionHookEvents.forHook(this.config.getConnectionHook());
+		if (this.config.getConnectionHook() != null){
+			logger.debug("Connection hook callbacks in use: " + this.connectionHookEvents);
+		}
+		int initialConnections = this.config.isLazyInit() ? 0 : this.config.getMinConnectionsPerPartition();
+		this.readiness = new PoolReadiness(this, (int) Math.ceil(initialConnections * this.config.getPartitionCount() * this.config.getReadyThreshold() / 100.0));
 		for (int p=0; p < this.config.getPartitionCount(); p++){
+			// in background mode, the watch threads fill up the partitions in parallel.
+			this.partitions[p] = createPartition(this.config.isBackgroundInit() ? 0 : initialConnections);
+			startPartitionThreads(this.partitions[p]);
+		}
+		this.readiness.check();
 
-			ConnectionPartition connectionPartition = new ConnectionPartition(this);
-			this.partitions[p]=connectionPartition;
-			BlockingQueue<ConnectionHandle> connectionHandles = new LinkedBlockingQueue<ConnectionHandle>(this.config.getMaxConnectionsPerPartition());
-
-			this.partitions[p].setFreeConnections(connectionHandles);
+		if (!this.config.isDisableJMX()){
+			registerUnregisterJMX(true);
+		}
 
-			if (!this.config.isLazyInit()){
-				for (int i=0; i < this.config.getMinConnectionsPerPartition(); i++){
-					this.partitions[p].addFreeConnection(new ConnectionHandle(null, this.partitions[p], this, false));
-				}
 
-			}
+	}
 
 
-			if (this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) > 0 || this.config.getIdleMaxAge(TimeUnit.SECONDS) > 0){
+	/** Creates a partition and opens its initial connections.
+	 * @param initialConnections number of connections to open right away
+	 * @return the new partition
+	 * @throws SQLException on error opening the initial connections
+	 */
+	protected ConnectionPartition createPartition(int initialConnections) throws SQLException {
+		ConnectionPartition connectionPartition = new ConnectionPartition(this);
+		// not bounded by the queue itself: partition size is kept in check by counting connections so that it can be changed at runtime.
+		BlockingQueue<ConnectionHandle> connectionHandles = new LinkedBlockingQueue<ConnectionHandle>();
 
-				final Runnable connectionTester = new ConnectionTesterThread(connectionPartition, this.keepAliveScheduler, this, this.config.getIdleMaxAge(TimeUnit.MILLISECONDS), this.config.getIdleConnectionTestPeriod(TimeUnit.MILLISECONDS), queueLIFO);
-				long delayInSeconds = this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS);
-				if (delayInSeconds == 0L){
-					delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
-				}
-				if (this.config.getIdleMaxAge(TimeUnit.SECONDS) < delayInSeconds
-						&& this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) != 0
-						&& this.config.getIdleMaxAge(TimeUnit.SECONDS) != 0){
-					delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
-				}
-				this.keepAliveScheduler.schedule(connectionTester, delayInSeconds, TimeUnit.SECONDS);
-			}
+		connectionPartition.setFreeConnections(connectionHandles);
 
+		for (int i=0; i < initialConnections; i++){
+			connectionPartition.addFreeConnection(new ConnectionHandle(null, connectionPartition, this, false));
+		}
+		return connectionPartition;
+	}
 
-			if (this.config.getMaxConnectionAgeInSeconds() > 0){
-				final Runnable connectionMaxAgeTester = new ConnectionMaxAgeThread(connectionPartition, this.maxAliveScheduler, this, this.config.getMaxConnectionAge(TimeUnit.MILLISECONDS), queueLIFO);
-				this.maxAliveScheduler.schedule(connectionMaxAgeTester, this.config.getMaxConnectionAgeInSeconds(), TimeUnit.SECONDS);
+	/** Starts the threads that test, expire and top up the connections of a partition.
+	 * @param connectionPartition partition to look after
+	 */
+	protected void startPartitionThreads(ConnectionPartition connectionPartition) {
+		boolean queueLIFO = this.config.getServiceOrder() != null && this.config.getServiceOrder().equalsIgnoreCase("LIFO");
+		if (this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) > 0 || this.config.getIdleMaxAge(TimeUnit.SECONDS) > 0){
+
+			final Runnable connectionTester = new ConnectionTesterThread(connectionPartition, this.keepAliveScheduler, this, this.config.getIdleMaxAge(TimeUnit.MILLISECONDS), this.config.getIdleConnectionTestPeriod(TimeUnit.MILLISECONDS), queueLIFO);
+			long delayInSeconds = this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS);
+			if (delayInSeconds == 0L){
+				delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
 			}
-			// watch this partition for low no of threads
-			this.connectionsScheduler.execute(new PoolWatchThread(connectionPartition, this));
+			if (this.config.getIdleMaxAge(TimeUnit.SECONDS) < delayInSeconds
+					&& this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) != 0
+					&& this.config.getIdleMaxAge(TimeUnit.SECONDS) != 0){
+				delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
+			}
+			this.keepAliveScheduler.schedule(connectionTester, delayInSeconds, TimeUnit.SECONDS);
 		}
 
-		if (!this.config.isDisableJMX()){
-			registerUnregisterJMX(true);
+		if (this.config.getMaxConnectionAgeInSeconds() > 0){
+			final Runnable connectionMaxAgeTester = new ConnectionMaxAgeThread(connectionPartition, this.maxAliveScheduler, this, this.config.getMaxConnectionAge(TimeUnit.MILLISECONDS), queueLIFO, this.config.getMaxConcurrentRetirementsPerPartition());
+			// with jitter enabled, the first connections may expire ahead of maxConnectionAge.
+			this.maxAliveScheduler.schedule(connectionMaxAgeTester, this.config.getMaxConnectionAgeInSeconds() - this.config.getMaxConnectionAgeJitterInSeconds(), TimeUnit.SECONDS);
 		}
-
-
+		// watch this partition for low no of threads
+		this.connectionsScheduler.execute(new PoolWatchThread(connectionPartition, this));
 	}
 
-
 	/**
 	 * Initialises JMX stuff.
 	 * @param doRegister if true, perform registration, if false unregister
@@ -520,6 +769,7 @@ public class BoneCP implements Serializable, Closeable {
 
 			ObjectName name = new ObjectName(MBEAN_BONECP +suffix);
 			ObjectName configname = new ObjectName(MBEAN_CONFIG + suffix);
+			ObjectName tuningname = new ObjectName(MBEAN_TUNING + suffix);
 
 
 			if (doRegister){
@@ -529,6 +779,9 @@ public class BoneCP implements Serializable, Closeable {
 				if (!this.mbs.isRegistered(configname)){
 					this.mbs.registerMBean(this.config, configname);
 				}
+				if (!this.mbs.isRegistered(tuningname)){
+					this.mbs.registerMBean(new PoolTuning(this), tuningname);
+				}
 			} else {
 				if (this.mbs.isRegistered(name)){
 					this.mbs.unregisterMBean(name);
@@ -536,6 +789,9 @@ public class BoneCP implements Serializable, Closeable {
 				if (this.mbs.isRegistered(configname)){
 					this.mbs.unregisterMBean(configname);
 				}
+				if (this.mbs.isRegistered(tuningname)){
+					this.mbs.unregisterMBean(tuningname);
+				}
 			}
 		} catch (Exception e) {
 			logger.error("Unable to start/stop JMX", e);
@@ -553,6 +809,16 @@ public class BoneCP implements Serializable, Closeable {
 	}
 
 
+	/** Decides whether the current checkout should have its allocation measured (see allocationSamplingRate).
+	 * @return current allocation reading of this thread if this checkout is to be measured, -1 otherwise.
+	 */
+	protected long startAllocationSample() {
+		if (this.allocationSampleCounter.incrementAndGet() % this.allocationSamplingRate == 0){
+			return PoolUtil.currentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
 	/** Starts off a new thread to monitor this connection attempt.
 	 * @param connectionHandle to monitor
 	 */
@@ -600,8 +866,11 @@ public class BoneCP implements Serializable, Closeable {
 	 * Tests if this partition has hit a threshold and signal to the pool watch thread to create new connections
 	 * @param connectionPartition to test for.
 	 */
-	protected void maybeSignalForMoreConnections(ConnectionPartition connectionPartition) {
-
+	protected void maybeSignalForMoreConnections(ConnectionPartition partition) {
+		ConnectionPartition connectionPartition = partition;
+		if (connectionPartition.isRetired()){
+			connectionPartition = connectionPartition.getSuccessor(); // retired partitions are never topped up.
+		}
 		if (!connectionPartition.isUnableToCreateMoreTransactions() 
 				&& !this.poolShuttingDown &&
 				connectionPartition.getAvailableConnections()*100/connectionPartition.getMaxConnections() <= this.poolAvailabilityThreshold){
@@ -621,7 +890,7 @@ public class BoneCP implements Serializable, Closeable {
 		ConnectionHandle handle = (ConnectionHandle)connection;
 
 		// hook calls
-		if (handle.getConnectionHook() != null){
+		if (handle.getConnectionHook() != null && handle.getConnectionHookEvents().isOnCheckIn()){
 			handle.getConnectionHook().onCheckIn(handle);
 		}
 
@@ -646,6 +915,12 @@ public class BoneCP implements Serializable, Closeable {
 			connectionHandle.recoveryResult.getReplaceTarget().clear();
 		}
 
+		if (this.retirementExecutor != null && !this.poolShuttingDown 
+				&& (connectionHandle.isExpired() || connectionHandle.isPossiblyBroken())
+				&& retireConnectionInBackground(connectionHandle)){
+			return; // background thread will test, replace or close it off.
+		}
+
 		if (connectionHandle.isExpired() || 
 				(!this.poolShuttingDown 
 						&& connectionHandle.isPossiblyBroken()
@@ -664,7 +939,24 @@ public class BoneCP implements Serializable, Closeable {
 		}
 
 
-		connectionHandle.setConnectionLastUsedInMs(System.currentTimeMillis());
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		if (connectionPartition.isRetired()){
+			// pool has been repartitioned since this connection was handed out.
+			ConnectionPartition successor = connectionPartition.getSuccessor();
+			connectionPartition.handOver(connectionHandle, successor);
+			connectionPartition = successor;
+		}
+		if (connectionPartition.isOverCapacity() && !this.poolShuttingDown && connectionPartition.claimSurplusConnection()){
+			retireSurplusConnection(connectionHandle); // pool has been shrunk.
+			return;
+		}
+
+		connectionHandle.setConnectionLastUsedInMs(this.clock.currentTimeMillis());
+		if (this.resetExecutor != null && !this.poolShuttingDown 
+				&& connectionHandle.isSessionStateDirty() 
+				&& resetConnectionInBackground(connectionHandle)){
+			return; // background thread will place it back once it's clean again.
+		}
 		if (!this.poolShuttingDown){
 			putConnectionBackInPartition(connectionHandle);
 		} else {
@@ -674,6 +966,171 @@ public class BoneCP implements Serializable, Closeable {
 
 
 
+	/** Closes off a connection reserved via ConnectionPartition.claimSurplusConnection().
+	 * @param connectionHandle connection to close
+	 */
+	protected void retireSurplusConnection(ConnectionHandle connectionHandle){
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		try {
+			destroyConnection(connectionHandle);
+			connectionHandle.clearStatementCaches(true);
+		} finally {
+			connectionPartition.surplusConnectionRetired();
+		}
+	}
+
+	/** Changes the number of connections each partition keeps open at runtime. When growing, the pool watch
+	 * threads add connections as usual. When shrinking, surplus idle connections are closed off right away and
+	 * connections in use are closed off as they are returned, so the application never loses a connection it holds.
+	 * 
+	 * @param minConnectionsPerPartition new minimum number of connections per partition
+	 * @param maxConnectionsPerPartition new maximum number of connections per partition
+	 * @throws IllegalArgumentException if min < 0, max < 1 or min > max
+	 */
+	public synchronized void resize(int minConnectionsPerPartition, int maxConnectionsPerPartition){
+		Preconditions.checkArgument(minConnectionsPerPartition >= 0 && maxConnectionsPerPartition > 0 && minConnectionsPerPartition <= maxConnectionsPerPartition, 
+				"Invalid partition size (min: %s, max: %s)", minConnectionsPerPartition, maxConnectionsPerPartition);
+		logger.info("Resizing partitions to min: " + minConnectionsPerPartition + ", max: " + maxConnectionsPerPartition);
+		this.config.setMinConnectionsPerPartition(minConnectionsPerPartition);
+		this.config.setMaxConnectionsPerPartition(maxConnectionsPerPartition);
+		for (ConnectionPartition connectionPartition: this.partitions){
+			connectionPartition.resize(minConnectionsPerPartition, maxConnectionsPerPartition);
+			ConnectionHandle connectionHandle;
+			while (connectionPartition.isOverCapacity() && (connectionHandle = connectionPartition.getFreeConnections().poll()) != null){
+				if (connectionPartition.claimSurplusConnection()){
+					retireSurplusConnection(connectionHandle);
+				} else {
+					connectionPartition.getFreeConnections().offer(connectionHandle); // someone beat us to it, put it back.
+				}
+			}
+		}
+	}
+
+	/** Changes the minimum number of connections per partition at runtime. See {@link #resize(int, int)}.
+	 * @param minConnectionsPerPartition new minimum
+	 */
+	public synchronized void setMinConnectionsPerPartition(int minConnectionsPerPartition){
+		resize(minConnectionsPerPartition, this.config.getMaxConnectionsPerPartition());
+	}
+
+	/** Changes the maximum number of connections per partition at runtime. See {@link #resize(int, int)}.
+	 * @param maxConnectionsPerPartition new maximum
+	 */
+	public synchronized void setMaxConnectionsPerPartition(int maxConnectionsPerPartition){
+		resize(this.config.getMinConnectionsPerPartition(), maxConnectionsPerPartition);
+	}
+
+	/** Changes the number of connections created at a time at runtime.
+	 * @param acquireIncrement new value (> 0)
+	 */
+	public synchronized void setAcquireIncrement(int acquireIncrement){
+		Preconditions.checkArgument(acquireIncrement > 0, "acquireIncrement must be > 0");
+		this.config.setAcquireIncrement(acquireIncrement);
+		for (ConnectionPartition connectionPartition: this.partitions){
+			connectionPartition.setAcquireIncrement(acquireIncrement);
+		}
+	}
+
+	/** Changes the poolAvailabilityThreshold at runtime.
+	 * @param poolAvailabilityThreshold new value (0-100)
+	 */
+	public synchronized void setPoolAvailabilityThreshold(int poolAvailabilityThreshold){
+		Preconditions.checkArgument(poolAvailabilityThreshold >= 0 && poolAvailabilityThreshold <= 100, "poolAvailabilityThreshold must be between 0 and 100");
+		this.config.setPoolAvailabilityThreshold(poolAvailabilityThreshold);
+		this.poolAvailabilityThreshold = poolAvailabilityThreshold;
+		signalAllPartitions();
+	}
+
+	/** Wakes up the pool watch thread of every partition. */
+	protected void signalAllPartitions(){
+		for (ConnectionPartition connectionPartition: this.partitions){
+			if (connectionPartition != null){ // pool is still being constructed.
+				connectionPartition.getPoolWatchThreadSignalQueue().offer(new Object()); // item being pushed is not important.
+			}
+		}
+	}
+
+	/** Changes the time getConnection() waits for a free connection at runtime.
+	 * @param connectionTimeout new value (0 = wait forever)
+	 * @param timeUnit time granularity
+	 */
+	public synchronized void setConnectionTimeout(long connectionTimeout, TimeUnit timeUnit){
+		Preconditions.checkArgument(connectionTimeout >= 0, "connectionTimeout must be >= 0");
+		this.config.setConnectionTimeout(connectionTimeout, timeUnit);
+		long connectionTimeoutInMs = this.config.getConnectionTimeoutInMs();
+		this.connectionTimeoutInMs = connectionTimeoutInMs == 0 ? Long.MAX_VALUE : connectionTimeoutInMs;
+	}
+
+	/** Changes the queryExecuteTimeLimit at runtime. Applies to statements created from now on.
+	 * @param queryExecuteTimeLimit new value (0 = disabled)
+	 * @param timeUnit time granularity
+	 */
+	public synchronized void setQueryExecuteTimeLimit(long queryExecuteTimeLimit, TimeUnit timeUnit){
+		Preconditions.checkArgument(queryExecuteTimeLimit >= 0, "queryExecuteTimeLimit must be >= 0");
+		this.config.setQueryExecuteTimeLimit(queryExecuteTimeLimit, timeUnit);
+		long queryExecuteTimeLimitInNanoSeconds = TimeUnit.NANOSECONDS.convert(this.config.getQueryExecuteTimeLimitInMs(), TimeUnit.MILLISECONDS);
+		for (ConnectionPartition connectionPartition: this.partitions){
+			connectionPartition.setQueryExecuteTimeLimitInNanoSeconds(queryExecuteTimeLimitInNanoSeconds);
+		}
+	}
+
+	/** Changes the number of partitions at runtime. A new set of partitions is created and idle connections are 
+	 * moved over to it, spread evenly. Connections in use stay with the old partition until they are returned, at 
+	 * which point they are handed over to its successor; the old partition is dropped once it owns no more connections.
+	 * 
+	 * @param partitionCount new number of partitions
+	 * @throws SQLException on error opening connections for the new partitions
+	 * @throws IllegalArgumentException if partitionCount < 1
+	 */
+	public synchronized void repartition(int partitionCount) throws SQLException{
+		Preconditions.checkArgument(partitionCount > 0, "partitionCount must be > 0");
+		Preconditions.checkState(!this.poolShuttingDown, "Pool is shutting down");
+		ConnectionPartition[] oldPartitions = this.partitions;
+		if (partitionCount == oldPartitions.length){
+			return;
+		}
+		logger.info("Repartitioning pool from " + oldPartitions.length + " to " + partitionCount + " partitions");
+		ConnectionPartition[] newPartitions = new ConnectionPartition[partitionCount];
+		for (int p=0; p < partitionCount; p++){
+			newPartitions[p] = createPartition(0); // filled up with the idle connections of the old partitions.
+		}
+		this.config.setPartitionCount(partitionCount);
+		// publish the new partitions first so that getConnection() always finds a live partition. 
+		this.partitions = newPartitions;
+		this.partitionCount = partitionCount;
+
+		int next = 0;
+		ConnectionHandle connectionHandle;
+		for (int p=0; p < oldPartitions.length; p++){
+			ConnectionPartition oldPartition = oldPartitions[p];
+			this.retiredPartitions.add(oldPartition);
+			oldPartition.retire(newPartitions[p % partitionCount]);
+			while ((connectionHandle = oldPartition.getFreeConnections().poll()) != null){
+				ConnectionPartition newPartition = newPartitions[next++ % partitionCount];
+				oldPartition.handOver(connectionHandle, newPartition);
+				newPartition.putFreeConnection(connectionHandle);
+			}
+			if (oldPartition.getCreatedConnections() == 0){
+				retiredPartitionDrained(oldPartition);
+			}
+		}
+		// only now, so that the pool watch threads do not open connections we are about to move in.
+		for (ConnectionPartition newPartition: newPartitions){
+			startPartitionThreads(newPartition);
+		}
+		// close off any surplus and let the pool watch threads top up the rest.
+		resize(this.config.getMinConnectionsPerPartition(), this.config.getMaxConnectionsPerPartition());
+	}
+
+	/** Drops a partition replaced by repartition() once all its connections have been handed over or closed.
+	 * @param partition retired partition
+	 */
+	protected void retiredPartitionDrained(ConnectionPartition partition){
+		if (this.retiredPartitions.remove(partition)){
+			logger.debug("Retired partition drained");
+		}
+	}
+
 	/** Places a connection back in the originating partition.
 	 * @param connectionHandle to place back
 	 * @throws SQLException on error
@@ -684,16 +1141,34 @@ public class BoneCP implements Serializable, Closeable {
 			connectionHandle.logicallyClosed.set(true);
 			((CachedConnectionStrategy)this.connectionStrategy).tlConnections.set(new AbstractMap.SimpleEntry<ConnectionHandle, Boolean>(connectionHandle, false));
 		} else {
-			BlockingQueue<ConnectionHandle> queue = connectionHandle.getOriginatingPartition().getFreeConnections();
-				if (!queue.offer(connectionHandle)){ // this shouldn't fail
-					connectionHandle.internalClose();
-				}
+			if (!offerFreeConnection(connectionHandle)){ // this shouldn't fail
+				connectionHandle.internalClose();
+			}
 		}
 
 
 	}
 
 
+	/** Places an idle connection in the free queue of its partition, or of its partition's successor if the pool
+	 * has been repartitioned in the meantime.
+	 * @param connectionHandle connection to place back
+	 * @return false if the queue did not accept the connection.
+	 */
+	protected boolean offerFreeConnection(ConnectionHandle connectionHandle){
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		if (connectionPartition.isRetired()){
+			return connectionPartition.putFreeConnection(connectionHandle);
+		}
+		if (!connectionPartition.getFreeConnections().offer(connectionHandle)){
+			return false;
+		}
+		if (connectionPartition.isRetired()){
+			connectionPartition.migrateFreeConnections(); // retired meanwhile, don't leave the connection stranded.
+		}
+		return true;
+	}
+
 	/** Sends a dummy statement to the server to keep the connection alive
 	 * @param connection Connection handle to perform activity on
 	 * @return true if test query worked, false otherwise
@@ -726,7 +1201,7 @@ public class BoneCP implements Serializable, Closeable {
 			result = false;
 		} finally {
 			connection.logicallyClosed.set(logicallyClosed);
-			connection.setConnectionLastResetInMs(System.currentTimeMillis());
+			connection.setConnectionLastResetInMs(this.clock.currentTimeMillis());
 			result = closeStatement(stmt, result);
 		}
 		return result;
@@ -753,8 +1228,12 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalLeased(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null; i++){
-			total+=this.partitions[i].getCreatedConnections()-this.partitions[i].getAvailableConnections();
+		ConnectionPartition[] partitions = this.partitions;
+		for (int i=0; i < partitions.length && partitions[i] != null; i++){
+			total+=partitions[i].getCreatedConnections()-partitions[i].getAvailableConnections();
+		}
+		for (ConnectionPartition partition: this.retiredPartitions){
+			total+=partition.getCreatedConnections()-partition.getAvailableConnections();
 		}
 		return total;
 	}
@@ -765,8 +1244,9 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalFree(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null ; i++){
-			total+=this.partitions[i].getAvailableConnections();
+		ConnectionPartition[] partitions = this.partitions;
+		for (int i=0; i < partitions.length && partitions[i] != null ; i++){
+			total+=partitions[i].getAvailableConnections();
 		}
 		return total;
 	}
@@ -778,8 +1258,12 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalCreatedConnections(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null; i++){
-			total+=this.partitions[i].getCreatedConnections();
+		ConnectionPartition[] partitions = this.partitions;
+		for (int i=0; i < partitions.length && partitions[i] != null; i++){
+			total+=partitions[i].getCreatedConnections();
+		}
+		for (ConnectionPartition partition: this.retiredPartitions){
+			total+=partition.getCreatedConnections();
 		}
 		return total;
 	}
@@ -816,6 +1300,22 @@ public class BoneCP implements Serializable, Closeable {
 		return this.statistics;
 	}
 
+	/** Returns the clock used by this pool.
+	 * @return clock
+	 */
+	public PoolClock getClock() {
+		return this.clock;
+	}
+
+	/** Returns the clock used by the given pool, or the system clock if there is none (e.g. while testing).
+	 * @param pool pool handle
+	 * @return clock
+	 */
+	protected static PoolClock getClock(BoneCP pool) {
+		PoolClock result = pool == null ? null : pool.clock; // not via getClock() so as not to upset mocks.
+		return result == null ? SystemClock.INSTANCE : result;
+	}
+
 	/**
 	 * Returns the dbIsDown field.
 	 * @return dbIsDown
@@ -824,5 +1324,30 @@ public class BoneCP implements Serializable, Closeable {
 		return this.dbIsDown;
 	}
 
+	/**
+	 * Returns a future completing once the pool has opened readyThreshold percent of its initial connections. Useful 
+	 * with backgroundInit, otherwise the pool is ready as soon as it is created. Fails if the pool is shut down first.
+	 * @return future completing with this pool
+	 */
+	public ListenableFuture<BoneCP> getReadyFuture() {
+		return this.readiness.getFuture();
+	}
+
+	/**
+	 * Returns true once the pool has opened readyThreshold percent of its initial connections.
+	 * @return true if ready
+	 */
+	public boolean isReady() {
+		return this.readiness != null && this.readiness.isReady();
+	}
+
+	/**
+	 * Returns the state of the circuit breaker guarding connection acquisition.
+	 * @return state, CLOSED if the breaker is disabled
+	 */
+	public CircuitBreakerState getCircuitBreakerState() {
+		return this.circuitBreaker == null ? CircuitBreakerState.CLOSED : this.circuitBreaker.getState();
+	}
+
 
 }
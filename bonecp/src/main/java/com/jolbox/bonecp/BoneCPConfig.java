@@ -130,6 +130,12 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	private long closeConnectionWatchTimeoutInMs = 0;
 	/** A connection older than maxConnectionAge will be destroyed and purged from the pool. */
 	private long maxConnectionAgeInSeconds = 0;
+	/** Each connection's max age is shortened by a random amount up to this value so that connections created together do not all expire together. */
+	private long maxConnectionAgeJitterInSeconds = 0;
+	/** Max number of connections retired due to max age in one partition per sweep. 0 = no limit. */
+	private int maxConcurrentRetirementsPerPartition = 0;
+	/** If true, expired or broken connections returned to the pool are closed off (and replaced) by a background thread. */
+	private boolean retireConnectionsInBackground = false;
 	/** Config property. */
 	private String configFile;
 	/** Queue mode. Values currently understood are FIFO and LIFO. */
@@ -154,6 +160,64 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	private boolean nullOnConnectionTimeout;
 	/** If true, issue a reset (rollback) on connection close in case client forgot it. */
 	private boolean resetConnectionOnClose;
+	/** If true, connections are reset by a pool thread after being returned rather than in connection.close(). */
+	private boolean resetConnectionInBackground;
+	/** If true, remember the session state of each connection to avoid redundant driver calls. */
+	private boolean cacheSessionState;
+	/** Connections held by the application for longer than this are reported as possibly leaked. 0 = disabled. */
+	private long leakDetectionThresholdInMs = 0;
+	/** If > 0, measure the bytes allocated by every nth getConnection() call. */
+	private int allocationSamplingRate = 0;
+	/** If > 0 (and statistics are enabled), keep per-SQL statistics for at most this many distinct statements. */
+	private int sqlStatisticsSize = 0;
+	/** If true, statements created via createStatement() run SQL with inline literals as cached prepared statements. */
+	private boolean autoParameterizeStatements = false;
+	/** Statements taking longer than this are recorded in the slow query log. 0 = disabled. */
+	private long slowQueryThresholdInMs = 0;
+	/** Number of slow queries kept in the slow query log. */
+	private int slowQueryLogSize = 100;
+	/** If > 0, connection hook callbacks on the hot path are dispatched asynchronously via a queue of this size. */
+	private int asyncHookQueueSize = 0;
+	/** If true, wait for space when the asynchronous hook queue is full instead of dropping the event. */
+	private boolean asyncHookBlockWhenFull = false;
+	/** If > 0, timestamps kept by the pool are read from a clock refreshed at this interval. 0 = read the system clock. */
+	private long coarseClockResolutionInMs = 0;
+	/** Clock to use instead of the system clock. */
+	private PoolClock clock;
+	/** If > 0, the sub-pools created by getConnection(username, password) may hold at most this many connections between them. */
+	private int maxConnectionsAcrossCredentials = 0;
+	/** Sub-pools created by getConnection(username, password) that have not been used for this long are shut down. 0 = never. */
+	private long credentialPoolIdleTimeoutInMs = 0;
+	/** If > 0, this many consecutive failed connection attempts open the circuit breaker. 0 = disabled. */
+	private int circuitBreakerFailureThreshold = 0;
+	/** Time the circuit breaker stays open before letting a single probe through. */
+	private long circuitBreakerOpenTimeInMs = 10000;
+	/** If > 0, validate up to this many idle connections before flushing the pool on a database failure. */
+	private int failureValidationSampleSize = 0;
+	/** Sampled connections that have not passed validation within this time count as failed. */
+	private long failureValidationTimeoutInMs = 5000;
+	/** Decides what an SQLException means for the connection and the database. */
+	private SQLStateClassifier sqlStateClassifier;
+	/** Class name of the SQLState classifier. */
+	private String sqlStateClassifierClassName;
+	/** SQL run on new connections before they are handed out. */
+	private String warmUpSQL;
+	/** Statements, separated by ';', prepared into the statement cache of new connections before they are handed out. */
+	private String warmUpStatements;
+	/** If true, fetch the database metadata on new connections before they are handed out. */
+	private boolean warmUpMetadata;
+	/** Warms up new connections before they are handed out. */
+	private ConnectionWarmUp connectionWarmUp;
+	/** Class name of the connection warm-up. */
+	private String connectionWarmUpClassName;
+	/** Statements, separated by ';', run on new connections after initSQL. */
+	private String initStatements;
+	/** If true, only send session defaults to new connections where they differ from the driver's. */
+	private boolean skipDriverDefaultSessionSettings;
+	/** If true, the pool constructor returns without waiting for the partitions to be filled. */
+	private boolean backgroundInit;
+	/** Percentage of the minimum number of connections to open for the pool to be ready. */
+	private int readyThreshold = 100;
 	/** Detect uncommitted transactions. If true, and resetConnectionOnClose is also true, the pool will print out a stack 
 	 * trace of the location where you had a connection that specified setAutoCommit(false)
 	 * but then forgot to call commit/rollback before closing it off. This feature is intended 
@@ -1200,6 +1264,793 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	public void setMaxConnectionAge(long maxConnectionAge, TimeUnit timeUnit) {
 		this.maxConnectionAgeInSeconds = TimeUnit.SECONDS.convert(maxConnectionAge, timeUnit);
 	}
+
+	/**
+	 * Returns the maxConnectionAgeJitter field in seconds.
+	 * @return maxConnectionAgeJitter
+	 */
+	public long getMaxConnectionAgeJitterInSeconds() {
+		return this.maxConnectionAgeJitterInSeconds;
+	}
+
+	/**
+	 * Returns the maxConnectionAgeJitter with the specified granularity.
+	 * 
+	 * @param timeUnit time granularity
+	 * @return maxConnectionAgeJitter period 
+	 */
+	public long getMaxConnectionAgeJitter(TimeUnit timeUnit) {
+		return timeUnit.convert(this.maxConnectionAgeJitterInSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Sets the maxConnectionAgeJitter in seconds. Every connection has its max age shortened by
+	 * a random amount between 0 and this value, so connections that were opened together (eg on 
+	 * pool startup) are retired gradually rather than all at once. Only relevant if maxConnectionAge 
+	 * is set. 
+	 * 
+	 * @param maxConnectionAgeJitterInSeconds the maxConnectionAgeJitter to set
+	 */
+	public void setMaxConnectionAgeJitterInSeconds(long maxConnectionAgeJitterInSeconds) {
+		setMaxConnectionAgeJitter(maxConnectionAgeJitterInSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Sets the maxConnectionAgeJitter. See {@link #setMaxConnectionAgeJitterInSeconds(long)}.
+	 * 
+	 * @param maxConnectionAgeJitter the maxConnectionAgeJitter to set.
+	 * @param timeUnit the unit of the maxConnectionAgeJitter argument.
+	 */
+	public void setMaxConnectionAgeJitter(long maxConnectionAgeJitter, TimeUnit timeUnit) {
+		this.maxConnectionAgeJitterInSeconds = TimeUnit.SECONDS.convert(maxConnectionAgeJitter, timeUnit);
+	}
+
+	/**
+	 * Returns the maxConcurrentRetirementsPerPartition field.
+	 * @return maxConcurrentRetirementsPerPartition
+	 */
+	public int getMaxConcurrentRetirementsPerPartition() {
+		return this.maxConcurrentRetirementsPerPartition;
+	}
+
+	/**
+	 * Sets the maximum number of expired connections (see maxConnectionAge) that will be retired 
+	 * in one partition in a single sweep. Remaining expired connections are retired on a subsequent
+	 * sweep, giving their replacements time to be established. Default: 0 (no limit).
+	 * 
+	 * @param maxConcurrentRetirementsPerPartition the maxConcurrentRetirementsPerPartition to set
+	 */
+	public void setMaxConcurrentRetirementsPerPartition(int maxConcurrentRetirementsPerPartition) {
+		this.maxConcurrentRetirementsPerPartition = maxConcurrentRetirementsPerPartition;
+	}
+
+	/**
+	 * Returns the retireConnectionsInBackground setting.
+	 * @return retireConnectionsInBackground
+	 */
+	public boolean isRetireConnectionsInBackground() {
+		return this.retireConnectionsInBackground;
+	}
+
+	/**
+	 * If true, a connection that is found to be expired (see maxConnectionAge) or possibly broken when it
+	 * is returned to the pool is handed over to a background thread. That thread opens a replacement 
+	 * connection first and only then closes off the old one, so that connection.close() never waits on 
+	 * the network to retire a connection. Default: false.
+	 * 
+	 * @param retireConnectionsInBackground the retireConnectionsInBackground setting.
+	 */
+	public void setRetireConnectionsInBackground(boolean retireConnectionsInBackground) {
+		this.retireConnectionsInBackground = retireConnectionsInBackground;
+	}
+
+	/**
+	 * Returns the resetConnectionInBackground setting.
+	 * @return resetConnectionInBackground
+	 */
+	public boolean isResetConnectionInBackground() {
+		return this.resetConnectionInBackground;
+	}
+
+	/**
+	 * If true, the pool keeps track of the session properties (auto-commit, read-only, catalog and 
+	 * transaction isolation) that the application changes on a connection. When such a connection (or
+	 * one with a possibly open transaction) is closed, it is handed to a pool thread which rolls back 
+	 * and restores the changed properties before the connection can be handed out again. Untouched 
+	 * connections go straight back into the pool. This replaces the reset done by resetConnectionOnClose
+	 * and keeps connection.close() free of database calls. Default: false.
+	 * 
+	 * @param resetConnectionInBackground the resetConnectionInBackground setting.
+	 */
+	public void setResetConnectionInBackground(boolean resetConnectionInBackground) {
+		this.resetConnectionInBackground = resetConnectionInBackground;
+	}
+
+	/**
+	 * Returns the cacheSessionState setting.
+	 * @return cacheSessionState
+	 */
+	public boolean isCacheSessionState() {
+		return this.cacheSessionState;
+	}
+
+	/**
+	 * If true, each connection remembers its auto-commit, read-only, catalog and transaction isolation
+	 * state. Setting a property to the value it already has and reading it back are then answered without
+	 * calling the driver. The cache is discarded whenever the connection is marked as possibly broken.
+	 * Do not enable this if your application changes these properties via SQL (eg "USE db" or 
+	 * "SET autocommit=0") rather than via the JDBC API. Default: false.
+	 * 
+	 * @param cacheSessionState the cacheSessionState setting.
+	 */
+	public void setCacheSessionState(boolean cacheSessionState) {
+		this.cacheSessionState = cacheSessionState;
+	}
+
+	/**
+	 * Returns the leakDetectionThresholdInMs setting.
+	 * @return leakDetectionThresholdInMs
+	 */
+	public long getLeakDetectionThresholdInMs() {
+		return this.leakDetectionThresholdInMs;
+	}
+
+	/**
+	 * Returns the leakDetectionThreshold in the given timeUnit.
+	 * @param timeUnit time granularity
+	 * @return leakDetectionThreshold
+	 */
+	public long getLeakDetectionThreshold(TimeUnit timeUnit) {
+		return timeUnit.convert(this.leakDetectionThresholdInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * If set to a value greater than 0, the pool records when (and where) each connection was obtained and a
+	 * single background thread periodically reports connections that have been held by the application for 
+	 * longer than this time without being closed. Each such connection is reported once via the log, the 
+	 * AbstractConnectionHook.onConnectionLeakDetected callback and the connectionsLeaked statistic. Unlike 
+	 * closeConnectionWatch this is cheap enough to leave on in production. Default: 0 (disabled).
+	 * 
+	 * @param leakDetectionThresholdInMs the leakDetectionThreshold to set
+	 */
+	public void setLeakDetectionThresholdInMs(long leakDetectionThresholdInMs) {
+		setLeakDetectionThreshold(leakDetectionThresholdInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the leakDetectionThreshold. See {@link #setLeakDetectionThresholdInMs(long)}.
+	 * 
+	 * @param leakDetectionThreshold the leakDetectionThreshold to set
+	 * @param timeUnit time granularity
+	 */
+	public void setLeakDetectionThreshold(long leakDetectionThreshold, TimeUnit timeUnit) {
+		this.leakDetectionThresholdInMs = TimeUnit.MILLISECONDS.convert(leakDetectionThreshold, timeUnit);
+	}
+
+	/**
+	 * Returns the allocationSamplingRate setting.
+	 * @return allocationSamplingRate
+	 */
+	public int getAllocationSamplingRate() {
+		return this.allocationSamplingRate;
+	}
+
+	/**
+	 * If set to a value greater than 0, every nth call to getConnection() measures the number of bytes allocated
+	 * by the calling thread while obtaining the connection. The average is reported by the 
+	 * allocatedBytesPerCheckout statistic (also available via JMX). Requires a JVM that supports thread allocation
+	 * counters (eg HotSpot); ignored otherwise. Default: 0 (disabled).
+	 * 
+	 * @param allocationSamplingRate the allocationSamplingRate to set
+	 */
+	public void setAllocationSamplingRate(int allocationSamplingRate) {
+		this.allocationSamplingRate = allocationSamplingRate;
+	}
+
+	/**
+	 * Returns the sqlStatisticsSize setting.
+	 * @return sqlStatisticsSize
+	 */
+	public int getSqlStatisticsSize() {
+		return this.sqlStatisticsSize;
+	}
+
+	/**
+	 * If set to a value greater than 0 and statisticsEnabled is true, the pool keeps execution counts, times and a 
+	 * small latency histogram for each distinct SQL statement. Memory is bounded: at most this many statements are
+	 * tracked and, once full, the least frequently executed statement makes way for a new one (the counts of the
+	 * most frequently executed statements remain accurate). Available via Statistics.getSqlStatisticsSnapshot() and
+	 * JMX. Default: 0 (disabled).
+	 * 
+	 * @param sqlStatisticsSize the sqlStatisticsSize to set
+	 */
+	public void setSqlStatisticsSize(int sqlStatisticsSize) {
+		this.sqlStatisticsSize = sqlStatisticsSize;
+	}
+
+	/**
+	 * Returns the autoParameterizeStatements setting.
+	 * @return autoParameterizeStatements
+	 */
+	public boolean isAutoParameterizeStatements() {
+		return this.autoParameterizeStatements;
+	}
+
+	/**
+	 * If set to true, Statement.execute/executeQuery/executeUpdate(String) on statements obtained via 
+	 * Connection.createStatement() turn numeric literals (eg "WHERE id=123") into parameters and run the statement as 
+	 * a prepared statement taken from the statement cache. Only SELECT/INSERT/UPDATE/DELETE/MERGE statements are 
+	 * rewritten, and only literals that are compared against or listed in IN/VALUES lists. String literals are left 
+	 * in place since binding them as character parameters can change the meaning of the statement (eg CHAR padding
+	 * on Oracle, typed comparisons on PostgreSQL). Numbers are bound with setLong/setBigDecimal, so a statement 
+	 * relying on the database converting a number literal to some other column type may still behave differently.
+	 * Has no effect unless statementsCacheSize is set. Default: false.
+	 * 
+	 * @param autoParameterizeStatements the autoParameterizeStatements to set
+	 */
+	public void setAutoParameterizeStatements(boolean autoParameterizeStatements) {
+		this.autoParameterizeStatements = autoParameterizeStatements;
+	}
+
+	/**
+	 * Returns the slowQueryThresholdInMs setting.
+	 * @return slowQueryThresholdInMs
+	 */
+	public long getSlowQueryThresholdInMs() {
+		return this.slowQueryThresholdInMs;
+	}
+
+	/**
+	 * Returns the slowQueryThreshold in the given timeUnit.
+	 * @param timeUnit time granularity
+	 * @return slowQueryThreshold
+	 */
+	public long getSlowQueryThreshold(TimeUnit timeUnit) {
+		return timeUnit.convert(this.slowQueryThresholdInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * If set to a value greater than 0, statements that take longer than this to execute are recorded in the slow 
+	 * query log, together with their parameters. The log keeps the last slowQueryLogSize entries and is available 
+	 * via Statistics.getSlowQueryLogSnapshot() and JMX. While enabled, every statement captures its parameters as 
+	 * they are set (as with logStatementsEnabled), which costs a little on each setter call. Log entries only keep a
+	 * bounded summary of the parameters (no streams, LOBs or byte arrays) and the statement text is only filled in
+	 * when the log is read. Unlike 
+	 * queryExecuteTimeLimitInMs this does not need a connection hook. Default: 0 (disabled).
+	 * 
+	 * @param slowQueryThresholdInMs the slowQueryThreshold to set
+	 */
+	public void setSlowQueryThresholdInMs(long slowQueryThresholdInMs) {
+		setSlowQueryThreshold(slowQueryThresholdInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the slowQueryThreshold. See {@link #setSlowQueryThresholdInMs(long)}.
+	 * 
+	 * @param slowQueryThreshold the slowQueryThreshold to set
+	 * @param timeUnit time granularity
+	 */
+	public void setSlowQueryThreshold(long slowQueryThreshold, TimeUnit timeUnit) {
+		this.slowQueryThresholdInMs = TimeUnit.MILLISECONDS.convert(slowQueryThreshold, timeUnit);
+	}
+
+	/**
+	 * Returns the slowQueryLogSize setting.
+	 * @return slowQueryLogSize
+	 */
+	public int getSlowQueryLogSize() {
+		return this.slowQueryLogSize;
+	}
+
+	/**
+	 * Sets the number of entries kept by the slow query log (see slowQueryThresholdInMs). Older entries are 
+	 * overwritten. Default: 100.
+	 * 
+	 * @param slowQueryLogSize the slowQueryLogSize to set
+	 */
+	public void setSlowQueryLogSize(int slowQueryLogSize) {
+		this.slowQueryLogSize = slowQueryLogSize;
+	}
+
+	/**
+	 * Returns the asyncHookQueueSize setting.
+	 * @return asyncHookQueueSize
+	 */
+	public int getAsyncHookQueueSize() {
+		return this.asyncHookQueueSize;
+	}
+
+	/**
+	 * If set to a value greater than 0 (and a connection hook is configured), the onCheckOut, onCheckIn, 
+	 * onBeforeStatementExecute, onAfterStatementExecute and onQueryExecuteTimeLimitExceeded callbacks are no longer 
+	 * invoked on the application thread. Instead they are queued in a preallocated ring buffer of this size (rounded
+	 * up to a power of 2) and handed to the hook in batches by a dedicated thread. Callbacks that return a value to 
+	 * the pool are still invoked directly. What happens when the queue is full is controlled by 
+	 * asyncHookBlockWhenFull. Default: 0 (hooks are called synchronously).
+	 * 
+	 * @param asyncHookQueueSize the asyncHookQueueSize to set
+	 */
+	public void setAsyncHookQueueSize(int asyncHookQueueSize) {
+		this.asyncHookQueueSize = asyncHookQueueSize;
+	}
+
+	/**
+	 * Returns the asyncHookBlockWhenFull setting.
+	 * @return asyncHookBlockWhenFull
+	 */
+	public boolean isAsyncHookBlockWhenFull() {
+		return this.asyncHookBlockWhenFull;
+	}
+
+	/**
+	 * If true, application threads wait for space when the asynchronous hook queue (see asyncHookQueueSize) is 
+	 * full. If false, the event is dropped and counted in Statistics.getHookEventsDropped(). Default: false.
+	 * 
+	 * @param asyncHookBlockWhenFull the asyncHookBlockWhenFull to set
+	 */
+	public void setAsyncHookBlockWhenFull(boolean asyncHookBlockWhenFull) {
+		this.asyncHookBlockWhenFull = asyncHookBlockWhenFull;
+	}
+
+	/**
+	 * Returns the coarseClockResolutionInMs setting.
+	 * @return coarseClockResolutionInMs
+	 */
+	public long getCoarseClockResolutionInMs() {
+		return this.coarseClockResolutionInMs;
+	}
+
+	/**
+	 * Returns the coarseClockResolution setting.
+	 * 
+	 * @param timeUnit time granularity
+	 * @return coarseClockResolution
+	 */
+	public long getCoarseClockResolution(TimeUnit timeUnit) {
+		return timeUnit.convert(this.coarseClockResolutionInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * If set to a value greater than 0, the timestamps the pool keeps for its own bookkeeping (when a connection was 
+	 * created, last used, last reset or checked out) are taken from a clock that a background thread refreshes at 
+	 * this interval, rather than by calling System.currentTimeMillis() on every checkout and checkin. Idle, max age 
+	 * and leak checks become accurate to within this interval. Statement and connection wait times are still 
+	 * measured precisely. Ignored if a clock is set. Default: 0 (use the system clock).
+	 * 
+	 * @param coarseClockResolutionInMs the coarseClockResolution to set
+	 */
+	public void setCoarseClockResolutionInMs(long coarseClockResolutionInMs) {
+		setCoarseClockResolution(coarseClockResolutionInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the coarseClockResolution. See {@link #setCoarseClockResolutionInMs(long)}.
+	 * 
+	 * @param coarseClockResolution the coarseClockResolution to set
+	 * @param timeUnit time granularity
+	 */
+	public void setCoarseClockResolution(long coarseClockResolution, TimeUnit timeUnit) {
+		this.coarseClockResolutionInMs = TimeUnit.MILLISECONDS.convert(coarseClockResolution, timeUnit);
+	}
+
+	/**
+	 * Returns the clock setting.
+	 * @return clock, or null if the system clock is used
+	 */
+	public PoolClock getClock() {
+		return this.clock;
+	}
+
+	/**
+	 * Sets the clock the pool reads time from, mainly so that tests can control time. Default: null (the system 
+	 * clock, or a coarse clock if coarseClockResolutionInMs is set).
+	 * 
+	 * @param clock the clock to set
+	 */
+	public void setClock(PoolClock clock) {
+		this.clock = clock;
+	}
+	/**
+	 * Returns the maxConnectionsAcrossCredentials setting.
+	 * @return maxConnectionsAcrossCredentials
+	 */
+	public int getMaxConnectionsAcrossCredentials() {
+		return this.maxConnectionsAcrossCredentials;
+	}
+
+	/**
+	 * When a datasource is asked for connections for other users (getConnection(username, password)), it starts a
+	 * separate pool for every distinct username/password. If this is set to a value greater than 0, those pools may 
+	 * hold at most this many connections between them: each pool accounts for partitionCount * 
+	 * maxConnectionsPerPartition connections of this budget. When a pool for a new user does not fit, the least 
+	 * recently used pool with no connections in use is shut down to make room, failing that the request is rejected.
+	 * Default: 0 (no limit).
+	 * 
+	 * @param maxConnectionsAcrossCredentials the maxConnectionsAcrossCredentials to set
+	 */
+	public void setMaxConnectionsAcrossCredentials(int maxConnectionsAcrossCredentials) {
+		this.maxConnectionsAcrossCredentials = maxConnectionsAcrossCredentials;
+	}
+
+	/**
+	 * Returns the credentialPoolIdleTimeoutInMs setting.
+	 * @return credentialPoolIdleTimeoutInMs
+	 */
+	public long getCredentialPoolIdleTimeoutInMs() {
+		return this.credentialPoolIdleTimeoutInMs;
+	}
+
+	/**
+	 * Returns the credentialPoolIdleTimeout setting.
+	 * 
+	 * @param timeUnit time granularity
+	 * @return credentialPoolIdleTimeout
+	 */
+	public long getCredentialPoolIdleTimeout(TimeUnit timeUnit) {
+		return timeUnit.convert(this.credentialPoolIdleTimeoutInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * If set to a value greater than 0, pools started for other users via getConnection(username, password) are 
+	 * shut down (closing their connections and threads) once they have had no connections in use and no requests 
+	 * for this long. A later request for the same user starts a new pool. Default: 0 (keep them until the datasource
+	 * is closed).
+	 * 
+	 * @param credentialPoolIdleTimeoutInMs the credentialPoolIdleTimeout to set
+	 */
+	public void setCredentialPoolIdleTimeoutInMs(long credentialPoolIdleTimeoutInMs) {
+		setCredentialPoolIdleTimeout(credentialPoolIdleTimeoutInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the credentialPoolIdleTimeout. See {@link #setCredentialPoolIdleTimeoutInMs(long)}.
+	 * 
+	 * @param credentialPoolIdleTimeout the credentialPoolIdleTimeout to set
+	 * @param timeUnit time granularity
+	 */
+	public void setCredentialPoolIdleTimeout(long credentialPoolIdleTimeout, TimeUnit timeUnit) {
+		this.credentialPoolIdleTimeoutInMs = TimeUnit.MILLISECONDS.convert(credentialPoolIdleTimeout, timeUnit);
+	}
+
+	/**
+	 * Returns the circuitBreakerFailureThreshold setting.
+	 * @return circuitBreakerFailureThreshold
+	 */
+	public int getCircuitBreakerFailureThreshold() {
+		return this.circuitBreakerFailureThreshold;
+	}
+
+	/**
+	 * If set to a value greater than 0, the pool opens a circuit breaker after this many consecutive attempts to 
+	 * open a connection to the database have failed. While the breaker is open, getConnection() fails straight away 
+	 * with SQLState 08X01 unless an idle connection is at hand, and the pool stops trying to open connections. Once
+	 * circuitBreakerOpenTime has passed, a single request tries to open a connection: if that works the breaker 
+	 * closes and the pool refills, otherwise it stays open for another circuitBreakerOpenTime. Default: 0 (disabled).
+	 * 
+	 * @param circuitBreakerFailureThreshold the circuitBreakerFailureThreshold to set
+	 */
+	public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+		this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+	}
+
+	/**
+	 * Returns the circuitBreakerOpenTimeInMs setting.
+	 * @return circuitBreakerOpenTimeInMs
+	 */
+	public long getCircuitBreakerOpenTimeInMs() {
+		return this.circuitBreakerOpenTimeInMs;
+	}
+
+	/**
+	 * Returns the circuitBreakerOpenTime setting.
+	 * 
+	 * @param timeUnit time granularity
+	 * @return circuitBreakerOpenTime
+	 */
+	public long getCircuitBreakerOpenTime(TimeUnit timeUnit) {
+		return timeUnit.convert(this.circuitBreakerOpenTimeInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets how long the circuit breaker stays open before a single request is let through to check whether the 
+	 * database is back. See {@link #setCircuitBreakerFailureThreshold(int)}. Default: 10 seconds.
+	 * 
+	 * @param circuitBreakerOpenTimeInMs the circuitBreakerOpenTime to set
+	 */
+	public void setCircuitBreakerOpenTimeInMs(long circuitBreakerOpenTimeInMs) {
+		setCircuitBreakerOpenTime(circuitBreakerOpenTimeInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the circuitBreakerOpenTime. See {@link #setCircuitBreakerOpenTimeInMs(long)}.
+	 * 
+	 * @param circuitBreakerOpenTime the circuitBreakerOpenTime to set
+	 * @param timeUnit time granularity
+	 */
+	public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime, TimeUnit timeUnit) {
+		this.circuitBreakerOpenTimeInMs = TimeUnit.MILLISECONDS.convert(circuitBreakerOpenTime, timeUnit);
+	}
+
+	/**
+	 * Returns the failureValidationSampleSize setting.
+	 * @return failureValidationSampleSize
+	 */
+	public int getFailureValidationSampleSize() {
+		return this.failureValidationSampleSize;
+	}
+
+	/**
+	 * When a connection fails with an SQLState that points to the database being down (see setSqlStateClassifier), 
+	 * the pool normally closes off every connection at once. If this is set to a value greater than 0, up to this 
+	 * many idle connections are validated in parallel in the background first: the pool is only flushed if none of
+	 * them passes, otherwise just the failed connection and those that failed validation are evicted. Default: 0 
+	 * (flush straight away).
+	 * 
+	 * @param failureValidationSampleSize the failureValidationSampleSize to set
+	 */
+	public void setFailureValidationSampleSize(int failureValidationSampleSize) {
+		this.failureValidationSampleSize = failureValidationSampleSize;
+	}
+
+	/**
+	 * Returns the failureValidationTimeoutInMs setting.
+	 * @return failureValidationTimeoutInMs
+	 */
+	public long getFailureValidationTimeoutInMs() {
+		return this.failureValidationTimeoutInMs;
+	}
+
+	/**
+	 * Returns the failureValidationTimeout setting.
+	 * 
+	 * @param timeUnit time granularity
+	 * @return failureValidationTimeout
+	 */
+	public long getFailureValidationTimeout(TimeUnit timeUnit) {
+		return timeUnit.convert(this.failureValidationTimeoutInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Time allowed for the validations run on a database failure (see setFailureValidationSampleSize). A sampled 
+	 * connection that has not passed by then counts as failed, so a database that hangs rather than refusing 
+	 * connections is still found to be down. Default: 5 seconds.
+	 * 
+	 * @param failureValidationTimeoutInMs the failureValidationTimeout to set
+	 */
+	public void setFailureValidationTimeoutInMs(long failureValidationTimeoutInMs) {
+		setFailureValidationTimeout(failureValidationTimeoutInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the failureValidationTimeout. See {@link #setFailureValidationTimeoutInMs(long)}.
+	 * 
+	 * @param failureValidationTimeout the failureValidationTimeout to set
+	 * @param timeUnit time granularity
+	 */
+	public void setFailureValidationTimeout(long failureValidationTimeout, TimeUnit timeUnit) {
+		this.failureValidationTimeoutInMs = TimeUnit.MILLISECONDS.convert(failureValidationTimeout, timeUnit);
+	}
+
+	/**
+	 * Returns the sqlStateClassifier setting.
+	 * @return sqlStateClassifier
+	 */
+	public SQLStateClassifier getSqlStateClassifier() {
+		return this.sqlStateClassifier;
+	}
+
+	/**
+	 * Sets the classifier deciding whether an exception thrown on a connection means the connection or the whole
+	 * database is broken. Set one matching the driver's use of SQLStates if the defaults do not fit. Default: null
+	 * (use DefaultSQLStateClassifier).
+	 * 
+	 * @param sqlStateClassifier the sqlStateClassifier to set
+	 */
+	public void setSqlStateClassifier(SQLStateClassifier sqlStateClassifier) {
+		this.sqlStateClassifier = sqlStateClassifier;
+	}
+
+	/**
+	 * Returns the sqlStateClassifierClassName setting.
+	 * @return sqlStateClassifierClassName
+	 */
+	public String getSqlStateClassifierClassName() {
+		return this.sqlStateClassifierClassName;
+	}
+
+	/**
+	 * Sets the SQLState classifier class name. Consider using setSqlStateClassifier() instead.
+	 * 
+	 * @param sqlStateClassifierClassName the sqlStateClassifier class name to set
+	 */
+	public void setSqlStateClassifierClassName(String sqlStateClassifierClassName) {
+		this.sqlStateClassifierClassName = checkNotNull(sqlStateClassifierClassName);
+		try {
+			this.sqlStateClassifier = (SQLStateClassifier) loadClass(sqlStateClassifierClassName).newInstance();
+		} catch (Exception e) {
+			logger.error("Unable to create an instance of the SQLState classifier class ("+sqlStateClassifierClassName+")");
+			this.sqlStateClassifier = null;
+		}
+	}
+
+	/**
+	 * Returns the warmUpSQL setting.
+	 * @return warmUpSQL
+	 */
+	public String getWarmUpSQL() {
+		return this.warmUpSQL;
+	}
+
+	/**
+	 * Sets an SQL statement to run on every new connection before it is added to the pool, e.g. to load the tables 
+	 * the application starts with into the server's cache. Unlike initSQL, this is not run again when a connection is
+	 * recreated. Default: null.
+	 * 
+	 * @param warmUpSQL the warmUpSQL to set
+	 */
+	public void setWarmUpSQL(String warmUpSQL) {
+		this.warmUpSQL = warmUpSQL;
+	}
+
+	/**
+	 * Returns the warmUpStatements setting.
+	 * @return warmUpStatements
+	 */
+	public String getWarmUpStatements() {
+		return this.warmUpStatements;
+	}
+
+	/**
+	 * Sets statements, separated by ';', to prepare on every new connection before it is added to the pool. They 
+	 * are kept in the connection's statement cache, so the application's first use of them is a cache hit and the 
+	 * server has already compiled them. Needs statementsCacheSize to be set. Default: null.
+	 * 
+	 * @param warmUpStatements the warmUpStatements to set
+	 */
+	public void setWarmUpStatements(String warmUpStatements) {
+		this.warmUpStatements = warmUpStatements;
+	}
+
+	/**
+	 * Returns the warmUpMetadata setting.
+	 * @return warmUpMetadata
+	 */
+	public boolean isWarmUpMetadata() {
+		return this.warmUpMetadata;
+	}
+
+	/**
+	 * If set to true, the database metadata (product and driver versions, quoting, default isolation...) is fetched 
+	 * on every new connection before it is added to the pool, so that drivers loading it lazily do so up front. 
+	 * Default: false.
+	 * 
+	 * @param warmUpMetadata the warmUpMetadata to set
+	 */
+	public void setWarmUpMetadata(boolean warmUpMetadata) {
+		this.warmUpMetadata = warmUpMetadata;
+	}
+
+	/**
+	 * Returns the connectionWarmUp setting.
+	 * @return connectionWarmUp
+	 */
+	public ConnectionWarmUp getConnectionWarmUp() {
+		return this.connectionWarmUp;
+	}
+
+	/**
+	 * Sets the warm-up run on every new connection before it is added to the pool, replacing the one carrying out the 
+	 * warmUpSQL, warmUpStatements and warmUpMetadata settings (extend DefaultConnectionWarmUp to keep those). 
+	 * Default: null.
+	 * 
+	 * @param connectionWarmUp the connectionWarmUp to set
+	 */
+	public void setConnectionWarmUp(ConnectionWarmUp connectionWarmUp) {
+		this.connectionWarmUp = connectionWarmUp;
+	}
+
+	/**
+	 * Returns the connectionWarmUpClassName setting.
+	 * @return connectionWarmUpClassName
+	 */
+	public String getConnectionWarmUpClassName() {
+		return this.connectionWarmUpClassName;
+	}
+
+	/**
+	 * Sets the connection warm-up class name. Consider using setConnectionWarmUp() instead.
+	 * 
+	 * @param connectionWarmUpClassName the connectionWarmUp class name to set
+	 */
+	public void setConnectionWarmUpClassName(String connectionWarmUpClassName) {
+		this.connectionWarmUpClassName = checkNotNull(connectionWarmUpClassName);
+		try {
+			this.connectionWarmUp = (ConnectionWarmUp) loadClass(connectionWarmUpClassName).newInstance();
+		} catch (Exception e) {
+			logger.error("Unable to create an instance of the connection warm-up class ("+connectionWarmUpClassName+")");
+			this.connectionWarmUp = null;
+		}
+	}
+
+	/**
+	 * Returns the initStatements setting.
+	 * @return initStatements
+	 */
+	public String getInitStatements() {
+		return this.initStatements;
+	}
+
+	/**
+	 * Sets statements, separated by ';', to run on every new connection after initSQL. Where the driver supports it,
+	 * initSQL and these statements are sent in a single batch, saving a round trip per statement. Queries such as 
+	 * SELECT are never batched: if there is one among them, they all go one at a time. Default: null.
+	 * 
+	 * @param initStatements the initStatements to set
+	 */
+	public void setInitStatements(String initStatements) {
+		this.initStatements = initStatements;
+	}
+
+	/**
+	 * Returns the skipDriverDefaultSessionSettings setting.
+	 * @return skipDriverDefaultSessionSettings
+	 */
+	public boolean isSkipDriverDefaultSessionSettings() {
+		return this.skipDriverDefaultSessionSettings;
+	}
+
+	/**
+	 * If set to true, the session state new connections start off with (after initSQL and initStatements) is read 
+	 * from the first connection the pool opens. From then on, defaultAutoCommit, defaultReadOnly, defaultCatalog and 
+	 * defaultTransactionIsolation are only sent to a new connection where they differ from that state, instead of 
+	 * costing a driver call each. Only set this if all connections of the pool start off in the same state. 
+	 * Default: false.
+	 * 
+	 * @param skipDriverDefaultSessionSettings the skipDriverDefaultSessionSettings to set
+	 */
+	public void setSkipDriverDefaultSessionSettings(boolean skipDriverDefaultSessionSettings) {
+		this.skipDriverDefaultSessionSettings = skipDriverDefaultSessionSettings;
+	}
+
+	/**
+	 * Returns the backgroundInit setting.
+	 * @return backgroundInit
+	 */
+	public boolean isBackgroundInit() {
+		return this.backgroundInit;
+	}
+
+	/**
+	 * If set to true, the pool is created without waiting for minConnectionsPerPartition connections to be opened in 
+	 * every partition: once the test connection succeeds, the pool watch threads fill the partitions in parallel in the
+	 * background. Use BoneCP.getReadyFuture() (or the Ready JMX attribute) to find out when the pool has opened 
+	 * readyThreshold percent of its connections. getConnection() can be called straight away, waiting for a connection 
+	 * if need be. Default: false (fill the partitions before returning).
+	 * 
+	 * @param backgroundInit the backgroundInit to set
+	 */
+	public void setBackgroundInit(boolean backgroundInit) {
+		this.backgroundInit = backgroundInit;
+	}
+
+	/**
+	 * Returns the readyThreshold setting.
+	 * @return readyThreshold
+	 */
+	public int getReadyThreshold() {
+		return this.readyThreshold;
+	}
+
+	/**
+	 * Sets the percentage (0-100) of partitionCount * minConnectionsPerPartition connections the pool has to have 
+	 * open for it to be considered ready. See {@link #setBackgroundInit(boolean)}. Default: 100.
+	 * 
+	 * @param readyThreshold the readyThreshold to set
+	 */
+	public void setReadyThreshold(int readyThreshold) {
+		this.readyThreshold = readyThreshold;
+	}
+
 	/**
 	 * Returns the configFile field.
 	 * @return configFile
@@ -1633,6 +2484,95 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 			this.acquireRetryDelayInMs = 1000;
 		}
 
+		if (this.maxConnectionAgeJitterInSeconds < 0) {
+			logger.warn("maxConnectionAgeJitter < 0! Setting to 0");
+			this.maxConnectionAgeJitterInSeconds = 0;
+		}
+
+		if (this.maxConnectionAgeInSeconds > 0 && this.maxConnectionAgeJitterInSeconds >= this.maxConnectionAgeInSeconds) {
+			logger.warn("maxConnectionAgeJitter >= maxConnectionAge! Setting to half of maxConnectionAge");
+			this.maxConnectionAgeJitterInSeconds = this.maxConnectionAgeInSeconds / 2;
+		}
+
+		if (this.allocationSamplingRate < 0) {
+			logger.warn("allocationSamplingRate < 0! Setting to 0");
+			this.allocationSamplingRate = 0;
+		}
+
+		if (this.slowQueryThresholdInMs < 0) {
+			logger.warn("slowQueryThreshold < 0! Setting to 0");
+			this.slowQueryThresholdInMs = 0;
+		}
+
+		if (this.slowQueryLogSize < 0) {
+			logger.warn("slowQueryLogSize < 0! Setting to 0");
+			this.slowQueryLogSize = 0;
+		}
+
+		if (this.asyncHookQueueSize < 0) {
+			logger.warn("asyncHookQueueSize < 0! Setting to 0");
+			this.asyncHookQueueSize = 0;
+		}
+
+		if (this.coarseClockResolutionInMs < 0) {
+			logger.warn("coarseClockResolution < 0! Setting to 0");
+			this.coarseClockResolutionInMs = 0;
+		}
+
+		if (this.maxConnectionsAcrossCredentials < 0) {
+			logger.warn("maxConnectionsAcrossCredentials < 0! Setting to 0");
+			this.maxConnectionsAcrossCredentials = 0;
+		}
+
+		if (this.credentialPoolIdleTimeoutInMs < 0) {
+			logger.warn("credentialPoolIdleTimeout < 0! Setting to 0");
+			this.credentialPoolIdleTimeoutInMs = 0;
+		}
+
+		if (this.circuitBreakerFailureThreshold < 0) {
+			logger.warn("circuitBreakerFailureThreshold < 0! Setting to 0");
+			this.circuitBreakerFailureThreshold = 0;
+		}
+
+		if (this.circuitBreakerOpenTimeInMs < 0) {
+			logger.warn("circuitBreakerOpenTime < 0! Setting to 0");
+			this.circuitBreakerOpenTimeInMs = 0;
+		}
+
+		if (this.failureValidationSampleSize < 0) {
+			logger.warn("failureValidationSampleSize < 0! Setting to 0");
+			this.failureValidationSampleSize = 0;
+		}
+
+		if (this.failureValidationTimeoutInMs < 1) {
+			logger.warn("failureValidationTimeout < 1! Setting to 5000");
+			this.failureValidationTimeoutInMs = 5000;
+		}
+
+		if (this.warmUpStatements != null && this.statementsCacheSize == 0) {
+			logger.warn("warmUpStatements is set but statementsCacheSize is 0! Statements will not be prepared up front");
+		}
+
+		if (this.readyThreshold < 0 || this.readyThreshold > 100) {
+			logger.warn("readyThreshold out of range (0-100)! Setting to 100");
+			this.readyThreshold = 100;
+		}
+
+		if (this.sqlStatisticsSize < 0) {
+			logger.warn("sqlStatisticsSize < 0! Setting to 0");
+			this.sqlStatisticsSize = 0;
+		}
+
+		if (this.leakDetectionThresholdInMs < 0) {
+			logger.warn("leakDetectionThreshold < 0! Setting to 0");
+			this.leakDetectionThresholdInMs = 0;
+		}
+
+		if (this.maxConcurrentRetirementsPerPartition < 0) {
+			logger.warn("maxConcurrentRetirementsPerPartition < 0! Setting to 0");
+			this.maxConcurrentRetirementsPerPartition = 0;
+		}
+
 		if (!this.externalAuth && 
 				(this.datasourceBean == null) && 
 				this.driverProperties == null 
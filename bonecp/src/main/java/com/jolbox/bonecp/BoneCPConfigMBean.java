@@ -202,6 +202,168 @@ public interface BoneCPConfigMBean {
 	 */
 	long getMaxConnectionAgeInSeconds();
 	
+	/**
+	 * Returns the maxConnectionAgeJitter field.
+	 * @return maxConnectionAgeJitter
+	 */
+	long getMaxConnectionAgeJitterInSeconds();
+	
+	/**
+	 * Returns the maxConcurrentRetirementsPerPartition field.
+	 * @return maxConcurrentRetirementsPerPartition
+	 */
+	int getMaxConcurrentRetirementsPerPartition();
+	
+	/**
+	 * Returns the retireConnectionsInBackground field.
+	 * @return retireConnectionsInBackground
+	 */
+	boolean isRetireConnectionsInBackground();
+	
+	/**
+	 * Returns the resetConnectionInBackground field.
+	 * @return resetConnectionInBackground
+	 */
+	boolean isResetConnectionInBackground();
+	
+	/**
+	 * Returns the cacheSessionState field.
+	 * @return cacheSessionState
+	 */
+	boolean isCacheSessionState();
+	
+	/**
+	 * Returns the leakDetectionThresholdInMs field.
+	 * @return leakDetectionThresholdInMs
+	 */
+	long getLeakDetectionThresholdInMs();
+	
+	/**
+	 * Returns the allocationSamplingRate field.
+	 * @return allocationSamplingRate
+	 */
+	int getAllocationSamplingRate();
+
+	/**
+	 * Returns the sqlStatisticsSize field.
+	 * @return sqlStatisticsSize
+	 */
+	int getSqlStatisticsSize();
+
+	/**
+	 * Returns the autoParameterizeStatements field.
+	 * @return autoParameterizeStatements
+	 */
+	boolean isAutoParameterizeStatements();
+
+	/**
+	 * Returns the slowQueryThresholdInMs field.
+	 * @return slowQueryThresholdInMs
+	 */
+	long getSlowQueryThresholdInMs();
+
+	/**
+	 * Returns the slowQueryLogSize field.
+	 * @return slowQueryLogSize
+	 */
+	int getSlowQueryLogSize();
+
+	/**
+	 * Returns the asyncHookQueueSize field.
+	 * @return asyncHookQueueSize
+	 */
+	int getAsyncHookQueueSize();
+
+	/**
+	 * Returns the asyncHookBlockWhenFull field.
+	 * @return asyncHookBlockWhenFull
+	 */
+	boolean isAsyncHookBlockWhenFull();
+
+	/**
+	 * Returns the coarseClockResolutionInMs field.
+	 * @return coarseClockResolutionInMs
+	 */
+	long getCoarseClockResolutionInMs();
+	
+	/**
+	 * Returns the maxConnectionsAcrossCredentials field.
+	 * @return maxConnectionsAcrossCredentials
+	 */
+	int getMaxConnectionsAcrossCredentials();
+
+	/**
+	 * Returns the credentialPoolIdleTimeoutInMs field.
+	 * @return credentialPoolIdleTimeoutInMs
+	 */
+	long getCredentialPoolIdleTimeoutInMs();
+	
+	/**
+	 * Returns the circuitBreakerFailureThreshold field.
+	 * @return circuitBreakerFailureThreshold
+	 */
+	int getCircuitBreakerFailureThreshold();
+
+	/**
+	 * Returns the circuitBreakerOpenTimeInMs field.
+	 * @return circuitBreakerOpenTimeInMs
+	 */
+	long getCircuitBreakerOpenTimeInMs();
+
+	/**
+	 * Returns the failureValidationSampleSize field.
+	 * @return failureValidationSampleSize
+	 */
+	int getFailureValidationSampleSize();
+
+	/**
+	 * Returns the failureValidationTimeoutInMs field.
+	 * @return failureValidationTimeoutInMs
+	 */
+	long getFailureValidationTimeoutInMs();
+
+	/**
+	 * Returns the warmUpSQL field.
+	 * @return warmUpSQL
+	 */
+	String getWarmUpSQL();
+
+	/**
+	 * Returns the warmUpStatements field.
+	 * @return warmUpStatements
+	 */
+	String getWarmUpStatements();
+
+	/**
+	 * Returns the warmUpMetadata field.
+	 * @return warmUpMetadata
+	 */
+	boolean isWarmUpMetadata();
+
+	/**
+	 * Returns the initStatements field.
+	 * @return initStatements
+	 */
+	String getInitStatements();
+
+	/**
+	 * Returns the skipDriverDefaultSessionSettings field.
+	 * @return skipDriverDefaultSessionSettings
+	 */
+	boolean isSkipDriverDefaultSessionSettings();
+
+	/**
+	 * Returns the backgroundInit field.
+	 * @return backgroundInit
+	 */
+	boolean isBackgroundInit();
+
+	/**
+	 * Returns the readyThreshold field.
+	 * @return readyThreshold
+	 */
+	int getReadyThreshold();
+
 	/**
 	 * Returns the configFile field.
 	 * @return configFile
@@ -27,16 +27,12 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Properties;
-import java.util.concurrent.ExecutionException;
 import javax.naming.Context;
 import javax.naming.Name;
 import javax.naming.RefAddr;
 import javax.naming.Reference;
 import javax.naming.spi.ObjectFactory;
 import javax.sql.DataSource;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,21 +53,9 @@ public class BoneCPDataSource extends BoneCPConfig implements DataSource, Object
 	/** Class logger. */ 
 	private static final Logger logger = LoggerFactory.getLogger(BoneCPDataSource.class);
 	/**
-	 * Constructs (and caches) a datasource on the fly based on the given username/password.
+	 * Pools started on the fly based on the given username/password.
 	 */
-	private LoadingCache<UsernamePassword, BoneCPDataSource> multiDataSource = CacheBuilder.newBuilder().build(new CacheLoader<UsernamePassword, BoneCPDataSource>() {
-		
-		@Override
-		public BoneCPDataSource load(UsernamePassword key) throws Exception {
-			BoneCPDataSource ds = null;
-			ds = new BoneCPDataSource(getConfig());
-
-			ds.setUsername(key.getUsername());
-			ds.setPassword(key.getPassword());
-
-			return ds;
-		}
-	});
+	private transient volatile CredentialPools credentialPools = null;
 
 
 	/**
@@ -143,6 +127,9 @@ public class BoneCPDataSource extends BoneCPConfig implements DataSource, Object
 			getPool().shutdown();
 			logger.debug("Connection pool has been shut down");
 		}
+		if (this.credentialPools != null){
+			this.credentialPools.close();
+		}
 	}
 
 
@@ -153,12 +140,25 @@ public class BoneCPDataSource extends BoneCPConfig implements DataSource, Object
 	 */
 	public Connection getConnection(String username, String password)
 	throws SQLException {
-		try {
-			return this.multiDataSource.get(new UsernamePassword(username, password)).getConnection();
-		} catch (ExecutionException e) {
-			throw PoolUtil.generateSQLException("Unable to obtain connection", e);
+		return getCredentialPools().getConnection(username, password);
+	}
 
+	/**
+	 * Returns the pools started for getConnection(username, password), creating the holder on first use.
+	 *
+	 * @return pools by username/password
+	 */
+	protected CredentialPools getCredentialPools() {
+		CredentialPools result = this.credentialPools;
+		if (result == null) {
+			synchronized (this) {
+				if (this.credentialPools == null) {
+					this.credentialPools = new CredentialPools(getConfig());
+				}
+				result = this.credentialPools;
+			}
 		}
+		return result;
 	}
 
 	/**
@@ -427,7 +427,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -442,7 +442,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -457,7 +457,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setBinaryStream(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -471,7 +471,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			checkClosed();
 			try {
 				this.internalCallableStatement.setBinaryStream(parameterName, x, length);
-				if (this.logStatementsEnabled){
+				if (this.captureParameters){
 					this.logParams.put(parameterName, x);
 				}
 			} catch (SQLException e) {
@@ -485,7 +485,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			checkClosed();
 			try {
 				this.internalCallableStatement.setBlob(parameterName, x);
-				if (this.logStatementsEnabled){
+				if (this.captureParameters){
 					this.logParams.put(parameterName, x);
 				}
 			} catch (SQLException e) {
@@ -500,7 +500,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			checkClosed();
 			try {
 				this.internalCallableStatement.setBlob(parameterName, inputStream);
-				if (this.logStatementsEnabled){
+				if (this.captureParameters){
 					this.logParams.put(parameterName, inputStream);
 				}
 			} catch (SQLException e) {
@@ -515,7 +515,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			checkClosed();
 			try {
 				this.internalCallableStatement.setBlob(parameterName, inputStream, length);
-				if (this.logStatementsEnabled){
+				if (this.captureParameters){
 					this.logParams.put(parameterName, inputStream);
 				}
 			} catch (SQLException e) {
@@ -531,7 +531,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -545,7 +545,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -558,7 +558,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setClob(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -572,7 +572,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setClob(parameterName, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -586,7 +586,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setClob(parameterName, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -600,7 +600,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNCharacterStream(parameterName, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, value);
 			}
 		} catch (SQLException e) {
@@ -614,7 +614,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNCharacterStream(parameterName, value, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, value);
 			}
 		} catch (SQLException e) {
@@ -627,7 +627,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNClob(parameterName, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, value);
 			}
 		} catch (SQLException e) {
@@ -641,7 +641,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNClob(parameterName, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -655,7 +655,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNClob(parameterName, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -669,7 +669,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNString(parameterName, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, value);
 			}
 		} catch (SQLException e) {
@@ -682,7 +682,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setRowId(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -697,7 +697,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setSQLXML(parameterName, xmlObject);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, xmlObject);
 			}
 		} catch (SQLException e) {
@@ -1430,7 +1430,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1453,7 +1453,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setBigDecimal(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1476,7 +1476,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setBinaryStream(parameterName, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1495,7 +1495,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setBoolean(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1515,7 +1515,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setByte(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1535,7 +1535,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setBytes(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1558,7 +1558,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, reader);
 			}
 		} catch (SQLException e) {
@@ -1578,7 +1578,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setDate(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1599,7 +1599,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setDate(parameterName, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -1618,7 +1618,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setDouble(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1637,7 +1637,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setFloat(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1656,7 +1656,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setInt(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1675,7 +1675,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setLong(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1694,7 +1694,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNull(parameterName, sqlType);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, "]"));
 			}
 		} catch (SQLException e) {
@@ -1715,7 +1715,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setNull(parameterName, sqlType, typeName);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, ", type=", typeName+"]"));
 			}
 		} catch (SQLException e) {
@@ -1735,7 +1735,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setObject(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1756,7 +1756,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setObject(parameterName, x, targetSqlType);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1777,7 +1777,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setObject(parameterName, x, targetSqlType, scale);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1791,7 +1791,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setShort(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1811,7 +1811,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setString(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1830,7 +1830,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setTime(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1851,7 +1851,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setTime(parameterName, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -1872,7 +1872,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setTimestamp(parameterName, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, x);
 			}
 		} catch (SQLException e) {
@@ -1893,7 +1893,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setTimestamp(parameterName, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -1912,7 +1912,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		checkClosed();
 		try {
 			this.internalCallableStatement.setURL(parameterName, val);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterName, val);
 			}
 		} catch (SQLException e) {
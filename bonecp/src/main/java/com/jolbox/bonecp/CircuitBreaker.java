@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops a pool from piling up threads and reconnect attempts against a database that is down. After 
+ * circuitBreakerFailureThreshold consecutive failed attempts to open a connection, the breaker opens: requests that 
+ * find no idle connection fail straight away and the pool watch threads stop trying to open connections. Once 
+ * circuitBreakerOpenTime has passed, the next request becomes the single probe that tries to open a connection, 
+ * closing the breaker if that works or keeping it open for another round otherwise.
+ *
+ * @author wallacew
+ */
+public class CircuitBreaker {
+	/** SQLState of the exception thrown while the breaker is open. */
+	public static final String CIRCUIT_OPEN_SQLSTATE = "08X01";
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Consecutive failures that open the breaker. */
+	private final int failureThreshold;
+	/** Time to stay open before probing. */
+	private final long openTimeInMs;
+	/** Current state. */
+	private final AtomicReference<CircuitBreakerState> state = new AtomicReference<CircuitBreakerState>(CircuitBreakerState.CLOSED);
+	/** Consecutive failed attempts to open a connection. */
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	/** Time the breaker was last opened. */
+	private volatile long openedAtInMs;
+
+	/** Constructor.
+	 * @param pool pool handle
+	 * @param failureThreshold consecutive failures that open the breaker
+	 * @param openTimeInMs time to stay open before probing
+	 */
+	public CircuitBreaker(BoneCP pool, int failureThreshold, long openTimeInMs){
+		this.pool = pool;
+		this.failureThreshold = failureThreshold;
+		this.openTimeInMs = openTimeInMs;
+	}
+
+	/** Records a failed attempt to open a connection, opening the breaker once the threshold is reached.
+	 * @param e failure
+	 */
+	public void recordFailure(SQLException e){
+		if (this.consecutiveFailures.incrementAndGet() >= this.failureThreshold 
+				&& this.state.compareAndSet(CircuitBreakerState.CLOSED, CircuitBreakerState.OPEN)){
+			this.openedAtInMs = BoneCP.getClock(this.pool).currentTimeMillis();
+			logger.error("Circuit breaker opened after "+this.consecutiveFailures.get()+" failed attempts to connect to "+this.pool.getConfig().getJdbcUrl(), e);
+		}
+	}
+
+	/** Records a connection opened successfully, closing the breaker. */
+	public void recordSuccess(){
+		this.consecutiveFailures.set(0);
+		if (this.state.getAndSet(CircuitBreakerState.CLOSED) != CircuitBreakerState.CLOSED){
+			logger.info("Circuit breaker closed, connected to "+this.pool.getConfig().getJdbcUrl());
+			this.pool.getDbIsDown().set(false);
+			this.pool.signalAllPartitions(); // wake up the watch threads to refill the pool.
+		}
+	}
+
+	/** Decides whether a request may wait for a connection. While open, the first request after openTime becomes 
+	 * the probe: it tries to open a connection on the calling thread and closes the breaker if that works.
+	 * @return true if the request may go ahead, false if it should fail fast.
+	 */
+	public boolean allowRequest(){
+		CircuitBreakerState current = this.state.get();
+		if (current == CircuitBreakerState.CLOSED){
+			return true;
+		}
+		if (current == CircuitBreakerState.HALF_OPEN 
+				|| BoneCP.getClock(this.pool).currentTimeMillis() - this.openedAtInMs < this.openTimeInMs
+				|| !this.state.compareAndSet(CircuitBreakerState.OPEN, CircuitBreakerState.HALF_OPEN)){
+			return false;
+		}
+		try {
+			Connection connection = this.pool.obtainRawInternalConnection();
+			connection.close();
+		} catch (SQLException e) {
+			logger.debug("Circuit breaker probe failed, staying open", e);
+			this.openedAtInMs = BoneCP.getClock(this.pool).currentTimeMillis();
+			this.state.set(CircuitBreakerState.OPEN);
+			return false;
+		} catch (RuntimeException e) {
+			this.openedAtInMs = BoneCP.getClock(this.pool).currentTimeMillis();
+			this.state.set(CircuitBreakerState.OPEN);
+			throw e;
+		}
+		recordSuccess();
+		return true;
+	}
+
+	/** Returns true unless the breaker is closed.
+	 * @return true if connection attempts should be held off.
+	 */
+	public boolean isOpen(){
+		return this.state.get() != CircuitBreakerState.CLOSED;
+	}
+
+	/** Returns the current state.
+	 * @return state
+	 */
+	public CircuitBreakerState getState(){
+		return this.state.get();
+	}
+
+	/** Returns the exception to fail requests with while the breaker is open.
+	 * @return exception
+	 */
+	protected SQLException newOpenException(){
+		return new SQLException("Circuit breaker is open: "+this.pool.getConfig().getJdbcUrl()+" is considered down, not waiting for a connection.", CIRCUIT_OPEN_SQLSTATE);
+	}
+}
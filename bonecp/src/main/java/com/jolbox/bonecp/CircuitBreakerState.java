@@ -0,0 +1,31 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * States of the circuit breaker guarding connection acquisition (see BoneCPConfig.setCircuitBreakerFailureThreshold).
+ * 
+ * @author wallacew
+ *
+ */
+public enum CircuitBreakerState {
+	/** Database considered up: connections are handed out as usual. */
+	CLOSED,
+	/** Database considered down: requests that find no idle connection fail straight away. */
+	OPEN,
+	/** A single request is checking whether the database is back, everyone else still fails straight away. */
+	HALF_OPEN
+}
@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * Clock whose millisecond time is only refreshed whenever {@link #run()} is invoked (see coarseClockResolutionInMs), 
+ * turning the frequent bookkeeping reads into a volatile read. Elapsed time is still measured with System.nanoTime().
+ *
+ * @author wallacew
+ *
+ */
+public class CoarseClock implements PoolClock, Runnable {
+	/** Last sampled time. */
+	private volatile long currentTimeMillis = System.currentTimeMillis();
+
+	// @Override
+	public long currentTimeMillis() {
+		return this.currentTimeMillis;
+	}
+
+	// @Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/** Samples the system clock. */
+	public void run() {
+		this.currentTimeMillis = System.currentTimeMillis();
+	}
+}
@@ -18,7 +18,6 @@ package com.jolbox.bonecp;
 import java.io.Serializable;
 import java.lang.ref.Reference;
 import java.lang.reflect.Proxy;
-import java.net.SocketException;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.CallableStatement;
@@ -49,7 +48,6 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MapMaker;
 import com.jolbox.bonecp.hooks.ConnectionHook;
 import com.jolbox.bonecp.hooks.ConnectionState;
@@ -118,12 +116,18 @@ public class ConnectionHandle implements Connection,Serializable{
 	private Object debugHandle;
 	/** Handle to the connection hook as defined in the config. */
 	private ConnectionHook connectionHook;
+	/** Which of the checkout/checkin callbacks the connection hook implements. */
+	private ConnectionHookEvents connectionHookEvents;
+	/** Pool clock. */
+	private PoolClock clock = SystemClock.INSTANCE;
 	/** If true, give warnings if application tried to issue a close twice (for debugging only). */
 	protected boolean doubleCloseCheck;
 	/** exception trace if doubleCloseCheck is enabled. */  
 	protected volatile String doubleCloseException = null;
 	/** If true, log sql statements. */
 	private boolean logStatementsEnabled;
+	/** If true, statements created via createStatement() turn literals into parameters (see AutoParameterizingStatementHandle). */
+	private boolean autoParameterizeStatements;
 	/** Set to true if we have statement caching enabled. */
 	protected boolean statementCachingEnabled;
 	/** The recorded actions list used to replay the transaction. */
@@ -136,6 +140,12 @@ public class ConnectionHandle implements Connection,Serializable{
 	protected String url;	
 	/** Keep track of the thread. */
 	protected Thread threadUsingConnection;
+	/** Time (in ms) this connection was handed out, maintained by the leak detector. */
+	protected volatile long checkoutTimeInMs;
+	/** Location this connection was handed out from, maintained by the leak detector. */
+	protected volatile Throwable checkoutLocation;
+	/** Set once the leak detector has reported this connection during the current checkout. */
+	protected volatile boolean leakReported;
 	/** Configured max connection age. */
 	@VisibleForTesting protected long maxConnectionAgeInMs;
 	/** if true, we care about statistics. */
@@ -160,6 +170,43 @@ public class ConnectionHandle implements Connection,Serializable{
 	protected boolean detectUnclosedStatements;
 	/** Config setting. */
 	protected boolean closeOpenStatements;
+	/** Config setting. If true, session state is restored by a pool thread rather than on close. */
+	protected boolean resetConnectionInBackground;
+	/** Session properties changed by the application since the connection was handed out (see SESSION_* flags). */
+	@VisibleForTesting protected int sessionStateChanges;
+	/** Session state flag: auto-commit was changed. */
+	protected static final int SESSION_AUTOCOMMIT = 1;
+	/** Session state flag: read-only was changed. */
+	protected static final int SESSION_READONLY = 2;
+	/** Session state flag: catalog was changed. */
+	protected static final int SESSION_CATALOG = 4;
+	/** Session state flag: transaction isolation was changed. */
+	protected static final int SESSION_TRANSACTION_ISOLATION = 8;
+	/** Auto-commit value to restore on reset. */
+	private boolean resetAutoCommit;
+	/** Current auto-commit value, valid if SESSION_AUTOCOMMIT is set. */
+	private boolean changedAutoCommit;
+	/** Autocommit state the physical connection has while idle in the pool. If false, a returned connection may 
+	 * still have a transaction open even if the application never touched autocommit. */
+	private boolean pooledAutoCommit = true;
+	/** Read-only value to restore on reset. */
+	private boolean resetReadOnly;
+	/** Catalog to restore on reset. */
+	private String resetCatalog;
+	/** Transaction isolation to restore on reset. */
+	private int resetTransactionIsolation;
+	/** Config setting. If true, remember session state to avoid redundant driver calls. */
+	protected boolean cacheSessionState;
+	/** Cached auto-commit state of the underlying connection. Null = unknown. */
+	private Boolean cachedAutoCommit;
+	/** Cached read-only state of the underlying connection. Null = unknown. */
+	private Boolean cachedReadOnly;
+	/** Cached catalog of the underlying connection, valid if catalogCached is set. */
+	private String cachedCatalog;
+	/** If true, cachedCatalog holds the catalog of the underlying connection. */
+	private boolean catalogCached;
+	/** Cached transaction isolation of the underlying connection. -1 = unknown. */
+	private int cachedTransactionIsolation = -1;
 
 	/*
 	 * From: http://publib.boulder.ibm.com/infocenter/db2luw/v8/index.jsp?topic=/com.ibm.db2.udb.doc/core/r0sttmsg.htm
@@ -175,12 +222,6 @@ public class ConnectionHandle implements Connection,Serializable{
 		08502	The CONNECT statement issued by an application process running with a SYNCPOINT of TWOPHASE has failed, because no transaction manager is available.
 		08504	An error was encountered while processing the specified path rename configuration file.
 	 */
-	/** SQL Failure codes indicating the database is broken/died (and thus kill off remaining connections). 
-	  Anything else will be taken as the *connection* (not the db) being broken. Note: 08S01 is considered as connection failure in MySQL. 
-          57P01 means that postgresql was restarted. 
-          HY000 is firebird specific triggered when a connection is broken
-	 */
-	private static final ImmutableSet<String> sqlStateDBFailureCodes = ImmutableSet.of("08001", "08006", "08007", "08S01", "57P01", "HY000"); 
 	/** Keep track of open statements. */
 	protected ConcurrentMap<Statement, String> trackedStatement;
 	/** Avoid creating a new string object each time. */
@@ -195,17 +236,32 @@ public class ConnectionHandle implements Connection,Serializable{
 	 * @throws SQLException
 	 */
 	protected ConnectionHandle(Connection connection, ConnectionPartition partition, BoneCP pool, boolean recreating) throws SQLException {
+		this(connection, partition, pool, recreating, null);
+	}
+
+	/**
+	 * Internal constructor
+	 * @param connection
+	 * @param partition 
+	 * @param pool
+	 * @param recreating
+	 * @param previous handle being recreated (to carry over the cached session state), may be null
+	 * @throws SQLException
+	 */
+	private ConnectionHandle(Connection connection, ConnectionPartition partition, BoneCP pool, boolean recreating, ConnectionHandle previous) throws SQLException {
 		boolean newConnection = connection == null;
 
 		
 		this.originatingPartition = partition;
 		this.pool = pool;
 		this.connectionHook = pool.getConfig().getConnectionHook();
+		this.clock = BoneCP.getClock(pool);
 
 		if (!recreating){
-			connectionLastUsedInMs = System.currentTimeMillis();
-			connectionLastResetInMs = System.currentTimeMillis();
-			connectionCreationTimeInMs = System.currentTimeMillis();
+			long now = this.clock.currentTimeMillis();
+			connectionLastUsedInMs = now;
+			connectionLastResetInMs = now;
+			connectionCreationTimeInMs = now;
 		}
 
 		this.url = pool.getConfig().getJdbcUrl();
@@ -221,15 +277,33 @@ public class ConnectionHandle implements Connection,Serializable{
 		this.detectUnresolvedTransactions = pool.getConfig().isDetectUnresolvedTransactions();
 		this.detectUnclosedStatements = pool.getConfig().isDetectUnclosedStatements();
 		this.closeOpenStatements = pool.getConfig().isCloseOpenStatements();
+		this.resetConnectionInBackground = pool.getConfig().isResetConnectionInBackground();
+		this.cacheSessionState = pool.getConfig().isCacheSessionState();
+		if (this.cacheSessionState && previous != null){
+			// same physical connection, same state.
+			this.cachedAutoCommit = previous.cachedAutoCommit;
+			this.cachedReadOnly = previous.cachedReadOnly;
+			this.cachedCatalog = previous.cachedCatalog;
+			this.catalogCached = previous.catalogCached;
+			this.cachedTransactionIsolation = previous.cachedTransactionIsolation;
+		}
 		if (this.closeOpenStatements){
 			trackedStatement = new MapMaker().makeMap();
 		}
 		this.threadUsingConnection = null;
 		this.connectionHook = this.pool.getConfig().getConnectionHook();
+		ConnectionHookEvents hookEvents = pool.connectionHookEvents;
+		this.connectionHookEvents = hookEvents != null ? hookEvents : ConnectionHookEvents.forHook(this.connectionHook);
 
 		this.maxConnectionAgeInMs = pool.getConfig().getMaxConnectionAge(TimeUnit.MILLISECONDS);
+		long maxConnectionAgeJitterInMs = pool.getConfig().getMaxConnectionAgeJitter(TimeUnit.MILLISECONDS);
+		if (!recreating && this.maxConnectionAgeInMs > 0 && maxConnectionAgeJitterInMs > 0){
+			// stagger expiry so that connections created together are not all retired together.
+			this.maxConnectionAgeInMs -= (long)(Math.random() * maxConnectionAgeJitterInMs);
+		}
 		this.doubleCloseCheck = pool.getConfig().isCloseConnectionWatch();
 		this.logStatementsEnabled = pool.getConfig().isLogStatementsEnabled();
+		this.autoParameterizeStatements = pool.getConfig().isAutoParameterizeStatements();
 		int cacheSize = pool.getConfig().getStatementsCacheSize();
 		if ( (cacheSize > 0) && newConnection ) {
 			this.preparedStatementCache = new StatementCache(cacheSize, pool.getConfig().isStatisticsEnabled(), pool.getStatistics());
@@ -252,22 +326,67 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.connection = MemorizeTransactionProxy.memorize(this.connection, this);
 			}
 		}
-		if(!newConnection && !connection.getAutoCommit() && !connection.isClosed()){
-			connection.rollback();
-		}
-		if (this.defaultAutoCommit != null){
-			setAutoCommit(this.defaultAutoCommit);
-		}
-		if (this.defaultReadOnly != null){
-			setReadOnly(this.defaultReadOnly);
-		}
-		if (this.defaultCatalog != null){
-			setCatalog(this.defaultCatalog);
-		}
-		if (this.defaultTransactionIsolationValue != -1){
-			setTransactionIsolation(this.defaultTransactionIsolationValue);
+		// in background reset mode, the pool restores the session state of a recreated handle later on.
+		if (newConnection || !this.resetConnectionInBackground){
+			if(!newConnection && !connection.getAutoCommit() && !connection.isClosed()){
+				connection.rollback();
+			}
+			SessionInitializer sessionInitializer = newConnection ? pool.sessionInitializer : null;
+			boolean driverDefaultsKnown = sessionInitializer != null && sessionInitializer.isDriverDefaultsKnown();
+			if (driverDefaultsKnown){
+				// the setters below leave out the driver calls for settings the connection already has.
+				this.cachedAutoCommit = sessionInitializer.getDriverAutoCommit();
+				this.cachedReadOnly = sessionInitializer.getDriverReadOnly();
+				this.catalogCached = sessionInitializer.isDriverCatalogKnown();
+				this.cachedCatalog = sessionInitializer.getDriverCatalog();
+				this.cachedTransactionIsolation = sessionInitializer.getDriverTransactionIsolation();
+			}
+			if (this.defaultAutoCommit != null){
+				setAutoCommit(this.defaultAutoCommit);
+			}
+			if (this.defaultReadOnly != null){
+				setReadOnly(this.defaultReadOnly);
+			}
+			if (this.defaultCatalog != null){
+				setCatalog(this.defaultCatalog);
+			}
+			if (this.defaultTransactionIsolationValue != -1){
+				setTransactionIsolation(this.defaultTransactionIsolationValue);
+			}
+			if (this.defaultAutoCommit != null){
+				this.pooledAutoCommit = this.defaultAutoCommit;
+			} else {
+				this.pooledAutoCommit = this.cachedAutoCommit != null ? this.cachedAutoCommit : this.connection.getAutoCommit();
+			}
+			if (driverDefaultsKnown && !this.cacheSessionState){
+				this.cachedAutoCommit = null;
+				this.cachedReadOnly = null;
+				this.catalogCached = false;
+				this.cachedCatalog = null;
+				this.cachedTransactionIsolation = -1;
+			}
+			this.sessionStateChanges = 0;
+		}
+
+		ConnectionWarmUp connectionWarmUp = pool.connectionWarmUp;
+		if (newConnection && connectionWarmUp != null){
+			// only publish the connection once it's warmed up.
+			long warmUpStart = this.clock.nanoTime();
+			try {
+				connectionWarmUp.warmUp(this);
+			} catch (SQLException e) {
+				logger.error("Failed to warm up new connection, discarding it", e);
+				try {
+					internalClose();
+				} catch (SQLException closeException) {
+					logger.debug("Error in closing connection that failed to warm up", closeException);
+				}
+				throw e;
+			}
+			if (this.statisticsEnabled){
+				this.statistics.addConnectionWarmUp(this.clock.nanoTime() - warmUpStart);
+			}
 		}
-
 	}
 
 	/**
@@ -278,17 +397,27 @@ public class ConnectionHandle implements Connection,Serializable{
 	 * @throws SQLException
 	 */
 	public ConnectionHandle recreateConnectionHandle() throws SQLException{
-		ConnectionHandle handle = new ConnectionHandle(this.connection, this.originatingPartition, this.pool, true);
+		ConnectionHandle handle = new ConnectionHandle(this.connection, this.originatingPartition, this.pool, true, this);
 		handle.originatingPartition = this.originatingPartition;
 		handle.connectionCreationTimeInMs = this.connectionCreationTimeInMs;
 		handle.connectionLastResetInMs = this.connectionLastResetInMs;
 		handle.connectionLastUsedInMs = this.connectionLastUsedInMs;
+		handle.maxConnectionAgeInMs = this.maxConnectionAgeInMs;
 		handle.preparedStatementCache = this.preparedStatementCache;
 		handle.callableStatementCache = this.callableStatementCache;
 		handle.statementCachingEnabled = this.statementCachingEnabled;
 		handle.connectionHook = this.connectionHook;
+		handle.connectionHookEvents = this.connectionHookEvents;
 		handle.possiblyBroken = this.possiblyBroken;
 		handle.debugHandle = this.debugHandle;
+		handle.txResolved = this.txResolved;
+		handle.sessionStateChanges = this.sessionStateChanges;
+		handle.resetAutoCommit = this.resetAutoCommit;
+		handle.changedAutoCommit = this.changedAutoCommit;
+		handle.pooledAutoCommit = this.pooledAutoCommit;
+		handle.resetReadOnly = this.resetReadOnly;
+		handle.resetCatalog = this.resetCatalog;
+		handle.resetTransactionIsolation = this.resetTransactionIsolation;
 		this.connection = null;
 		
 		return handle;
@@ -378,30 +507,40 @@ public class ConnectionHandle implements Connection,Serializable{
 	protected SQLException markPossiblyBroken(SQLException e) {
 	    String state = e.getSQLState();
 	    boolean alreadyDestroyed = false;
+	    // we can no longer be sure of what state the connection is in.
+	    invalidateSessionStateCache();
 
 		ConnectionState connectionState = this.getConnectionHook() != null ? this.getConnectionHook().onMarkPossiblyBroken(this, state, e) : ConnectionState.NOP; 
 		if (state == null){ // safety;
 			state = "08999"; 
 		}
 
-		if (((sqlStateDBFailureCodes.contains(state) || connectionState.equals(ConnectionState.TERMINATE_ALL_CONNECTIONS)) && this.pool != null) && this.pool.getDbIsDown().compareAndSet(false, true) ){
+		SQLStateClassifier classifier = this.pool == null || this.pool.sqlStateClassifier == null ? DefaultSQLStateClassifier.INSTANCE : this.pool.sqlStateClassifier;
+		FailureScope failureScope = classifier.classify(state, e);
+
+		if (failureScope.equals(FailureScope.DATABASE) && this.pool != null && this.pool.failureValidator != null 
+				&& !connectionState.equals(ConnectionState.TERMINATE_ALL_CONNECTIONS) && !this.pool.getDbIsDown().get()){
+			// don't flush the pool over a single broken connection: only do so if idle connections fail validation too.
+			this.pool.destroyConnection(this);
+			this.logicallyClosed.set(true);
+			alreadyDestroyed = true;
+			this.pool.failureValidator.check();
+		} else if (((failureScope.equals(FailureScope.DATABASE) || connectionState.equals(ConnectionState.TERMINATE_ALL_CONNECTIONS)) && this.pool != null) && this.pool.getDbIsDown().compareAndSet(false, true) ){
 			logger.error("Database access problem. Killing off this connection and all remaining connections in the connection pool. SQL State = " + state);
 			this.pool.connectionStrategy.terminateAllConnections();
 			this.pool.destroyConnection(this);
 			this.logicallyClosed.set(true);
 			alreadyDestroyed = true;
 
-			for (int i=0; i < this.pool.partitionCount; i++) {
-				// send a signal to try re-populating again.
-				this.pool.partitions[i].getPoolWatchThreadSignalQueue().offer(new Object()); // item being pushed is not important.
-			}
+			// send a signal to try re-populating again.
+			this.pool.signalAllPartitions();
 		}
 
 		//case where either the connection is closed or
 		//two concurrent connections loose connections with
 		//the 08S01 code but one one is killed in the code
 		//above give dbIsDown is set for the first connection
-		if (state.equals("08003") || sqlStateDBFailureCodes.contains(state) || e.getCause() instanceof SocketException) {
+		if (!failureScope.equals(FailureScope.NONE)) {
 		    if (!alreadyDestroyed) {
 			this.pool.destroyConnection(this);
 			this.logicallyClosed.set(true);
@@ -468,7 +607,7 @@ public class ConnectionHandle implements Connection,Serializable{
 	public void close() throws SQLException {
 		try {
 
-			if (this.resetConnectionOnClose /*FIXME: && !getAutoCommit() && !isTxResolved() */){
+			if (this.resetConnectionOnClose && !this.resetConnectionInBackground /*FIXME: && !getAutoCommit() && !isTxResolved() */){
 				/*if (this.autoCommitStackTrace != null){
 						logger.debug(this.autoCommitStackTrace);
 						this.autoCommitStackTrace = null; 
@@ -483,6 +622,9 @@ public class ConnectionHandle implements Connection,Serializable{
 
 			if (this.logicallyClosed.compareAndSet(false, true)) {
 
+				if (this.pool.leakDetector != null){
+					this.pool.leakDetector.untrack(this);
+				}
 
 				if (this.threadWatch != null){
 					this.threadWatch.interrupt(); // if we returned the connection to the pool, terminate thread watch thread if it's
@@ -715,7 +857,12 @@ public class ConnectionHandle implements Connection,Serializable{
 		Statement result = null;
 		checkClosed();
 		try {
-			result =new StatementHandle(this.connection.createStatement(), this, this.logStatementsEnabled);
+			if (this.autoParameterizeStatements && this.statementCachingEnabled){
+				result = new AutoParameterizingStatementHandle(this.connection.createStatement(), this, this.logStatementsEnabled, 
+						AutoParameterizingStatementHandle.UNSPECIFIED, AutoParameterizingStatementHandle.UNSPECIFIED, AutoParameterizingStatementHandle.UNSPECIFIED);
+			} else {
+				result =new StatementHandle(this.connection.createStatement(), this, this.logStatementsEnabled);
+			}
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -730,7 +877,12 @@ public class ConnectionHandle implements Connection,Serializable{
 		Statement result = null;
 		checkClosed();
 		try {
-			result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency), this, this.logStatementsEnabled);
+			if (this.autoParameterizeStatements && this.statementCachingEnabled){
+				result = new AutoParameterizingStatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency), this, this.logStatementsEnabled, 
+						resultSetType, resultSetConcurrency, AutoParameterizingStatementHandle.UNSPECIFIED);
+			} else {
+				result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency), this, this.logStatementsEnabled);
+			}
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -747,7 +899,12 @@ public class ConnectionHandle implements Connection,Serializable{
 		Statement result = null;
 		checkClosed();
 		try {
-			result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this, this.logStatementsEnabled);
+			if (this.autoParameterizeStatements && this.statementCachingEnabled){
+				result = new AutoParameterizingStatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this, this.logStatementsEnabled, 
+						resultSetType, resultSetConcurrency, resultSetHoldability);
+			} else {
+				result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this, this.logStatementsEnabled);
+			}
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -775,7 +932,14 @@ public class ConnectionHandle implements Connection,Serializable{
 		boolean result = false;
 		checkClosed();
 		try {
+			if (this.cachedAutoCommit != null){
+				sessionStateCallSaved();
+				return this.cachedAutoCommit;
+			}
 			result = this.connection.getAutoCommit();
+			if (this.cacheSessionState){
+				this.cachedAutoCommit = result;
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -787,7 +951,15 @@ public class ConnectionHandle implements Connection,Serializable{
 		String result = null;
 		checkClosed();
 		try {
+			if (this.catalogCached){
+				sessionStateCallSaved();
+				return this.cachedCatalog;
+			}
 			result = this.connection.getCatalog();
+			if (this.cacheSessionState){
+				this.cachedCatalog = result;
+				this.catalogCached = true;
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -822,7 +994,14 @@ public class ConnectionHandle implements Connection,Serializable{
 		int result = 0;
 		checkClosed();
 		try {
+			if (this.cachedTransactionIsolation != -1){
+				sessionStateCallSaved();
+				return this.cachedTransactionIsolation;
+			}
 			result = this.connection.getTransactionIsolation();
+			if (this.cacheSessionState){
+				this.cachedTransactionIsolation = result;
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -864,7 +1043,14 @@ public class ConnectionHandle implements Connection,Serializable{
 		boolean result = false;
 		checkClosed();
 		try {
+			if (this.cachedReadOnly != null){
+				sessionStateCallSaved();
+				return this.cachedReadOnly;
+			}
 			result = this.connection.isReadOnly();
+			if (this.cacheSessionState){
+				this.cachedReadOnly = result;
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -891,7 +1077,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = sql;
@@ -915,7 +1101,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -934,7 +1120,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.callableStatementCache.calculateCacheKey(sql, resultSetType, resultSetConcurrency);
@@ -958,7 +1144,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -979,7 +1165,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.callableStatementCache.calculateCacheKey(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
@@ -1003,7 +1189,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -1022,7 +1208,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = sql;
@@ -1044,7 +1230,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 
@@ -1064,7 +1250,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart = 0;
 			if (this.statisticsEnabled){
-				statStart  = System.nanoTime();
+				statStart  = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.preparedStatementCache.calculateCacheKey(sql, autoGeneratedKeys);
@@ -1087,7 +1273,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 
@@ -1108,7 +1294,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 
 			if (this.statementCachingEnabled) {
@@ -1134,7 +1320,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 
@@ -1155,7 +1341,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.preparedStatementCache.calculateCacheKey(sql, columnNames);
@@ -1180,7 +1366,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -1200,7 +1386,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.preparedStatementCache.calculateCacheKey(sql, resultSetType, resultSetConcurrency);
@@ -1224,7 +1410,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -1245,7 +1431,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		try {
 			long statStart=0;
 			if (this.statisticsEnabled){
-				statStart = System.nanoTime();
+				statStart = this.clock.nanoTime();
 			}
 
 			if (this.statementCachingEnabled) {
@@ -1270,7 +1456,7 @@ public class ConnectionHandle implements Connection,Serializable{
 			}
 
 			if (this.statisticsEnabled){
-				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
+				this.statistics.addStatementPrepareTime(this.clock.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
 		} catch (SQLException e) {
@@ -1313,7 +1499,22 @@ public class ConnectionHandle implements Connection,Serializable{
 	public void setAutoCommit(boolean autoCommit) throws SQLException {
 		checkClosed();
 		try {
-			this.connection.setAutoCommit(autoCommit);
+			if (this.resetConnectionInBackground){
+				if ((this.sessionStateChanges & SESSION_AUTOCOMMIT) == 0){
+					this.resetAutoCommit = this.defaultAutoCommit != null ? this.defaultAutoCommit : 
+						(this.cachedAutoCommit != null ? this.cachedAutoCommit : this.connection.getAutoCommit());
+					this.sessionStateChanges |= SESSION_AUTOCOMMIT;
+				}
+				this.changedAutoCommit = autoCommit;
+			}
+			if (this.cachedAutoCommit != null && this.cachedAutoCommit == autoCommit){
+				sessionStateCallSaved(); // no-op as far as the driver is concerned
+			} else {
+				this.connection.setAutoCommit(autoCommit);
+				if (this.cacheSessionState){
+					this.cachedAutoCommit = autoCommit;
+				}
+			}
 			this.txResolved = autoCommit;
 			if (this.detectUnresolvedTransactions && !autoCommit){
 				this.autoCommitStackTrace = this.pool.captureStackTrace(SET_AUTO_COMMIT_FALSE_WAS_CALLED_MESSAGE);
@@ -1326,7 +1527,20 @@ public class ConnectionHandle implements Connection,Serializable{
 	public void setCatalog(String catalog) throws SQLException {
 		checkClosed();
 		try {
-			this.connection.setCatalog(catalog);
+			if (this.resetConnectionInBackground && (this.sessionStateChanges & SESSION_CATALOG) == 0){
+				this.resetCatalog = this.defaultCatalog != null ? this.defaultCatalog : 
+					(this.catalogCached ? this.cachedCatalog : this.connection.getCatalog());
+				this.sessionStateChanges |= SESSION_CATALOG;
+			}
+			if (this.catalogCached && Objects.equal(this.cachedCatalog, catalog)){
+				sessionStateCallSaved();
+			} else {
+				this.connection.setCatalog(catalog);
+				if (this.cacheSessionState){
+					this.cachedCatalog = catalog;
+					this.catalogCached = true;
+				}
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1345,7 +1559,19 @@ public class ConnectionHandle implements Connection,Serializable{
 	public void setReadOnly(boolean readOnly) throws SQLException {
 		checkClosed();
 		try {
-			this.connection.setReadOnly(readOnly);
+			if (this.resetConnectionInBackground && (this.sessionStateChanges & SESSION_READONLY) == 0){
+				this.resetReadOnly = this.defaultReadOnly != null ? this.defaultReadOnly : 
+					(this.cachedReadOnly != null ? this.cachedReadOnly : this.connection.isReadOnly());
+				this.sessionStateChanges |= SESSION_READONLY;
+			}
+			if (this.cachedReadOnly != null && this.cachedReadOnly == readOnly){
+				sessionStateCallSaved();
+			} else {
+				this.connection.setReadOnly(readOnly);
+				if (this.cacheSessionState){
+					this.cachedReadOnly = readOnly;
+				}
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1376,7 +1602,19 @@ public class ConnectionHandle implements Connection,Serializable{
 	public void setTransactionIsolation(int level) throws SQLException {
 		checkClosed();
 		try {
-			this.connection.setTransactionIsolation(level);
+			if (this.resetConnectionInBackground && (this.sessionStateChanges & SESSION_TRANSACTION_ISOLATION) == 0){
+				this.resetTransactionIsolation = this.defaultTransactionIsolationValue != -1 ? this.defaultTransactionIsolationValue : 
+					(this.cachedTransactionIsolation != -1 ? this.cachedTransactionIsolation : this.connection.getTransactionIsolation());
+				this.sessionStateChanges |= SESSION_TRANSACTION_ISOLATION;
+			}
+			if (this.cachedTransactionIsolation != -1 && this.cachedTransactionIsolation == level){
+				sessionStateCallSaved();
+			} else {
+				this.connection.setTransactionIsolation(level);
+				if (this.cacheSessionState){
+					this.cachedTransactionIsolation = level;
+				}
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1540,6 +1778,13 @@ public class ConnectionHandle implements Connection,Serializable{
 		return this.connectionHook;
 	}
 
+	/** Returns the callbacks implemented by the connection hook.
+	 * @return implemented callbacks
+	 */
+	public ConnectionHookEvents getConnectionHookEvents() {
+		return this.connectionHookEvents;
+	}
+
 	/** Returns true if logging of statements is enabled
 	 * @return logStatementsEnabled status
 	 */
@@ -1581,6 +1826,7 @@ public class ConnectionHandle implements Connection,Serializable{
 	 */
 	public void setInternalConnection(Connection rawConnection) {
 		this.connection = rawConnection;
+		invalidateSessionStateCache();
 	}
 
 	/** Returns a handle to the global pool from where this connection was obtained.
@@ -1640,12 +1886,78 @@ public class ConnectionHandle implements Connection,Serializable{
 		return this.connectionCreationTimeInMs;
 	}
 
+	/** Forgets any cached session state so that the next call goes to the driver. */
+	protected void invalidateSessionStateCache() {
+		this.cachedAutoCommit = null;
+		this.cachedReadOnly = null;
+		this.cachedCatalog = null;
+		this.catalogCached = false;
+		this.cachedTransactionIsolation = -1;
+	}
+
+	/** Records a driver call avoided thanks to the cached session state. */
+	private void sessionStateCallSaved() {
+		if (this.statisticsEnabled){
+			this.statistics.incrementSessionStateCallsSaved();
+		}
+	}
+
+	/** Returns true if this connection needs to have its session state reset before it can be handed out 
+	 * again, i.e. it may have an open transaction or the application changed one of its session properties.
+	 * @return true if a reset is needed.
+	 */
+	protected boolean isSessionStateDirty() {
+		return this.sessionStateChanges != 0 || !this.txResolved || !this.pooledAutoCommit;
+	}
+
+	/** Rolls back any open transaction and restores the session properties changed by the application to the 
+	 * values they had when the connection was handed out. Only properties that were changed are touched. 
+	 * @throws SQLException on error
+	 */
+	protected void resetSessionState() throws SQLException {
+		try {
+			boolean inTransaction = ((this.sessionStateChanges & SESSION_AUTOCOMMIT) != 0) ? !this.changedAutoCommit : !this.pooledAutoCommit;
+			if (inTransaction || !this.txResolved){
+				this.connection.rollback();
+			}
+			if ((this.sessionStateChanges & SESSION_AUTOCOMMIT) != 0 && this.changedAutoCommit != this.resetAutoCommit){
+				this.connection.setAutoCommit(this.resetAutoCommit);
+				this.cachedAutoCommit = this.cacheSessionState ? this.resetAutoCommit : null;
+			}
+			if ((this.sessionStateChanges & SESSION_READONLY) != 0){
+				this.connection.setReadOnly(this.resetReadOnly);
+				this.cachedReadOnly = this.cacheSessionState ? this.resetReadOnly : null;
+			}
+			if ((this.sessionStateChanges & SESSION_CATALOG) != 0){
+				this.connection.setCatalog(this.resetCatalog);
+				this.cachedCatalog = this.resetCatalog;
+				this.catalogCached = this.cacheSessionState;
+			}
+			if ((this.sessionStateChanges & SESSION_TRANSACTION_ISOLATION) != 0){
+				this.connection.setTransactionIsolation(this.resetTransactionIsolation);
+				this.cachedTransactionIsolation = this.cacheSessionState ? this.resetTransactionIsolation : -1;
+			}
+			this.sessionStateChanges = 0;
+			this.txResolved = true;
+		} catch (SQLException e) {
+			throw markPossiblyBroken(e);
+		}
+	}
+
+	/** Returns the max age of this connection. This is the configured maxConnectionAge less a
+	 * random amount of up to maxConnectionAgeJitter.
+	 * @return max age of this connection in ms. 
+	 */
+	protected long getMaxConnectionAgeInMs() {
+		return this.maxConnectionAgeInMs;
+	}
+
 	/** Returns true if the given connection has exceeded the maxConnectionAge.
 	 * @return true if the connection has expired.
 	 */
 	public boolean isExpired() {
 		return this.maxConnectionAgeInMs > 0 
-				&& isExpired(System.currentTimeMillis());
+				&& isExpired(this.clock.currentTimeMillis());
 	}
 
 	/** Returns true if the given connection has exceeded the maxConnectionAge.
@@ -1703,6 +2015,7 @@ public class ConnectionHandle implements Connection,Serializable{
 	 */
 	public void refreshConnection() throws SQLException{
 		this.connection.close(); // if it's still in use, close it.
+		invalidateSessionStateCache();
 		try{
 			this.connection = this.pool.obtainRawInternalConnection();
 		} catch(SQLException e){
@@ -1730,7 +2043,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 	public String toString(){
 
-		long timeMillis = System.currentTimeMillis();
+		long timeMillis = this.clock.currentTimeMillis();
 
 		return Objects.toStringHelper(this)
 				.add("url", this.pool.getConfig().getJdbcUrl())
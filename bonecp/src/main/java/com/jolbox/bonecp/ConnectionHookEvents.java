@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+import com.jolbox.bonecp.hooks.ConnectionHook;
+
+/**
+ * Records which of the frequently called hook methods a connection hook actually implements, so that the pool can 
+ * skip the call (and whatever it takes to build its arguments) for the ones left as no-ops in 
+ * {@link AbstractConnectionHook}. Hooks implementing {@link ConnectionHook} directly are assumed to implement 
+ * everything. The result is worked out once per hook class.
+ *
+ * @author wallacew
+ *
+ */
+public class ConnectionHookEvents {
+	/** No hook configured. */
+	public static final ConnectionHookEvents NONE = new ConnectionHookEvents(false, false, false, false);
+	/** Hook implementing every callback. */
+	public static final ConnectionHookEvents ALL = new ConnectionHookEvents(true, true, true, true);
+	/** Results per hook class. */
+	private static final ConcurrentMap<Class<?>, ConnectionHookEvents> cache = new MapMaker().weakKeys().makeMap();
+	/** Argument types of onCheckIn/onCheckOut. */
+	private static final Class<?>[] CONNECTION_ARGS = {ConnectionHandle.class};
+	/** Argument types of onBeforeStatementExecute/onAfterStatementExecute. */
+	private static final Class<?>[] STATEMENT_ARGS = {ConnectionHandle.class, StatementHandle.class, String.class, Map.class};
+	/** True if onCheckOut is implemented. */
+	private final boolean onCheckOut;
+	/** True if onCheckIn is implemented. */
+	private final boolean onCheckIn;
+	/** True if onBeforeStatementExecute is implemented. */
+	private final boolean onBeforeStatementExecute;
+	/** True if onAfterStatementExecute is implemented. */
+	private final boolean onAfterStatementExecute;
+
+	/** Constructor.
+	 * @param onCheckOut true if onCheckOut is implemented
+	 * @param onCheckIn true if onCheckIn is implemented
+	 * @param onBeforeStatementExecute true if onBeforeStatementExecute is implemented
+	 * @param onAfterStatementExecute true if onAfterStatementExecute is implemented
+	 */
+	protected ConnectionHookEvents(boolean onCheckOut, boolean onCheckIn, boolean onBeforeStatementExecute, boolean onAfterStatementExecute){
+		this.onCheckOut = onCheckOut;
+		this.onCheckIn = onCheckIn;
+		this.onBeforeStatementExecute = onBeforeStatementExecute;
+		this.onAfterStatementExecute = onAfterStatementExecute;
+	}
+
+	/** Returns the callbacks implemented by the given hook.
+	 * @param hook hook to inspect (may be null)
+	 * @return implemented callbacks
+	 */
+	public static ConnectionHookEvents forHook(ConnectionHook hook){
+		if (hook == null){
+			return NONE;
+		}
+		if (hook instanceof AsyncHookDispatcher){
+			// only forwards, so it's down to the hook it forwards to.
+			return forHook(((AsyncHookDispatcher) hook).getHook());
+		}
+		Class<?> clazz = hook.getClass();
+		ConnectionHookEvents result = cache.get(clazz);
+		if (result == null){
+			if (AbstractConnectionHook.class.isAssignableFrom(clazz)){
+				result = new ConnectionHookEvents(overrides(clazz, "onCheckOut", CONNECTION_ARGS), 
+						overrides(clazz, "onCheckIn", CONNECTION_ARGS), 
+						overrides(clazz, "onBeforeStatementExecute", STATEMENT_ARGS), 
+						overrides(clazz, "onAfterStatementExecute", STATEMENT_ARGS));
+			} else {
+				result = ALL;
+			}
+			cache.putIfAbsent(clazz, result);
+		}
+		return result;
+	}
+
+	/** Returns true if the given hook class provides its own version of a method.
+	 * @param clazz hook class (a subclass of AbstractConnectionHook)
+	 * @param name method name
+	 * @param parameterTypes method arguments
+	 * @return false if the no-op version in AbstractConnectionHook is used
+	 */
+	private static boolean overrides(Class<?> clazz, String name, Class<?>... parameterTypes){
+		try {
+			return clazz.getMethod(name, parameterTypes).getDeclaringClass() != AbstractConnectionHook.class;
+		} catch (Exception e) {
+			return true; // can't tell, so call it.
+		}
+	}
+
+	/** Returns true if onCheckOut is implemented.
+	 * @return onCheckOut
+	 */
+	public boolean isOnCheckOut() {
+		return this.onCheckOut;
+	}
+
+	/** Returns true if onCheckIn is implemented.
+	 * @return onCheckIn
+	 */
+	public boolean isOnCheckIn() {
+		return this.onCheckIn;
+	}
+
+	/** Returns true if onBeforeStatementExecute is implemented.
+	 * @return onBeforeStatementExecute
+	 */
+	public boolean isOnBeforeStatementExecute() {
+		return this.onBeforeStatementExecute;
+	}
+
+	/** Returns true if onAfterStatementExecute is implemented.
+	 * @return onAfterStatementExecute
+	 */
+	public boolean isOnAfterStatementExecute() {
+		return this.onAfterStatementExecute;
+	}
+
+	@Override
+	public String toString() {
+		return "onCheckOut=" + this.onCheckOut + ", onCheckIn=" + this.onCheckIn 
+				+ ", onBeforeStatementExecute=" + this.onBeforeStatementExecute + ", onAfterStatementExecute=" + this.onAfterStatementExecute;
+	}
+}
@@ -40,6 +40,12 @@ public class ConnectionMaxAgeThread implements Runnable {
 	private BoneCP pool;
 	/** If true, we're operating in a LIFO fashion. */ 
 	private boolean lifoMode;
+	/** Pool clock. */
+	private PoolClock clock;
+	/** Max number of connections to retire per run. 0 = no limit. */
+	private int maxRetirementsPerRun;
+	/** Time to wait before retiring more connections once maxRetirementsPerRun has been reached. */
+	protected static final long RETIREMENT_BACKOFF_IN_MS = 1000L;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(ConnectionTesterThread.class);
 
@@ -52,11 +58,26 @@ public class ConnectionMaxAgeThread implements Runnable {
 	 */
 	protected ConnectionMaxAgeThread(ConnectionPartition connectionPartition, ScheduledExecutorService scheduler, 
 			BoneCP pool, long maxAgeInMs, boolean lifoMode){
+		this(connectionPartition, scheduler, pool, maxAgeInMs, lifoMode, 0);
+	}
+
+	/** Constructor
+	 * @param connectionPartition partition to work on
+	 * @param scheduler Scheduler handler.
+	 * @param pool pool handle
+	 * @param maxAgeInMs Threads older than this are killed off 
+	 * @param lifoMode if true, we're running under a lifo fashion.
+	 * @param maxRetirementsPerRun max number of expired connections to close off per run (0 = no limit).
+	 */
+	protected ConnectionMaxAgeThread(ConnectionPartition connectionPartition, ScheduledExecutorService scheduler, 
+			BoneCP pool, long maxAgeInMs, boolean lifoMode, int maxRetirementsPerRun){
 		this.partition = connectionPartition;
 		this.scheduler = scheduler;
 		this.maxAgeInMs = maxAgeInMs;
 		this.pool = pool;
 		this.lifoMode = lifoMode;
+		this.maxRetirementsPerRun = maxRetirementsPerRun;
+		this.clock = BoneCP.getClock(pool);
 	}
 
 
@@ -65,9 +86,14 @@ public class ConnectionMaxAgeThread implements Runnable {
 		ConnectionHandle connection = null;
 		long tmp;
 		long nextCheckInMs = this.maxAgeInMs;
+		long connectionMaxAgeInMs;
+		int retired = 0;
 
+		if (this.partition.isRetired()){
+			return; // pool has been repartitioned, idle connections have moved on.
+		}
 		int partitionSize= this.partition.getAvailableConnections();
-		long currentTime = System.currentTimeMillis();
+		long currentTime = this.clock.currentTimeMillis();
 		for (int i=0; i < partitionSize; i++){
 			try {
 				connection = this.partition.getFreeConnections().poll();
@@ -75,23 +101,35 @@ public class ConnectionMaxAgeThread implements Runnable {
 				if (connection != null){
 					connection.setOriginatingPartition(this.partition);
 
-					tmp = this.maxAgeInMs - (currentTime - connection.getConnectionCreationTimeInMs()); 
+					// each connection may have its own (jittered) max age.
+					connectionMaxAgeInMs = connection.getMaxConnectionAgeInMs();
+					if (connectionMaxAgeInMs <= 0){
+						connectionMaxAgeInMs = this.maxAgeInMs;
+					}
+					tmp = connectionMaxAgeInMs - (currentTime - connection.getConnectionCreationTimeInMs()); 
 
 					if (tmp < nextCheckInMs){
 						nextCheckInMs = tmp; 
 					}
 
 					if (connection.isExpired(currentTime)){
-						// kill off this connection
-						closeConnection(connection);
-						continue;
+						if (this.maxRetirementsPerRun <= 0 || retired < this.maxRetirementsPerRun){
+							// open up the replacement first so that the partition does not shrink meanwhile
+							this.pool.precreateReplacementConnection(this.partition);
+							// kill off this connection
+							closeConnection(connection);
+							retired++;
+							continue;
+						}
+						// too many retirements in one go, leave this one for the next run.
+						nextCheckInMs = Math.min(nextCheckInMs, RETIREMENT_BACKOFF_IN_MS);
 					}
 
 
 					
 					if (this.lifoMode){
 						// we can't put it back normally or it will end up in front again.
-						if (!(connection.getOriginatingPartition().getFreeConnections().offer(connection))){
+						if (!(connection.getOriginatingPartition().putFreeConnection(connection))){
 							connection.internalClose();
 						}
 					} else {
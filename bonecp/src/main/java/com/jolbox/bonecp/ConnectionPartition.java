@@ -45,11 +45,17 @@ public class ConnectionPartition implements Serializable{
 	/**  Connections available to be taken  */
 	private BlockingQueue<ConnectionHandle> freeConnections;
 	/** When connections start running out, add these number of new connections. */
-	private final int acquireIncrement;
+	private volatile int acquireIncrement;
 	/** Minimum number of connections to start off with. */
-	private final int minConnections;
+	private volatile int minConnections;
 	/** Maximum number of connections that will ever be created. */
-	private final int maxConnections;
+	private volatile int maxConnections;
+	/** Number of connections being closed off because the partition has been shrunk. */
+	private int retiringConnections=0;
+	/** True if the partition (may) hold more connections than maxConnections after a resize. */
+	private volatile boolean overCapacity;
+	/** Partition that took over from this one when the pool was repartitioned, null while this partition is live. */
+	private volatile ConnectionPartition successor;
 	/** Statistics lock. */
 	protected ReentrantReadWriteLock statsLock = new ReentrantReadWriteLock();
 	/** Number of connections that have been created. */
@@ -69,7 +75,7 @@ public class ConnectionPartition implements Serializable{
 	/** Signal trigger to pool watch thread. Making it a queue means our signal is persistent. */
 	private BlockingQueue<Object> poolWatchThreadSignalQueue = new ArrayBlockingQueue<Object>(1);
 	/** Store the unit translation here to avoid recalculating it in statement handles. */
-	private long queryExecuteTimeLimitInNanoSeconds;
+	private volatile long queryExecuteTimeLimitInNanoSeconds;
 	/** Cached copy of the config-specified pool name. */
 	private String poolName;
 	/** Handle to the pool. */
@@ -88,15 +94,18 @@ public class ConnectionPartition implements Serializable{
 	 * @param increment value to add/subtract
 	 */
 	protected void updateCreatedConnections(int increment) {
-
+		boolean drained;
 		try{
 			this.statsLock.writeLock().lock();
 			this.createdConnections+=increment;
 	//		assert this.createdConnections >= 0 : "Created connections < 0!";
-			
+			drained = this.createdConnections == 0;
 		} finally { 
 			this.statsLock.writeLock().unlock();
 		}
+		if (drained && this.successor != null){
+			this.pool.retiredPartitionDrained(this);
+		}
 	}
 
 	/**
@@ -125,7 +134,87 @@ public class ConnectionPartition implements Serializable{
 			}
 			// terminate the internal handle.
 			connectionHandle.internalClose();
+		} else if (this.successor != null){
+			migrateFreeConnections(); // retired while the connection was being opened.
+		}
+	}
+
+	/** Places an idle connection that originated from this partition back in the free queue. If the partition has
+	 * been retired by a repartition, the connection is handed over to the partition that replaced it instead.
+	 * @param connectionHandle connection to place back
+	 * @return false if the queue did not accept the connection.
+	 */
+	protected boolean putFreeConnection(ConnectionHandle connectionHandle){
+		ConnectionPartition partition = this;
+		if (this.successor != null){
+			partition = getSuccessor();
+			handOver(connectionHandle, partition);
+		}
+		if (!partition.freeConnections.offer(connectionHandle)){
+			return false;
+		}
+		if (partition.successor != null){
+			// the partition was retired while we were placing the connection, make sure it does not get stranded.
+			partition.migrateFreeConnections();
+		}
+		return true;
+	}
+
+	/** Moves all idle connections over to the partition that replaced this one. */
+	protected void migrateFreeConnections(){
+		ConnectionHandle connectionHandle;
+		while ((connectionHandle = this.freeConnections.poll()) != null){
+			putFreeConnection(connectionHandle);
+		}
+	}
+
+	/** Transfers ownership of a connection that originated from this partition to another partition. The connection
+	 * is not placed in the target's free queue.
+	 * @param connectionHandle connection to transfer
+	 * @param target new originating partition
+	 */
+	protected void handOver(ConnectionHandle connectionHandle, ConnectionPartition target){
+		try{
+			target.statsLock.writeLock().lock();
+			target.createdConnections++;
+			if (target.createdConnections - target.retiringConnections > target.maxConnections){
+				target.overCapacity = true;
+			}
+		} finally { 
+			target.statsLock.writeLock().unlock();
+		}
+		connectionHandle.setOriginatingPartition(target);
+		if (!target.disableTracking){
+			target.trackConnectionFinalizer(connectionHandle); // replaces our own entry
+		}
+		updateCreatedConnections(-1);
+	}
+
+	/** Marks this partition as replaced by the given one. Connections still in use are handed over to the 
+	 * successor as they are returned and the partition is dropped once it no longer owns any connections.
+	 * @param successor partition taking over
+	 */
+	protected void retire(ConnectionPartition successor){
+		this.successor = successor;
+		this.poolWatchThreadSignalQueue.offer(new Object()); // let the pool watch thread terminate.
+	}
+
+	/** Returns true if this partition has been replaced following a repartition.
+	 * @return true if retired
+	 */
+	protected boolean isRetired(){
+		return this.successor != null;
+	}
+
+	/** Returns the live partition that has taken over from this one, or this partition if it is still live.
+	 * @return live partition
+	 */
+	protected ConnectionPartition getSuccessor(){
+		ConnectionPartition result = this;
+		while (result.successor != null){
+			result = result.successor;
 		}
+		return result;
 	}
 
 	/** This method is a replacement for finalize() but avoids all its pitfalls (see Joshua Bloch et. all).
@@ -214,6 +303,13 @@ public class ConnectionPartition implements Serializable{
 		return this.acquireIncrement;
 	}
 
+	/** Sets the number of connections to add at a time.
+	 * @param acquireIncrement the acquireIncrement to set
+	 */
+	protected void setAcquireIncrement(int acquireIncrement) {
+		this.acquireIncrement = acquireIncrement;
+	}
+
 	/**
 	 * @return the minConnections
 	 */
@@ -221,6 +317,60 @@ public class ConnectionPartition implements Serializable{
 		return this.minConnections;
 	}
 
+	/** Changes the partition size limits. Growing is left to the pool watch thread. If the partition now holds 
+	 * more connections than allowed, the surplus is closed off as connections are returned (see 
+	 * claimSurplusConnection).
+	 * @param minConnections new minimum
+	 * @param maxConnections new maximum
+	 */
+	protected void resize(int minConnections, int maxConnections) {
+		try{
+			this.statsLock.writeLock().lock();
+			this.minConnections = minConnections;
+			this.maxConnections = maxConnections;
+			this.overCapacity = this.createdConnections - this.retiringConnections > maxConnections;
+		} finally { 
+			this.statsLock.writeLock().unlock();
+		}
+		this.unableToCreateMoreTransactions = false;
+		this.poolWatchThreadSignalQueue.offer(new Object()); // let the pool watch thread take another look.
+	}
+
+	/** Returns true if the partition has been shrunk and still holds too many connections.
+	 * @return true if returned connections should be checked with claimSurplusConnection.
+	 */
+	protected boolean isOverCapacity() {
+		return this.overCapacity;
+	}
+
+	/** Reserves a connection for closing if the partition holds more connections than maxConnections. Callers 
+	 * must destroy the connection and then call surplusConnectionRetired().
+	 * @return true if the caller should close off a connection, false if the partition is not over capacity.
+	 */
+	protected boolean claimSurplusConnection() {
+		try{
+			this.statsLock.writeLock().lock();
+			if (this.createdConnections - this.retiringConnections > this.maxConnections){
+				this.retiringConnections++;
+				return true;
+			}
+			this.overCapacity = false;
+			return false;
+		} finally { 
+			this.statsLock.writeLock().unlock();
+		}
+	}
+
+	/** Signals that a connection reserved via claimSurplusConnection() has been destroyed. */
+	protected void surplusConnectionRetired() {
+		try{
+			this.statsLock.writeLock().lock();
+			this.retiringConnections--;
+		} finally { 
+			this.statsLock.writeLock().unlock();
+		}
+	}
+
 
 	/**
 	 * @return the maxConnections
@@ -296,7 +446,8 @@ public class ConnectionPartition implements Serializable{
 	 * @return remaining capacity.
 	 */
 	public int getRemainingCapacity() {
-		return this.freeConnections.remainingCapacity();
+		// the queue itself is normally unbounded, maxConnections is what counts.
+		return Math.max(0, Math.min(this.freeConnections.remainingCapacity(), this.maxConnections - this.freeConnections.size()));
 	}
 
 	/** Store the unit translation here to avoid recalculating it in the constructor of StatementHandle. 
@@ -305,6 +456,13 @@ public class ConnectionPartition implements Serializable{
 	protected long getQueryExecuteTimeLimitinNanoSeconds(){
 		return this.queryExecuteTimeLimitInNanoSeconds;
 	}
+
+	/** Changes the query execute time limit for statements created from now on.
+	 * @param queryExecuteTimeLimitInNanoSeconds new limit
+	 */
+	protected void setQueryExecuteTimeLimitInNanoSeconds(long queryExecuteTimeLimitInNanoSeconds){
+		this.queryExecuteTimeLimitInNanoSeconds = queryExecuteTimeLimitInNanoSeconds;
+	}
 	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
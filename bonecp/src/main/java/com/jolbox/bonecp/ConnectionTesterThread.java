@@ -43,6 +43,8 @@ public class ConnectionTesterThread implements Runnable {
 	private BoneCP pool;
 	/** If true, we're operating in a LIFO fashion. */ 
 	private boolean lifoMode;
+	/** Pool clock. */
+	private PoolClock clock;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(ConnectionTesterThread.class);
 
@@ -62,6 +64,7 @@ public class ConnectionTesterThread implements Runnable {
 		this.idleConnectionTestPeriodInMs = idleConnectionTestPeriodInMs;
 		this.pool = pool;
 		this.lifoMode = lifoMode;
+		this.clock = BoneCP.getClock(pool);
 	}
 
 
@@ -70,6 +73,9 @@ public class ConnectionTesterThread implements Runnable {
 		ConnectionHandle connection = null;
 		long tmp;
 		try {
+				if (this.partition.isRetired()){
+					return; // pool has been repartitioned, idle connections have moved on.
+				}
 				long nextCheckInMs = this.idleConnectionTestPeriodInMs;
 				if (this.idleMaxAgeInMs > 0){
 					if (this.idleConnectionTestPeriodInMs == 0){
@@ -80,7 +86,7 @@ public class ConnectionTesterThread implements Runnable {
 				}
 				
 				int partitionSize= this.partition.getAvailableConnections();
-				long currentTimeInMs = System.currentTimeMillis();
+				long currentTimeInMs = this.clock.currentTimeMillis();
 				// go thru all partitions
 				for (int i=0; i < partitionSize; i++){
 					// grab connections one by one.
@@ -90,7 +96,7 @@ public class ConnectionTesterThread implements Runnable {
 						
 						// check if connection has been idle for too long (or is marked as broken)
 						if (connection.isPossiblyBroken() || 
-								((this.idleMaxAgeInMs > 0) && ( System.currentTimeMillis()-connection.getConnectionLastUsedInMs() > this.idleMaxAgeInMs))){
+								((this.idleMaxAgeInMs > 0) && ( this.clock.currentTimeMillis()-connection.getConnectionLastUsedInMs() > this.idleMaxAgeInMs))){
 							// kill off this connection - it's broken or it has been idle for too long
 							closeConnection(connection);
 							continue;
@@ -124,7 +130,7 @@ public class ConnectionTesterThread implements Runnable {
 						
 						if (this.lifoMode){
 							// we can't put it back normally or it will end up in front again.
-							if (!(connection.getOriginatingPartition().getFreeConnections().offer(connection))){
+							if (!(connection.getOriginatingPartition().putFreeConnection(connection))){
 								connection.internalClose();
 							}
 						} else {
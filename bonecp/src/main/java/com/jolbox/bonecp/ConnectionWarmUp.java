@@ -0,0 +1,39 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+
+/**
+ * Warms up a new connection before the pool hands it out, so that the first real query does not pay for lazy 
+ * initialization in the driver or plan compilation on the server. Runs on the thread opening the connection (the pool
+ * watch thread once the pool is up): the connection is only added to the pool once warmUp() returns. If it throws, 
+ * the connection is closed and treated as a failed attempt to connect.
+ * 
+ * Set via BoneCPConfig.setConnectionWarmUp(); by default DefaultConnectionWarmUp carries out the warmUpSQL, 
+ * warmUpStatements and warmUpMetadata settings.
+ * 
+ * @author wallacew
+ *
+ */
+public interface ConnectionWarmUp {
+
+	/** Warms up the given connection.
+	 * @param connection new connection, not yet handed out. Statements prepared on it are kept in its statement cache.
+	 * @throws SQLException on error, discarding the connection
+	 */
+	void warmUp(ConnectionHandle connection) throws SQLException;
+}
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool started by BoneCPDataSource for one username/password, along with the bookkeeping needed to shut it down
+ * again once it is no longer in use.
+ * 
+ * @author wallacew
+ *
+ */
+public class CredentialPool {
+	/** Datasource holding the pool. */
+	private final BoneCPDataSource dataSource;
+	/** Number of connections this pool accounts for in the budget shared across credentials. */
+	private final int reservedConnections;
+	/** Number of getConnection() calls in progress, -1 once the pool has been evicted. */
+	private final AtomicInteger requestsInProgress = new AtomicInteger();
+	/** Time of the last getConnection() call. */
+	private volatile long lastAccessInMs;
+
+	/** Constructor.
+	 * @param dataSource datasource holding the pool
+	 * @param reservedConnections number of connections the pool may hold
+	 * @param currentTimeInMs creation time
+	 */
+	public CredentialPool(BoneCPDataSource dataSource, int reservedConnections, long currentTimeInMs){
+		this.dataSource = dataSource;
+		this.reservedConnections = reservedConnections;
+		this.lastAccessInMs = currentTimeInMs;
+	}
+
+	/** Registers a getConnection() call, preventing the pool from being evicted until release() is called.
+	 * @param currentTimeInMs current time
+	 * @return false if the pool has already been evicted.
+	 */
+	protected boolean acquire(long currentTimeInMs){
+		int requests;
+		do {
+			requests = this.requestsInProgress.get();
+			if (requests < 0){
+				return false;
+			}
+		} while (!this.requestsInProgress.compareAndSet(requests, requests + 1));
+		this.lastAccessInMs = currentTimeInMs;
+		return true;
+	}
+
+	/** Signals that a getConnection() call registered via acquire() has completed. */
+	protected void release(){
+		this.requestsInProgress.decrementAndGet();
+	}
+
+	/** Marks the pool as evicted, unless it has connections in use or requests in progress. Once this returns true,
+	 * acquire() fails and the caller is responsible for shutting down the pool.
+	 * @return true if the pool may be shut down.
+	 */
+	protected boolean evict(){
+		if (!this.requestsInProgress.compareAndSet(0, -1)){
+			return false;
+		}
+		if (this.dataSource.getTotalLeased() > 0){
+			this.requestsInProgress.set(0); // still in use, back off.
+			return false;
+		}
+		return true;
+	}
+
+	/** Returns true if the pool has been evicted.
+	 * @return true if evicted
+	 */
+	protected boolean isEvicted(){
+		return this.requestsInProgress.get() < 0;
+	}
+
+	/** Returns the datasource holding the pool.
+	 * @return datasource
+	 */
+	public BoneCPDataSource getDataSource() {
+		return this.dataSource;
+	}
+
+	/** Returns the number of connections this pool accounts for in the budget shared across credentials.
+	 * @return reserved connections
+	 */
+	public int getReservedConnections() {
+		return this.reservedConnections;
+	}
+
+	/** Returns the time of the last getConnection() call.
+	 * @return last access time in ms
+	 */
+	public long getLastAccessInMs() {
+		return this.lastAccessInMs;
+	}
+}
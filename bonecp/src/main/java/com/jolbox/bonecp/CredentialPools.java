@@ -0,0 +1,257 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pools BoneCPDataSource starts for getConnection(username, password), one per distinct username/password. 
+ * The pools may be bounded by a connection budget shared between them (maxConnectionsAcrossCredentials) and are shut
+ * down again after being idle for a while (credentialPoolIdleTimeout), closing their connections and threads.
+ * 
+ * @author wallacew
+ *
+ */
+public class CredentialPools implements Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(CredentialPools.class);
+	/** Config the pools are created from. */
+	private final BoneCPConfig config;
+	/** Pools by username/password. */
+	private final Map<UsernamePassword, CredentialPool> pools = new ConcurrentHashMap<UsernamePassword, CredentialPool>();
+	/** Max number of connections across all pools, 0 = no limit. */
+	private final int maxConnections;
+	/** Pools not used for this long are shut down, 0 = never. */
+	private final long idleTimeoutInMs;
+	/** Clock to measure idle time with. */
+	private final PoolClock clock;
+	/** Runs the idle check. */
+	private ScheduledExecutorService evictionScheduler;
+	/** Number of connections accounted for by the current pools. Guarded by this. */
+	private int reservedConnections;
+	/** Set once close() has been called. */
+	private volatile boolean closed;
+
+	/** Constructor.
+	 * @param config config the pools are created from
+	 */
+	public CredentialPools(BoneCPConfig config){
+		this.config = config;
+		this.maxConnections = config.getMaxConnectionsAcrossCredentials();
+		this.idleTimeoutInMs = config.getCredentialPoolIdleTimeoutInMs();
+		this.clock = config.getClock() != null ? config.getClock() : SystemClock.INSTANCE;
+		if (this.idleTimeoutInMs > 0){
+			String suffix = config.getPoolName() != null ? "-" + config.getPoolName() : "";
+			long period = Math.max(1, this.idleTimeoutInMs / 2);
+			this.evictionScheduler = Executors.newScheduledThreadPool(1, new CustomThreadFactory("BoneCP-credential-pool-eviction-thread"+suffix, true));
+			this.evictionScheduler.scheduleWithFixedDelay(this, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/** Obtains a connection from the pool for the given username/password, starting the pool if need be.
+	 * @param username username
+	 * @param password password
+	 * @return a connection
+	 * @throws SQLException if the pool could not be started or did not return a connection
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		UsernamePassword key = new UsernamePassword(username, password);
+		while (true){
+			CredentialPool pool = this.pools.get(key);
+			if (pool == null){
+				pool = createPool(key);
+			}
+			if (pool.acquire(this.clock.currentTimeMillis())){
+				try {
+					return pool.getDataSource().getConnection();
+				} finally {
+					pool.release();
+				}
+			}
+			// evicted in the meantime, start over.
+		}
+	}
+
+	/** Starts a pool for the given username/password, evicting idle pools if the budget does not allow for it.
+	 * @param key username/password
+	 * @return pool
+	 * @throws SQLException if there is no room for another pool
+	 */
+	protected CredentialPool createPool(UsernamePassword key) throws SQLException {
+		List<CredentialPool> evicted = new ArrayList<CredentialPool>();
+		try {
+			return startPool(key, evicted);
+		} finally {
+			for (CredentialPool pool: evicted){
+				shutdown(pool); // outside the lock, closing connections may take a while.
+			}
+		}
+	}
+
+	/** Registers a pool for the given username/password, removing idle pools if the budget does not allow for it.
+	 * @param key username/password
+	 * @param evicted pools removed to make room, to be shut down by the caller
+	 * @return pool
+	 * @throws SQLException if there is no room for another pool
+	 */
+	private synchronized CredentialPool startPool(UsernamePassword key, List<CredentialPool> evicted) throws SQLException {
+		if (this.closed){
+			throw new SQLException("Datasource has been closed.");
+		}
+		CredentialPool pool = this.pools.get(key);
+		if (pool != null){
+			return pool; // someone beat us to it.
+		}
+		BoneCPDataSource dataSource = new BoneCPDataSource(this.config);
+		dataSource.setUsername(key.getUsername());
+		dataSource.setPassword(key.getPassword());
+		if (this.config.getPoolName() != null){
+			dataSource.setPoolName(this.config.getPoolName() + "-" + key.getUsername());
+		}
+		int required = dataSource.getPartitionCount() * dataSource.getMaxConnectionsPerPartition();
+		if (this.maxConnections > 0){
+			while (this.reservedConnections + required > this.maxConnections){
+				if (!evictLeastRecentlyUsed(evicted)){
+					// 08004 = The application server rejected establishment of the connection.
+					throw new SQLException("Unable to start a pool for user " + key.getUsername() + ": " + this.reservedConnections + " of the " 
+							+ this.maxConnections + " connections shared across credentials are held by pools in use.", "08004");
+				}
+			}
+		}
+		pool = new CredentialPool(dataSource, required, this.clock.currentTimeMillis());
+		this.reservedConnections += required;
+		this.pools.put(key, pool);
+		return pool;
+	}
+
+	/** Removes the least recently used pool that has no connections in use.
+	 * @param evicted the removed pool is added here, to be shut down by the caller
+	 * @return false if every pool is in use.
+	 */
+	private boolean evictLeastRecentlyUsed(List<CredentialPool> evicted){
+		Set<UsernamePassword> tried = new HashSet<UsernamePassword>();
+		while (true){
+			Entry<UsernamePassword, CredentialPool> candidate = null;
+			for (Entry<UsernamePassword, CredentialPool> entry: this.pools.entrySet()){
+				if (tried.contains(entry.getKey()) || entry.getValue().getDataSource().getTotalLeased() > 0){
+					continue;
+				}
+				if (candidate == null || entry.getValue().getLastAccessInMs() < candidate.getValue().getLastAccessInMs()){
+					candidate = entry;
+				}
+			}
+			if (candidate == null){
+				return false;
+			}
+			if (evict(candidate.getKey(), candidate.getValue())){
+				evicted.add(candidate.getValue());
+				return true;
+			}
+			// a request is in progress on it, try the next one rather than wait for it while holding the lock.
+			tried.add(candidate.getKey());
+		}
+	}
+
+	/** Removes the given pool unless it is in use. The caller shuts it down once it no longer holds the lock.
+	 * @param key username/password
+	 * @param pool pool
+	 * @return true if the pool has been removed
+	 */
+	private synchronized boolean evict(UsernamePassword key, CredentialPool pool){
+		if (!pool.evict()){
+			return false;
+		}
+		this.pools.remove(key);
+		this.reservedConnections -= pool.getReservedConnections();
+		logger.debug("Shutting down pool for user " + key.getUsername());
+		return true;
+	}
+
+	/** Closes the connections and threads of a pool that has been removed.
+	 * @param pool pool
+	 */
+	private void shutdown(CredentialPool pool){
+		pool.getDataSource().close();
+	}
+
+	/** Shuts down pools that have been idle for longer than credentialPoolIdleTimeout. */
+	public void run() {
+		try {
+			long now = this.clock.currentTimeMillis();
+			for (Entry<UsernamePassword, CredentialPool> entry: this.pools.entrySet()){
+				if (now - entry.getValue().getLastAccessInMs() >= this.idleTimeoutInMs && evict(entry.getKey(), entry.getValue())){
+					shutdown(entry.getValue());
+				}
+			}
+		} catch (Throwable t) {
+			logger.error("Error while shutting down idle pools", t);
+		}
+	}
+
+	/** Returns the number of pools currently running.
+	 * @return number of pools
+	 */
+	public int size(){
+		return this.pools.size();
+	}
+
+	/** Returns the number of connections accounted for by the pools currently running.
+	 * @return reserved connections
+	 */
+	public synchronized int getReservedConnections(){
+		return this.reservedConnections;
+	}
+
+	/** Returns the pool for the given username/password, if running.
+	 * @param username username
+	 * @param password password
+	 * @return pool or null
+	 */
+	public CredentialPool getPool(String username, String password){
+		return this.pools.get(new UsernamePassword(username, password));
+	}
+
+	/** Shuts down all pools and the idle check. */
+	public void close(){
+		List<CredentialPool> closing;
+		synchronized (this) {
+			this.closed = true;
+			if (this.evictionScheduler != null){
+				this.evictionScheduler.shutdownNow();
+			}
+			closing = new ArrayList<CredentialPool>(this.pools.values());
+			this.pools.clear();
+			this.reservedConnections = 0;
+		}
+		for (CredentialPool pool: closing){
+			shutdown(pool);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a connection failure classified as FailureScope.DATABASE really means the database is down before 
+ * the whole pool is flushed. A sample of up to failureValidationSampleSize idle connections is taken out of the pool 
+ * and validated in parallel: only if none of them passes (or, with no idle connection at hand, a new connection cannot
+ * be opened either) is the database flagged as down and every connection terminated. Otherwise only the connections
+ * that failed validation are evicted and the rest go back to the pool. A connection that has not passed within
+ * failureValidationTimeout counts as failed.
+ * 
+ * Runs in the background, one check at a time: failures reported while a check is in progress only evict their own 
+ * connection.
+ *
+ * @author wallacew
+ */
+public class DatabaseFailureValidator implements Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(DatabaseFailureValidator.class);
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Max number of idle connections to validate. */
+	private final int sampleSize;
+	/** Time allowed for the validations. */
+	private final long timeoutInMs;
+	/** Runs the check and the validations. */
+	private final ExecutorService executor;
+	/** Set while a check is in progress. */
+	private final AtomicBoolean inProgress = new AtomicBoolean();
+
+	/** Constructor.
+	 * @param pool pool handle
+	 * @param sampleSize max number of idle connections to validate
+	 * @param timeoutInMs time allowed for the validations
+	 * @param executor runs the check and the validations
+	 */
+	public DatabaseFailureValidator(BoneCP pool, int sampleSize, long timeoutInMs, ExecutorService executor){
+		this.pool = pool;
+		this.sampleSize = sampleSize;
+		this.timeoutInMs = timeoutInMs;
+		this.executor = executor;
+	}
+
+	/** Starts a check in the background unless one is in progress already. */
+	public void check(){
+		if (this.inProgress.compareAndSet(false, true)){
+			try {
+				this.executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				this.inProgress.set(false); // shutting down
+			}
+		}
+	}
+
+	// @Override
+	public void run() {
+		try {
+			validate();
+		} catch (Throwable t) {
+			logger.error("Error while validating connections after a database failure", t);
+		} finally {
+			this.inProgress.set(false);
+		}
+	}
+
+	/** Validates a sample of idle connections, evicting those that fail and flagging the database as down if none 
+	 * pass.
+	 * @return true if the database was found to be down
+	 */
+	protected boolean validate(){
+		List<ConnectionHandle> sample = takeSample();
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(sample.size());
+		for (final ConnectionHandle connection: sample){
+			results.add(this.executor.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return isAlive(connection.getInternalConnection());
+				}
+			}));
+		}
+
+		int alive = 0;
+		List<ConnectionHandle> passed = new ArrayList<ConnectionHandle>(sample.size());
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutInMs);
+		for (int i=0; i < sample.size(); i++){
+			ConnectionHandle connection = sample.get(i);
+			if (isAlive(results.get(i), deadline)){
+				alive++;
+				passed.add(connection);
+			} else {
+				this.pool.destroyConnection(connection);
+			}
+		}
+
+		boolean databaseDown = sample.isEmpty() ? !canConnect() : alive == 0;
+		if (databaseDown){
+			if (this.pool.getDbIsDown().compareAndSet(false, true)){
+				logger.error("Database access problem confirmed ("+sample.size()+" idle connections failed validation). Killing off all remaining connections in the connection pool.");
+				this.pool.connectionStrategy.terminateAllConnections();
+			}
+		} else {
+			logger.warn("Connection failure did not affect the database as a whole: "+(sample.size()-alive)+" of "+sample.size()+" sampled idle connections failed validation and were evicted.");
+			for (ConnectionHandle connection: passed){
+				connection.setConnectionLastResetInMs(BoneCP.getClock(this.pool).currentTimeMillis());
+				if (!this.pool.offerFreeConnection(connection)){
+					this.pool.destroyConnection(connection);
+				}
+			}
+		}
+		this.pool.signalAllPartitions(); // refill whatever was evicted.
+		return databaseDown;
+	}
+
+	/** Takes up to sampleSize idle connections out of the pool, spread across the partitions.
+	 * @return sampled connections
+	 */
+	private List<ConnectionHandle> takeSample(){
+		List<ConnectionHandle> result = new ArrayList<ConnectionHandle>(this.sampleSize);
+		ConnectionPartition[] partitions = this.pool.partitions;
+		boolean found = true;
+		while (found && result.size() < this.sampleSize){
+			found = false;
+			for (int i=0; i < partitions.length && result.size() < this.sampleSize; i++){
+				ConnectionHandle connection = partitions[i] == null ? null : partitions[i].getFreeConnections().poll();
+				if (connection != null){
+					result.add(connection);
+					found = true;
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Sends the connection test statement (or a metadata call) on the raw connection. Not done via the handle so as not
+	 * to have failures reported back to markPossiblyBroken.
+	 * @param connection raw connection
+	 * @return true if the connection works
+	 */
+	protected boolean isAlive(Connection connection){
+		String testStatement = this.pool.getConfig().getConnectionTestStatement();
+		try {
+			if (testStatement == null){
+				connection.getMetaData().getTables(null, null, "BONECPKEEPALIVE", new String[] {"TABLE"}).close();
+			} else {
+				Statement stmt = connection.createStatement();
+				try {
+					stmt.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(this.timeoutInMs + 999)));
+					stmt.execute(testStatement);
+				} finally {
+					stmt.close();
+				}
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/** Returns the outcome of a validation, waiting for it no longer than the given deadline.
+	 * @param result pending validation
+	 * @param deadline System.nanoTime() by which the validation has to be done
+	 * @return true if the connection passed
+	 */
+	private boolean isAlive(Future<Boolean> result, long deadline){
+		try {
+			return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		} catch (TimeoutException e) {
+			result.cancel(true); // the connection is destroyed, which should release the validation as well.
+			return false;
+		}
+	}
+
+	/** Tries to open a new connection, for when there are no idle connections to validate.
+	 * @return true if the database accepted the connection
+	 */
+	private boolean canConnect(){
+		try {
+			Connection connection = this.pool.obtainRawInternalConnection();
+			connection.close();
+			return true;
+		} catch (SQLException e) {
+			logger.debug("Unable to open a connection while validating a database failure", e);
+			return false;
+		}
+	}
+}
@@ -31,6 +31,8 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 
 	/** uid */
 	private static final long serialVersionUID = 962520166486807512L;
+	/** How long a waiting thread blocks before checking whether its partition was retired by a repartition. */
+	protected static final long RETIRED_PARTITION_CHECK_INTERVAL_IN_MS = 100;
 
 	public DefaultConnectionStrategy(BoneCP pool){
 		this.pool = pool;
@@ -40,21 +42,22 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
   public ConnectionHandle pollConnection(){
     ConnectionHandle result = null;
 
-    int partition = (int) (Thread.currentThread().getId() % this.pool.partitionCount);
-    ConnectionPartition connectionPartition = this.pool.partitions[partition];
+    ConnectionPartition[] partitions = this.pool.partitions; // may be swapped by a repartition
+    int partition = (int) (Thread.currentThread().getId() % partitions.length);
+    ConnectionPartition connectionPartition = partitions[partition];
     
     result = connectionPartition.getFreeConnections().poll();
 
     if (result == null) {
       // we ran out of space on this partition, pick another free one
-      for (int i=0; i < this.pool.partitionCount; i++){
+      for (int i=0; i < partitions.length; i++){
         if (i == partition) {
           continue; // we already determined it's not here
         }
-        result = this.pool.partitions[i].getFreeConnections().poll(); // try our luck with this partition
+        result = partitions[i].getFreeConnections().poll(); // try our luck with this partition
        
         if (result != null) {
-          connectionPartition = this.pool.partitions[i]; // we found it here
+          connectionPartition = partitions[i]; // we found it here
           break;  // we found a connection
         }
       }
@@ -75,11 +78,31 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 		
 		// we still didn't find an empty one, wait forever (or as per config) until our partition is free
 		if (result == null) {
-			int partition = (int) (Thread.currentThread().getId() % this.pool.partitionCount);
-			ConnectionPartition connectionPartition = this.pool.partitions[partition];
+			CircuitBreaker circuitBreaker = this.pool.circuitBreaker;
+			if (circuitBreaker != null && !circuitBreaker.allowRequest()){
+				throw circuitBreaker.newOpenException(); // don't wait for a connection that won't come.
+			}
+			ConnectionPartition[] partitions = this.pool.partitions;
+			ConnectionPartition connectionPartition = partitions[(int) (Thread.currentThread().getId() % partitions.length)];
 
 			try {
-				result = connectionPartition.getFreeConnections().poll(this.pool.connectionTimeoutInMs, TimeUnit.MILLISECONDS);
+				// wait in slices: once a repartition retires our partition, connections are only ever returned to its successor.
+				long checkIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(RETIRED_PARTITION_CHECK_INTERVAL_IN_MS);
+				long remainingInNanos = TimeUnit.MILLISECONDS.toNanos(this.pool.connectionTimeoutInMs);
+				long lastCheck = System.nanoTime();
+				while (true){
+					long waitInMs = remainingInNanos >= checkIntervalInNanos ? RETIRED_PARTITION_CHECK_INTERVAL_IN_MS : TimeUnit.NANOSECONDS.toMillis(remainingInNanos + 999999L);
+					result = connectionPartition.getFreeConnections().poll(waitInMs, TimeUnit.MILLISECONDS);
+					long now = System.nanoTime();
+					remainingInNanos -= now - lastCheck;
+					lastCheck = now;
+					if (result != null || remainingInNanos <= 0){
+						break;
+					}
+					if (connectionPartition.isRetired()){
+						connectionPartition = connectionPartition.getSuccessor();
+					}
+				}
 				if (result == null){
 					if (this.pool.nullOnConnectionTimeout){
 						return null;
@@ -104,10 +127,15 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 		this.terminationLock.lock();
 		try{
 			// close off all connections.
-			for (int i=0; i < this.pool.partitionCount; i++) {
-				this.pool.partitions[i].setUnableToCreateMoreTransactions(false); // we can create new ones now, this is an optimization
+			ConnectionPartition[] partitions = this.pool.partitions;
+			for (int i=0; i < this.pool.partitionCount && i < partitions.length; i++) {
+				ConnectionPartition partition = partitions[i];
+				if (partition == null){
+					continue; // pool is still being constructed.
+				}
+				partition.setUnableToCreateMoreTransactions(false); // we can create new ones now, this is an optimization
 				List<ConnectionHandle> clist = new LinkedList<ConnectionHandle>(); 
-				this.pool.partitions[i].getFreeConnections().drainTo(clist);
+				partition.getFreeConnections().drainTo(clist);
 				for (ConnectionHandle c: clist){
 					this.pool.destroyConnection(c);
 				}
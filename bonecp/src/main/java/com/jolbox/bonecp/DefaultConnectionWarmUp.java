@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Carries out the warm-up configured via BoneCPConfig: runs warmUpSQL, prepares each of the warmUpStatements so 
+ * that they sit in the connection's statement cache, and if warmUpMetadata is set, fetches the database metadata the 
+ * driver tends to load lazily. Custom warm-ups can extend this class and call super.warmUp() to keep these steps.
+ * 
+ * @author wallacew
+ *
+ */
+public class DefaultConnectionWarmUp implements ConnectionWarmUp {
+
+	/** Returns true if the given config asks for any of the warm-up steps carried out by this class.
+	 * @param config config to check
+	 * @return true if there is something to warm up
+	 */
+	public static boolean isConfigured(BoneCPConfig config){
+		return config.getWarmUpSQL() != null || config.getWarmUpStatements() != null || config.isWarmUpMetadata();
+	}
+
+	// @Override
+	public void warmUp(ConnectionHandle connection) throws SQLException {
+		BoneCPConfig config = connection.getPool().getConfig();
+		if (config.getWarmUpSQL() != null){
+			Statement stmt = connection.getInternalConnection().createStatement();
+			try {
+				stmt.execute(config.getWarmUpSQL());
+			} finally {
+				stmt.close();
+			}
+		}
+
+		if (config.getWarmUpStatements() != null && connection.statementCachingEnabled){
+			for (String sql: config.getWarmUpStatements().split(";")){
+				sql = sql.trim();
+				if (sql.length() > 0){
+					PreparedStatement stmt = connection.prepareStatement(sql);
+					stmt.close(); // back into the statement cache.
+				}
+			}
+		}
+
+		if (config.isWarmUpMetadata()){
+			DatabaseMetaData metaData = connection.getInternalConnection().getMetaData();
+			metaData.getDatabaseProductName();
+			metaData.getDatabaseProductVersion();
+			metaData.getDriverVersion();
+			metaData.getIdentifierQuoteString();
+			metaData.supportsBatchUpdates();
+			metaData.getDefaultTransactionIsolation();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.net.SocketException;
+import java.sql.SQLException;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * SQLStateClassifier with rules that hold for most drivers: a set of SQLStates that point to the database being
+ * down (by default 08001, 08006, 08007, 08S01, 57P01 and HY000), while a closed connection (08003) or a socket error 
+ * only concern the connection. Vendor specific classifiers can pass their own set of database failure codes or 
+ * override classify().
+ * 
+ * @author wallacew
+ *
+ */
+public class DefaultSQLStateClassifier implements SQLStateClassifier {
+	/** Database failure codes used by default. Note: 08S01 is considered as connection failure in MySQL, 57P01 means 
+	 * that postgresql was restarted, HY000 is firebird specific triggered when a connection is broken. */
+	public static final Set<String> DEFAULT_DATABASE_FAILURE_CODES = ImmutableSet.of("08001", "08006", "08007", "08S01", "57P01", "HY000");
+	/** Classifier with the default rules. */
+	public static final DefaultSQLStateClassifier INSTANCE = new DefaultSQLStateClassifier();
+	/** SQLStates that point to the database being down. */
+	private final Set<String> databaseFailureCodes;
+
+	/** Constructor using the default database failure codes. */
+	public DefaultSQLStateClassifier(){
+		this(DEFAULT_DATABASE_FAILURE_CODES);
+	}
+
+	/** Constructor.
+	 * @param databaseFailureCodes SQLStates that point to the database being down
+	 */
+	public DefaultSQLStateClassifier(Set<String> databaseFailureCodes){
+		this.databaseFailureCodes = ImmutableSet.copyOf(databaseFailureCodes);
+	}
+
+	// @Override
+	public FailureScope classify(String sqlState, SQLException e) {
+		if (this.databaseFailureCodes.contains(sqlState)){
+			return FailureScope.DATABASE;
+		}
+		if (sqlState.equals("08003") || e.getCause() instanceof SocketException){
+			return FailureScope.CONNECTION;
+		}
+		return FailureScope.NONE;
+	}
+
+	/** Returns the SQLStates that point to the database being down.
+	 * @return databaseFailureCodes
+	 */
+	public Set<String> getDatabaseFailureCodes() {
+		return this.databaseFailureCodes;
+	}
+}
@@ -0,0 +1,489 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+// #ifdef JDK>6
+import java.sql.SQLFeatureNotSupportedException;
+// #endif JDK>6
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * DataSource that fails over between an ordered list of databases. Connections are taken from a pool against the 
+ * first database that is up, while a small standby pool is kept open against the next one in the list. Once the 
+ * active pool flags its database as down (see ConnectionHandle.markPossiblyBroken) or cannot connect to it at all, 
+ * the standby pool is grown to full size and takes over right away, without waiting for the active pool to exhaust 
+ * its acquire retries. A pool that is merely busy, i.e. times out waiting for a free connection or has its circuit 
+ * breaker open, does not cause a failover.
+ * 
+ * A background probe periodically opens a single raw connection (no pool) to each database earlier in the list and, once one is reachable again, 
+ * fails back to it, shrinking the pool it takes over from back to a standby pool.
+ *
+ * @author wallacew
+ */
+public class FailoverDataSource implements DataSource, Closeable {
+	/** Class logger. */ 
+	private static final Logger logger = LoggerFactory.getLogger(FailoverDataSource.class);
+	/** Config the pools are created from. */
+	private final BoneCPConfig config;
+	/** Databases in order of preference. */
+	private final String[] jdbcUrls;
+	/** Pools by position in jdbcUrls, null if not running. Guarded by this. */
+	private final BoneCPDataSource[] pools;
+	/** Database in use, null if not started. */
+	private volatile ActiveDatabase active;
+	/** Number of connections kept open by the standby pool. */
+	private volatile int standbyConnections = 1;
+	/** Time between checks for fail-back. */
+	private volatile long failbackProbeIntervalInMs = 10000;
+	/** Runs the fail-back probe and warms up standby pools. */
+	private ScheduledExecutorService probeScheduler;
+	/** Set once close() has been called. */
+	private volatile boolean closed;
+	/** Config setting. */
+	private PrintWriter logWriter = null;
+
+	/** Constructor.
+	 * @param config config the pools are created from (the jdbcUrl set in it is ignored)
+	 * @param jdbcUrls databases in order of preference
+	 */
+	public FailoverDataSource(BoneCPConfig config, List<String> jdbcUrls){
+		Preconditions.checkArgument(!jdbcUrls.isEmpty(), "At least one jdbcUrl is required");
+		this.config = config;
+		this.jdbcUrls = jdbcUrls.toArray(new String[jdbcUrls.size()]);
+		this.pools = new BoneCPDataSource[this.jdbcUrls.length];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see javax.sql.DataSource#getConnection()
+	 */
+	public Connection getConnection() throws SQLException {
+		ActiveDatabase current = this.active;
+		if (current == null){
+			current = start();
+		}
+		if (isDown(current.pool)){
+			current = failover(current.position);
+			if (current == null){
+				current = start(); // closed in the meantime
+			}
+		}
+		try {
+			return current.pool.getConnection();
+		} catch (SQLException e) {
+			// a timeout waiting for a free connection or an open circuit breaker only says the pool is busy.
+			if (!isDown(current.pool) && current.pool.getPool() != null){
+				throw e;
+			}
+			logger.warn("Unable to obtain a connection from " + this.jdbcUrls[current.position], e);
+			ActiveDatabase failedOver = failover(current.position);
+			if (failedOver == null || failedOver.pool == current.pool){
+				throw e;
+			}
+			return failedOver.pool.getConnection();
+		}
+	}
+
+	/** Returns true if the given pool has flagged its database as down.
+	 * @param pool pool to check
+	 * @return true if the database is down
+	 */
+	private boolean isDown(BoneCPDataSource pool){
+		BoneCP bonecp = pool.getPool();
+		return bonecp != null && bonecp.getDbIsDown().get();
+	}
+
+	/** Starts the pool against the first database that is up, along with the standby pool and the fail-back probe.
+	 * @return database in use
+	 * @throws SQLException if no database is reachable
+	 */
+	protected synchronized ActiveDatabase start() throws SQLException {
+		if (this.closed){
+			throw new SQLException("Datasource has been closed.");
+		}
+		if (this.active == null){
+			String suffix = this.config.getPoolName() != null ? "-" + this.config.getPoolName() : "";
+			this.probeScheduler = Executors.newScheduledThreadPool(1, new CustomThreadFactory("BoneCP-failover-probe-thread"+suffix, true));
+			this.probeScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					probe();
+				}
+			}, this.failbackProbeIntervalInMs, this.failbackProbeIntervalInMs, TimeUnit.MILLISECONDS);
+			switchTo(-1, 0);
+			if (this.active == null){
+				throw new SQLException("Unable to connect to any of the configured databases.", "08001");
+			}
+		}
+		return this.active;
+	}
+
+	/** Switches away from the given database after it has been found down.
+	 * @param failed position of the database found down
+	 * @return the database now in use, null if closed
+	 */
+	protected synchronized ActiveDatabase failover(int failed){
+		if (this.active != null && failed == this.active.position && !this.closed){
+			logger.error("Database " + this.jdbcUrls[failed] + " is down, failing over");
+			switchTo(failed, failed + 1);
+		}
+		return this.active;
+	}
+
+	/** Switches to the first database from the given position onwards that is reachable. If none is, the current
+	 * pool stays in use.
+	 * @param failed position of the database found down, or -1
+	 * @param from position to start looking from
+	 */
+	private void switchTo(int failed, int from){
+		for (int i=from; i < this.jdbcUrls.length; i++){
+			if (i == failed){
+				continue;
+			}
+			try {
+				activate(i);
+				if (failed >= 0){
+					close(failed); // its pool would keep retrying in vain, the probe watches for it instead.
+				}
+				return;
+			} catch (SQLException e) {
+				logger.error("Unable to connect to " + this.jdbcUrls[i], e);
+			}
+		}
+	}
+
+	/** Makes the given database the one in use: its pool is started or grown to full size, the next database in the
+	 * list gets a standby pool and all others are shut down.
+	 * @param position position of the database
+	 * @throws SQLException if the database is not reachable
+	 */
+	private void activate(int position) throws SQLException {
+		BoneCPDataSource pool = this.pools[position];
+		if (pool != null && pool.getPool() != null && !isDown(pool)){
+			BoneCP bonecp = pool.getPool();
+			bonecp.repartition(this.config.getPartitionCount());
+			bonecp.resize(this.config.getMinConnectionsPerPartition(), this.config.getMaxConnectionsPerPartition());
+		} else {
+			close(position);
+			pool = createPool(position, false);
+			pool.getConnection().close(); // throws if the database is not reachable.
+			this.pools[position] = pool;
+		}
+		int previous = this.active != null ? this.active.position : -1;
+		this.active = new ActiveDatabase(position, pool);
+		logger.info("Using database " + this.jdbcUrls[position]);
+
+		final int standby = position + 1;
+		for (int i=0; i < this.jdbcUrls.length; i++){
+			if (i != position && i != standby && i != previous){
+				close(i);
+			}
+		}
+		if (previous >= 0 && previous != position && previous != standby){
+			close(previous);
+		}
+		if (standby < this.jdbcUrls.length){
+			BoneCPDataSource standbyPool = this.pools[standby];
+			if (standbyPool != null && standbyPool.getPool() != null){
+				shrinkToStandby(standbyPool.getPool());
+			} else {
+				try {
+					this.probeScheduler.execute(new Runnable() {
+						public void run() {
+							warmStandby(standby);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// shutting down
+				}
+			}
+		}
+	}
+
+	/** Shrinks a pool down to a standby pool.
+	 * @param pool pool to shrink
+	 */
+	private void shrinkToStandby(BoneCP pool){
+		try {
+			pool.repartition(1);
+		} catch (SQLException e) {
+			logger.debug("Unable to repartition standby pool", e);
+		}
+		pool.resize(this.standbyConnections, this.standbyConnections);
+	}
+
+	/** Opens the standby pool against the database at the given position, unless it is running already.
+	 * @param position position of the database
+	 */
+	protected void warmStandby(int position){
+		BoneCPDataSource pool;
+		synchronized (this) {
+			if (this.closed || this.pools[position] != null || this.active == null || position != this.active.position + 1){
+				return;
+			}
+			pool = createPool(position, true);
+			this.pools[position] = pool;
+		}
+		try {
+			pool.getConnection().close();
+			logger.debug("Standby pool against " + this.jdbcUrls[position] + " is ready");
+		} catch (SQLException e) {
+			logger.warn("Unable to open standby pool against " + this.jdbcUrls[position], e);
+			synchronized (this) {
+				if (this.pools[position] == pool){
+					close(position);
+				}
+			}
+		}
+	}
+
+	/** Checks whether a database earlier in the list than the one in use is reachable again, and fails back to it if so. */
+	protected void probe(){
+		try {
+			ActiveDatabase current = this.active;
+			if (current == null){
+				return;
+			}
+			for (int i=0; i < current.position; i++){
+				try {
+					connect(i);
+				} catch (SQLException e) {
+					logger.debug("Database " + this.jdbcUrls[i] + " is still down");
+					continue;
+				}
+				synchronized (this) {
+					if (!this.closed && this.active == current){
+						logger.info("Database " + this.jdbcUrls[i] + " is reachable again, failing back");
+						switchTo(-1, i);
+					}
+				}
+				return;
+			}
+		} catch (Throwable t) {
+			logger.error("Error while probing databases for fail-back", t);
+		}
+	}
+
+	/** Opens and closes a single connection to the database at the given position, without starting a pool.
+	 * @param position position of the database
+	 * @throws SQLException if the database is not reachable
+	 */
+	private void connect(int position) throws SQLException {
+		Properties props = this.config.getDriverProperties();
+		if (props == null && this.config.isExternalAuth()){
+			props = new Properties();
+		}
+		Connection connection = props != null ? DriverManager.getConnection(this.jdbcUrls[position], props) 
+				: DriverManager.getConnection(this.jdbcUrls[position], this.config.getUsername(), this.config.getPassword());
+		connection.close();
+	}
+
+	/** Creates a pool against the database at the given position.
+	 * @param position position of the database
+	 * @param standby true for a standby pool
+	 * @return pool, started on first getConnection()
+	 */
+	private BoneCPDataSource createPool(int position, boolean standby){
+		BoneCPDataSource pool = new BoneCPDataSource(this.config);
+		pool.setJdbcUrl(this.jdbcUrls[position]);
+		if (this.config.getPoolName() != null){
+			pool.setPoolName(this.config.getPoolName() + "-" + position);
+		}
+		if (standby){
+			pool.setPartitionCount(1);
+			pool.setMinConnectionsPerPartition(this.standbyConnections);
+			pool.setMaxConnectionsPerPartition(this.standbyConnections);
+		}
+		return pool;
+	}
+
+	/** Shuts down the pool at the given position, if running.
+	 * @param position position of the database
+	 */
+	private void close(int position){
+		if (this.pools[position] != null){
+			this.pools[position].close();
+			this.pools[position] = null;
+		}
+	}
+
+	/** Shuts down all pools and the fail-back probe. */
+	public synchronized void close(){
+		this.closed = true;
+		if (this.probeScheduler != null){
+			this.probeScheduler.shutdownNow();
+		}
+		for (int i=0; i < this.pools.length; i++){
+			close(i);
+		}
+		this.active = null;
+	}
+
+	/** Returns the position in the list of the database in use.
+	 * @return position, or -1 if not started
+	 */
+	public int getActive() {
+		ActiveDatabase current = this.active;
+		return current != null ? current.position : -1;
+	}
+
+	/** Returns the pool against the database at the given position.
+	 * @param position position of the database
+	 * @return pool, or null if not running
+	 */
+	public synchronized BoneCPDataSource getPool(int position) {
+		return this.pools[position];
+	}
+
+	/** Returns the standbyConnections setting.
+	 * @return standbyConnections
+	 */
+	public int getStandbyConnections() {
+		return this.standbyConnections;
+	}
+
+	/** Sets the number of connections kept open against the next database in the list. Default: 1.
+	 * @param standbyConnections the standbyConnections to set
+	 */
+	public void setStandbyConnections(int standbyConnections) {
+		Preconditions.checkArgument(standbyConnections > 0, "standbyConnections must be > 0");
+		this.standbyConnections = standbyConnections;
+	}
+
+	/** Returns the failbackProbeInterval setting.
+	 * @param timeUnit time granularity
+	 * @return failbackProbeInterval
+	 */
+	public long getFailbackProbeInterval(TimeUnit timeUnit) {
+		return timeUnit.convert(this.failbackProbeIntervalInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Sets how often to check whether a database earlier in the list is reachable again. Takes effect when the 
+	 * datasource is started. Default: 10 seconds.
+	 * @param failbackProbeInterval the failbackProbeInterval to set
+	 * @param timeUnit time granularity
+	 */
+	public void setFailbackProbeInterval(long failbackProbeInterval, TimeUnit timeUnit) {
+		Preconditions.checkArgument(failbackProbeInterval > 0, "failbackProbeInterval must be > 0");
+		this.failbackProbeIntervalInMs = TimeUnit.MILLISECONDS.convert(failbackProbeInterval, timeUnit);
+	}
+
+	/**
+	 * Obtains a connection for the given user from the pool in use.
+	 *
+	 * @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String)
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		ActiveDatabase current = this.active;
+		if (current == null){
+			current = start();
+		}
+		return current.pool.getConnection(username, password);
+	}
+
+	/**
+	 * Retrieves the log writer for this DataSource object.
+	 * 
+	 */
+	public PrintWriter getLogWriter() throws SQLException {
+		return this.logWriter;
+	}
+
+	/** 
+	 * Sets the log writer for this DataSource object to the given java.io.PrintWriter object.
+	 */
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	/**
+	 * Unsupported.
+	 */
+	public int getLoginTimeout() throws SQLException {
+		throw new UnsupportedOperationException("getLoginTimeout is unsupported.");
+	}
+
+	/**
+	 * Unsupported.
+	 */
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new UnsupportedOperationException("setLoginTimeout is unsupported.");
+	}
+
+	// #ifdef JDK7 
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new UnsupportedOperationException("getParentLogger is unsupported");
+	}
+	// #endif JDK7 
+
+	/**
+	 * Returns true if this either implements the interface argument or is directly or indirectly a wrapper for an object that does.
+	 * @param arg0 class
+	 * @return t/f
+	 * @throws SQLException on error
+	 *
+	 */
+	public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+		return false;
+	}
+
+	/**
+	 * Returns an object that implements the given interface to allow access to non-standard methods, 
+	 * or standard methods not exposed by the proxy.
+	 * @param arg0 obj
+	 * @return unwrapped object
+	 * @throws SQLException 
+	 */
+	@SuppressWarnings("all")
+	public Object unwrap(Class arg0) throws SQLException {
+		return null;
+	}
+
+	/** The database in use along with its pool, so that readers never see the position of one with the pool of 
+	 * another. */
+	protected static final class ActiveDatabase {
+		/** Position of the database in the list. */
+		private final int position;
+		/** Pool against the database. */
+		private final BoneCPDataSource pool;
+
+		/** Constructor.
+		 * @param position position of the database in the list
+		 * @param pool pool against the database
+		 */
+		ActiveDatabase(int position, BoneCPDataSource pool){
+			this.position = position;
+			this.pool = pool;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * What an SQLException says about the health of the database, as decided by an SQLStateClassifier.
+ * 
+ * @author wallacew
+ *
+ */
+public enum FailureScope {
+	/** Nothing wrong with the connection or the database (e.g. a constraint violation). */
+	NONE,
+	/** The connection can no longer be used but the database is fine: only this connection is evicted. */
+	CONNECTION,
+	/** The database itself may be down: depending on failureValidationSampleSize, all connections are evicted 
+	 * straight away or only once a sample of idle connections fails validation too. */
+	DATABASE
+}
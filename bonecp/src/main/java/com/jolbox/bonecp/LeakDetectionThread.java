@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+import com.jolbox.bonecp.hooks.ConnectionHook;
+
+/**
+ * Keeps track of checked out connections and periodically reports those that have been held for longer than
+ * the configured leak detection threshold. Unlike closeConnectionWatch, this uses a single thread for the whole
+ * pool and only records a (cheap) Throwable on checkout; the stack trace is only rendered if a leak is reported.
+ *
+ * @author wallacew
+ *
+ */
+public class LeakDetectionThread implements Runnable {
+
+	/** Warning message. */
+	private static final String LEAK_MESSAGE = "Connection obtained from thread [%s] has not been closed after %d ms. Possible connection leak. Stack trace of location where connection was obtained follows:";
+	/** Connections currently checked out. Weakly held so that a handle the application dropped without closing 
+	 * can still be garbage collected (and its connection reclaimed by the pool's finalizable references). */
+	private final ConcurrentMap<ConnectionHandle, Boolean> checkedOut = new MapMaker().weakKeys().makeMap();
+	/** Connections held for longer than this are reported. */
+	private final long leakDetectionThresholdInMs;
+	/** Handle to connection pool. */
+	private BoneCP pool;
+	/** Pool clock. */
+	private PoolClock clock;
+	/** Logger handle. */
+	private static final Logger logger = LoggerFactory.getLogger(LeakDetectionThread.class);
+
+	/** Constructor.
+	 * @param pool pool handle
+	 * @param leakDetectionThresholdInMs connections held for longer than this are reported.
+	 */
+	protected LeakDetectionThread(BoneCP pool, long leakDetectionThresholdInMs){
+		this.pool = pool;
+		this.leakDetectionThresholdInMs = leakDetectionThresholdInMs;
+		this.clock = BoneCP.getClock(pool);
+	}
+
+	/** Starts tracking a connection that has just been handed out.
+	 * @param connectionHandle connection handed out
+	 */
+	protected void track(ConnectionHandle connectionHandle){
+		connectionHandle.checkoutTimeInMs = this.clock.currentTimeMillis();
+		// the stack trace is only filled in here, it's not turned into StackTraceElements unless we report it.
+		connectionHandle.checkoutLocation = new Throwable();
+		connectionHandle.leakReported = false;
+		this.checkedOut.put(connectionHandle, Boolean.TRUE);
+	}
+
+	/** Stops tracking a connection that has been closed by the application.
+	 * @param connectionHandle connection being closed
+	 */
+	protected void untrack(ConnectionHandle connectionHandle){
+		if (this.checkedOut.remove(connectionHandle) != null && connectionHandle.leakReported){
+			logger.info(String.format("Connection previously reported as leaked was closed after %d ms.",
+					this.clock.currentTimeMillis() - connectionHandle.checkoutTimeInMs));
+		}
+		connectionHandle.checkoutLocation = null;
+	}
+
+	/** Returns the number of connections currently being tracked.
+	 * @return number of checked out connections.
+	 */
+	protected int getTrackedConnections(){
+		return this.checkedOut.size();
+	}
+
+	/** Invoked periodically. */
+	public void run() {
+		long currentTime = this.clock.currentTimeMillis();
+		for (ConnectionHandle connectionHandle: this.checkedOut.keySet()){
+			try {
+				if (connectionHandle.isClosed()){
+					// closed off without going through the application's close(), e.g. destroyed by the pool.
+					this.checkedOut.remove(connectionHandle);
+					continue;
+				}
+				long heldTimeInMs = currentTime - connectionHandle.checkoutTimeInMs;
+				if (!connectionHandle.leakReported && heldTimeInMs > this.leakDetectionThresholdInMs){
+					connectionHandle.leakReported = true;
+					reportLeak(connectionHandle, heldTimeInMs);
+				}
+			} catch (Throwable t) {
+				logger.error("Leak detection thread exception.", t);
+			}
+		}
+	}
+
+	/** Logs, counts and notifies the hook of a suspected leak.
+	 * @param connectionHandle connection suspected of being leaked
+	 * @param heldTimeInMs time the connection has been held for
+	 */
+	protected void reportLeak(ConnectionHandle connectionHandle, long heldTimeInMs) {
+		Throwable checkoutLocation = connectionHandle.checkoutLocation;
+		Thread thread = connectionHandle.getThreadUsingConnection();
+		logger.warn(String.format(LEAK_MESSAGE, thread == null ? "unknown" : thread.getName(), heldTimeInMs), checkoutLocation);
+
+		if (this.pool.statisticsEnabled){
+			this.pool.statistics.incrementConnectionsLeaked();
+		}
+		ConnectionHook hook = connectionHandle.getConnectionHook();
+		if (hook instanceof AsyncHookDispatcher){
+			hook = ((AsyncHookDispatcher) hook).getHook(); // we're already off the application's threads.
+		}
+		if (hook instanceof AbstractConnectionHook){
+			((AbstractConnectionHook) hook).onConnectionLeakDetected(connectionHandle, checkoutLocation, heldTimeInMs);
+		}
+	}
+}
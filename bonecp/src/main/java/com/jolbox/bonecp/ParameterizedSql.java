@@ -0,0 +1,96 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement whose literals have been replaced by parameters, as produced by {@link SqlNormalizer#parameterize(String)}.
+ *
+ * @author wallacew
+ *
+ */
+public class ParameterizedSql {
+	/** Statement text with placeholders. */
+	private final String sql;
+	/** Values of the replaced literals, in order (Long or BigDecimal). */
+	private final List<Object> parameters;
+	/** Fingerprint of the original statement. */
+	private final long fingerprint;
+
+	/** Constructor.
+	 * @param sql statement text with placeholders
+	 * @param parameters values of the replaced literals
+	 * @param fingerprint fingerprint of the original statement
+	 */
+	protected ParameterizedSql(String sql, List<Object> parameters, long fingerprint){
+		this.sql = sql;
+		this.parameters = Collections.unmodifiableList(parameters);
+		this.fingerprint = fingerprint;
+	}
+
+	/** Returns the statement text with placeholders (or the original statement if nothing was replaced).
+	 * @return sql
+	 */
+	public String getSql() {
+		return this.sql;
+	}
+
+	/** Returns the values of the replaced literals, in order. Each value is a Long or BigDecimal.
+	 * @return parameter values
+	 */
+	public List<Object> getParameters() {
+		return this.parameters;
+	}
+
+	/** Returns the fingerprint of the original statement (see {@link SqlNormalizer#fingerprint(String)}).
+	 * @return fingerprint
+	 */
+	public long getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/** Returns true if at least one literal was replaced.
+	 * @return true if parameterized
+	 */
+	public boolean isParameterized() {
+		return !this.parameters.isEmpty();
+	}
+
+	/** Sets the parameter values on the given statement.
+	 * @param preparedStatement statement prepared from getSql()
+	 * @throws SQLException on error
+	 */
+	public void bind(PreparedStatement preparedStatement) throws SQLException {
+		for (int i=0; i < this.parameters.size(); i++){
+			Object value = this.parameters.get(i);
+			if (value instanceof Long){
+				preparedStatement.setLong(i + 1, (Long) value);
+			} else {
+				preparedStatement.setBigDecimal(i + 1, (BigDecimal) value);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.sql + " " + this.parameters;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * Source of time for the pool. Timestamps used for bookkeeping (last used, last reset, creation and checkout times) 
+ * are read via {@link #currentTimeMillis()}, which may be coarse; latencies are measured via {@link #nanoTime()}.
+ * A custom implementation can be set via BoneCPConfig.setClock(), typically to drive time from unit tests.
+ *
+ * @author wallacew
+ *
+ */
+public interface PoolClock {
+
+	/** Returns the current time in milliseconds. May lag behind the real time by up to the clock's resolution.
+	 * @return time in ms, as per System.currentTimeMillis()
+	 */
+	long currentTimeMillis();
+
+	/** Returns a precise timestamp for measuring elapsed time.
+	 * @return time in ns, as per System.nanoTime()
+	 */
+	long nanoTime();
+}
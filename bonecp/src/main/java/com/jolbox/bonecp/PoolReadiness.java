@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Tracks whether a pool has opened enough of its initial connections to be considered ready. With backgroundInit set,
+ * the pool constructor returns before the partitions are filled; the future returned by getFuture() completes once 
+ * readyThreshold percent of the minimum number of connections is open (or fails if the pool is shut down first).
+ *
+ * @author wallacew
+ */
+public class PoolReadiness {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(PoolReadiness.class);
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Number of connections to open for the pool to be ready. */
+	private final int target;
+	/** Completed once the pool is ready. */
+	private final SettableFuture<BoneCP> future = SettableFuture.create();
+
+	/** Constructor.
+	 * @param pool pool handle
+	 * @param target number of connections to open for the pool to be ready
+	 */
+	public PoolReadiness(BoneCP pool, int target){
+		this.pool = pool;
+		this.target = target;
+	}
+
+	/** Completes the future if enough connections are open. */
+	public void check(){
+		if (!this.future.isDone() && this.pool.getTotalCreatedConnections() >= this.target && this.future.set(this.pool)){
+			logger.debug("Connection pool ready, "+this.target+" connections open");
+		}
+	}
+
+	/** Fails the future, if not completed yet, as the pool is shutting down. */
+	public void cancel(){
+		this.future.setException(new SQLException("Connection pool was shut down before it was ready."));
+	}
+
+	/** Returns true once the pool is ready.
+	 * @return true if ready
+	 */
+	public boolean isReady(){
+		return this.future.isDone() && !this.pool.poolShuttingDown;
+	}
+
+	/** Returns a future completing with the pool once it is ready.
+	 * @return future
+	 */
+	public ListenableFuture<BoneCP> getFuture(){
+		return this.future;
+	}
+
+	/** Returns the number of connections to open for the pool to be ready.
+	 * @return target
+	 */
+	public int getTarget(){
+		return this.target;
+	}
+}
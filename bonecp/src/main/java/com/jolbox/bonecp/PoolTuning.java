@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the settings of a running pool that can be changed without a restart. Values are read from, and 
+ * written through to, the pool.
+ *
+ * @author wallacew
+ *
+ */
+public class PoolTuning implements PoolTuningMBean {
+	/** Pool handle. */
+	private final BoneCP pool;
+
+	/** Constructor.
+	 * @param pool pool to tune
+	 */
+	public PoolTuning(BoneCP pool){
+		this.pool = pool;
+	}
+
+	// @Override
+	public int getMinConnectionsPerPartition() {
+		return this.pool.getConfig().getMinConnectionsPerPartition();
+	}
+
+	// @Override
+	public void setMinConnectionsPerPartition(int minConnectionsPerPartition) {
+		this.pool.setMinConnectionsPerPartition(minConnectionsPerPartition);
+	}
+
+	// @Override
+	public int getMaxConnectionsPerPartition() {
+		return this.pool.getConfig().getMaxConnectionsPerPartition();
+	}
+
+	// @Override
+	public void setMaxConnectionsPerPartition(int maxConnectionsPerPartition) {
+		this.pool.setMaxConnectionsPerPartition(maxConnectionsPerPartition);
+	}
+
+	// @Override
+	public void resize(int minConnectionsPerPartition, int maxConnectionsPerPartition) {
+		this.pool.resize(minConnectionsPerPartition, maxConnectionsPerPartition);
+	}
+
+	// @Override
+	public int getAcquireIncrement() {
+		return this.pool.getConfig().getAcquireIncrement();
+	}
+
+	// @Override
+	public void setAcquireIncrement(int acquireIncrement) {
+		this.pool.setAcquireIncrement(acquireIncrement);
+	}
+
+	// @Override
+	public int getPoolAvailabilityThreshold() {
+		return this.pool.getConfig().getPoolAvailabilityThreshold();
+	}
+
+	// @Override
+	public void setPoolAvailabilityThreshold(int poolAvailabilityThreshold) {
+		this.pool.setPoolAvailabilityThreshold(poolAvailabilityThreshold);
+	}
+
+	// @Override
+	public long getConnectionTimeoutInMs() {
+		return this.pool.getConfig().getConnectionTimeoutInMs();
+	}
+
+	// @Override
+	public void setConnectionTimeoutInMs(long connectionTimeoutInMs) {
+		this.pool.setConnectionTimeout(connectionTimeoutInMs, TimeUnit.MILLISECONDS);
+	}
+
+	// @Override
+	public long getQueryExecuteTimeLimitInMs() {
+		return this.pool.getConfig().getQueryExecuteTimeLimitInMs();
+	}
+
+	// @Override
+	public void setQueryExecuteTimeLimitInMs(long queryExecuteTimeLimitInMs) {
+		this.pool.setQueryExecuteTimeLimit(queryExecuteTimeLimitInMs, TimeUnit.MILLISECONDS);
+	}
+
+	// @Override
+	public int getPartitionCount() {
+		return this.pool.getConfig().getPartitionCount();
+	}
+
+	// @Override
+	public void setPartitionCount(int partitionCount) throws SQLException {
+		this.pool.repartition(partitionCount);
+	}
+}
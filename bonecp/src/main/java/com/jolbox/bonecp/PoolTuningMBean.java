@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+
+/**
+ * MBean interface for changing the size and timeouts of a running pool.
+ *
+ * @author wallacew
+ *
+ */
+public interface PoolTuningMBean {
+
+	/** Returns the minimum number of connections per partition.
+	 * @return minConnectionsPerPartition
+	 */
+	int getMinConnectionsPerPartition();
+
+	/** Sets the minimum number of connections per partition.
+	 * @param minConnectionsPerPartition new value
+	 */
+	void setMinConnectionsPerPartition(int minConnectionsPerPartition);
+
+	/** Returns the maximum number of connections per partition.
+	 * @return maxConnectionsPerPartition
+	 */
+	int getMaxConnectionsPerPartition();
+
+	/** Sets the maximum number of connections per partition. Connections in use are closed off as they are returned.
+	 * @param maxConnectionsPerPartition new value
+	 */
+	void setMaxConnectionsPerPartition(int maxConnectionsPerPartition);
+
+	/** Changes both partition limits at once.
+	 * @param minConnectionsPerPartition new minimum
+	 * @param maxConnectionsPerPartition new maximum
+	 */
+	void resize(int minConnectionsPerPartition, int maxConnectionsPerPartition);
+
+	/** Returns the number of connections created at a time.
+	 * @return acquireIncrement
+	 */
+	int getAcquireIncrement();
+
+	/** Sets the number of connections created at a time.
+	 * @param acquireIncrement new value
+	 */
+	void setAcquireIncrement(int acquireIncrement);
+
+	/** Returns the percentage of free connections below which more are created.
+	 * @return poolAvailabilityThreshold
+	 */
+	int getPoolAvailabilityThreshold();
+
+	/** Sets the percentage of free connections below which more are created.
+	 * @param poolAvailabilityThreshold new value
+	 */
+	void setPoolAvailabilityThreshold(int poolAvailabilityThreshold);
+
+	/** Returns the time getConnection() waits for a free connection (0 = forever).
+	 * @return connectionTimeoutInMs
+	 */
+	long getConnectionTimeoutInMs();
+
+	/** Sets the time getConnection() waits for a free connection (0 = forever).
+	 * @param connectionTimeoutInMs new value
+	 */
+	void setConnectionTimeoutInMs(long connectionTimeoutInMs);
+
+	/** Returns the query execute time limit (0 = disabled).
+	 * @return queryExecuteTimeLimitInMs
+	 */
+	long getQueryExecuteTimeLimitInMs();
+
+	/** Sets the query execute time limit for statements created from now on (0 = disabled).
+	 * @param queryExecuteTimeLimitInMs new value
+	 */
+	void setQueryExecuteTimeLimitInMs(long queryExecuteTimeLimitInMs);
+
+	/** Returns the number of partitions.
+	 * @return partitionCount
+	 */
+	int getPartitionCount();
+
+	/** Repartitions the pool. Connections in use move to the new partitions as they are returned.
+	 * @param partitionCount new value
+	 * @throws SQLException on error opening connections
+	 */
+	void setPartitionCount(int partitionCount) throws SQLException;
+}
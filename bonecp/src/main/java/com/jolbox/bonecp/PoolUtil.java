@@ -18,11 +18,15 @@ package com.jolbox.bonecp;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Ref;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -36,6 +40,32 @@ public class PoolUtil {
 
 	protected static Class<Throwable> sqlExceptionClass;
 	private static final String exceptionClass = "java.sql.SQLException";
+	/** Thread management bean. */
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	/** com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long) or null if this JVM doesn't support it. */
+	private static final Method threadAllocatedBytesMethod;
+	/** Bytes allocated by a reading itself, subtracted from each measurement. */
+	private static final long threadAllocatedBytesOverhead;
+
+	static {
+		Method method = null;
+		long overhead = 0;
+		try {
+			method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			long id = Thread.currentThread().getId();
+			long first = (Long) method.invoke(threadBean, id);
+			long second = (Long) method.invoke(threadBean, id);
+			if (first < 0){
+				method = null; // disabled
+			} else {
+				overhead = Math.max(0, second - first);
+			}
+		} catch (Throwable t) {
+			method = null;
+		}
+		threadAllocatedBytesMethod = method;
+		threadAllocatedBytesOverhead = overhead;
+	}
 
 	/** Returns sql statement used in this prepared statement together with the parameters.
 	 * @param sql base sql statement
@@ -43,10 +73,26 @@ public class PoolUtil {
 	 * @return returns printable statement 
 	 */
 	public static String fillLogParams(String sql, Map<Object, Object> logParams) {
-		StringBuilder result = new StringBuilder();
 		Map<Object, Object> tmpLogParam = (logParams == null ? new HashMap<Object, Object>() : logParams);
+		return fillParams(sql, tmpLogParam.values().iterator());
+	}
 
-		Iterator<Object> it = tmpLogParam.values().iterator();
+	/** Returns sql statement together with the parameters captured in a compact snapshot.
+	 * @param sql base sql statement
+	 * @param params parameter values, in order
+	 * @return returns printable statement 
+	 */
+	public static String fillLogParamValues(String sql, Object[] params) {
+		return fillParams(sql, Arrays.asList(params).iterator());
+	}
+
+	/** Replaces each placeholder (outside quotes) with the next parameter.
+	 * @param sql base sql statement
+	 * @param it parameter values, in order
+	 * @return returns printable statement 
+	 */
+	private static String fillParams(String sql, Iterator<Object> it) {
+		StringBuilder result = new StringBuilder();
 		boolean inQuote = false;
 		boolean inQuote2 = false;
 		char[] sqlChar = sql != null ? sql.toCharArray() : new char[]{};
@@ -197,4 +243,32 @@ public class PoolUtil {
 
 	}
 
-}
\ No newline at end of file
+	/** Returns the number of bytes allocated so far by the calling thread, as reported by the JVM's thread 
+	 * allocation counters. Only the difference between two readings is meaningful.
+	 * @return allocated bytes, or -1 if the JVM does not support thread allocation counters.
+	 */
+	public static long currentThreadAllocatedBytes(){
+		if (threadAllocatedBytesMethod == null){
+			return -1;
+		}
+		try {
+			return (Long) threadAllocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/** Returns the number of bytes the calling thread allocated since the given reading, not counting what
+	 * taking the readings allocates.
+	 * @param start earlier value of {@link #currentThreadAllocatedBytes()}
+	 * @return allocated bytes, or -1 if not supported.
+	 */
+	public static long threadAllocatedBytesSince(long start){
+		long now = currentThreadAllocatedBytes();
+		if (start < 0 || now < 0){
+			return -1;
+		}
+		return Math.max(0, now - start - threadAllocatedBytesOverhead);
+	}
+
+}
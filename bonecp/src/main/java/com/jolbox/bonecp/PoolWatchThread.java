@@ -35,8 +35,6 @@ public class PoolWatchThread implements Runnable {
 	private long acquireRetryDelayInMs = 1000L;
 	/** Start off lazily. */
 	protected boolean lazyInit;
-	/** Occupancy% threshold. */
-	private int poolAvailabilityThreshold;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(PoolWatchThread.class);
 
@@ -50,7 +48,6 @@ public class PoolWatchThread implements Runnable {
 		this.pool = pool;
 		this.lazyInit = this.pool.getConfig().isLazyInit();
 		this.acquireRetryDelayInMs = this.pool.getConfig().getAcquireRetryDelayInMs();
-		this.poolAvailabilityThreshold = this.pool.getConfig().getPoolAvailabilityThreshold();
 	}
 
 
@@ -67,8 +64,10 @@ public class PoolWatchThread implements Runnable {
 
 				maxNewConnections = this.partition.getMaxConnections()-this.partition.getCreatedConnections();
 				// loop for spurious interrupt
-				while (maxNewConnections == 0 || (this.partition.getAvailableConnections() *100/this.partition.getMaxConnections() > this.poolAvailabilityThreshold)){
-					if (maxNewConnections == 0){
+				// (max - created can go negative if the partition has been shrunk)
+				while (!this.partition.isRetired() && (maxNewConnections <= 0 || (this.partition.getAvailableConnections() *100/this.partition.getMaxConnections() > this.pool.poolAvailabilityThreshold
+						&& this.partition.getCreatedConnections() >= this.partition.getMinConnections()))){
+					if (maxNewConnections <= 0){
 						this.partition.setUnableToCreateMoreTransactions(true);
 					}
 					
@@ -77,6 +76,18 @@ public class PoolWatchThread implements Runnable {
 					
 				}
 
+				if (this.partition.isRetired()){
+					logger.debug("Terminating pool watch thread of retired partition");
+					return; // pool has been repartitioned, the successor has its own watch thread.
+				}
+
+				CircuitBreaker circuitBreaker = this.pool.circuitBreaker;
+				if (circuitBreaker != null && circuitBreaker.isOpen()){
+					// leave it to the breaker's probe to find out when the database is back, we're signalled then.
+					this.partition.getPoolWatchThreadSignalQueue().take();
+					continue;
+				}
+
 				if (maxNewConnections > 0 
 						&& !this.pool.poolShuttingDown){
 					fillConnections(Math.min(maxNewConnections, this.partition.getAcquireIncrement()));
@@ -91,6 +102,11 @@ public class PoolWatchThread implements Runnable {
 					return;
 				}
 
+				PoolReadiness readiness = this.pool.readiness;
+				if (readiness != null){
+					readiness.check();
+				}
+
 
 			} catch (InterruptedException e) {
 				logger.debug("Terminating pool watch thread");
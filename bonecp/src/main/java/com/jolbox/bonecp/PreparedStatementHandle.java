@@ -109,7 +109,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.clearParameters();
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.clear();
 			}
 		} catch (SQLException e) {
@@ -128,18 +128,18 @@ public class PreparedStatementHandle extends StatementHandle implements
 	public boolean execute() throws SQLException {
 		checkClosed();
 		try {
-			if (this.logStatementsEnabled){
+			if (this.logStatementsEnabled && logger.isDebugEnabled()){
 				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
 
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 
 			boolean result = this.internalPreparedStatement.execute();
 
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 
@@ -164,15 +164,15 @@ public class PreparedStatementHandle extends StatementHandle implements
 	public ResultSet executeQuery() throws SQLException {
 		checkClosed();
 		try {
-			if (this.logStatementsEnabled){
+			if (this.logStatementsEnabled && logger.isDebugEnabled()){
 				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 			ResultSet result = this.internalPreparedStatement.executeQuery();
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 
@@ -195,15 +195,15 @@ public class PreparedStatementHandle extends StatementHandle implements
 	public int executeUpdate() throws SQLException {
 		checkClosed();
 		try {
-			if (this.logStatementsEnabled){
+			if (this.logStatementsEnabled && logger.isDebugEnabled()){
 				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 			int result = this.internalPreparedStatement.executeUpdate();
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 
@@ -261,7 +261,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setArray(parameterIndex, x);
-			if (this.logStatementsEnabled) {
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -277,7 +277,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -292,7 +292,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -307,7 +307,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, inputStream);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, inputStream);
 			}
 		} catch (SQLException e) {
@@ -322,7 +322,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -336,7 +336,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -350,7 +350,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setRowId(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -365,7 +365,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setSQLXML(parameterIndex, xmlObject);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, xmlObject);
 			}
 		} catch (SQLException e) {
@@ -380,7 +380,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 
@@ -396,7 +396,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNCharacterStream(parameterIndex, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, value);
 			}
 
@@ -412,7 +412,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNCharacterStream(parameterIndex, value, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, value);
 			}
 		} catch (SQLException e) {
@@ -426,7 +426,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, value);
 			}
 		} catch (SQLException e) {
@@ -440,7 +440,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -455,7 +455,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -470,7 +470,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNString(parameterIndex, value);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, value);
 			}
 		} catch (SQLException e) {
@@ -485,7 +485,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -499,7 +499,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setCharacterStream(parameterIndex, reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -514,7 +514,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, inputStream, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, inputStream);
 			}
 		} catch (SQLException e) {
@@ -529,7 +529,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setCharacterStream(parameterIndex, reader);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -553,7 +553,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -574,7 +574,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBigDecimal(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -597,7 +597,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -617,7 +617,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -638,7 +638,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBoolean(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -658,7 +658,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setByte(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -678,7 +678,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setBytes(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -702,7 +702,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setCharacterStream(parameterIndex,
 					reader, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
@@ -723,7 +723,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -744,7 +744,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setDate(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -766,7 +766,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setDate(parameterIndex, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -786,7 +786,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setDouble(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -806,7 +806,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setFloat(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -826,7 +826,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setInt(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -846,7 +846,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setLong(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -866,7 +866,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNull(parameterIndex, sqlType);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, "[SQL NULL of type "+sqlType+"]");
 			}
 		} catch (SQLException e) {
@@ -887,7 +887,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setNull(parameterIndex, sqlType, typeName);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, PoolUtil.safePrint("[SQL NULL of type ", sqlType, ", type = ", typeName, "]"));
 			}
 		} catch (SQLException e) {
@@ -907,7 +907,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -928,7 +928,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x, targetSqlType);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -950,7 +950,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -970,7 +970,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setRef(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -991,7 +991,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setShort(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -1011,7 +1011,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setString(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -1031,7 +1031,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setTime(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -1053,7 +1053,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setTime(parameterIndex, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -1074,7 +1074,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setTimestamp(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -1096,7 +1096,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setTimestamp(parameterIndex, x, cal);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
@@ -1116,7 +1116,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setURL(parameterIndex, x);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
@@ -1139,7 +1139,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			this.internalPreparedStatement.setUnicodeStream(parameterIndex, x, length);
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 				this.logParams.put(parameterIndex, x);
 			}
 		} catch (SQLException e) {
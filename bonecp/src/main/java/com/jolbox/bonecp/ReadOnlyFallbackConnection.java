@@ -0,0 +1,75 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+
+/**
+ * Connection proxy ReadWriteSplittingDataSource hands out when read-only work falls back to the primary. The pool
+ * does not restore the read-only flag in every mode, so it is cleared here on close: otherwise a writer taking the
+ * connection next would get a read-only connection.
+ * 
+ * @author wallacew
+ *
+ */
+public class ReadOnlyFallbackConnection implements InvocationHandler {
+	/** Pooled connection of the primary, set to read-only. */
+	private final Connection target;
+	/** Set once closed. */
+	private boolean closed;
+
+	/** Constructor.
+	 * @param target pooled connection of the primary, set to read-only
+	 */
+	public ReadOnlyFallbackConnection(Connection target){
+		this.target = target;
+	}
+
+	// @Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if (name.equals("close")){
+			if (!this.closed){
+				this.closed = true;
+				try {
+					this.target.setReadOnly(false);
+				} finally {
+					this.target.close();
+				}
+			}
+			return null;
+		} else if (name.equals("equals")){
+			return proxy == args[0];
+		} else if (name.equals("hashCode")){
+			return System.identityHashCode(proxy);
+		}
+		try {
+			return method.invoke(this.target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Returns the pooled connection.
+	 * @return connection
+	 */
+	protected Connection getTarget() {
+		return this.target;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection proxy handed out by ReadWriteSplittingDataSource.getConnection(). The connection is only obtained from
+ * the primary or a replica on first use so that calling setReadOnly(true) beforehand sends the work to a replica. 
+ * Once obtained, all calls go to the pooled connection.
+ * 
+ * @author wallacew
+ *
+ */
+public class ReadWriteRoutingConnection implements InvocationHandler {
+	/** Datasource to obtain the connection from. */
+	private final ReadWriteSplittingDataSource dataSource;
+	/** Pooled connection, null until first use. */
+	private Connection target;
+	/** Value passed to setReadOnly() before first use. */
+	private boolean readOnly;
+	/** Set if closed before first use. */
+	private boolean closed;
+
+	/** Constructor.
+	 * @param dataSource datasource to obtain the connection from
+	 */
+	public ReadWriteRoutingConnection(ReadWriteSplittingDataSource dataSource){
+		this.dataSource = dataSource;
+	}
+
+	// @Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (this.target == null){
+			String name = method.getName();
+			if (name.equals("setReadOnly")){
+				this.readOnly = (Boolean) args[0];
+				return null;
+			} else if (name.equals("isReadOnly")){
+				return this.readOnly;
+			} else if (name.equals("close")){
+				this.closed = true;
+				return null;
+			} else if (name.equals("isClosed")){
+				return this.closed;
+			} else if (name.equals("equals")){
+				return proxy == args[0];
+			} else if (name.equals("hashCode")){
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")){
+				return "Connection not obtained yet (readOnly: " + this.readOnly + ")";
+			}
+			if (this.closed){
+				// 08003 = The connection does not exist.
+				throw new SQLException("Connection is closed.", "08003");
+			}
+			this.target = this.dataSource.getConnection(this.readOnly);
+		}
+		try {
+			return method.invoke(this.target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Returns the pooled connection, or null if not obtained yet.
+	 * @return connection
+	 */
+	protected Connection getTarget() {
+		return this.target;
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+// #ifdef JDK>6
+import java.sql.SQLFeatureNotSupportedException;
+// #endif JDK>6
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * DataSource that sends writes to a primary pool and read-only work to a set of replica pools. Work is read-only if 
+ * the connection is obtained via getConnection(true), or if setReadOnly(true) is called on a connection obtained via
+ * getConnection() before it is first used: such connections are only taken from a pool once they are needed.
+ * 
+ * Replicas are picked as per the configured ReplicaBalancing. A replica is skipped while its pool flags the database
+ * as down, and for replicaEjectionTime after it failed to hand out a connection. If no replica is available, 
+ * read-only work goes to the primary, still with setReadOnly(true) (which is cleared again on close).
+ * Ties between replicas, such as when none has a connection in use, are broken round-robin.
+ *
+ * @author wallacew
+ */
+public class ReadWriteSplittingDataSource implements DataSource, Closeable {
+	/** Class logger. */ 
+	private static final Logger logger = LoggerFactory.getLogger(ReadWriteSplittingDataSource.class);
+	/** Pool taking writes. */
+	private final BoneCPDataSource primary;
+	/** Pools taking read-only work. */
+	private final List<Replica> replicas;
+	/** How to pick a replica. */
+	private volatile ReplicaBalancing replicaBalancing = ReplicaBalancing.LEAST_OUTSTANDING;
+	/** Time a failing replica is kept out of rotation. */
+	private volatile long replicaEjectionTimeInMs = 30000;
+	/** Replica to start looking from, so that ties do not always go to the same replica. */
+	private final AtomicInteger nextReplica = new AtomicInteger();
+	/** Config setting. */
+	private PrintWriter logWriter = null;
+
+	/** Constructor.
+	 * @param primary pool taking writes
+	 * @param replicas pools taking read-only work
+	 */
+	public ReadWriteSplittingDataSource(BoneCPDataSource primary, List<BoneCPDataSource> replicas){
+		this.primary = Preconditions.checkNotNull(primary, "primary");
+		List<Replica> list = new ArrayList<Replica>(replicas.size());
+		for (BoneCPDataSource replica: replicas){
+			list.add(new Replica(replica));
+		}
+		this.replicas = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Returns a connection that is taken from the primary or a replica when it is first used, depending on whether
+	 * setReadOnly(true) has been called on it by then.
+	 *
+	 * @see javax.sql.DataSource#getConnection()
+	 */
+	public Connection getConnection() throws SQLException {
+		return (Connection) Proxy.newProxyInstance(ReadWriteSplittingDataSource.class.getClassLoader(), 
+				new Class[]{Connection.class}, new ReadWriteRoutingConnection(this));
+	}
+
+	/** Obtains a connection from the primary, or from a replica if readOnly is set.
+	 * @param readOnly true for read-only work
+	 * @return a connection
+	 * @throws SQLException on error
+	 */
+	public Connection getConnection(boolean readOnly) throws SQLException {
+		if (readOnly){
+			for (int attempt=0; attempt < this.replicas.size(); attempt++){
+				long now = System.currentTimeMillis();
+				Replica replica = pickReplica(now);
+				if (replica == null){
+					break;
+				}
+				Connection connection = null;
+				try {
+					connection = replica.getDataSource().getConnection();
+					connection.setReadOnly(true);
+					return connection;
+				} catch (SQLException e) {
+					closeQuietly(connection);
+					logger.warn("Unable to obtain a connection from replica " + replica.getDataSource().getJdbcUrl() + ", ejecting it for " + this.replicaEjectionTimeInMs + "ms", e);
+					replica.eject(now + this.replicaEjectionTimeInMs);
+				}
+			}
+			logger.debug("No replica available, sending read-only work to the primary");
+			Connection connection = this.primary.getConnection();
+			try {
+				connection.setReadOnly(true);
+			} catch (SQLException e) {
+				closeQuietly(connection);
+				throw e;
+			}
+			return (Connection) Proxy.newProxyInstance(ReadWriteSplittingDataSource.class.getClassLoader(), 
+					new Class[]{Connection.class}, new ReadOnlyFallbackConnection(connection));
+		}
+		return this.primary.getConnection();
+	}
+
+	/** Returns a connection that could not be set up to its pool.
+	 * @param connection connection, may be null
+	 */
+	private void closeQuietly(Connection connection){
+		if (connection != null){
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				logger.debug("Unable to close connection", e);
+			}
+		}
+	}
+
+	/** Picks a replica as per the configured ReplicaBalancing.
+	 * @param currentTimeInMs current time
+	 * @return replica, or null if none is available
+	 */
+	protected Replica pickReplica(long currentTimeInMs){
+		boolean byLatency = this.replicaBalancing == ReplicaBalancing.LATENCY_EWMA;
+		Replica result = null;
+		double bestLatency = 0;
+		int bestOutstanding = 0;
+		int size = this.replicas.size();
+		int start = size == 0 ? 0 : (this.nextReplica.getAndIncrement() & Integer.MAX_VALUE) % size;
+		for (int i=0; i < size; i++){
+			Replica replica = this.replicas.get((start + i) % size);
+			if (!replica.isAvailable(currentTimeInMs)){
+				continue;
+			}
+			double latency = byLatency ? replica.updateLatency(currentTimeInMs) : 0;
+			int outstanding = replica.getOutstanding();
+			if (result == null || latency < bestLatency || (latency == bestLatency && outstanding < bestOutstanding)){
+				result = replica;
+				bestLatency = latency;
+				bestOutstanding = outstanding;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Obtains a connection for the given user from the primary.
+	 *
+	 * @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String)
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		return this.primary.getConnection(username, password);
+	}
+
+	/** Shuts down the primary and all replica pools. */
+	public void close(){
+		this.primary.close();
+		for (Replica replica: this.replicas){
+			replica.getDataSource().close();
+		}
+	}
+
+	/** Returns the pool taking writes.
+	 * @return primary
+	 */
+	public BoneCPDataSource getPrimary() {
+		return this.primary;
+	}
+
+	/** Returns the replicas.
+	 * @return replicas
+	 */
+	public List<Replica> getReplicas() {
+		return this.replicas;
+	}
+
+	/** Returns the replicaBalancing setting.
+	 * @return replicaBalancing
+	 */
+	public ReplicaBalancing getReplicaBalancing() {
+		return this.replicaBalancing;
+	}
+
+	/** Sets how replicas are picked for read-only work. Default: LEAST_OUTSTANDING.
+	 * @param replicaBalancing the replicaBalancing to set
+	 */
+	public void setReplicaBalancing(ReplicaBalancing replicaBalancing) {
+		this.replicaBalancing = Preconditions.checkNotNull(replicaBalancing, "replicaBalancing");
+	}
+
+	/** Returns the replicaEjectionTime setting.
+	 * @param timeUnit time granularity
+	 * @return replicaEjectionTime
+	 */
+	public long getReplicaEjectionTime(TimeUnit timeUnit) {
+		return timeUnit.convert(this.replicaEjectionTimeInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Sets the time a replica that failed to hand out a connection is kept out of rotation. Default: 30 seconds.
+	 * @param replicaEjectionTime the replicaEjectionTime to set
+	 * @param timeUnit time granularity
+	 */
+	public void setReplicaEjectionTime(long replicaEjectionTime, TimeUnit timeUnit) {
+		this.replicaEjectionTimeInMs = TimeUnit.MILLISECONDS.convert(replicaEjectionTime, timeUnit);
+	}
+
+	/**
+	 * Retrieves the log writer for this DataSource object.
+	 * 
+	 */
+	public PrintWriter getLogWriter() throws SQLException {
+		return this.logWriter;
+	}
+
+	/** 
+	 * Sets the log writer for this DataSource object to the given java.io.PrintWriter object.
+	 */
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	/**
+	 * Unsupported.
+	 */
+	public int getLoginTimeout() throws SQLException {
+		throw new UnsupportedOperationException("getLoginTimeout is unsupported.");
+	}
+
+	/**
+	 * Unsupported.
+	 */
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new UnsupportedOperationException("setLoginTimeout is unsupported.");
+	}
+
+	// #ifdef JDK7 
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new UnsupportedOperationException("getParentLogger is unsupported");
+	}
+	// #endif JDK7 
+
+	/**
+	 * Returns true if this either implements the interface argument or is directly or indirectly a wrapper for an object that does.
+	 * @param arg0 class
+	 * @return t/f
+	 * @throws SQLException on error
+	 *
+	 */
+	public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+		return false;
+	}
+
+	/**
+	 * Returns an object that implements the given interface to allow access to non-standard methods, 
+	 * or standard methods not exposed by the proxy.
+	 * @param arg0 obj
+	 * @return unwrapped object
+	 * @throws SQLException 
+	 */
+	@SuppressWarnings("all")
+	public Object unwrap(Class arg0) throws SQLException {
+		return null;
+	}
+}
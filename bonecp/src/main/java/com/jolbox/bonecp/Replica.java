@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * A read replica behind a ReadWriteSplittingDataSource, along with the state used to balance load across replicas and
+ * to keep failing replicas out of rotation.
+ * 
+ * @author wallacew
+ *
+ */
+public class Replica {
+	/** Weight given to the latest latency sample in the moving average. */
+	private static final double EWMA_WEIGHT = 0.2;
+	/** The moving average of a replica without new samples decays by EWMA_WEIGHT this often. */
+	private static final long LATENCY_DECAY_INTERVAL_IN_MS = 1000;
+	/** Pool of the replica. */
+	private final BoneCPDataSource dataSource;
+	/** The replica is not used until this time. */
+	private volatile long ejectedUntilInMs;
+	/** Average statement execution time, exponentially weighted. */
+	private volatile double latencyEwmaInMs;
+	/** Statements executed as of the last latency sample. */
+	private long lastStatementsExecuted;
+	/** Cumulative execution time as of the last latency sample. */
+	private long lastExecutionTimeInMs;
+	/** Time of the last latency sample or decay step. */
+	private long lastLatencyUpdateInMs;
+
+	/** Constructor.
+	 * @param dataSource pool of the replica
+	 */
+	public Replica(BoneCPDataSource dataSource){
+		this.dataSource = dataSource;
+	}
+
+	/** Returns true unless the replica has been ejected or its pool has flagged the database as down.
+	 * @param currentTimeInMs current time
+	 * @return true if the replica may be used
+	 */
+	public boolean isAvailable(long currentTimeInMs){
+		if (currentTimeInMs < this.ejectedUntilInMs){
+			return false;
+		}
+		BoneCP pool = this.dataSource.getPool();
+		return pool == null || !pool.getDbIsDown().get();
+	}
+
+	/** Takes the replica out of rotation.
+	 * @param untilInMs time at which the replica may be used again
+	 */
+	protected void eject(long untilInMs){
+		this.ejectedUntilInMs = untilInMs;
+	}
+
+	/** Returns the number of connections in use.
+	 * @return connections in use
+	 */
+	public int getOutstanding(){
+		return this.dataSource.getTotalLeased();
+	}
+
+	/** Folds the statements executed since the last call into the moving average. If none have been executed for a
+	 * while the average decays instead, otherwise a replica that was slow once would never be picked, and so never
+	 * be measured, again.
+	 * @param currentTimeInMs current time
+	 * @return average statement execution time in ms
+	 */
+	protected synchronized double updateLatency(long currentTimeInMs){
+		BoneCP pool = this.dataSource.getPool();
+		if (pool != null){
+			Statistics statistics = pool.getStatistics();
+			long executed = statistics.getStatementsExecuted();
+			long executionTimeInMs = statistics.getCumulativeStatementExecutionTime();
+			long samples = executed - this.lastStatementsExecuted;
+			if (samples > 0){
+				double latency = (double) (executionTimeInMs - this.lastExecutionTimeInMs) / samples;
+				this.latencyEwmaInMs = this.lastStatementsExecuted == 0 ? latency : EWMA_WEIGHT * latency + (1 - EWMA_WEIGHT) * this.latencyEwmaInMs;
+				this.lastStatementsExecuted = executed;
+				this.lastExecutionTimeInMs = executionTimeInMs;
+				this.lastLatencyUpdateInMs = currentTimeInMs;
+			} else {
+				long idleIntervals = (currentTimeInMs - this.lastLatencyUpdateInMs) / LATENCY_DECAY_INTERVAL_IN_MS;
+				if (idleIntervals > 0){
+					this.latencyEwmaInMs *= Math.pow(1 - EWMA_WEIGHT, idleIntervals);
+					this.lastLatencyUpdateInMs += idleIntervals * LATENCY_DECAY_INTERVAL_IN_MS;
+				}
+			}
+		}
+		return this.latencyEwmaInMs;
+	}
+
+	/** Returns the average statement execution time as of the last update.
+	 * @return average statement execution time in ms
+	 */
+	public double getLatencyEwmaInMs(){
+		return this.latencyEwmaInMs;
+	}
+
+	/** Returns the pool of the replica.
+	 * @return datasource
+	 */
+	public BoneCPDataSource getDataSource(){
+		return this.dataSource;
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+/**
+ * How ReadWriteSplittingDataSource picks a replica for read-only work.
+ * 
+ * @author wallacew
+ *
+ */
+public enum ReplicaBalancing {
+	/** Pick the replica with the fewest connections in use, taking turns between replicas that are level. */
+	LEAST_OUTSTANDING,
+	/** Pick the replica with the lowest recent statement execution time, as an exponentially weighted moving average 
+	 * taken from the replica pool's statistics (statisticsEnabled must be set on the replicas). Ties, such as before any 
+	 * statement has run, go to the replica with the fewest connections in use, as per LEAST_OUTSTANDING. Without statistics every replica reports
+	 * no latency at all, so this silently behaves like LEAST_OUTSTANDING. The average of a replica that gets no work 
+	 * decays over time, so a replica that was slow is tried again once in a while. */
+	LATENCY_EWMA
+}
@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.SQLException;
+
+/**
+ * Decides what an exception thrown on a connection means for the connection and the database. SQLStates are not 
+ * used consistently across drivers (e.g. HY000 is a catch-all on some and a lost connection on others), so a 
+ * classifier matching the driver in use can be set via BoneCPConfig.setSqlStateClassifier(). The default is 
+ * DefaultSQLStateClassifier.
+ * 
+ * @author wallacew
+ *
+ */
+public interface SQLStateClassifier {
+
+	/** Classifies the given exception.
+	 * @param sqlState SQLState of the exception, never null (08999 if the driver did not supply one)
+	 * @param e exception thrown by the driver
+	 * @return what the exception means for the connection and the database
+	 */
+	FailureScope classify(String sqlState, SQLException e);
+}
@@ -0,0 +1,233 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sets up the session of new connections with as few round trips as possible. initSQL and the initStatements are 
+ * sent as a single batch where the driver supports it and none of them is a query (falling back to one statement at a
+ * time, skipping those the failed batch reports as done, if it turns out the driver can't batch them after all). If skipDriverDefaultSessionSettings is set, the session state a new connection starts 
+ * off with is read once, from the first connection: for every connection after that, the defaultAutoCommit, 
+ * defaultReadOnly, defaultCatalog and defaultTransactionIsolation settings are only sent to the driver where they 
+ * differ from that state.
+ *
+ * @author wallacew
+ */
+public class SessionInitializer {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(SessionInitializer.class);
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Whether the driver can batch the init statements, null until found out. */
+	private volatile Boolean batchSupported;
+	/** Set once the driver's session defaults have been read. */
+	private volatile boolean driverDefaultsKnown;
+	/** Auto-commit of new connections, null until read. */
+	private volatile Boolean driverAutoCommit;
+	/** Read-only state of new connections, null until read. */
+	private volatile Boolean driverReadOnly;
+	/** True if driverCatalog has been read. */
+	private volatile boolean driverCatalogKnown;
+	/** Catalog of new connections. */
+	private volatile String driverCatalog;
+	/** Transaction isolation of new connections, -1 if not read. */
+	private volatile int driverTransactionIsolation = -1;
+
+	/** Constructor.
+	 * @param pool pool handle
+	 */
+	public SessionInitializer(BoneCP pool){
+		this.pool = pool;
+	}
+
+	/** Sends the init statements to a new connection and, the first time round, reads the driver's session defaults.
+	 * @param connection new raw connection
+	 * @throws SQLException on error
+	 */
+	public void initialize(Connection connection) throws SQLException {
+		BoneCPConfig config = this.pool.getConfig();
+		execute(connection, getInitStatements(config));
+		if (config.isSkipDriverDefaultSessionSettings() && !this.driverDefaultsKnown){
+			readDriverDefaults(connection, config);
+		}
+	}
+
+	/** Returns the statements to run on a new connection: initSQL as is, followed by each of the initStatements.
+	 * @param config config
+	 * @return statements, in order
+	 */
+	protected static List<String> getInitStatements(BoneCPConfig config){
+		List<String> result = new ArrayList<String>();
+		if (config.getInitSQL() != null){
+			result.add(config.getInitSQL());
+		}
+		if (config.getInitStatements() != null){
+			for (String sql: config.getInitStatements().split(";")){
+				sql = sql.trim();
+				if (sql.length() > 0){
+					result.add(sql);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Runs the given statements, in a single batch if possible.
+	 * @param connection connection to run them on
+	 * @param statements statements
+	 * @throws SQLException on error
+	 */
+	private void execute(Connection connection, List<String> statements) throws SQLException {
+		if (statements.isEmpty()){
+			return;
+		}
+		if (statements.size() > 1 && this.batchSupported == null){
+			this.batchSupported = connection.getMetaData().supportsBatchUpdates();
+		}
+		Statement stmt = connection.createStatement();
+		try {
+			if (statements.size() > 1 && this.batchSupported && !containsQuery(statements)){
+				for (String sql: statements){
+					stmt.addBatch(sql);
+				}
+				try {
+					stmt.executeBatch();
+					return;
+				} catch (SQLException e) {
+					logger.debug("Unable to send init statements as a batch, sending them one by one", e);
+					stmt.clearBatch();
+					// without update counts there is no telling how far the batch got, so everything is sent again.
+					int[] updateCounts = e instanceof BatchUpdateException ? ((BatchUpdateException) e).getUpdateCounts() : null;
+					executeEach(stmt, statements, updateCounts);
+					this.batchSupported = false; // the statements work, batching them doesn't.
+					return;
+				}
+			}
+			executeEach(stmt, statements, null);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/** Runs the given statements one at a time.
+	 * @param stmt statement to run them on
+	 * @param statements statements
+	 * @param updateCounts update counts of a failed batch of the same statements, or null. Statements the batch ran
+	 * are skipped.
+	 * @throws SQLException on error
+	 */
+	private void executeEach(Statement stmt, List<String> statements, int[] updateCounts) throws SQLException {
+		for (int i=0; i < statements.size(); i++){
+			if (updateCounts != null && i < updateCounts.length && updateCounts[i] != Statement.EXECUTE_FAILED){
+				continue;
+			}
+			stmt.execute(statements.get(i));
+		}
+	}
+
+	/** Returns true if any of the given statements returns a result set: drivers may refuse those in a batch.
+	 * @param statements statements
+	 * @return true if there is a query among them
+	 */
+	protected static boolean containsQuery(List<String> statements){
+		for (String sql: statements){
+			String start = sql.trim().toUpperCase();
+			if (start.startsWith("SELECT") || start.startsWith("WITH") || start.startsWith("VALUES") || start.startsWith("SHOW")){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Reads the session state of a new connection for the settings the pool sets on every new connection.
+	 * @param connection new connection, set up by the init statements
+	 * @param config config
+	 * @throws SQLException on error
+	 */
+	private synchronized void readDriverDefaults(Connection connection, BoneCPConfig config) throws SQLException {
+		if (this.driverDefaultsKnown){
+			return;
+		}
+		this.driverAutoCommit = connection.getAutoCommit();
+		this.driverReadOnly = connection.isReadOnly();
+		if (config.getDefaultCatalog() != null){
+			this.driverCatalog = connection.getCatalog();
+			this.driverCatalogKnown = true;
+		}
+		if (config.getDefaultTransactionIsolationValue() != -1){
+			this.driverTransactionIsolation = connection.getTransactionIsolation();
+		}
+		this.driverDefaultsKnown = true;
+	}
+
+	/** Returns true once the driver's session defaults have been read.
+	 * @return driverDefaultsKnown
+	 */
+	public boolean isDriverDefaultsKnown() {
+		return this.driverDefaultsKnown;
+	}
+
+	/** Returns the auto-commit state of new connections.
+	 * @return auto-commit, null if not known
+	 */
+	public Boolean getDriverAutoCommit() {
+		return this.driverAutoCommit;
+	}
+
+	/** Returns the read-only state of new connections.
+	 * @return read-only state, null if not known
+	 */
+	public Boolean getDriverReadOnly() {
+		return this.driverReadOnly;
+	}
+
+	/** Returns true if the catalog of new connections is known.
+	 * @return driverCatalogKnown
+	 */
+	public boolean isDriverCatalogKnown() {
+		return this.driverCatalogKnown;
+	}
+
+	/** Returns the catalog of new connections.
+	 * @return catalog, valid if isDriverCatalogKnown()
+	 */
+	public String getDriverCatalog() {
+		return this.driverCatalog;
+	}
+
+	/** Returns the transaction isolation of new connections.
+	 * @return transaction isolation, -1 if not known
+	 */
+	public int getDriverTransactionIsolation() {
+		return this.driverTransactionIsolation;
+	}
+
+	/** Returns whether the driver batches the init statements.
+	 * @return true/false, null if not found out yet
+	 */
+	public Boolean getBatchSupported() {
+		return this.batchSupported;
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+/**
+ * Bounded log of statements that took longer than slowQueryThresholdInMs to execute. Entries are written into a
+ * fixed size ring buffer (oldest entries are overwritten) without taking any locks. 
+ * 
+ * While the log is enabled, statements capture their parameters as they are set (as with logStatementsEnabled). 
+ * A slow query entry keeps a bounded summary of them rather than the values themselves: numbers, booleans and short
+ * strings are kept, long strings are cut short and anything else (streams, readers, LOBs, byte arrays, ...) is 
+ * reduced to its type. Only filling the summaries into the statement text is left until the log is read.
+ *
+ * @author wallacew
+ *
+ */
+public class SlowQueryLog implements Serializable {
+	/** uid */
+	private static final long serialVersionUID = 7497919062722618813L;
+	/** Used when a statement has no parameters. */
+	private static final Object[] NO_PARAMETERS = new Object[0];
+	/** At most this many parameters are kept per entry. */
+	protected static final int MAX_PARAMETERS = 100;
+	/** Longer string parameters are cut short. */
+	protected static final int MAX_PARAMETER_LENGTH = 100;
+	/** Composite data item names. */
+	private static final String[] ITEM_NAMES = {"timestamp", "executionTimeInMs", "thread", "sql"};
+	/** Composite data item types. */
+	private static final OpenType<?>[] ITEM_TYPES = {SimpleType.DATE, SimpleType.DOUBLE, SimpleType.STRING, SimpleType.STRING};
+	/** Ring buffer. */
+	private final AtomicReferenceArray<SlowQueryLogEntry> entries;
+	/** Number of slow queries recorded so far. */
+	private final AtomicLong sequence = new AtomicLong();
+	/** Statements taking longer than this are recorded. */
+	private final long thresholdInNanos;
+
+	/** Constructor.
+	 * @param capacity number of entries to keep
+	 * @param thresholdInNanos statements taking longer than this are recorded
+	 */
+	public SlowQueryLog(int capacity, long thresholdInNanos){
+		this.entries = new AtomicReferenceArray<SlowQueryLogEntry>(capacity);
+		this.thresholdInNanos = thresholdInNanos;
+	}
+
+	/** Returns the threshold above which statements are recorded.
+	 * @return threshold in ns
+	 */
+	public long getThresholdInNanos() {
+		return this.thresholdInNanos;
+	}
+
+	/** Records a slow statement.
+	 * @param sql statement text
+	 * @param logParams parameters captured by the statement (may be null or empty)
+	 * @param executionTimeInNanos time taken to execute
+	 */
+	public void record(String sql, Map<Object, Object> logParams, long executionTimeInNanos){
+		Object[] parameters = NO_PARAMETERS;
+		if (logParams != null && !logParams.isEmpty()){
+			parameters = new Object[Math.min(logParams.size(), MAX_PARAMETERS)];
+			int i = 0;
+			for (Object value: logParams.values()){
+				if (i == parameters.length){
+					break;
+				}
+				parameters[i++] = summarize(value);
+			}
+		}
+		long slot = this.sequence.getAndIncrement();
+		this.entries.set((int) (slot % this.entries.length()), new SlowQueryLogEntry(slot, System.currentTimeMillis(), 
+				executionTimeInNanos, Thread.currentThread().getName(), sql, parameters));
+	}
+
+	/** Returns what is kept of a parameter value in a log entry: immutable simple values as they are, long strings
+	 * cut short and anything else reduced to its type (and length, for byte arrays). No driver calls are made.
+	 * @param value parameter value
+	 * @return value or summary to keep
+	 */
+	protected static Object summarize(Object value){
+		if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Character){
+			return value;
+		}
+		if (value instanceof String){
+			String s = (String) value;
+			return s.length() > MAX_PARAMETER_LENGTH ? s.substring(0, MAX_PARAMETER_LENGTH) + "..." : s;
+		}
+		if (value instanceof Date){
+			return value.toString(); // mutable, keep its current value only.
+		}
+		if (value instanceof byte[]){
+			return new Summary("(byte[" + ((byte[]) value).length + "])");
+		}
+		return new Summary("(" + value.getClass().getSimpleName() + ")");
+	}
+
+	/** Returns the total number of slow queries recorded (including those no longer held in the log).
+	 * @return slow query count
+	 */
+	public long getSlowQueryCount() {
+		return this.sequence.get();
+	}
+
+	/** Returns the entries currently held in the log, most recent first.
+	 * @return log entries
+	 */
+	public List<SlowQueryLogEntry> getSnapshot(){
+		int capacity = this.entries.length();
+		long last = this.sequence.get() - 1;
+		List<SlowQueryLogEntry> result = new ArrayList<SlowQueryLogEntry>(capacity);
+		for (long slot = last; slot >= 0 && slot > last - capacity; slot--){
+			SlowQueryLogEntry entry = this.entries.get((int) (slot % capacity));
+			if (entry != null && entry.getSequence() == slot){ // skip slots still being written or already overwritten
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/** Returns the entries currently held in the log as JMX composite data, most recent first.
+	 * @return log entries
+	 */
+	public CompositeData[] getCompositeData(){
+		List<SlowQueryLogEntry> snapshot = getSnapshot();
+		CompositeData[] result = new CompositeData[snapshot.size()];
+		try {
+			CompositeType type = new CompositeType(SlowQueryLogEntry.class.getName(), "Slow query", ITEM_NAMES, ITEM_NAMES, ITEM_TYPES);
+			for (int i=0; i < result.length; i++){
+				SlowQueryLogEntry entry = snapshot.get(i);
+				result[i] = new CompositeDataSupport(type, ITEM_NAMES, new Object[]{new Date(entry.getTimestampInMs()), 
+						entry.getExecutionTimeInMs(), entry.getThreadName(), entry.getFormattedSql()});
+			}
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e); // only thrown if the (static) type definition above is wrong
+		}
+		return result;
+	}
+
+	/** Discards all entries. */
+	public synchronized void reset(){
+		for (int i=0; i < this.entries.length(); i++){
+			this.entries.set(i, null);
+		}
+		this.sequence.set(0);
+	}
+
+	/** Stands in for a parameter value that is not kept. Printed as is (unlike strings, which are quoted). */
+	protected static final class Summary implements Serializable {
+		/** uid */
+		private static final long serialVersionUID = -5237829356010325734L;
+		/** Text to print. */
+		private final String text;
+
+		/** Constructor.
+		 * @param text text to print
+		 */
+		protected Summary(String text){
+			this.text = text;
+		}
+
+		@Override
+		public String toString() {
+			return this.text;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement recorded by the {@link SlowQueryLog}. Parameters are kept as a bounded summary (see 
+ * SlowQueryLog.summarize()); they are only filled into the statement text when getFormattedSql() is first called.
+ *
+ * @author wallacew
+ *
+ */
+public class SlowQueryLogEntry implements Serializable {
+	/** uid */
+	private static final long serialVersionUID = -1880265862573519101L;
+	/** Position of this entry in the log. */
+	private final long sequence;
+	/** Time at which the statement completed. */
+	private final long timestampInMs;
+	/** Time taken to execute. */
+	private final long executionTimeInNanos;
+	/** Name of the thread that executed the statement. */
+	private final String threadName;
+	/** Statement text, with placeholders. */
+	private final String sql;
+	/** Parameter values (or summaries of them), in order. */
+	private final Object[] parameters;
+	/** Statement text with parameters filled in (formatted on demand). */
+	private volatile String formattedSql;
+
+	/** Constructor.
+	 * @param sequence position of this entry in the log
+	 * @param timestampInMs time at which the statement completed
+	 * @param executionTimeInNanos time taken to execute
+	 * @param threadName name of the thread that executed the statement
+	 * @param sql statement text
+	 * @param parameters parameter values (or summaries of them), in order
+	 */
+	protected SlowQueryLogEntry(long sequence, long timestampInMs, long executionTimeInNanos, String threadName, String sql, Object[] parameters){
+		this.sequence = sequence;
+		this.timestampInMs = timestampInMs;
+		this.executionTimeInNanos = executionTimeInNanos;
+		this.threadName = threadName;
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	/** Returns the position of this entry in the log (0 for the first slow query recorded).
+	 * @return sequence number
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/** Returns the time at which the statement completed.
+	 * @return time in ms since the epoch
+	 */
+	public long getTimestampInMs() {
+		return this.timestampInMs;
+	}
+
+	/** Returns the time taken to execute the statement (in ms).
+	 * @return time in ms
+	 */
+	public double getExecutionTimeInMs() {
+		return this.executionTimeInNanos / 1000000.0;
+	}
+
+	/** Returns the time taken to execute the statement in the given time unit.
+	 * @param timeUnit time granularity
+	 * @return execution time
+	 */
+	public long getExecutionTime(TimeUnit timeUnit) {
+		return timeUnit.convert(this.executionTimeInNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/** Returns the name of the thread that executed the statement.
+	 * @return thread name
+	 */
+	public String getThreadName() {
+		return this.threadName;
+	}
+
+	/** Returns the statement text, with placeholders.
+	 * @return sql
+	 */
+	public String getSql() {
+		return this.sql;
+	}
+
+	/** Returns the statement text with the parameters filled in.
+	 * @return formatted statement
+	 */
+	public String getFormattedSql() {
+		String result = this.formattedSql;
+		if (result == null){
+			result = PoolUtil.fillLogParamValues(this.sql, this.parameters);
+			this.formattedSql = result;
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.3f ms [%s]: %s", getExecutionTimeInMs(), this.threadName, getFormattedSql());
+	}
+}
@@ -0,0 +1,430 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass SQL tokenizer that replaces literals with placeholders. Used to group statements that only differ in
+ * their literal values (eg "SELECT * FROM foo WHERE id=123") for statistics and to turn such statements into
+ * parameterized ones that can be prepared and cached.
+ * 
+ * Like PoolUtil.fillLogParams, the scan is quote-aware: quoted identifiers are left alone and '?' placeholders inside 
+ * string literals are not treated as parameters. In addition, comments are dropped, runs of whitespace are collapsed 
+ * and keywords/identifiers are compared case-insensitively when computing the fingerprint.
+ *
+ * @author wallacew
+ *
+ */
+public class SqlNormalizer {
+	/** FNV-1a 64-bit offset basis. */
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	/** FNV-1a 64-bit prime. */
+	private static final long FNV_PRIME = 0x100000001b3L;
+	/** Only statements starting with one of these words are auto-parameterized. */
+	private static final String[] PARAMETERIZABLE_STATEMENTS = {"SELECT", "INSERT", "UPDATE", "DELETE", "MERGE"};
+	/** Token type: nothing seen yet / anything not listed below. */
+	private static final int OTHER = 0;
+	/** Token type: keyword or identifier. */
+	private static final int WORD = 1;
+	/** Token type: =, <, >, <=, >=, <>, != */
+	private static final int COMPARISON = 2;
+	/** Token type: opening bracket. */
+	private static final int OPEN = 3;
+	/** Token type: comma. */
+	private static final int COMMA = 4;
+	
+	/** Statement being scanned. */
+	private final String sql;
+	/** Receives the normalized text, may be null. */
+	private final StringBuilder normalized;
+	/** Receives the parameterized statement, may be null. */
+	private final StringBuilder parameterized;
+	/** Receives the values of the literals replaced in parameterized, may be null. */
+	private final List<Object> parameters;
+	/** Fingerprint so far. */
+	private long hash = FNV_OFFSET_BASIS;
+	/** Last character that went into the fingerprint. */
+	private char lastEmitted;
+	/** True if whitespace (or a comment) was skipped since the last emitted character. */
+	private boolean pendingSpace;
+	/** Type of the last token. */
+	private int previous = OTHER;
+	/** Bounds of the last word (if previous == WORD, start is -1 for quoted identifiers). */
+	private int previousWordStart = -1, previousWordEnd;
+	/** Bounds of the first word of the statement. */
+	private int firstWordStart = -1, firstWordEnd;
+	/** Bracket nesting level. */
+	private int depth;
+	/** Bit n is set if the bracket at level n+1 opens an IN (...) or VALUES (...) list. */
+	private long listBrackets;
+	/** True if the statement already contains '?' placeholders. */
+	private boolean hasPlaceholders;
+
+	/** Constructor.
+	 * @param sql statement to scan
+	 * @param normalized receives the normalized text, may be null
+	 * @param parameterized receives the parameterized statement, may be null
+	 * @param parameters receives the literal values, may be null
+	 */
+	private SqlNormalizer(String sql, StringBuilder normalized, StringBuilder parameterized, List<Object> parameters){
+		this.sql = sql;
+		this.normalized = normalized;
+		this.parameterized = parameterized;
+		this.parameters = parameters;
+	}
+
+	/** Returns a 64-bit fingerprint of the given statement. Statements that only differ in their literal values, 
+	 * comments, whitespace or the case of keywords and unquoted identifiers share the same fingerprint.
+	 * @param sql statement
+	 * @return fingerprint
+	 */
+	public static long fingerprint(String sql){
+		SqlNormalizer normalizer = new SqlNormalizer(sql, null, null, null);
+		normalizer.scan();
+		return normalizer.hash;
+	}
+
+	/** Returns the given statement with all literals replaced by '?', comments removed and whitespace collapsed.
+	 * @param sql statement
+	 * @return normalized statement
+	 */
+	public static String normalize(String sql){
+		StringBuilder result = new StringBuilder(sql.length());
+		new SqlNormalizer(sql, result, null, null).scan();
+		return result.toString();
+	}
+
+	/** Turns literals into parameters where this can be done without changing the meaning of the statement: only 
+	 * in SELECT/INSERT/UPDATE/DELETE/MERGE statements that do not already have placeholders, and only for numeric 
+	 * literals that are compared against (=, <>, ...) or that appear in IN (...) and VALUES (...) lists. Other literals
+	 * (eg LIMIT 10, ORDER BY 1, DATE '2013-01-01') are left in place. String literals are always left in place: 
+	 * bound as a character parameter they may compare differently (eg no blank-padded comparison against CHAR 
+	 * columns on Oracle) or not at all (eg against date, uuid or enum columns on PostgreSQL).
+	 * @param sql statement
+	 * @return parameterized statement, with no parameters if nothing could be replaced.
+	 */
+	public static ParameterizedSql parameterize(String sql){
+		StringBuilder text = new StringBuilder(sql.length());
+		List<Object> values = new ArrayList<Object>();
+		SqlNormalizer normalizer = new SqlNormalizer(sql, null, text, values);
+		normalizer.scan();
+		if (values.isEmpty() || normalizer.hasPlaceholders || !normalizer.isParameterizableStatement()){
+			return new ParameterizedSql(sql, new ArrayList<Object>(0), normalizer.hash);
+		}
+		return new ParameterizedSql(text.toString(), values, normalizer.hash);
+	}
+
+	/** Scans the statement. */
+	private void scan(){
+		int length = this.sql.length();
+		int i = 0;
+		while (i < length){
+			char c = this.sql.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c)){
+				i++;
+				skipped(start, i);
+			} else if (c == '-' && i + 1 < length && this.sql.charAt(i + 1) == '-'){
+				int end = this.sql.indexOf('\n', i + 2);
+				i = end < 0 ? length : end;
+				skipped(start, i);
+			} else if (c == '/' && i + 1 < length && this.sql.charAt(i + 1) == '*'){
+				int end = this.sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+				skipped(start, i);
+			} else if (c == '\''){
+				i = scanString(i);
+			} else if (c == '"' || c == '`'){
+				int end = this.sql.indexOf(c, i + 1);
+				i = end < 0 ? length : end + 1;
+				for (int j = start; j < i; j++){
+					emit(this.sql.charAt(j), this.sql.charAt(j));
+				}
+				copy(start, i);
+				this.previous = WORD;
+				this.previousWordStart = -1;
+			} else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(this.sql.charAt(i + 1)))){
+				i = scanNumber(i);
+			} else if (isIdentifierPart(c)){
+				while (i < length && isIdentifierPart(this.sql.charAt(i))){
+					i++;
+				}
+				word(start, i);
+			} else {
+				i++;
+				symbol(c);
+			}
+		}
+	}
+
+	/** Handles a string literal.
+	 * @param start position of the opening quote
+	 * @return position after the closing quote
+	 */
+	private int scanString(int start){
+		int length = this.sql.length();
+		int i = start + 1;
+		while (i < length){
+			char c = this.sql.charAt(i);
+			if (c == '\''){
+				if (i + 1 < length && this.sql.charAt(i + 1) == '\''){
+					i += 2;
+					continue;
+				}
+				i++;
+				break;
+			}
+			i++;
+		}
+		// not bindable: the type of a string literal is inferred from where it's used, a parameter's is not.
+		literal(start, i, false, null);
+		return i;
+	}
+
+	/** Handles a numeric literal (or an identifier starting with a digit).
+	 * @param start position of the first digit
+	 * @return position after the number
+	 */
+	private int scanNumber(int start){
+		int length = this.sql.length();
+		int i = start;
+		boolean integral = true;
+		while (i < length && Character.isDigit(this.sql.charAt(i))){
+			i++;
+		}
+		if (i < length && this.sql.charAt(i) == '.'){
+			integral = false;
+			i++;
+			while (i < length && Character.isDigit(this.sql.charAt(i))){
+				i++;
+			}
+		}
+		if (i < length && (this.sql.charAt(i) == 'e' || this.sql.charAt(i) == 'E')){
+			int exponent = i + 1;
+			if (exponent < length && (this.sql.charAt(exponent) == '+' || this.sql.charAt(exponent) == '-')){
+				exponent++;
+			}
+			if (exponent < length && Character.isDigit(this.sql.charAt(exponent))){
+				integral = false;
+				i = exponent;
+				while (i < length && Character.isDigit(this.sql.charAt(i))){
+					i++;
+				}
+			}
+		}
+
+		if (i < length && isIdentifierPart(this.sql.charAt(i))){ // eg 0x1F, 1st_column
+			while (i < length && isIdentifierPart(this.sql.charAt(i))){
+				i++;
+			}
+			word(start, i);
+			return i;
+		}
+
+		Object value = null;
+		if (this.parameters != null){
+			String text = this.sql.substring(start, i);
+			value = integral && text.length() < 19 ? Long.valueOf(text) : new BigDecimal(text);
+		}
+		literal(start, i, true, value);
+		return i;
+	}
+
+	/** Handles a literal.
+	 * @param start start of the literal
+	 * @param end end of the literal
+	 * @param bindable true if the literal itself can be passed as a parameter
+	 * @param value parameter value
+	 */
+	private void literal(int start, int end, boolean bindable, Object value){
+		emit('?', '?');
+		if (this.parameterized != null){
+			if (bindable && isParameterContext()){
+				this.parameterized.append('?');
+				this.parameters.add(value);
+			} else {
+				copy(start, end);
+			}
+		}
+		this.previous = OTHER;
+	}
+
+	/** Handles a keyword or identifier.
+	 * @param start start of the word
+	 * @param end end of the word
+	 */
+	private void word(int start, int end){
+		for (int i = start; i < end; i++){
+			char c = this.sql.charAt(i);
+			emit(c, Character.toLowerCase(c));
+		}
+		copy(start, end);
+		if (this.firstWordStart < 0){
+			this.firstWordStart = start;
+			this.firstWordEnd = end;
+		}
+		this.previous = WORD;
+		this.previousWordStart = start;
+		this.previousWordEnd = end;
+	}
+
+	/** Handles any other character.
+	 * @param c character
+	 */
+	private void symbol(char c){
+		int type = OTHER;
+		switch (c){
+		case '?':
+			this.hasPlaceholders = true;
+			break;
+		case '=':
+		case '<':
+		case '>':
+			type = COMPARISON;
+			break;
+		case ',':
+			type = COMMA;
+			break;
+		case '(':
+			this.depth++;
+			if (this.depth <= 64){
+				long bit = 1L << (this.depth - 1);
+				if (previousWordIs("IN") || previousWordIs("VALUES")){
+					this.listBrackets |= bit;
+				} else {
+					this.listBrackets &= ~bit;
+				}
+			}
+			type = OPEN;
+			break;
+		case ')':
+			if (this.depth > 0){
+				this.depth--;
+			}
+			break;
+		default:
+			break;
+		}
+		emit(c, c);
+		if (this.parameterized != null){
+			this.parameterized.append(c);
+		}
+		this.previous = type;
+	}
+
+	/** Handles whitespace and comments.
+	 * @param start start of skipped text
+	 * @param end end of skipped text
+	 */
+	private void skipped(int start, int end){
+		this.pendingSpace = this.lastEmitted != 0;
+		copy(start, end);
+	}
+
+	/** Returns true if a literal at the current position can be replaced by a parameter.
+	 * @return true if bindable
+	 */
+	private boolean isParameterContext(){
+		switch (this.previous){
+		case COMPARISON:
+			return true;
+		case WORD:
+			return previousWordIs("LIKE");
+		case OPEN:
+		case COMMA:
+			return this.depth > 0 && this.depth <= 64 && (this.listBrackets & (1L << (this.depth - 1))) != 0;
+		default:
+			return false;
+		}
+	}
+
+	/** Returns true if the statement is one that is safe to parameterize.
+	 * @return true if DML
+	 */
+	private boolean isParameterizableStatement(){
+		if (this.firstWordStart < 0){
+			return false;
+		}
+		for (String keyword: PARAMETERIZABLE_STATEMENTS){
+			if (keyword.length() == this.firstWordEnd - this.firstWordStart 
+					&& this.sql.regionMatches(true, this.firstWordStart, keyword, 0, keyword.length())){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns true if the last token was the given keyword.
+	 * @param keyword keyword in upper case
+	 * @return true if matched
+	 */
+	private boolean previousWordIs(String keyword){
+		return this.previous == WORD && this.previousWordStart >= 0 
+				&& keyword.length() == this.previousWordEnd - this.previousWordStart
+				&& this.sql.regionMatches(true, this.previousWordStart, keyword, 0, keyword.length());
+	}
+
+	/** Adds a character to the normalized text and the fingerprint. Whitespace only counts towards the fingerprint
+	 * if it separates two words, so "a=1" and "a = 1" match. 
+	 * @param c character as it appears in the statement
+	 * @param folded character to use for the fingerprint
+	 */
+	private void emit(char c, char folded){
+		if (this.pendingSpace){
+			if (this.normalized != null){
+				this.normalized.append(' ');
+			}
+			if (isWordCharacter(this.lastEmitted) && isWordCharacter(c)){
+				this.hash = (this.hash ^ ' ') * FNV_PRIME;
+			}
+			this.pendingSpace = false;
+		}
+		if (this.normalized != null){
+			this.normalized.append(c);
+		}
+		this.hash = (this.hash ^ folded) * FNV_PRIME;
+		this.lastEmitted = c;
+	}
+
+	/** Copies part of the statement as is to the parameterized output.
+	 * @param start start
+	 * @param end end
+	 */
+	private void copy(int start, int end){
+		if (this.parameterized != null){
+			this.parameterized.append(this.sql, start, end);
+		}
+	}
+
+	/** Returns true if the given character can be part of an unquoted identifier.
+	 * @param c character
+	 * @return true if identifier character
+	 */
+	private static boolean isIdentifierPart(char c){
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+	}
+
+	/** Returns true if whitespace next to this character is significant.
+	 * @param c character
+	 * @return true if part of a word, literal or quoted identifier
+	 */
+	private static boolean isWordCharacter(char c){
+		return isIdentifierPart(c) || c == '?' || c == '\'' || c == '"' || c == '`';
+	}
+}
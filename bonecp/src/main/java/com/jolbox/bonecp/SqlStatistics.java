@@ -0,0 +1,169 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+/**
+ * Bounded table of per-SQL execution statistics, keyed by the statement's fingerprint (see {@link SqlNormalizer}) so 
+ * that statements only differing in their literal values are counted together. Uses the space-saving algorithm: once the table holds 
+ * capacity statements, a statement that is not being tracked replaces the entry with the lowest count and 
+ * inherits that count (recorded as the entry's error). Frequently executed statements therefore stay in the table
+ * no matter how many one-off statements pass through it.
+ * 
+ * Recording an execution of a tracked statement is lock-free; only admitting a new statement takes a lock.
+ *
+ * @author wallacew
+ *
+ */
+public class SqlStatistics implements Serializable {
+	/** uid */
+	private static final long serialVersionUID = -3524879417652316617L;
+	/** Composite data item names. */
+	private static final String[] ITEM_NAMES = {"sql", "fingerprint", "count", "error", "totalTimeInMs", "averageTimeInMs", "maxTimeInMs",
+		"under1ms", "under10ms", "under100ms", "under1000ms", "over1000ms"};
+	/** Composite data item types. */
+	private static final OpenType<?>[] ITEM_TYPES = {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE, 
+		SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG};
+	/** Orders entries by count, highest first. */
+	private static final Comparator<SqlStatisticsEntry> BY_COUNT = new Comparator<SqlStatisticsEntry>() {
+		// @Override
+		public int compare(SqlStatisticsEntry o1, SqlStatisticsEntry o2) {
+			long c1 = o1.getCount();
+			long c2 = o2.getCount();
+			return c1 > c2 ? -1 : (c1 == c2 ? 0 : 1);
+		}
+	};
+	/** Statements being tracked. */
+	private final ConcurrentMap<Long, SqlStatisticsEntry> entries;
+	/** Maximum number of statements to track. */
+	private final int capacity;
+
+	/** Constructor.
+	 * @param capacity maximum number of statements to track
+	 */
+	public SqlStatistics(int capacity){
+		this.capacity = capacity;
+		this.entries = new ConcurrentHashMap<Long, SqlStatisticsEntry>(capacity);
+	}
+
+	/** Records one execution of the given statement.
+	 * @param sql statement text
+	 * @param timeInNanos time taken to execute
+	 */
+	public void record(String sql, long timeInNanos){
+		record(SqlNormalizer.fingerprint(sql), sql, timeInNanos);
+	}
+
+	/** Records one execution of a statement whose fingerprint has already been computed.
+	 * @param fingerprint fingerprint of sql
+	 * @param sql statement text
+	 * @param timeInNanos time taken to execute
+	 */
+	public void record(long fingerprint, String sql, long timeInNanos){
+		SqlStatisticsEntry entry = this.entries.get(fingerprint);
+		if (entry == null){
+			entry = admit(fingerprint, sql);
+		}
+		entry.record(timeInNanos);
+	}
+
+	/** Adds a statement to the table, evicting the entry with the lowest count if the table is full.
+	 * @param fingerprint fingerprint of sql
+	 * @param sql statement text
+	 * @return entry for sql
+	 */
+	private synchronized SqlStatisticsEntry admit(long fingerprint, String sql){
+		SqlStatisticsEntry entry = this.entries.get(fingerprint);
+		if (entry != null){
+			return entry;
+		}
+
+		long error = 0;
+		if (this.entries.size() >= this.capacity){
+			SqlStatisticsEntry min = null;
+			for (SqlStatisticsEntry candidate: this.entries.values()){
+				if (min == null || candidate.getCount() < min.getCount()){
+					min = candidate;
+				}
+			}
+			this.entries.remove(min.getFingerprint());
+			error = min.getCount();
+		}
+		entry = new SqlStatisticsEntry(fingerprint, SqlNormalizer.normalize(sql), error);
+		this.entries.put(fingerprint, entry);
+		return entry;
+	}
+
+	/** Returns the maximum number of statements tracked.
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/** Returns a copy of the tracked statements, most frequently executed first.
+	 * @return statement statistics
+	 */
+	public List<SqlStatisticsEntry> getSnapshot(){
+		List<SqlStatisticsEntry> result = new ArrayList<SqlStatisticsEntry>(this.entries.size());
+		for (SqlStatisticsEntry entry: this.entries.values()){
+			result.add(new SqlStatisticsEntry(entry));
+		}
+		Collections.sort(result, BY_COUNT);
+		return result;
+	}
+
+	/** Returns the tracked statements as JMX composite data, most frequently executed first.
+	 * @return statement statistics
+	 */
+	public CompositeData[] getCompositeData(){
+		List<SqlStatisticsEntry> snapshot = getSnapshot();
+		CompositeData[] result = new CompositeData[snapshot.size()];
+		try {
+			CompositeType type = new CompositeType(SqlStatisticsEntry.class.getName(), "SQL statement statistics", 
+					ITEM_NAMES, ITEM_NAMES, ITEM_TYPES);
+			for (int i=0; i < result.length; i++){
+				SqlStatisticsEntry entry = snapshot.get(i);
+				long[] histogram = entry.getHistogram();
+				result[i] = new CompositeDataSupport(type, ITEM_NAMES, new Object[]{entry.getSql(), entry.getFingerprint(), entry.getCount(), entry.getError(),
+						entry.getTotalTimeInMs(), entry.getAverageTimeInMs(), entry.getMaxTimeInMs(), 
+						histogram[0], histogram[1], histogram[2], histogram[3], histogram[4]});
+			}
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e); // only thrown if the (static) type definition above is wrong
+		}
+		return result;
+	}
+
+	/** Discards all tracked statements. */
+	public synchronized void reset(){
+		this.entries.clear();
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution statistics for a single SQL statement, as tracked by {@link SqlStatistics}. Instances returned by
+ * {@link Statistics#getSqlStatisticsSnapshot()} are copies and are not updated further.
+ *
+ * @author wallacew
+ *
+ */
+public class SqlStatisticsEntry implements Serializable {
+	/** uid */
+	private static final long serialVersionUID = 3329180573420637742L;
+	/** Upper bounds (exclusive, in ms) of the histogram buckets. The last bucket holds everything else. */
+	protected static final long[] HISTOGRAM_BOUNDS_IN_MS = {1, 10, 100, 1000};
+	/** Fingerprint of the statement. */
+	private final long fingerprint;
+	/** Normalized statement text. */
+	private final String sql;
+	/** Number of executions, including the count inherited from the statement this entry replaced. */
+	private final AtomicLong count;
+	/** Count inherited on admission; count minus error is a lower bound on the true number of executions. */
+	private final long error;
+	/** Time spent executing since this entry was admitted. */
+	private final AtomicLong totalTimeInNanos = new AtomicLong();
+	/** Slowest execution since this entry was admitted. */
+	private final AtomicLong maxTimeInNanos = new AtomicLong();
+	/** Execution counts, bucketed by HISTOGRAM_BOUNDS_IN_MS. */
+	private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BOUNDS_IN_MS.length + 1);
+
+	/** Constructor.
+	 * @param fingerprint fingerprint of the statement
+	 * @param sql normalized statement text
+	 * @param error count inherited from the evicted entry (0 if none)
+	 */
+	protected SqlStatisticsEntry(long fingerprint, String sql, long error){
+		this.fingerprint = fingerprint;
+		this.sql = sql;
+		this.error = error;
+		this.count = new AtomicLong(error);
+	}
+
+	/** Copy constructor used for snapshots.
+	 * @param entry entry to copy
+	 */
+	protected SqlStatisticsEntry(SqlStatisticsEntry entry){
+		this(entry.fingerprint, entry.sql, entry.error);
+		this.count.set(entry.count.get());
+		this.totalTimeInNanos.set(entry.totalTimeInNanos.get());
+		this.maxTimeInNanos.set(entry.maxTimeInNanos.get());
+		for (int i=0; i < this.histogram.length(); i++){
+			this.histogram.set(i, entry.histogram.get(i));
+		}
+	}
+
+	/** Records one execution.
+	 * @param timeInNanos time taken to execute
+	 */
+	protected void record(long timeInNanos){
+		this.count.incrementAndGet();
+		this.totalTimeInNanos.addAndGet(timeInNanos);
+		long max;
+		while (timeInNanos > (max = this.maxTimeInNanos.get())){
+			if (this.maxTimeInNanos.compareAndSet(max, timeInNanos)){
+				break;
+			}
+		}
+		this.histogram.incrementAndGet(bucketFor(timeInNanos));
+	}
+
+	/** Returns the histogram bucket for the given time.
+	 * @param timeInNanos execution time
+	 * @return bucket index
+	 */
+	private static int bucketFor(long timeInNanos){
+		long timeInMs = TimeUnit.NANOSECONDS.toMillis(timeInNanos);
+		int i = 0;
+		while (i < HISTOGRAM_BOUNDS_IN_MS.length && timeInMs >= HISTOGRAM_BOUNDS_IN_MS[i]){
+			i++;
+		}
+		return i;
+	}
+
+	/** Returns the fingerprint of the statement (see {@link SqlNormalizer#fingerprint(String)}).
+	 * @return fingerprint
+	 */
+	public long getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/** Returns the statement text with literals replaced by '?'.
+	 * @return sql
+	 */
+	public String getSql() {
+		return this.sql;
+	}
+
+	/** Returns the number of executions. This may overestimate by at most getError() for statements admitted after
+	 * the table became full.
+	 * @return execution count
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/** Returns the maximum overestimation of getCount().
+	 * @return error
+	 */
+	public long getError() {
+		return this.error;
+	}
+
+	/** Returns the number of executions actually timed by this entry (count minus error).
+	 * @return number of timed executions
+	 */
+	public long getTimedCount() {
+		return this.count.get() - this.error;
+	}
+
+	/** Returns the total execution time of the timed executions (in ms).
+	 * @return time in ms
+	 */
+	public double getTotalTimeInMs() {
+		return this.totalTimeInNanos.get() / 1000000.0;
+	}
+
+	/** Returns the average execution time of the timed executions (in ms).
+	 * @return time in ms
+	 */
+	public double getAverageTimeInMs() {
+		long timed = getTimedCount();
+		return timed <= 0 ? 0 : this.totalTimeInNanos.get() / (1.0*timed) / 1000000.0;
+	}
+
+	/** Returns the slowest timed execution (in ms).
+	 * @return time in ms
+	 */
+	public double getMaxTimeInMs() {
+		return this.maxTimeInNanos.get() / 1000000.0;
+	}
+
+	/** Returns the latency histogram. Element i counts executions taking less than HISTOGRAM_BOUNDS_IN_MS[i] ms (and
+	 * at least the previous bound); the last element counts executions taking 1 second or more.
+	 * @return histogram counts
+	 */
+	public long[] getHistogram() {
+		long[] result = new long[this.histogram.length()];
+		for (int i=0; i < result.length; i++){
+			result[i] = this.histogram.get(i);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [count=%d, error=%d, totalTimeInMs=%.3f, maxTimeInMs=%.3f]", 
+				this.sql, getCount(), this.error, getTotalTimeInMs(), getMaxTimeInMs());
+	}
+}
@@ -51,6 +51,8 @@ public class StatementHandle implements Statement{
 	private String cacheKey ;
 	/** If enabled, log all statements being executed. */
 	protected boolean logStatementsEnabled;
+	/** If enabled, keep track of parameters as they are set (for logging or the slow query log). */
+	protected boolean captureParameters;
 	/** If true, this statement is in the cache. */
 	public volatile boolean inCache = false;
 	/** Stack trace capture of where this statement was opened. */ 
@@ -61,12 +63,26 @@ public class StatementHandle implements Statement{
 	protected long queryExecuteTimeLimit;
 	/** Config setting. */
 	protected ConnectionHook connectionHook;
+	/** True if the connection hook implements onBeforeStatementExecute. */
+	protected boolean hookBeforeExecute;
+	/** True if the connection hook implements onAfterStatementExecute. */
+	protected boolean hookAfterExecute;
 	/** An opaque object. */
 	private Object debugHandle;
 	/** if true, we care about statistics. */
 	private boolean statisticsEnabled;
 	/** Statistics handle. */
 	private Statistics statistics;
+	/** Per-SQL statistics, or null if disabled. */
+	private SqlStatistics sqlStatistics;
+	/** Fingerprint of sql (only computed if per-SQL statistics are enabled). */
+	private long sqlFingerprint;
+	/** Slow query log, or null if disabled. */
+	private SlowQueryLog slowQueryLog;
+	/** Statements taking longer than this are recorded in the slow query log. */
+	private long slowQueryThresholdInNanos;
+	/** Pool clock. */
+	private PoolClock clock;
 	
 	/** For logging purposes - stores parameters to be used for execution. */
 	protected Map<Object, Object> logParams = new TreeMap<Object, Object>();
@@ -96,8 +112,24 @@ public class StatementHandle implements Statement{
 		this.logStatementsEnabled = logStatementsEnabled;
 		BoneCPConfig config = connectionHandle.getPool().getConfig();
 		this.connectionHook = config.getConnectionHook();
+		ConnectionHookEvents hookEvents = connectionHandle.getConnectionHookEvents();
+		if (hookEvents == null){
+			hookEvents = this.connectionHook == null ? ConnectionHookEvents.NONE : ConnectionHookEvents.ALL;
+		}
+		this.hookBeforeExecute = hookEvents.isOnBeforeStatementExecute();
+		this.hookAfterExecute = hookEvents.isOnAfterStatementExecute();
 		this.statistics = connectionHandle.getPool().getStatistics();
+		this.clock = BoneCP.getClock(connectionHandle.getPool());
 		this.statisticsEnabled = config.isStatisticsEnabled();
+		this.sqlStatistics = this.statisticsEnabled && this.statistics != null ? this.statistics.getSqlStatisticsTable() : null;
+		if (this.sqlStatistics != null && sql != null){
+			this.sqlFingerprint = SqlNormalizer.fingerprint(sql);
+		}
+		this.slowQueryLog = this.statistics != null ? this.statistics.getSlowQueryLog() : null;
+		if (this.slowQueryLog != null){
+			this.slowQueryThresholdInNanos = this.slowQueryLog.getThresholdInNanos();
+		}
+		this.captureParameters = logStatementsEnabled || this.slowQueryLog != null;
 
 		try{
 			
@@ -130,8 +162,10 @@ public class StatementHandle implements Statement{
 	public void close() throws SQLException {
 		this.connectionHandle.untrackStatement(this);
 		this.logicallyClosed.set(true);
-		if (this.logStatementsEnabled){
+		if (this.captureParameters){
 			this.logParams.clear();
+		}
+		if (this.logStatementsEnabled){
 			this.batchSQL = new StringBuilder();
 		}
 		if (this.cache == null || !this.inCache){ // no cache = throw it away right now
@@ -248,11 +282,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long timer = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.execute(sql);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			queryTimerEnd(sql, timer);
@@ -272,19 +306,31 @@ public class StatementHandle implements Statement{
 	 * @param queryStartTime time when query was started.
 	 */
 	protected void queryTimerEnd(String sql, long queryStartTime) {
+		long timeElapsed = this.clock.nanoTime() - queryStartTime;
 		if ((this.queryExecuteTimeLimit != 0) 
 				&& (this.connectionHook != null)){
-			long timeElapsed = (System.nanoTime() - queryStartTime);
 			
 			if (timeElapsed > this.queryExecuteTimeLimit){
 				this.connectionHook.onQueryExecuteTimeLimitExceeded(this.connectionHandle, this, sql, this.logParams, timeElapsed);
 			}
 		}
+
+		if (this.slowQueryLog != null && timeElapsed > this.slowQueryThresholdInNanos){
+			// batches only carry their SQL text if statement logging is on
+			this.slowQueryLog.record(sql == null || sql.length() == 0 ? this.sql : sql, this.logParams, timeElapsed);
+		}
 		
 		if (this.statisticsEnabled){
 			this.statistics.incrementStatementsExecuted();
-			this.statistics.addStatementExecuteTime(System.nanoTime() - queryStartTime);
-			
+			this.statistics.addStatementExecuteTime(timeElapsed);
+			if (this.sqlStatistics != null){
+				// batches only carry their SQL text if statement logging is on
+				if (this.sql != null && this.sql.length() > 0 && (sql == null || sql.length() == 0 || sql == this.sql)){
+					this.sqlStatistics.record(this.sqlFingerprint, this.sql, timeElapsed);
+				} else if (sql != null && sql.length() > 0){
+					this.sqlStatistics.record(sql, timeElapsed);
+				}
+			}
 		}
 
 	}
@@ -306,12 +352,12 @@ public class StatementHandle implements Statement{
 			}
 
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.execute(sql, autoGeneratedKeys);
 
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -329,7 +375,7 @@ public class StatementHandle implements Statement{
 	 * @return Start time
 	 */
 	protected long queryTimerStart() {
-		return this.statisticsEnabled || ((this.queryExecuteTimeLimit != 0) && (this.connectionHook != null)) ? System.nanoTime() : Long.MAX_VALUE;
+		return this.statisticsEnabled || this.slowQueryLog != null || ((this.queryExecuteTimeLimit != 0) && (this.connectionHook != null)) ? this.clock.nanoTime() : Long.MAX_VALUE;
 	}
 
 	/**
@@ -348,15 +394,13 @@ public class StatementHandle implements Statement{
 			}
 
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			
 			result = this.internalStatement.execute(sql, columnIndexes);
 			
-			if (this.connectionHook != null){
-				// compiler is smart enough to remove this call if it's a no-op as is the default
-				// case with the abstract class
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			queryTimerEnd(sql, queryStartTime);
@@ -384,11 +428,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.execute(sql, columnNames);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -417,21 +461,25 @@ public class StatementHandle implements Statement{
 			}
 			long queryStartTime = queryTimerStart();
 			String query = "";
-			if (this.connectionHook != null){
-        query = this.batchSQL.toString();
+			if (this.hookBeforeExecute || this.hookAfterExecute){
+				query = this.batchSQL.toString();
+			}
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, query, this.logParams);
 			}
 			result = this.internalStatement.executeBatch();
 
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, query, this.logParams);
 			}
 
 			queryTimerEnd(this.logStatementsEnabled ? this.batchSQL.toString() : "", queryStartTime);
 
 
-			if (this.logStatementsEnabled){
+			if (this.captureParameters){
 					this.logParams.clear();
+			}
+			if (this.logStatementsEnabled){
 					this.batchSQL = new StringBuilder();
 			}
 						
@@ -458,11 +506,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.executeQuery(sql);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -491,11 +539,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.executeUpdate(sql);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -524,11 +572,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.executeUpdate(sql, autoGeneratedKeys);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -557,11 +605,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams), columnIndexes);
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.executeUpdate(sql, columnIndexes);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
@@ -590,11 +638,11 @@ public class StatementHandle implements Statement{
 				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
 			}
 			long queryStartTime = queryTimerStart();
-			if (this.connectionHook != null){
+			if (this.hookBeforeExecute){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			result = this.internalStatement.executeUpdate(sql, columnNames);
-			if (this.connectionHook != null){
+			if (this.hookAfterExecute){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 
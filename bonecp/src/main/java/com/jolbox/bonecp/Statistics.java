@@ -16,8 +16,12 @@
 package com.jolbox.bonecp;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.openmbean.CompositeData;
+
 /**
  * Statistics class.
  * @author wallacew
@@ -46,6 +50,24 @@ public class Statistics implements StatisticsMBean, Serializable{
 	private final AtomicLong statementsExecuted = new AtomicLong(0);
 	/** Number of statements that have been prepared. */
 	private final AtomicLong statementsPrepared = new AtomicLong(0);
+	/** Number of driver calls avoided by the connection session state cache. */
+	private final AtomicLong sessionStateCallsSaved = new AtomicLong(0);
+	/** Number of connections reported as possibly leaked. */
+	private final AtomicLong connectionsLeaked = new AtomicLong(0);
+	/** Number of checkouts whose allocation was measured. */
+	private final AtomicLong allocationSamples = new AtomicLong(0);
+	/** Bytes allocated by the measured checkouts. */
+	private final AtomicLong cumulativeCheckoutAllocatedBytes = new AtomicLong(0);
+	/** Number of hook events dropped because the asynchronous hook queue was full. */
+	private final AtomicLong hookEventsDropped = new AtomicLong(0);
+	/** Number of new connections warmed up before being handed out. */
+	private final AtomicLong connectionsWarmedUp = new AtomicLong(0);
+	/** Time taken to warm up new connections. */  
+	private final AtomicLong cumulativeConnectionWarmUpTime = new AtomicLong(0);
+	/** Per-SQL statistics, or null if disabled. */
+	private SqlStatistics sqlStatistics;
+	/** Slow query log, or null if disabled. */
+	private SlowQueryLog slowQueryLog;
 	
 	/** Pool handle. */
 	private BoneCP pool;
@@ -70,6 +92,19 @@ public class Statistics implements StatisticsMBean, Serializable{
 		this.cumulativeStatementPrepareTime.set(0);
 		this.statementsExecuted.set(0);
 		this.statementsPrepared.set(0);
+		this.sessionStateCallsSaved.set(0);
+		this.connectionsLeaked.set(0);
+		this.allocationSamples.set(0);
+		this.cumulativeCheckoutAllocatedBytes.set(0);
+		this.hookEventsDropped.set(0);
+		this.connectionsWarmedUp.set(0);
+		this.cumulativeConnectionWarmUpTime.set(0);
+		if (this.sqlStatistics != null){
+			this.sqlStatistics.reset();
+		}
+		if (this.slowQueryLog != null){
+			this.slowQueryLog.reset();
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -115,6 +150,13 @@ public class Statistics implements StatisticsMBean, Serializable{
 		return this.pool.getTotalCreatedConnections();
 	}
 
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#isReady()
+	 */
+	public boolean isReady() {
+		return this.pool.isReady();
+	}
+
 	/* (non-Javadoc)
 	 * @see com.jolbox.bonecp.StatisticsMBean#getCacheHits()
 	 */
@@ -249,5 +291,160 @@ public class Statistics implements StatisticsMBean, Serializable{
 	public long getStatementsPrepared() {
 		return this.statementsPrepared.get();
 	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getSessionStateCallsSaved()
+	 */
+	public long getSessionStateCallsSaved() {
+		return this.sessionStateCallsSaved.get();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementSessionStateCallsSaved() {
+		this.sessionStateCallsSaved.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionsLeaked()
+	 */
+	public long getConnectionsLeaked() {
+		return this.connectionsLeaked.get();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementConnectionsLeaked() {
+		this.connectionsLeaked.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getAllocatedBytesPerCheckout()
+	 */
+	public double getAllocatedBytesPerCheckout() {
+		long samples = this.allocationSamples.get();
+		return samples == 0 ? 0 : this.cumulativeCheckoutAllocatedBytes.get() / (1.0*samples);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getAllocationSamples()
+	 */
+	public long getAllocationSamples() {
+		return this.allocationSamples.get();
+	}
+
+	/** Records the bytes allocated by a sampled checkout.
+	 * @param bytes allocated bytes
+	 */
+	protected void addCheckoutAllocation(long bytes) {
+		this.cumulativeCheckoutAllocatedBytes.addAndGet(bytes);
+		this.allocationSamples.incrementAndGet();
+	}
 	
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getSqlStatistics()
+	 */
+	public CompositeData[] getSqlStatistics() {
+		return this.sqlStatistics == null ? new CompositeData[0] : this.sqlStatistics.getCompositeData();
+	}
+
+	/** Returns a copy of the per-SQL statistics, most frequently executed statement first.
+	 * @return statement statistics (empty if sqlStatisticsSize is not configured)
+	 */
+	public List<SqlStatisticsEntry> getSqlStatisticsSnapshot() {
+		return this.sqlStatistics == null ? Collections.<SqlStatisticsEntry>emptyList() : this.sqlStatistics.getSnapshot();
+	}
+
+	/** Returns the per-SQL statistics table.
+	 * @return table, or null if disabled
+	 */
+	protected SqlStatistics getSqlStatisticsTable() {
+		return this.sqlStatistics;
+	}
+
+	/** Enables per-SQL statistics.
+	 * @param sqlStatistics table to record into
+	 */
+	protected void setSqlStatisticsTable(SqlStatistics sqlStatistics) {
+		this.sqlStatistics = sqlStatistics;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getSlowQueries()
+	 */
+	public CompositeData[] getSlowQueries() {
+		return this.slowQueryLog == null ? new CompositeData[0] : this.slowQueryLog.getCompositeData();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getSlowQueryCount()
+	 */
+	public long getSlowQueryCount() {
+		return this.slowQueryLog == null ? 0 : this.slowQueryLog.getSlowQueryCount();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getHookEventsDropped()
+	 */
+	public long getHookEventsDropped() {
+		return this.hookEventsDropped.get();
+	}
+
+	/** Adds one to the number of dropped hook events. */
+	protected void incrementHookEventsDropped() {
+		this.hookEventsDropped.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionsWarmedUp()
+	 */
+	public long getConnectionsWarmedUp() {
+		return this.connectionsWarmedUp.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getCumulativeConnectionWarmUpTime()
+	 */
+	public long getCumulativeConnectionWarmUpTime() {
+		return this.cumulativeConnectionWarmUpTime.get() / 1000000;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionWarmUpTimeAvg()
+	 */
+	public double getConnectionWarmUpTimeAvg() {
+		return this.connectionsWarmedUp.get() == 0 ? 0 : this.cumulativeConnectionWarmUpTime.get() / (1.0*this.connectionsWarmedUp.get()) / 1000000.0;
+	}
+
+	/** Records a connection warm-up.
+	 * @param timeInNs time taken to warm up the connection
+	 */
+	protected void addConnectionWarmUp(long timeInNs) {
+		this.connectionsWarmedUp.incrementAndGet();
+		this.cumulativeConnectionWarmUpTime.addAndGet(timeInNs);
+	}
+
+	/** Returns the statements held in the slow query log, most recent first.
+	 * @return slow queries (empty if slowQueryThresholdInMs is not configured)
+	 */
+	public List<SlowQueryLogEntry> getSlowQueryLogSnapshot() {
+		return this.slowQueryLog == null ? Collections.<SlowQueryLogEntry>emptyList() : this.slowQueryLog.getSnapshot();
+	}
+
+	/** Returns the slow query log.
+	 * @return log, or null if disabled
+	 */
+	protected SlowQueryLog getSlowQueryLog() {
+		return this.slowQueryLog;
+	}
+
+	/** Enables the slow query log.
+	 * @param slowQueryLog log to record into
+	 */
+	protected void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		this.slowQueryLog = slowQueryLog;
+	}
 }
@@ -15,6 +15,8 @@
  */
 package com.jolbox.bonecp;
 
+import javax.management.openmbean.CompositeData;
+
 
 /** MBean (JMX) contract.
  * @author Wallace
@@ -59,6 +61,14 @@ public interface StatisticsMBean {
 	 */
 	int getTotalCreatedConnections();
 
+	/**
+	 * Returns true once the pool has opened readyThreshold percent of its initial connections (see 
+	 * BoneCPConfig.setBackgroundInit).
+	 *
+	 * @return true if the pool is ready
+	 */
+	boolean isReady();
+
 	/**
 	 * Returns the cacheHits field.
 	 * @return cacheHits
@@ -122,6 +132,66 @@ public interface StatisticsMBean {
 	 */
 	long getStatementsExecuted();
 	
+	/** Returns the number of getAutoCommit/setAutoCommit (and similar) calls that did not need to go to 
+	 * the driver because the connection's session state was already known.
+	 * @return number of driver calls saved. 
+	 */
+	long getSessionStateCallsSaved();
+	
+	/** Returns the number of connections that were held for longer than leakDetectionThreshold without
+	 * being closed.
+	 * @return number of connections reported as possibly leaked. 
+	 */
+	long getConnectionsLeaked();
+	
+	/** Returns the average number of bytes allocated by the calling thread per getConnection() call, measured
+	 * on a sample of calls (see allocationSamplingRate).
+	 * @return bytes allocated per checkout, or 0 if no samples were taken. 
+	 */
+	double getAllocatedBytesPerCheckout();
+	
+	/** Returns the number of getConnection() calls whose allocation was measured.
+	 * @return number of samples. 
+	 */
+	long getAllocationSamples();
+
+	/** Returns per-SQL execution statistics (count, total/average/max time and a latency histogram), most frequently
+	 * executed statement first. Empty unless sqlStatisticsSize is configured.
+	 * @return statement statistics
+	 */
+	CompositeData[] getSqlStatistics();
+
+	/** Returns the most recent statements that took longer than slowQueryThresholdInMs, with their parameters.
+	 * Empty unless slowQueryThresholdInMs is configured.
+	 * @return slow queries, most recent first
+	 */
+	CompositeData[] getSlowQueries();
+
+	/** Returns the number of statements that took longer than slowQueryThresholdInMs.
+	 * @return number of slow queries
+	 */
+	long getSlowQueryCount();
+
+	/** Returns the number of connection hook events dropped because the asynchronous hook queue was full.
+	 * @return number of dropped hook events
+	 */
+	long getHookEventsDropped();
+
+	/** Returns the number of new connections warmed up before being handed out (see BoneCPConfig.setConnectionWarmUp).
+	 * @return number of connections warmed up
+	 */
+	long getConnectionsWarmedUp();
+
+	/** Returns the total time spent warming up new connections.
+	 * @return time in ms
+	 */
+	long getCumulativeConnectionWarmUpTime();
+
+	/** Returns the average time taken to warm up a new connection.
+	 * @return time in ms
+	 */
+	double getConnectionWarmUpTimeAvg();
+	
 	
 
 }
\ No newline at end of file
@@ -130,4 +130,16 @@ public abstract class AbstractConnectionHook implements ConnectionHook {
 	public ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e) {
 		return ConnectionState.NOP;
 	}
-}
\ No newline at end of file
+
+	/** Called (once per checkout) when a connection has been held by the application for longer than
+	 * leakDetectionThreshold without being closed. Called from the pool's leak detection thread. Only available to 
+	 * hooks extending this class.
+	 * 
+	 * @param connection The handle that is suspected of being leaked.
+	 * @param checkoutLocation Throwable created at the point the connection was obtained, to obtain a stack trace from.
+	 * @param heldTimeInMs Time (in ms) the connection has been held for so far.
+	 */
+	public void onConnectionLeakDetected(ConnectionHandle connection, Throwable checkoutLocation, long heldTimeInMs) {
+		// do nothing
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the bytes allocated by steady-state pool operations via the JVM's thread allocation counters and
+ * fails if they exceed their budget. Skipped on JVMs without thread allocation counters.
+ * 
+ * If one of these fails after a change, the change made the hot path allocate more: either fix it or, if the
+ * extra allocation is really needed, raise the budget in the same commit.
+ * @author wallacew
+ *
+ */
+public class TestAllocationBudget {
+	/** Bytes allowed for a getConnection()/close() round trip. */
+	private static final long CHECKOUT_BUDGET = 384;
+	/** Bytes allowed for getConnection()/prepareStatement() (cache hit)/execute()/close(). */
+	private static final long STATEMENT_BUDGET = 768;
+	/** Warm up iterations, so that the JIT has done its work before measuring. */
+	private static final int WARMUP = 20000;
+	/** Measured iterations. */
+	private static final int ITERATIONS = 10000;
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+	/** Pool under test. */
+	private BoneCP pool;
+
+	/**
+	 * Starts a pool against the mock driver.
+	 * @throws SQLException
+	 */
+	@Before
+	public void setup() throws SQLException{
+		Assume.assumeTrue(PoolUtil.currentThreadAllocatedBytes() >= 0);
+		this.driver = new MockJDBCDriver();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(2);
+		config.setDisableConnectionTracking(true);
+		config.setStatementsCacheSize(10);
+		this.pool = new BoneCP(config);
+	}
+
+	/**
+	 * Shuts down the pool.
+	 * @throws SQLException
+	 */
+	@After
+	public void tearDown() throws SQLException{
+		if (this.pool != null){
+			this.pool.shutdown();
+		}
+		if (this.driver != null){
+			this.driver.unregister();
+		}
+	}
+
+	/** Performs a checkout/close round trip.
+	 * @param prepare if true, also prepare and execute a statement
+	 * @throws SQLException
+	 */
+	private void roundTrip(boolean prepare) throws SQLException{
+		Connection connection = this.pool.getConnection();
+		if (prepare){
+			PreparedStatement ps = connection.prepareStatement("SELECT 1");
+			ps.execute();
+			ps.close();
+		}
+		connection.close();
+	}
+
+	/** Returns the bytes allocated per round trip in steady state.
+	 * @param prepare if true, also prepare and execute a statement
+	 * @return bytes per round trip
+	 * @throws SQLException
+	 */
+	private long measure(boolean prepare) throws SQLException{
+		for (int i=0; i < WARMUP; i++){
+			roundTrip(prepare);
+		}
+		long start = PoolUtil.currentThreadAllocatedBytes();
+		for (int i=0; i < ITERATIONS; i++){
+			roundTrip(prepare);
+		}
+		return PoolUtil.threadAllocatedBytesSince(start) / ITERATIONS;
+	}
+
+	/**
+	 * getConnection()/close() stays within budget.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCheckoutBudget() throws SQLException{
+		long bytes = measure(false);
+		assertTrue("getConnection/close allocates "+bytes+" bytes, budget is "+CHECKOUT_BUDGET, bytes <= CHECKOUT_BUDGET);
+	}
+
+	/**
+	 * A cached prepared statement round trip stays within budget.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testStatementBudget() throws SQLException{
+		long bytes = measure(true);
+		assertTrue("prepare/execute round trip allocates "+bytes+" bytes, budget is "+STATEMENT_BUDGET, bytes <= STATEMENT_BUDGET);
+	}
+
+	/**
+	 * Sampling mode reports the allocation of sampled checkouts.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testAllocationSampling() throws SQLException{
+		this.pool.allocationSamplingRate = 10;
+		for (int i=0; i < 100; i++){
+			roundTrip(false);
+		}
+		assertEquals(10, this.pool.getStatistics().getAllocationSamples());
+		assertTrue(this.pool.getStatistics().getAllocatedBytesPerCheckout() >= 0);
+		assertTrue(this.pool.getStatistics().getAllocatedBytesPerCheckout() <= CHECKOUT_BUDGET * 4);
+	}
+}
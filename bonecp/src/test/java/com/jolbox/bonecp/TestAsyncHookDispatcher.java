@@ -0,0 +1,276 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+import com.jolbox.bonecp.hooks.AcquireFailConfig;
+
+/**
+ * Tests for the asynchronous hook dispatcher.
+ * @author wallacew
+ *
+ */
+public class TestAsyncHookDispatcher {
+	/** Events seen by the hook, in order. */
+	private List<String> events;
+	/** Threads the events were delivered on. */
+	private List<String> threads;
+	/** Hook under test. */
+	private AbstractConnectionHook hook;
+	/** Statistics handle. */
+	private Statistics statistics;
+
+	/** Test setup. */
+	@Before
+	public void before(){
+		this.events = Collections.synchronizedList(new ArrayList<String>());
+		this.threads = Collections.synchronizedList(new ArrayList<String>());
+		this.statistics = new Statistics(null);
+		this.hook = new AbstractConnectionHook() {
+			@Override
+			public void onCheckOut(ConnectionHandle connection) {
+				record("checkOut");
+			}
+
+			@Override
+			public void onCheckIn(ConnectionHandle connection) {
+				record("checkIn");
+			}
+
+			@Override
+			public void onBeforeStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+				record("before " + sql + " " + params);
+			}
+
+			@Override
+			public void onAfterStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+				record("after " + sql + " " + params);
+				if (sql.equals("fail")){
+					throw new RuntimeException("fake");
+				}
+			}
+
+			@Override
+			public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, Map<Object, Object> logParams, long timeElapsedInNs) {
+				record("slow " + sql + " " + timeElapsedInNs);
+			}
+
+			@Override
+			public boolean onAcquireFail(Throwable t, AcquireFailConfig acquireConfig) {
+				record("acquireFail");
+				return true;
+			}
+		};
+	}
+
+	/** Records an event.
+	 * @param event to record
+	 */
+	private void record(String event){
+		this.events.add(event);
+		this.threads.add(Thread.currentThread().getName());
+	}
+
+	/** Events are delivered in order on the consumer thread, with a snapshot of the parameters.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testDispatchInOrder() throws InterruptedException {
+		AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.hook, 5, false, this.statistics);
+		assertEquals(8, dispatcher.getCapacity());
+
+		Map<Object, Object> params = new TreeMap<Object, Object>();
+		params.put(1, "a");
+		dispatcher.onCheckOut(null);
+		dispatcher.onBeforeStatementExecute(null, null, "SELECT ?", params);
+		params.put(1, "changed");
+		dispatcher.onAfterStatementExecute(null, null, "fail", null);
+		dispatcher.onQueryExecuteTimeLimitExceeded(null, null, "SELECT 2", null, 42);
+		dispatcher.onCheckIn(null);
+		assertTrue(this.events.isEmpty());
+		assertEquals(5, dispatcher.getBacklog());
+
+		Thread consumer = new Thread(dispatcher, "consumer");
+		consumer.start();
+		dispatcher.shutdown();
+		consumer.join(5000);
+		assertFalse(consumer.isAlive());
+
+		assertEquals(5, this.events.size());
+		assertEquals("checkOut", this.events.get(0));
+		assertEquals("before SELECT ? {1=a}", this.events.get(1));
+		assertEquals("after fail {}", this.events.get(2)); // hook exception is logged, not fatal
+		assertEquals("slow SELECT 2 42", this.events.get(3));
+		assertEquals("checkIn", this.events.get(4));
+		assertEquals(Collections.nCopies(5, "consumer"), this.threads);
+		assertEquals(0, dispatcher.getBacklog());
+		assertEquals(0, this.statistics.getHookEventsDropped());
+
+		// after shutdown, events are delivered directly.
+		dispatcher.onCheckOut(null);
+		assertEquals("checkOut", this.events.get(5));
+		assertEquals(Thread.currentThread().getName(), this.threads.get(5));
+	}
+
+	/** Events are dropped and counted when the queue is full. */
+	@Test
+	public void testDropWhenFull() {
+		AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.hook, 2, false, this.statistics);
+		dispatcher.onCheckOut(null);
+		dispatcher.onCheckIn(null);
+		dispatcher.onCheckOut(null);
+		assertEquals(2, dispatcher.getBacklog());
+		assertEquals(1, this.statistics.getHookEventsDropped());
+		assertTrue(this.events.isEmpty());
+	}
+
+	/** Publishers wait for space when configured to block.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testBlockWhenFull() throws InterruptedException {
+		final AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.hook, 1, true, this.statistics);
+		final CountDownLatch done = new CountDownLatch(1);
+		dispatcher.onCheckOut(null);
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				dispatcher.onCheckIn(null);
+				done.countDown();
+			}
+		});
+		producer.start();
+		assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+		Thread consumer = new Thread(dispatcher);
+		consumer.start();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		dispatcher.shutdown();
+		consumer.join(5000);
+		assertEquals("[checkOut, checkIn]", this.events.toString());
+		assertEquals(0, this.statistics.getHookEventsDropped());
+	}
+
+	/** An event claimed before shutdown but only published after it is still dispatched by the consumer.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testShutdownWaitsForClaimedEvents() throws InterruptedException {
+		final AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.hook, 8, false, this.statistics);
+		final CountDownLatch copying = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Map<Object, Object> params = new TreeMap<Object, Object>(){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Set<Map.Entry<Object, Object>> entrySet() {
+				copying.countDown(); // the sequence has been claimed, parameters are being copied
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.entrySet();
+			}
+		};
+		params.put(1, "a");
+
+		Thread consumer = new Thread(dispatcher, "consumer");
+		consumer.start();
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				dispatcher.onBeforeStatementExecute(null, null, "SELECT ?", params);
+			}
+		});
+		producer.start();
+		assertTrue(copying.await(5, TimeUnit.SECONDS));
+
+		dispatcher.shutdown();
+		consumer.join(200);
+		assertTrue(consumer.isAlive());
+
+		release.countDown();
+		producer.join(5000);
+		consumer.join(5000);
+		assertFalse(consumer.isAlive());
+		assertEquals("[before SELECT ? {1=a}]", this.events.toString());
+		assertEquals("[consumer]", this.threads.toString());
+		assertEquals(0, dispatcher.getBacklog());
+
+		// after the consumer has exited, events are delivered directly.
+		dispatcher.onCheckIn(null);
+		assertEquals("checkIn", this.events.get(1));
+		assertEquals(Thread.currentThread().getName(), this.threads.get(1));
+	}
+
+	/** Callbacks that return a value are invoked directly. */
+	@Test
+	public void testSynchronousCallbacks() {
+		AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.hook, 16, false, this.statistics);
+		assertTrue(dispatcher.onAcquireFail(new SQLException(), new AcquireFailConfig()));
+		assertEquals("[acquireFail]", this.events.toString());
+		assertEquals(this.hook, dispatcher.getHook());
+		assertEquals(0, dispatcher.getBacklog());
+	}
+
+	/** End to end: the pool installs the dispatcher and drains it on shutdown.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPoolDispatchesAsynchronously() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:asynchook");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setPoolName("async");
+		config.setConnectionHook(this.hook);
+		config.setAsyncHookQueueSize(64);
+		BoneCP pool = new BoneCP(config);
+		try {
+			assertTrue(pool.getConfig().getConnectionHook() instanceof AsyncHookDispatcher);
+			assertEquals(this.hook, config.getConnectionHook());
+			for (int i=0; i < 3; i++){
+				Connection connection = pool.getConnection();
+				connection.close();
+			}
+		} finally {
+			pool.shutdown();
+			SimulatedDatabase.remove("asynchook");
+		}
+		assertEquals("[checkOut, checkIn, checkOut, checkIn, checkOut, checkIn]", this.events.toString());
+		assertEquals(Collections.nCopies(6, "BoneCP-hook-dispatch-thread-async"), this.threads);
+	}
+}
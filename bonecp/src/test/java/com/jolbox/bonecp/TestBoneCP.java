@@ -545,6 +545,7 @@ public class TestBoneCP {
 		expect(mockPartition.isUnableToCreateMoreTransactions()).andReturn(true).once();
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
 		expect(mockConnectionHandles.poll()).andReturn(null).anyTimes();
+		testClass.connectionTimeoutInMs = 1;
 
 		replay(mockPartition, mockConnectionHandles, mockConnection);
 		try{
@@ -784,7 +785,7 @@ public class TestBoneCP {
 		reset(mockPartition, mockConnectionHandles, mockConnection);
 		expect(mockPartition.isUnableToCreateMoreTransactions()).andReturn(true).once();
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andReturn(mockConnection).once();
+		expect(mockConnectionHandles.poll(DefaultConnectionStrategy.RETIRED_PARTITION_CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)).andReturn(mockConnection).once();
 
 		mockConnection.renewConnection();
 		expectLastCall().once();
@@ -808,7 +809,7 @@ public class TestBoneCP {
 		expect(mockPartition.isUnableToCreateMoreTransactions()).andReturn(true).once();
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
 		expect(mockConnectionHandles.poll()).andReturn(null).once();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
+		expect(mockConnectionHandles.poll(DefaultConnectionStrategy.RETIRED_PARTITION_CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
 
 		replay(mockPartition, mockConnectionHandles, mockConnection);
 		try{
@@ -834,7 +835,7 @@ public class TestBoneCP {
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
 		testClass.nullOnConnectionTimeout = true;
 		expect(mockConnectionHandles.poll()).andReturn(null).once();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
+		expect(mockConnectionHandles.poll(DefaultConnectionStrategy.RETIRED_PARTITION_CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
 
 		replay(mockPartition, mockConnectionHandles, mockConnection);
 		try{
@@ -859,7 +860,7 @@ public class TestBoneCP {
 		reset(mockPartition, mockConnectionHandles, mockConnection);
 		expect(mockPartition.getMaxConnections()).andReturn(100).anyTimes();
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
+		expect(mockConnectionHandles.poll(DefaultConnectionStrategy.RETIRED_PARTITION_CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)).andThrow(new InterruptedException()).once();
 		BlockingQueue<Object> bq = new ArrayBlockingQueue<Object>(1);
 		bq.add(new Object());
 		expect(mockPartition.getPoolWatchThreadSignalQueue()).andReturn(bq);
@@ -885,10 +886,11 @@ public class TestBoneCP {
 		reset(mockPartition, mockConnectionHandles, mockConnection);
 		expect(mockPartition.getMaxConnections()).andReturn(100).anyTimes();
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andReturn(null).once();
+		expect(mockConnectionHandles.poll(1L, TimeUnit.MILLISECONDS)).andReturn(null).atLeastOnce();
 		BlockingQueue<Object> bq = new ArrayBlockingQueue<Object>(1);
 		bq.add(new Object());
 		testClass.nullOnConnectionTimeout = true;
+		testClass.connectionTimeoutInMs = 1;
 		expect(mockPartition.getPoolWatchThreadSignalQueue()).andReturn(bq);
 		replay(mockPartition, mockConnectionHandles, mockConnection);
 		try{ 
@@ -914,7 +916,7 @@ public class TestBoneCP {
 		expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
 		expect(mockPartition.getAvailableConnections()).andReturn(1).anyTimes();
 		expect(mockConnectionHandles.poll()).andReturn(null).once();
-		expect(mockConnectionHandles.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS)).andReturn(mockConnection).once();
+		expect(mockConnectionHandles.poll(DefaultConnectionStrategy.RETIRED_PARTITION_CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)).andReturn(mockConnection).once();
 
 		mockConnection.renewConnection();
 		expectLastCall().once();
@@ -1113,6 +1115,155 @@ public class TestBoneCP {
         verify(mockPartition, mockConnection, mockRealConnection);
     }
 
+    /**
+     * Test method for {@link com.jolbox.bonecp.BoneCP#internalReleaseConnection(ConnectionHandle)}.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testInternalReleaseConnectionWhereConnectionIsRetiredInBackground() throws SQLException {
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        ExecutorService mockRetirementExecutor = EasyMock.createNiceMock(ExecutorService.class);
+        testClass.retirementExecutor = mockRetirementExecutor;
+
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        expect(mockConnection.isExpired()).andReturn(true).anyTimes();
+        mockRetirementExecutor.execute((Runnable)anyObject());
+        expectLastCall().once();
+        // must not be closed off on the calling thread
+        mockConnection.internalClose();
+        expectLastCall().andThrow(new AssertionError()).anyTimes();
+
+        replay(mockPartition, mockConnection, mockRetirementExecutor);
+        testClass.internalReleaseConnection(mockConnection);
+        verify(mockPartition, mockConnection, mockRetirementExecutor);
+        testClass.retirementExecutor = null;
+    }
+
+    /**
+     * Test method for {@link com.jolbox.bonecp.BoneCP#internalReleaseConnection(ConnectionHandle)}.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testInternalReleaseConnectionWhereConnectionIsResetInBackground() throws SQLException {
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        ExecutorService mockResetExecutor = EasyMock.createNiceMock(ExecutorService.class);
+        testClass.resetExecutor = mockResetExecutor;
+
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
+        expect(mockConnection.isSessionStateDirty()).andReturn(true).once().andReturn(false).once();
+        mockResetExecutor.execute((Runnable)anyObject());
+        expectLastCall().once();
+        // clean connections go straight back
+        expect(mockConnectionHandles.offer(mockConnection)).andReturn(true).once();
+
+        replay(mockPartition, mockConnection, mockResetExecutor, mockConnectionHandles);
+        testClass.internalReleaseConnection(mockConnection);
+        testClass.internalReleaseConnection(mockConnection);
+        verify(mockPartition, mockConnection, mockResetExecutor, mockConnectionHandles);
+        testClass.resetExecutor = null;
+    }
+
+    /**
+     * Test method for {@link com.jolbox.bonecp.BoneCP#resetConnection(ConnectionHandle)}.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testResetConnection() throws SQLException {
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
+        mockConnection.resetSessionState();
+        expectLastCall().once();
+        expect(mockConnectionHandles.offer(mockConnection)).andReturn(true).once();
+
+        replay(mockPartition, mockConnection, mockConnectionHandles);
+        testClass.resetConnection(mockConnection);
+        verify(mockPartition, mockConnection, mockConnectionHandles);
+
+        // failed reset: connection is destroyed.
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        mockConnection.resetSessionState();
+        expectLastCall().andThrow(new SQLException());
+        mockConnection.internalClose();
+        expectLastCall().once();
+        mockPartition.updateCreatedConnections(-1);
+        expectLastCall().once();
+        // break out from this method, we're not interested in it
+        expect(mockPartition.isUnableToCreateMoreTransactions()).andReturn(true).once();
+
+        replay(mockPartition, mockConnection, mockConnectionHandles);
+        testClass.resetConnection(mockConnection);
+        verify(mockPartition, mockConnection, mockConnectionHandles);
+    }
+
+    /**
+     * Test method for {@link com.jolbox.bonecp.BoneCP#retireConnection(ConnectionHandle)}.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testRetireConnection() throws SQLException {
+        // expired connection: closed off and counters updated.
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        expect(mockConnection.isExpired()).andReturn(true).anyTimes();
+        mockConnection.internalClose();
+        expectLastCall().once();
+        mockPartition.updateCreatedConnections(-1);
+        expectLastCall().once();
+
+        replay(mockPartition, mockConnection);
+        testClass.poolShuttingDown = true; // skip creating a replacement
+        testClass.retireConnection(mockConnection);
+        testClass.poolShuttingDown = false;
+        verify(mockPartition, mockConnection);
+
+        // possibly broken connection which turns out to be fine: placed back in the partition.
+        reset(mockConnection, mockPartition, mockConnectionHandles);
+        mockConnection.logicallyClosed = new AtomicBoolean(false);
+        expect(mockConnection.getOriginatingPartition()).andReturn(mockPartition).anyTimes();
+        expect(mockConnection.isExpired()).andReturn(false).anyTimes();
+        expect(mockConnection.getMetaData()).andReturn(EasyMock.createNiceMock(DatabaseMetaData.class)).once();
+        expect(mockPartition.getFreeConnections()).andReturn(mockConnectionHandles).anyTimes();
+        expect(mockConnectionHandles.offer(mockConnection)).andReturn(true).once();
+        mockConnection.internalClose();
+        expectLastCall().andThrow(new AssertionError()).anyTimes();
+
+        replay(mockPartition, mockConnection, mockConnectionHandles);
+        testClass.retireConnection(mockConnection);
+        verify(mockPartition, mockConnection, mockConnectionHandles);
+    }
+
+    /**
+     * Test method for {@link com.jolbox.bonecp.BoneCP#precreateReplacementConnection(ConnectionPartition)}.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testPrecreateReplacementConnectionSkipsShrinkingPartitions() throws SQLException {
+        // over capacity or retired partitions do not get a replacement.
+        reset(mockPartition);
+        expect(mockPartition.isOverCapacity()).andReturn(true).anyTimes();
+        mockPartition.addFreeConnection((ConnectionHandle)anyObject());
+        expectLastCall().andThrow(new AssertionError()).anyTimes();
+        replay(mockPartition);
+        assertFalse(testClass.precreateReplacementConnection(mockPartition));
+        verify(mockPartition);
+
+        reset(mockPartition);
+        expect(mockPartition.isRetired()).andReturn(true).anyTimes();
+        mockPartition.addFreeConnection((ConnectionHandle)anyObject());
+        expectLastCall().andThrow(new AssertionError()).anyTimes();
+        replay(mockPartition);
+        assertFalse(testClass.precreateReplacementConnection(mockPartition));
+        verify(mockPartition);
+    }
+
     /**
 	 * Test method for {@link com.jolbox.bonecp.BoneCP#putConnectionBackInPartition(com.jolbox.bonecp.ConnectionHandle)}.
 	 * @throws InterruptedException 
@@ -172,7 +172,78 @@ public class TestBoneCPConfig {
 		config.setNullOnConnectionTimeout(true);
 		config.setDetectUnresolvedTransactions(true);
 		config.setResetConnectionOnClose(true);
-		
+		config.setMaxConnectionAgeJitter(30, TimeUnit.SECONDS);
+		config.setMaxConcurrentRetirementsPerPartition(2);
+		config.setRetireConnectionsInBackground(true);
+		config.setResetConnectionInBackground(true);
+		config.setCacheSessionState(true);
+		config.setLeakDetectionThresholdInMs(2000);
+		config.setAllocationSamplingRate(100);
+		config.setSqlStatisticsSize(50);
+		config.setAutoParameterizeStatements(true);
+		config.setSlowQueryThreshold(2, TimeUnit.SECONDS);
+		config.setSlowQueryLogSize(20);
+		config.setAsyncHookQueueSize(1024);
+		config.setAsyncHookBlockWhenFull(true);
+		config.setCoarseClockResolution(1, TimeUnit.SECONDS);
+		config.setClock(SystemClock.INSTANCE);
+		config.setMaxConnectionsAcrossCredentials(100);
+		config.setCredentialPoolIdleTimeout(2, TimeUnit.MINUTES);
+		config.setCircuitBreakerFailureThreshold(3);
+		config.setCircuitBreakerOpenTime(5, TimeUnit.SECONDS);
+		config.setFailureValidationSampleSize(3);
+		config.setFailureValidationTimeout(2, TimeUnit.SECONDS);
+		config.setSqlStateClassifierClassName(DefaultSQLStateClassifier.class.getName());
+		config.setWarmUpSQL("SELECT 1");
+		config.setWarmUpStatements("SELECT 2");
+		config.setWarmUpMetadata(true);
+		config.setConnectionWarmUpClassName(DefaultConnectionWarmUp.class.getName());
+		config.setInitStatements("SET a=1; SET b=2");
+		config.setSkipDriverDefaultSessionSettings(true);
+		config.setBackgroundInit(true);
+		config.setReadyThreshold(50);
+		
+		assertTrue(config.isRetireConnectionsInBackground());
+		assertTrue(config.isResetConnectionInBackground());
+		assertTrue(config.isCacheSessionState());
+		assertEquals(2000, config.getLeakDetectionThresholdInMs());
+		assertEquals(100, config.getAllocationSamplingRate());
+		assertEquals(50, config.getSqlStatisticsSize());
+		assertTrue(config.isAutoParameterizeStatements());
+		assertEquals(2000, config.getSlowQueryThresholdInMs());
+		assertEquals(2, config.getSlowQueryThreshold(TimeUnit.SECONDS));
+		assertEquals(20, config.getSlowQueryLogSize());
+		assertEquals(1024, config.getAsyncHookQueueSize());
+		assertTrue(config.isAsyncHookBlockWhenFull());
+		assertEquals(1000, config.getCoarseClockResolutionInMs());
+		assertEquals(1, config.getCoarseClockResolution(TimeUnit.SECONDS));
+		assertEquals(SystemClock.INSTANCE, config.getClock());
+		assertEquals(100, config.getMaxConnectionsAcrossCredentials());
+		assertEquals(120000, config.getCredentialPoolIdleTimeoutInMs());
+		assertEquals(2, config.getCredentialPoolIdleTimeout(TimeUnit.MINUTES));
+		assertEquals(3, config.getCircuitBreakerFailureThreshold());
+		assertEquals(5000, config.getCircuitBreakerOpenTimeInMs());
+		assertEquals(5, config.getCircuitBreakerOpenTime(TimeUnit.SECONDS));
+		assertEquals(3, config.getFailureValidationSampleSize());
+		assertEquals(2000, config.getFailureValidationTimeoutInMs());
+		assertEquals(2, config.getFailureValidationTimeout(TimeUnit.SECONDS));
+		assertTrue(config.getSqlStateClassifier() instanceof DefaultSQLStateClassifier);
+		assertEquals(DefaultSQLStateClassifier.class.getName(), config.getSqlStateClassifierClassName());
+		assertEquals("SELECT 1", config.getWarmUpSQL());
+		assertEquals("SELECT 2", config.getWarmUpStatements());
+		assertTrue(config.isWarmUpMetadata());
+		assertTrue(config.getConnectionWarmUp() instanceof DefaultConnectionWarmUp);
+		assertEquals(DefaultConnectionWarmUp.class.getName(), config.getConnectionWarmUpClassName());
+		assertEquals("SET a=1; SET b=2", config.getInitStatements());
+		assertTrue(config.isSkipDriverDefaultSessionSettings());
+		assertTrue(config.isBackgroundInit());
+		assertEquals(50, config.getReadyThreshold());
+		assertEquals(2, config.getLeakDetectionThreshold(TimeUnit.SECONDS));
+		assertEquals(30, config.getMaxConnectionAgeJitterInSeconds());
+		assertEquals(30000, config.getMaxConnectionAgeJitter(TimeUnit.MILLISECONDS));
+		assertEquals(2, config.getMaxConcurrentRetirementsPerPartition());
+		config.setMaxConnectionAgeJitterInSeconds(20);
+		assertEquals(20, config.getMaxConnectionAgeJitterInSeconds());
 		assertTrue(config.isDetectUnresolvedTransactions());
 		assertTrue(config.isNullOnConnectionTimeout());
 		assertTrue(config.isResetConnectionOnClose());
@@ -374,6 +445,47 @@ public class TestBoneCPConfig {
 		config.sanitize();
 		assertEquals(-1, config.getDefaultTransactionIsolationValue());
 		
+		config.setMaxConnectionAgeJitterInSeconds(-1);
+		config.setMaxConcurrentRetirementsPerPartition(-1);
+		config.setLeakDetectionThresholdInMs(-1);
+		config.setAllocationSamplingRate(-1);
+		config.setSqlStatisticsSize(-1);
+		config.setSlowQueryThresholdInMs(-1);
+		config.setSlowQueryLogSize(-1);
+		config.setAsyncHookQueueSize(-1);
+		config.setCoarseClockResolutionInMs(-1);
+		config.setMaxConnectionsAcrossCredentials(-1);
+		config.setCredentialPoolIdleTimeoutInMs(-1);
+		config.setCircuitBreakerFailureThreshold(-1);
+		config.setCircuitBreakerOpenTimeInMs(-1);
+		config.setFailureValidationSampleSize(-1);
+		config.setFailureValidationTimeoutInMs(0);
+		config.setReadyThreshold(101);
+		config.sanitize();
+		assertEquals(0, config.getMaxConnectionAgeJitterInSeconds());
+		assertEquals(0, config.getMaxConcurrentRetirementsPerPartition());
+		assertEquals(0, config.getLeakDetectionThresholdInMs());
+		assertEquals(0, config.getAllocationSamplingRate());
+		assertEquals(0, config.getSqlStatisticsSize());
+		assertEquals(0, config.getSlowQueryThresholdInMs());
+		assertEquals(0, config.getSlowQueryLogSize());
+		assertEquals(0, config.getAsyncHookQueueSize());
+		assertEquals(0, config.getCoarseClockResolutionInMs());
+		assertEquals(0, config.getMaxConnectionsAcrossCredentials());
+		assertEquals(0, config.getCredentialPoolIdleTimeoutInMs());
+		assertEquals(0, config.getCircuitBreakerFailureThreshold());
+		assertEquals(0, config.getCircuitBreakerOpenTimeInMs());
+		assertEquals(0, config.getFailureValidationSampleSize());
+		assertEquals(5000, config.getFailureValidationTimeoutInMs());
+		assertEquals(100, config.getReadyThreshold());
+
+		config.setMaxConnectionAgeInSeconds(10);
+		config.setMaxConnectionAgeJitterInSeconds(20);
+		config.sanitize();
+		assertEquals(5, config.getMaxConnectionAgeJitterInSeconds());
+		config.setMaxConnectionAgeInSeconds(0);
+		config.setMaxConnectionAgeJitterInSeconds(0);
+		
 		// coverage
 		BoneCPConfig config = new BoneCPConfig();
 		config.setDatasourceBean(null);
@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the circuit breaker guarding connection acquisition.
+ * @author wallacew
+ *
+ */
+public class TestCircuitBreaker {
+	/** Pool under test. */
+	private BoneCP pool;
+	/** Database. */
+	private SimulatedDatabase db;
+	/** Time as seen by the pool. */
+	private volatile long currentTimeMillis = System.currentTimeMillis();
+
+	/** Starts a pool with the breaker enabled.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:circuitbreaker");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(2);
+		config.setAcquireRetryAttempts(0);
+		config.setAcquireRetryDelayInMs(10);
+		config.setConnectionTimeout(200, TimeUnit.MILLISECONDS);
+		config.setCircuitBreakerFailureThreshold(2);
+		config.setCircuitBreakerOpenTime(10, TimeUnit.SECONDS);
+		config.setClock(new PoolClock() {
+			public long currentTimeMillis() {
+				return TestCircuitBreaker.this.currentTimeMillis;
+			}
+
+			public long nanoTime() {
+				return System.nanoTime();
+			}
+		});
+		this.pool = new BoneCP(config);
+		this.db = SimulatedDatabase.get("circuitbreaker");
+	}
+
+	/** Shuts down the pool. */
+	@After
+	public void after() {
+		this.pool.shutdown();
+		SimulatedDatabase.remove("circuitbreaker");
+	}
+
+	/** Opens after the threshold, fails fast, lets a single probe through after the open time and closes once the 
+	 * database is back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenProbeAndClose() throws Exception {
+		assertEquals(CircuitBreakerState.CLOSED, this.pool.getCircuitBreakerState());
+		Connection connection = this.pool.getConnection();
+		this.db.addFault(SimulatedFault.withProbability(SimulatedOperation.CONNECT, 1.0, "08001"));
+		this.db.killAllConnections("08S01");
+		try {
+			connection.createStatement().execute("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			// expected, flags the database as down
+		}
+		connection.close();
+
+		// the watch thread fails to reconnect and trips the breaker
+		for (int i=0; i < 50 && this.pool.getCircuitBreakerState() != CircuitBreakerState.OPEN; i++){
+			try {
+				this.pool.getConnection().close();
+			} catch (SQLException e) {
+				// timed out or failed fast
+			}
+		}
+		assertEquals(CircuitBreakerState.OPEN, this.pool.getCircuitBreakerState());
+
+		long connects = this.db.getCalls(SimulatedOperation.CONNECT);
+		long start = System.nanoTime();
+		assertFailsFast();
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 150);
+		Thread.sleep(100);
+		assertEquals("No reconnects while open", connects, this.db.getCalls(SimulatedOperation.CONNECT));
+
+		// probe fails: stays open for another round
+		this.currentTimeMillis += 10001;
+		assertFailsFast();
+		assertEquals(connects + 1, this.db.getCalls(SimulatedOperation.CONNECT));
+		assertEquals(CircuitBreakerState.OPEN, this.pool.getCircuitBreakerState());
+		assertFailsFast();
+		assertEquals(connects + 1, this.db.getCalls(SimulatedOperation.CONNECT));
+
+		// database back: the probe closes the breaker and the pool refills
+		this.db.clearFaults();
+		assertFailsFast();
+		this.currentTimeMillis += 10001;
+		connection = this.pool.getConnection();
+		assertEquals(CircuitBreakerState.CLOSED, this.pool.getCircuitBreakerState());
+		connection.createStatement().execute("SELECT 1");
+		connection.close();
+		assertTrue(!this.pool.getDbIsDown().get());
+	}
+
+	/** Checks that a request fails with the breaker's SQLState. */
+	private void assertFailsFast() {
+		try {
+			this.pool.getConnection();
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			assertEquals(CircuitBreaker.CIRCUIT_OPEN_SQLSTATE, e.getSQLState());
+		}
+	}
+}
@@ -163,6 +163,7 @@ public class TestConnectionHandle {
 		skipTests.add("recreateConnectionHandle");
 		skipTests.add("fillConnectionFields");
 		skipTests.add("createConnectionHandle");
+		skipTests.add("resetSessionState");
 		if (CommonTestUtils.jvmMajorVersion < 7){
 			skipTests.add("getNetworkTimeout");
 			skipTests.add("setNetworkTimeout");
@@ -1158,4 +1159,100 @@ public class TestConnectionHandle {
 		assertNotNull(this.testClass.getAutoCommitStackTrace());
 	}
 
+
+	/** Tests that changed session properties are tracked and restored on reset.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSessionStateTrackingAndReset() throws SQLException{
+		this.testClass.resetConnectionInBackground = true;
+		assertFalse(this.testClass.isSessionStateDirty());
+
+		// original values are fetched once, on first change.
+		expect(this.mockConnection.getAutoCommit()).andReturn(true).once();
+		expect(this.mockConnection.isReadOnly()).andReturn(false).once();
+		this.mockConnection.setAutoCommit(false);
+		expectLastCall().once();
+		this.mockConnection.setReadOnly(true);
+		expectLastCall().times(2);
+		
+		// reset: rollback and restore only what was changed
+		this.mockConnection.rollback();
+		expectLastCall().once();
+		this.mockConnection.setAutoCommit(true);
+		expectLastCall().once();
+		this.mockConnection.setReadOnly(false);
+		expectLastCall().once();
+		replay(this.mockConnection);
+
+		this.testClass.setAutoCommit(false);
+		this.testClass.setReadOnly(true);
+		this.testClass.setReadOnly(true);
+		assertTrue(this.testClass.isSessionStateDirty());
+
+		this.testClass.resetSessionState();
+		assertFalse(this.testClass.isSessionStateDirty());
+		verify(this.mockConnection);
+	}
+
+	/** A connection whose autocommit is off while pooled (e.g. the driver default) may have an open transaction
+	 * even if the application never changed any session property, so it always gets rolled back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSessionStateDirtyWhenPooledWithoutAutoCommit() throws Exception{
+		this.testClass.resetConnectionInBackground = true;
+		Field field = this.testClass.getClass().getDeclaredField("pooledAutoCommit");
+		field.setAccessible(true);
+		field.set(this.testClass, false);
+		assertTrue(this.testClass.isSessionStateDirty());
+
+		this.mockConnection.rollback();
+		expectLastCall().once();
+		replay(this.mockConnection);
+		this.testClass.resetSessionState();
+		verify(this.mockConnection);
+	}
+
+
+	/** Tests that redundant session state calls do not reach the driver and that the cache is dropped once 
+	 * the connection is marked as possibly broken.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSessionStateCache() throws Exception{
+		this.testClass.cacheSessionState = true;
+		Statistics stats = new Statistics(this.mockPool);
+		Field field = this.testClass.getClass().getDeclaredField("statistics");
+		field.setAccessible(true);
+		field.set(this.testClass, stats);
+
+		this.mockConnection.setAutoCommit(false);
+		expectLastCall().once();
+		expect(this.mockConnection.getTransactionIsolation()).andReturn(Connection.TRANSACTION_READ_COMMITTED).once();
+		expect(this.mockConnection.getCatalog()).andReturn("foo").once();
+		this.mockConnection.setCatalog("bar");
+		expectLastCall().once();
+		replay(this.mockConnection);
+
+		this.testClass.setAutoCommit(false);
+		this.testClass.setAutoCommit(false);
+		assertFalse(this.testClass.getAutoCommit());
+		assertEquals(Connection.TRANSACTION_READ_COMMITTED, this.testClass.getTransactionIsolation());
+		this.testClass.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+		assertEquals("foo", this.testClass.getCatalog());
+		this.testClass.setCatalog("bar");
+		assertEquals("bar", this.testClass.getCatalog());
+		verify(this.mockConnection);
+		assertEquals(4, stats.getSessionStateCallsSaved());
+
+		// after an error the driver is asked again
+		this.testClass.markPossiblyBroken(new SQLException("test", "S1000"));
+		reset(this.mockConnection);
+		expect(this.mockConnection.getAutoCommit()).andReturn(true).once();
+		replay(this.mockConnection);
+		assertTrue(this.testClass.getAutoCommit());
+		verify(this.mockConnection);
+	}
+
 }
\ No newline at end of file
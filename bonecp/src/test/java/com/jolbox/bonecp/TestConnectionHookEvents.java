@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+import com.jolbox.bonecp.hooks.ConnectionHook;
+import com.jolbox.bonecp.hooks.CustomHook;
+
+/**
+ * Tests for detection of implemented hook callbacks.
+ * @author wallacew
+ *
+ */
+public class TestConnectionHookEvents {
+
+	/** Only methods overridden from AbstractConnectionHook count. */
+	@Test
+	public void testForHook() {
+		assertSame(ConnectionHookEvents.NONE, ConnectionHookEvents.forHook(null));
+		assertSame(ConnectionHookEvents.ALL, ConnectionHookEvents.forHook(createNiceMock(ConnectionHook.class)));
+
+		ConnectionHookEvents events = ConnectionHookEvents.forHook(new CustomHook());
+		assertTrue(events.isOnCheckOut());
+		assertTrue(events.isOnCheckIn());
+		assertFalse(events.isOnBeforeStatementExecute());
+		assertFalse(events.isOnAfterStatementExecute());
+		assertSame(events, ConnectionHookEvents.forHook(new CustomHook()));
+
+		AbstractConnectionHook afterOnly = new AbstractConnectionHook() {
+			@Override
+			public void onAfterStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+				// do nothing
+			}
+		};
+		events = ConnectionHookEvents.forHook(afterOnly);
+		assertFalse(events.isOnCheckOut());
+		assertFalse(events.isOnCheckIn());
+		assertFalse(events.isOnBeforeStatementExecute());
+		assertTrue(events.isOnAfterStatementExecute());
+		assertEquals("onCheckOut=false, onCheckIn=false, onBeforeStatementExecute=false, onAfterStatementExecute=true", events.toString());
+
+		// the asynchronous dispatcher only forwards.
+		assertSame(events, ConnectionHookEvents.forHook(new AsyncHookDispatcher(afterOnly, 8, false, new Statistics(null))));
+	}
+
+	/** Statements skip callbacks the hook doesn't implement.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testStatementSkipsUnusedCallbacks() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:hookevents");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		CustomHook hook = new CustomHook();
+		config.setConnectionHook(hook);
+		BoneCP pool = new BoneCP(config);
+		try {
+			// worked out once by the pool and shared by its connections.
+			assertSame(ConnectionHookEvents.forHook(hook), pool.connectionHookEvents);
+			Connection connection = pool.getConnection();
+			assertSame(pool.connectionHookEvents, ((ConnectionHandle) connection).getConnectionHookEvents());
+			StatementHandle statement = (StatementHandle) connection.createStatement();
+			assertFalse(statement.hookBeforeExecute);
+			assertFalse(statement.hookAfterExecute);
+			statement.close();
+			connection.close();
+			assertEquals(1, hook.checkout);
+			assertEquals(1, hook.checkin);
+		} finally {
+			pool.shutdown();
+			SimulatedDatabase.remove("hookevents");
+		}
+	}
+}
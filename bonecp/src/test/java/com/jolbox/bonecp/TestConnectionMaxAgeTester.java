@@ -19,6 +19,7 @@ package com.jolbox.bonecp;
 import static org.easymock.EasyMock.anyLong;
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
@@ -166,6 +167,45 @@ public class TestConnectionMaxAgeTester {
 		
 	}
 	
+	/**
+	 * Tests that a replacement connection is opened before an expired one is closed off and that
+	 * no more than the configured number of connections are retired in one run.
+	 * @throws SQLException 
+	 */
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testConnectionExpiredRetirementLimit() throws SQLException{
+		 
+		BlockingQueue<ConnectionHandle> mockQueue = createNiceMock(LinkedBlockingQueue.class);
+		expect(mockConnectionPartition.getAvailableConnections()).andReturn(2);
+		expect(mockConnectionPartition.getFreeConnections()).andReturn(mockQueue).anyTimes();
+		ConnectionHandle mockConnectionExpired = createNiceMock(ConnectionHandle.class);
+		ConnectionHandle mockConnectionExpired2 = createNiceMock(ConnectionHandle.class);
+		expect(mockQueue.poll()).andReturn(mockConnectionExpired).once().andReturn(mockConnectionExpired2).once();
+			
+		expect(mockConnectionExpired.isExpired(anyLong())).andReturn(true).once();
+		expect(mockConnectionExpired2.isExpired(anyLong())).andReturn(true).once();
+		expect(mockConnectionExpired.getConnectionCreationTimeInMs()).andReturn(System.currentTimeMillis()).anyTimes();
+		expect(mockConnectionExpired2.getConnectionCreationTimeInMs()).andReturn(System.currentTimeMillis()).anyTimes();
+		expect(mockExecutor.isShutdown()).andReturn(false).anyTimes();
+		
+		expect(mockPool.precreateReplacementConnection(mockConnectionPartition)).andReturn(true).once();
+		mockConnectionExpired.internalClose();
+		expectLastCall().once();
+		mockPool.postDestroyConnection(mockConnectionExpired);
+		expectLastCall().once();
+		
+		// second connection is over the limit so it goes back to the partition to be retired later on.
+		mockPool.putConnectionBackInPartition(mockConnectionExpired2);
+		expectLastCall().once();
+		
+		expect(mockExecutor.schedule((Runnable)anyObject(), eq(ConnectionMaxAgeThread.RETIREMENT_BACKOFF_IN_MS), eq(TimeUnit.MILLISECONDS))).andReturn(null).once();
+		replay(mockQueue, mockExecutor, mockConnectionPartition, mockPool, mockConnectionExpired, mockConnectionExpired2);
+		ConnectionMaxAgeThread testClass2 = new ConnectionMaxAgeThread(mockConnectionPartition, mockExecutor, mockPool, 5000, false, 1);
+		testClass2.run();
+		verify(mockConnectionExpired, mockConnectionExpired2, mockPool, mockExecutor);
+	}
+
 	/**
 	 * @throws SQLException
 	 */
@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for warming up new connections.
+ * @author wallacew
+ *
+ */
+public class TestConnectionWarmUp {
+	/** Config of the pool under test. */
+	private BoneCPConfig config;
+
+	/** Sets up the config. */
+	@Before
+	public void before() {
+		SimulatedJDBCDriver.register();
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:sim:warmup");
+		this.config.setPartitionCount(1);
+		this.config.setMinConnectionsPerPartition(2);
+		this.config.setMaxConnectionsPerPartition(2);
+		this.config.setAcquireRetryDelayInMs(10);
+		this.config.setStatementsCacheSize(10);
+		this.config.setStatisticsEnabled(true);
+	}
+
+	/** Drops the database. */
+	@After
+	public void after() {
+		SimulatedDatabase.remove("warmup");
+	}
+
+	/** Warm-up SQL runs and statements are prepared into the statement cache before connections are handed out.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testDefaultWarmUp() throws SQLException {
+		this.config.setWarmUpSQL("SELECT * FROM foo");
+		this.config.setWarmUpStatements("SELECT * FROM foo WHERE id=?; UPDATE foo SET a=? WHERE id=?;");
+		this.config.setWarmUpMetadata(true);
+		BoneCP pool = new BoneCP(this.config);
+		try {
+			SimulatedDatabase db = SimulatedDatabase.get("warmup");
+			assertEquals(4, db.getCalls(SimulatedOperation.PREPARE));
+			assertEquals(2, pool.getStatistics().getConnectionsWarmedUp());
+			assertTrue(pool.getStatistics().getConnectionWarmUpTimeAvg() >= 0);
+
+			Connection connection = pool.getConnection();
+			long cacheHits = pool.getStatistics().getCacheHits();
+			PreparedStatement ps = connection.prepareStatement("SELECT * FROM foo WHERE id=?");
+			ps.setInt(1, 1);
+			ps.executeQuery().close();
+			ps.close();
+			assertEquals(cacheHits + 1, pool.getStatistics().getCacheHits());
+			assertEquals(4, db.getCalls(SimulatedOperation.PREPARE));
+			connection.close();
+
+			pool.getStatistics().resetStats();
+			assertEquals(0, pool.getStatistics().getConnectionsWarmedUp());
+			assertEquals(0, pool.getStatistics().getCumulativeConnectionWarmUpTime());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** A connection failing to warm up is closed and never handed out.
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailedWarmUp() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		this.config.setMinConnectionsPerPartition(1);
+		this.config.setConnectionWarmUp(new DefaultConnectionWarmUp() {
+			@Override
+			public void warmUp(ConnectionHandle connection) throws SQLException {
+				if (calls.incrementAndGet() == 2){
+					throw new SQLException("warm-up failed");
+				}
+				super.warmUp(connection);
+			}
+		});
+		BoneCP pool = new BoneCP(this.config);
+		try {
+			SimulatedDatabase db = SimulatedDatabase.get("warmup");
+			Connection first = pool.getConnection();
+			Connection second = pool.getConnection(); // waits for the watch thread to retry
+			assertTrue(calls.get() >= 3);
+			assertEquals(2, pool.getTotalCreatedConnections());
+			assertEquals(2, db.getOpenConnections());
+			first.close();
+			second.close();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+
+/**
+ * Tests for the pools started by BoneCPDataSource.getConnection(username, password).
+ * @author wallacew
+ *
+ */
+public class TestCredentialPools {
+	/** Datasource under test. */
+	private BoneCPDataSource dataSource;
+	/** Time reported by the clock. */
+	private volatile long currentTimeMillis = 1000L;
+
+	/** Sets up a datasource whose pools reserve 2 connections each, 4 in total.
+	 */
+	@Before
+	public void before() {
+		SimulatedJDBCDriver.register();
+		this.dataSource = new BoneCPDataSource();
+		this.dataSource.setJdbcUrl("jdbc:sim:credentials");
+		this.dataSource.setPartitionCount(1);
+		this.dataSource.setMinConnectionsPerPartition(1);
+		this.dataSource.setMaxConnectionsPerPartition(2);
+		this.dataSource.setMaxConnectionsAcrossCredentials(4);
+		this.dataSource.setCredentialPoolIdleTimeout(1, TimeUnit.HOURS); // run by hand
+		this.dataSource.setClock(new PoolClock() {
+			public long currentTimeMillis() {
+				return TestCredentialPools.this.currentTimeMillis;
+			}
+
+			public long nanoTime() {
+				return System.nanoTime();
+			}
+		});
+	}
+
+	/** Shuts down the datasource. */
+	@After
+	public void after() {
+		this.dataSource.close();
+		SimulatedDatabase.remove("credentials");
+	}
+
+	/** Pools that do not fit in the budget push out the least recently used idle pool.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testBudget() throws SQLException {
+		CredentialPools pools = this.dataSource.getCredentialPools();
+		Connection a = this.dataSource.getConnection("a", "pa");
+		this.currentTimeMillis += 10;
+		this.dataSource.getConnection("b", "pb").close();
+		assertEquals(2, pools.size());
+		assertEquals(4, pools.getReservedConnections());
+		BoneCP poolB = pools.getPool("b", "pb").getDataSource().getPool();
+
+		this.currentTimeMillis += 10;
+		Connection c = this.dataSource.getConnection("c", "pc"); // b is idle, a is not
+		assertNull(pools.getPool("b", "pb"));
+		assertTrue(poolB.poolShuttingDown);
+		assertNotNull(pools.getPool("a", "pa"));
+		assertEquals(4, pools.getReservedConnections());
+
+		try {
+			this.dataSource.getConnection("d", "pd");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals("08004", e.getSQLState());
+		}
+
+		a.close();
+		this.dataSource.getConnection("d", "pd").close();
+		assertNull(pools.getPool("a", "pa"));
+		c.close();
+	}
+
+	/** Pools idle for too long are shut down, pools in use are kept.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testIdleEviction() throws SQLException {
+		CredentialPools pools = this.dataSource.getCredentialPools();
+		Connection a = this.dataSource.getConnection("a", "pa");
+		this.dataSource.getConnection("b", "pb").close();
+		BoneCP poolB = pools.getPool("b", "pb").getDataSource().getPool();
+
+		this.currentTimeMillis += TimeUnit.HOURS.toMillis(2);
+		pools.run();
+		assertEquals(1, pools.size());
+		assertTrue(poolB.poolShuttingDown);
+		assertFalse(pools.getPool("a", "pa").isEvicted());
+
+		// a new request starts a fresh pool.
+		this.dataSource.getConnection("b", "pb").close();
+		assertEquals(2, pools.size());
+		a.close();
+
+		this.dataSource.close();
+		assertEquals(0, pools.size());
+		try {
+			this.dataSource.getConnection("a", "pa");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			// expected
+		}
+	}
+
+	/** An idle pool with a request in progress is passed over rather than waited for.
+	 * @throws SQLException
+	 */
+	@Test(timeout=10000)
+	public void testBudgetSkipsPoolWithRequestInProgress() throws SQLException {
+		CredentialPools pools = this.dataSource.getCredentialPools();
+		this.dataSource.getConnection("a", "pa").close();
+		this.currentTimeMillis += 10;
+		Connection b = this.dataSource.getConnection("b", "pb");
+		CredentialPool poolA = pools.getPool("a", "pa");
+		assertTrue(poolA.acquire(this.currentTimeMillis)); // e.g. a slow getConnection
+		this.currentTimeMillis += 10;
+		try {
+			this.dataSource.getConnection("c", "pc");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals("08004", e.getSQLState());
+		}
+		poolA.release();
+		this.dataSource.getConnection("c", "pc").close();
+		assertNull(pools.getPool("a", "pa"));
+		b.close();
+	}
+
+	/** Pools are shut down without holding the lock other callers need to start a pool.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testShutdownOutsideLock() throws SQLException {
+		final CredentialPools pools = this.dataSource.getCredentialPools();
+		final AtomicInteger destroyed = new AtomicInteger();
+		final AtomicInteger destroyedWithLock = new AtomicInteger();
+		this.dataSource.setConnectionHook(new AbstractConnectionHook() {
+			@Override
+			public void onDestroy(ConnectionHandle connection) {
+				destroyed.incrementAndGet();
+				if (Thread.holdsLock(pools)){
+					destroyedWithLock.incrementAndGet();
+				}
+			}
+		});
+		this.dataSource.getConnection("a", "pa").close();
+		this.currentTimeMillis += 10;
+		this.dataSource.getConnection("b", "pb").close();
+		this.currentTimeMillis += 10;
+		this.dataSource.getConnection("c", "pc").close(); // evicts a
+		this.currentTimeMillis += TimeUnit.HOURS.toMillis(2);
+		pools.run(); // evicts b and c
+		this.dataSource.getConnection("d", "pd").close();
+		this.dataSource.close();
+
+		assertTrue(destroyed.get() >= 4);
+		assertEquals(0, destroyedWithLock.get());
+	}
+}
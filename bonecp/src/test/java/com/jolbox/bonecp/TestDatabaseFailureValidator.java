@@ -0,0 +1,162 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.SocketException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests for selective eviction on database failures.
+ * @author wallacew
+ *
+ */
+public class TestDatabaseFailureValidator {
+	/** Pool under test. */
+	private BoneCP pool;
+	/** Database. */
+	private SimulatedDatabase db;
+
+	/** Starts a pool validating up to 2 idle connections on a database failure.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:failurevalidation");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(4);
+		config.setMaxConnectionsPerPartition(4);
+		config.setAcquireRetryDelayInMs(10);
+		config.setFailureValidationSampleSize(2);
+		this.pool = new BoneCP(config);
+		this.db = SimulatedDatabase.get("failurevalidation");
+	}
+
+	/** Shuts down the pool. */
+	@After
+	public void after() {
+		this.pool.shutdown();
+		SimulatedDatabase.remove("failurevalidation");
+	}
+
+	/** Waits for the pool to hold the given number of free connections.
+	 * @param expected free connections
+	 * @throws InterruptedException
+	 */
+	private void awaitFree(int expected) throws InterruptedException {
+		for (int i=0; i < 100 && this.pool.getTotalFree() != expected; i++){
+			Thread.sleep(20);
+		}
+		assertEquals(expected, this.pool.getTotalFree());
+	}
+
+	/** A single connection failing with a database failure code only evicts that connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSingleConnectionFailure() throws Exception {
+		awaitFree(4);
+		long opened = this.db.getConnectionsOpened();
+		Connection connection = this.pool.getConnection();
+		this.db.failNext(SimulatedOperation.EXECUTE, 1, "08S01");
+		try {
+			connection.createStatement().execute("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			assertEquals("08S01", e.getSQLState());
+		}
+		connection.close();
+
+		awaitFree(4);
+		assertFalse(this.pool.getDbIsDown().get());
+		assertEquals("Only the failed connection was replaced", opened + 1, this.db.getConnectionsOpened());
+	}
+
+	/** The pool is flushed once the sampled idle connections fail validation as well.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDatabaseFailure() throws Exception {
+		awaitFree(4);
+		Connection connection = this.pool.getConnection();
+		this.db.addFault(SimulatedFault.withProbability(SimulatedOperation.CONNECT, 1.0, "08001"));
+		this.db.killAllConnections("08S01");
+		try {
+			connection.createStatement().execute("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			assertEquals("08S01", e.getSQLState());
+		}
+		connection.close();
+
+		for (int i=0; i < 100 && !this.pool.getDbIsDown().get(); i++){
+			Thread.sleep(20);
+		}
+		assertTrue(this.pool.getDbIsDown().get());
+		awaitFree(0);
+
+		this.db.clearFaults();
+		awaitFree(4);
+	}
+
+	/** Validations that hang count as failed once the timeout has passed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testHangingValidation() throws Exception {
+		awaitFree(4);
+		this.db.setLatency(SimulatedOperation.EXECUTE, LatencyDistributions.fixed(60000));
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			DatabaseFailureValidator validator = new DatabaseFailureValidator(this.pool, 2, 200, executor);
+			long start = System.currentTimeMillis();
+			assertTrue("Both sampled connections timed out", validator.validate());
+			assertTrue(System.currentTimeMillis() - start < 10000);
+		} finally {
+			executor.shutdownNow();
+			this.db.setLatency(SimulatedOperation.EXECUTE, LatencyDistributions.fixed(0));
+		}
+	}
+
+	/** Default and custom classification rules. */
+	@Test
+	public void testClassifier() {
+		DefaultSQLStateClassifier classifier = DefaultSQLStateClassifier.INSTANCE;
+		assertEquals(FailureScope.DATABASE, classifier.classify("08S01", new SQLException("x", "08S01")));
+		assertEquals(FailureScope.CONNECTION, classifier.classify("08003", new SQLException("x", "08003")));
+		assertEquals(FailureScope.CONNECTION, classifier.classify("99999", new SQLException("x", "99999", new SocketException())));
+		assertEquals(FailureScope.NONE, classifier.classify("23505", new SQLException("x", "23505")));
+
+		classifier = new DefaultSQLStateClassifier(ImmutableSet.of("08S01"));
+		assertEquals(FailureScope.NONE, classifier.classify("HY000", new SQLException("x", "HY000")));
+		assertEquals(ImmutableSet.of("08S01"), classifier.getDatabaseFailureCodes());
+	}
+}
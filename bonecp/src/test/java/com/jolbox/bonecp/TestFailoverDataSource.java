@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for multi-host failover.
+ * @author wallacew
+ *
+ */
+public class TestFailoverDataSource {
+	/** Datasource under test. */
+	private FailoverDataSource dataSource;
+
+	/** Sets up a datasource against two simulated databases. */
+	@Before
+	public void before() {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setPartitionCount(2);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(4);
+		config.setAcquireRetryAttempts(0);
+		config.setPoolName("failover");
+		this.dataSource = new FailoverDataSource(config, Arrays.asList("jdbc:sim:foA", "jdbc:sim:foB"));
+		this.dataSource.setStandbyConnections(1);
+		this.dataSource.setFailbackProbeInterval(1, TimeUnit.HOURS); // probed by hand
+	}
+
+	/** Shuts down all pools. */
+	@After
+	public void after() {
+		this.dataSource.close();
+		SimulatedDatabase.remove("foA");
+		SimulatedDatabase.remove("foB");
+	}
+
+	/** Waits until the standby pool at the given position is up.
+	 * @param position position of the database
+	 * @return standby pool
+	 * @throws InterruptedException
+	 */
+	private BoneCP awaitStandby(int position) throws InterruptedException {
+		for (int i=0; i < 100; i++){
+			BoneCPDataSource pool = this.dataSource.getPool(position);
+			if (pool != null && pool.getPool() != null && pool.getPool().getTotalCreatedConnections() >= 1){
+				return pool.getPool();
+			}
+			Thread.sleep(50);
+		}
+		fail("Standby pool not started");
+		return null;
+	}
+
+	/** Primary goes down, standby takes over, primary comes back and is failed back to.
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailoverAndFailback() throws Exception {
+		Connection connection = this.dataSource.getConnection();
+		assertEquals(0, this.dataSource.getActive());
+		BoneCP standby = awaitStandby(1);
+		assertEquals(1, standby.partitionCount);
+		assertEquals(1, standby.getTotalCreatedConnections());
+
+		SimulatedDatabase a = SimulatedDatabase.get("foA");
+		a.addFault(SimulatedFault.withProbability(SimulatedOperation.CONNECT, 1.0, "08001"));
+		a.killAllConnections("08S01");
+		try {
+			connection.createStatement().execute("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			// expected, flags the database as down
+		}
+		connection.close();
+
+		connection = this.dataSource.getConnection();
+		assertEquals(1, this.dataSource.getActive());
+		assertNull(this.dataSource.getPool(0));
+		BoneCP active = this.dataSource.getPool(1).getPool();
+		assertEquals(2, active.partitionCount);
+		assertTrue(active.getTotalCreatedConnections() >= 2);
+		connection.createStatement().execute("SELECT 1");
+		connection.close();
+
+		// still down: nothing changes, and the probe tried a single connection rather than starting a pool
+		long connects = a.getCalls(SimulatedOperation.CONNECT);
+		this.dataSource.probe();
+		assertEquals(1, this.dataSource.getActive());
+		assertEquals(connects + 1, a.getCalls(SimulatedOperation.CONNECT));
+		assertNull(this.dataSource.getPool(0));
+
+		a.clearFaults();
+		this.dataSource.probe();
+		assertEquals(0, this.dataSource.getActive());
+		assertNotNull(this.dataSource.getPool(0));
+		assertEquals(1, active.partitionCount);
+		connection = this.dataSource.getConnection();
+		assertEquals(0, this.dataSource.getActive());
+		connection.close();
+	}
+
+	/** A primary that is down at startup is skipped, a connection error on getConnection fails over right away.
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailoverOnGetConnection() throws Exception {
+		SimulatedDatabase.getOrCreate("foA").addFault(SimulatedFault.withProbability(SimulatedOperation.CONNECT, 1.0, "08001"));
+		Connection connection = this.dataSource.getConnection();
+		assertEquals(1, this.dataSource.getActive());
+		connection.close();
+
+		SimulatedDatabase.get("foB").addFault(SimulatedFault.withProbability(SimulatedOperation.CONNECT, 1.0, "08001"));
+		SimulatedDatabase.get("foB").killAllConnections("08S01");
+		try {
+			this.dataSource.getConnection().createStatement().execute("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			// expected: no database left to fail over to
+		}
+
+		this.dataSource.close();
+		try {
+			this.dataSource.getConnection();
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	/** A pool that times out waiting for a free connection is busy, not down, and keeps its database in use.
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoFailoverOnTimeout() throws Exception {
+		List<Connection> held = new ArrayList<Connection>();
+		held.add(this.dataSource.getConnection());
+		awaitStandby(1);
+		BoneCP active = this.dataSource.getPool(0).getPool();
+		active.connectionTimeoutInMs = 100;
+		try {
+			for (int i=0; i < 9; i++){
+				held.add(this.dataSource.getConnection());
+			}
+			fail("Should have thrown an exception");
+		} catch (SQLException e) {
+			assertEquals("08001", e.getSQLState());
+		}
+		assertEquals(0, this.dataSource.getActive());
+		assertSame(active, this.dataSource.getPool(0).getPool());
+		for (Connection connection: held){
+			connection.close();
+		}
+	}
+}
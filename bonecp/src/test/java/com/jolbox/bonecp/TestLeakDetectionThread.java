@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+
+/**
+ * Tests for the leak detection thread.
+ * @author wwadge
+ *
+ */
+public class TestLeakDetectionThread {
+	/** Mock handle. */
+	private BoneCP mockPool;
+	/** Mock handle. */
+	private ConnectionHandle mockConnection;
+	/** Mock handle. */
+	private AbstractConnectionHook mockConnectionHook;
+	/** Test class handle. */
+	private LeakDetectionThread testClass;
+
+	/**
+	 * Mock setup.
+	 * @throws Exception
+	 */
+	@Before
+	public void before() throws Exception{
+		this.mockPool = createNiceMock(BoneCP.class);
+		this.mockPool.statisticsEnabled = true;
+		this.mockPool.statistics = new Statistics(this.mockPool);
+		this.mockConnection = createNiceMock(ConnectionHandle.class);
+		this.mockConnectionHook = createNiceMock(AbstractConnectionHook.class);
+		this.testClass = new LeakDetectionThread(this.mockPool, 1000);
+		TestUtils.mockLogger(this.testClass.getClass());
+	}
+
+	/**
+	 * A connection held for longer than the threshold is reported exactly once.
+	 */
+	@Test
+	public void testLeakReportedOnce(){
+		expect(this.mockConnection.getConnectionHook()).andReturn(this.mockConnectionHook).anyTimes();
+		expect(this.mockConnection.getThreadUsingConnection()).andReturn(Thread.currentThread()).anyTimes();
+		this.mockConnectionHook.onConnectionLeakDetected(same(this.mockConnection), (Throwable)anyObject(), anyLong());
+		expectLastCall().once();
+		replay(this.mockConnection, this.mockConnectionHook);
+
+		this.testClass.track(this.mockConnection);
+		assertNotNull(this.mockConnection.checkoutLocation);
+		assertEquals(1, this.testClass.getTrackedConnections());
+
+		// not yet over the threshold
+		this.testClass.run();
+		assertFalse(this.mockConnection.leakReported);
+
+		this.mockConnection.checkoutTimeInMs = System.currentTimeMillis() - 5000;
+		this.testClass.run();
+		this.testClass.run();
+		assertTrue(this.mockConnection.leakReported);
+		assertEquals(1, this.mockPool.statistics.getConnectionsLeaked());
+
+		this.testClass.untrack(this.mockConnection);
+		assertEquals(0, this.testClass.getTrackedConnections());
+		assertNull(this.mockConnection.checkoutLocation);
+		verify(this.mockConnectionHook);
+	}
+
+	/**
+	 * A connection closed before the threshold is never reported.
+	 */
+	@Test
+	public void testNoLeakAfterUntrack(){
+		replay(this.mockConnection, this.mockConnectionHook);
+		this.testClass.track(this.mockConnection);
+		this.testClass.untrack(this.mockConnection);
+		this.mockConnection.checkoutTimeInMs = System.currentTimeMillis() - 5000;
+		this.testClass.run();
+		assertFalse(this.mockConnection.leakReported);
+		assertEquals(0, this.mockPool.statistics.getConnectionsLeaked());
+		verify(this.mockConnectionHook);
+	}
+
+	/**
+	 * Exceptions thrown by a hook do not stop the scan.
+	 */
+	@Test
+	public void testHookExceptionIsCaught(){
+		expect(this.mockConnection.getConnectionHook()).andReturn(this.mockConnectionHook).anyTimes();
+		this.mockConnectionHook.onConnectionLeakDetected(same(this.mockConnection), (Throwable)anyObject(), anyLong());
+		expectLastCall().andThrow(new RuntimeException("fake"));
+		replay(this.mockConnection, this.mockConnectionHook);
+
+		this.testClass.track(this.mockConnection);
+		this.mockConnection.checkoutTimeInMs = System.currentTimeMillis() - 5000;
+		this.testClass.run();
+		assertTrue(this.mockConnection.leakReported);
+		verify(this.mockConnectionHook);
+	}
+
+	/**
+	 * The hook behind an async dispatcher is called directly.
+	 */
+	@Test
+	public void testHookBehindAsyncDispatcher(){
+		AsyncHookDispatcher dispatcher = new AsyncHookDispatcher(this.mockConnectionHook, 16, false, this.mockPool.statistics);
+		expect(this.mockConnection.getConnectionHook()).andReturn(dispatcher).anyTimes();
+		this.mockConnectionHook.onConnectionLeakDetected(same(this.mockConnection), (Throwable)anyObject(), anyLong());
+		expectLastCall().once();
+		replay(this.mockConnection, this.mockConnectionHook);
+
+		this.testClass.track(this.mockConnection);
+		this.mockConnection.checkoutTimeInMs = System.currentTimeMillis() - 5000;
+		this.testClass.run();
+		verify(this.mockConnectionHook);
+	}
+
+	/**
+	 * Connections closed off without the application calling close() are dropped on the next scan.
+	 */
+	@Test
+	public void testClosedConnectionDropped(){
+		expect(this.mockConnection.isClosed()).andReturn(true).anyTimes();
+		replay(this.mockConnection, this.mockConnectionHook);
+
+		this.testClass.track(this.mockConnection);
+		this.mockConnection.checkoutTimeInMs = System.currentTimeMillis() - 5000;
+		this.testClass.run();
+		assertFalse(this.mockConnection.leakReported);
+		assertEquals(0, this.testClass.getTrackedConnections());
+		verify(this.mockConnectionHook);
+	}
+}
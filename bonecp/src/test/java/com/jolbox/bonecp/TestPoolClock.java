@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the pool clock.
+ * @author wallacew
+ *
+ */
+public class TestPoolClock {
+	/** Clock under the control of the test. */
+	private long currentTimeMillis = 1000000L;
+	/** Clock under the control of the test. */
+	private long nanoTime = 0;
+
+	/** Returns a clock driven by this test.
+	 * @return clock
+	 */
+	private PoolClock manualClock(){
+		return new PoolClock() {
+			public long currentTimeMillis() {
+				return TestPoolClock.this.currentTimeMillis;
+			}
+
+			public long nanoTime() {
+				return TestPoolClock.this.nanoTime;
+			}
+		};
+	}
+
+	/** The coarse clock only moves when ticked.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testCoarseClock() throws InterruptedException {
+		CoarseClock clock = new CoarseClock();
+		long before = clock.currentTimeMillis();
+		Thread.sleep(20);
+		assertEquals(before, clock.currentTimeMillis());
+		clock.run();
+		assertTrue(clock.currentTimeMillis() > before);
+		assertTrue(clock.nanoTime() > 0);
+
+		assertSame(SystemClock.INSTANCE, BoneCP.getClock(null));
+		assertTrue(SystemClock.INSTANCE.currentTimeMillis() > 0);
+	}
+
+	/** Connection timestamps and statistics follow an injected clock.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testInjectedClock() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:clock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setStatisticsEnabled(true);
+		config.setMaxConnectionAge(1, TimeUnit.HOURS);
+		config.setClock(manualClock());
+		BoneCP pool = new BoneCP(config);
+		try {
+			ConnectionHandle connection = (ConnectionHandle) pool.getConnection();
+			assertEquals(1000000L, connection.getConnectionCreationTimeInMs());
+			assertEquals(1000000L, connection.getConnectionLastUsedInMs());
+
+			this.currentTimeMillis += 5000;
+			this.nanoTime += TimeUnit.MILLISECONDS.toNanos(3);
+			connection.close();
+			connection = (ConnectionHandle) pool.getConnection(); // same connection, new handle
+			assertEquals(1005000L, connection.getConnectionLastUsedInMs());
+			assertEquals(1000000L, connection.getConnectionCreationTimeInMs());
+			assertFalse(connection.isExpired());
+			this.currentTimeMillis += TimeUnit.HOURS.toMillis(2);
+			assertTrue(connection.isExpired());
+			connection.close();
+		} finally {
+			pool.shutdown();
+			SimulatedDatabase.remove("clock");
+		}
+	}
+
+	/** A coarse clock is installed (and stopped again) when configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCoarseClockResolution() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:coarseclock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setCoarseClockResolutionInMs(10);
+		BoneCP pool = new BoneCP(config);
+		try {
+			assertTrue(pool.getClock() instanceof CoarseClock);
+			Connection connection = pool.getConnection();
+			connection.close();
+		} finally {
+			pool.shutdown();
+			SimulatedDatabase.remove("coarseclock");
+		}
+	}
+}
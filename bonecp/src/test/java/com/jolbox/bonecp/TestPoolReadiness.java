@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for background pool initialization and readiness signalling.
+ * @author wallacew
+ *
+ */
+public class TestPoolReadiness {
+	/** Simulated database. */
+	private SimulatedDatabase db;
+	/** Pool under test. */
+	private BoneCP pool;
+
+	/** Registers the driver. */
+	@Before
+	public void setup(){
+		SimulatedJDBCDriver.register();
+		this.db = SimulatedDatabase.getOrCreate("readiness");
+	}
+
+	/** Cleanup. */
+	@After
+	public void teardown(){
+		if (this.pool != null){
+			this.pool.shutdown();
+		}
+		SimulatedDatabase.remove("readiness");
+	}
+
+	/** Returns a config for the simulated database.
+	 * @return config
+	 */
+	private BoneCPConfig config(){
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:readiness");
+		config.setPartitionCount(2);
+		config.setMinConnectionsPerPartition(5);
+		config.setMaxConnectionsPerPartition(5);
+		config.setStatisticsEnabled(true);
+		return config;
+	}
+
+	/** Without background init the pool is ready once constructed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSynchronousInit() throws Exception {
+		this.pool = new BoneCP(config());
+		assertEquals(10, this.pool.getTotalCreatedConnections());
+		assertTrue(this.pool.getReadyFuture().isDone());
+		assertTrue(this.pool.isReady());
+		assertTrue(this.pool.getStatistics().isReady());
+	}
+
+	/** The constructor returns straight away and the partitions are filled in the background.
+	 * @throws Exception
+	 */
+	@Test
+	public void testBackgroundInit() throws Exception {
+		this.db.setLatency(SimulatedOperation.CONNECT, LatencyDistributions.fixed(50));
+		BoneCPConfig config = config();
+		config.setBackgroundInit(true);
+		this.pool = new BoneCP(config);
+		assertTrue(this.pool.getTotalCreatedConnections() < 10);
+		assertFalse(this.pool.getStatistics().isReady());
+
+		assertSame(this.pool, this.pool.getReadyFuture().get(10, TimeUnit.SECONDS));
+		assertEquals(10, this.pool.getTotalCreatedConnections());
+		assertTrue(this.pool.isReady());
+		this.pool.getConnection().close();
+	}
+
+	/** The pool is ready once the configured fraction of connections is open.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadyThreshold() throws Exception {
+		this.db.setLatency(SimulatedOperation.CONNECT, LatencyDistributions.fixed(50));
+		BoneCPConfig config = config();
+		config.setBackgroundInit(true);
+		config.setReadyThreshold(50);
+		this.pool = new BoneCP(config);
+		this.pool.getReadyFuture().get(10, TimeUnit.SECONDS);
+		assertTrue(this.pool.getTotalCreatedConnections() >= 5);
+
+		config = config();
+		config.setBackgroundInit(true);
+		config.setReadyThreshold(0);
+		BoneCP other = new BoneCP(config);
+		try {
+			assertTrue(other.isReady());
+		} finally {
+			other.shutdown();
+		}
+	}
+
+	/** Shutting down before the pool is ready fails the future.
+	 * @throws Exception
+	 */
+	@Test
+	public void testShutdownBeforeReady() throws Exception {
+		this.db.setLatency(SimulatedOperation.CONNECT, LatencyDistributions.fixed(200));
+		BoneCPConfig config = config();
+		config.setBackgroundInit(true);
+		this.pool = new BoneCP(config);
+		this.pool.shutdown();
+		try {
+			this.pool.getReadyFuture().get(10, TimeUnit.SECONDS);
+			fail("Should have thrown an exception");
+		} catch (ExecutionException e){
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+		assertFalse(this.pool.isReady());
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for resizing and retuning a running pool.
+ * @author wallacew
+ *
+ */
+public class TestPoolTuning {
+	/** Pool under test. */
+	private BoneCP pool;
+
+	/** Starts a pool with 3-5 connections in a single partition.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:tuning");
+		config.setPoolName("tuning");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(3);
+		config.setMaxConnectionsPerPartition(5);
+		config.setAcquireIncrement(1);
+		config.setDisableJMX(false);
+		this.pool = new BoneCP(config);
+	}
+
+	/** Shuts down the pool. */
+	@After
+	public void after() {
+		this.pool.shutdown();
+		SimulatedDatabase.remove("tuning");
+	}
+
+	/** Waits for the pool to reach the given number of connections.
+	 * @param expected number of connections
+	 * @throws InterruptedException
+	 */
+	private void waitForCreatedConnections(int expected) throws InterruptedException {
+		for (int i=0; i < 500 && this.pool.getTotalCreatedConnections() != expected; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(expected, this.pool.getTotalCreatedConnections());
+	}
+
+	/** Shrinking closes idle connections right away and connections in use as they come back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testShrinkAndGrow() throws Exception {
+		waitForCreatedConnections(3);
+		Connection first = this.pool.getConnection();
+		Connection second = this.pool.getConnection();
+
+		this.pool.resize(1, 1);
+		assertEquals(1, this.pool.getConfig().getMaxConnectionsPerPartition());
+		assertEquals(2, this.pool.getTotalCreatedConnections()); // the idle one is gone
+		assertEquals(0, this.pool.getTotalFree());
+
+		first.close();
+		assertEquals(1, this.pool.getTotalCreatedConnections());
+		assertEquals(0, this.pool.getTotalFree());
+		second.close();
+		assertEquals(1, this.pool.getTotalCreatedConnections());
+		assertEquals(1, this.pool.getTotalFree());
+
+		this.pool.resize(4, 6);
+		waitForCreatedConnections(4);
+		assertEquals(6, this.pool.partitions[0].getMaxConnections());
+		assertEquals(4, this.pool.getTotalFree());
+	}
+
+	/** Invalid values are rejected. */
+	@Test
+	public void testValidation() {
+		try {
+			this.pool.setMinConnectionsPerPartition(6);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		try {
+			this.pool.setPoolAvailabilityThreshold(101);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		assertEquals(3, this.pool.getConfig().getMinConnectionsPerPartition());
+	}
+
+	/** Settings can be changed via JMX.
+	 * @throws Exception
+	 */
+	@Test
+	public void testJMX() throws Exception {
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(BoneCP.MBEAN_TUNING + "-tuning");
+		assertTrue(mbs.isRegistered(name));
+
+		mbs.setAttribute(name, new Attribute("AcquireIncrement", 2));
+		mbs.setAttribute(name, new Attribute("PoolAvailabilityThreshold", 50));
+		mbs.setAttribute(name, new Attribute("ConnectionTimeoutInMs", 1500L));
+		mbs.setAttribute(name, new Attribute("QueryExecuteTimeLimitInMs", 20L));
+		mbs.setAttribute(name, new Attribute("MaxConnectionsPerPartition", 8));
+		mbs.setAttribute(name, new Attribute("MinConnectionsPerPartition", 4));
+
+		assertEquals(2, mbs.getAttribute(name, "AcquireIncrement"));
+		assertEquals(50, mbs.getAttribute(name, "PoolAvailabilityThreshold"));
+		assertEquals(1500L, mbs.getAttribute(name, "ConnectionTimeoutInMs"));
+		assertEquals(20L, mbs.getAttribute(name, "QueryExecuteTimeLimitInMs"));
+		assertEquals(8, mbs.getAttribute(name, "MaxConnectionsPerPartition"));
+		assertEquals(4, mbs.getAttribute(name, "MinConnectionsPerPartition"));
+
+		assertEquals(2, this.pool.partitions[0].getAcquireIncrement());
+		assertEquals(50, this.pool.poolAvailabilityThreshold);
+		assertEquals(1500L, this.pool.connectionTimeoutInMs);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(20), this.pool.partitions[0].getQueryExecuteTimeLimitinNanoSeconds());
+		assertEquals(4, this.pool.partitions[0].getMinConnections());
+
+		this.pool.setConnectionTimeout(0, TimeUnit.MILLISECONDS);
+		assertEquals(Long.MAX_VALUE, this.pool.connectionTimeoutInMs);
+		mbs.invoke(name, "resize", new Object[]{1, 2}, new String[]{"int", "int"});
+		assertEquals(2, this.pool.partitions[0].getMaxConnections());
+	}
+}
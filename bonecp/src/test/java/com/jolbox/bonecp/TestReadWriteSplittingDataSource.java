@@ -0,0 +1,224 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for read/write splitting.
+ * @author wallacew
+ *
+ */
+public class TestReadWriteSplittingDataSource {
+	/** Datasource under test. */
+	private ReadWriteSplittingDataSource dataSource;
+	/** Primary. */
+	private BoneCPDataSource primary;
+	/** First replica. */
+	private BoneCPDataSource replica1;
+	/** Second replica. */
+	private BoneCPDataSource replica2;
+
+	/** Creates a pool against the given simulated database.
+	 * @param url jdbc url
+	 * @return datasource
+	 */
+	private BoneCPDataSource createPool(String url){
+		BoneCPDataSource result = new BoneCPDataSource();
+		result.setJdbcUrl(url);
+		result.setPartitionCount(1);
+		result.setMinConnectionsPerPartition(1);
+		result.setMaxConnectionsPerPartition(3);
+		result.setStatisticsEnabled(true);
+		return result;
+	}
+
+	/** Sets up a primary with two replicas. */
+	@Before
+	public void before() {
+		SimulatedJDBCDriver.register();
+		this.primary = createPool("jdbc:sim:rwprimary");
+		this.replica1 = createPool("jdbc:sim:rwreplica1?executeLatency=fixed:20");
+		this.replica2 = createPool("jdbc:sim:rwreplica2");
+		this.dataSource = new ReadWriteSplittingDataSource(this.primary, Arrays.asList(this.replica1, this.replica2));
+	}
+
+	/** Shuts down all pools. */
+	@After
+	public void after() {
+		this.dataSource.close();
+		SimulatedDatabase.remove("rwprimary");
+		SimulatedDatabase.remove("rwreplica1");
+		SimulatedDatabase.remove("rwreplica2");
+	}
+
+	/** Returns the pool the given connection comes from.
+	 * @param connection connection
+	 * @return pool
+	 */
+	private BoneCP poolOf(Connection connection){
+		if (Proxy.isProxyClass(connection.getClass())){
+			connection = ((ReadOnlyFallbackConnection) Proxy.getInvocationHandler(connection)).getTarget();
+		}
+		return ((ConnectionHandle) connection).getPool();
+	}
+
+	/** Writes go to the primary, read-only work is spread across replicas.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLeastOutstanding() throws SQLException {
+		Connection write = this.dataSource.getConnection(false);
+		assertSame(this.primary.getPool(), poolOf(write));
+
+		Connection read1 = this.dataSource.getConnection(true);
+		Connection read2 = this.dataSource.getConnection(true);
+		assertTrue(poolOf(read1) != poolOf(read2));
+		assertEquals(1, this.replica1.getTotalLeased());
+		assertEquals(1, this.replica2.getTotalLeased());
+		read1.close();
+		read2.close();
+		write.close();
+	}
+
+	/** Connections from getConnection() are routed on first use.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLazyRouting() throws SQLException {
+		Connection connection = this.dataSource.getConnection();
+		assertTrue(Proxy.isProxyClass(connection.getClass()));
+		ReadWriteRoutingConnection handler = (ReadWriteRoutingConnection) Proxy.getInvocationHandler(connection);
+		connection.setReadOnly(true);
+		assertTrue(connection.isReadOnly());
+		assertNull(handler.getTarget());
+		Statement statement = connection.createStatement();
+		statement.close();
+		assertTrue(handler.getTarget() instanceof ConnectionHandle);
+		assertTrue(poolOf(handler.getTarget()) != this.primary.getPool());
+		connection.close();
+		assertTrue(connection.isClosed());
+
+		connection = this.dataSource.getConnection();
+		connection.setAutoCommit(false);
+		handler = (ReadWriteRoutingConnection) Proxy.getInvocationHandler(connection);
+		assertSame(this.primary.getPool(), poolOf(handler.getTarget()));
+		connection.close();
+
+		connection = this.dataSource.getConnection();
+		connection.close();
+		assertTrue(connection.isClosed());
+		try {
+			connection.createStatement();
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals("08003", e.getSQLState());
+		}
+	}
+
+	/** Connections opened and closed one after the other still go to every replica.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSequentialSpread() throws SQLException {
+		for (int i=0; i < 4; i++){
+			Connection connection = this.dataSource.getConnection(true);
+			connection.close();
+		}
+		assertEquals(2, this.replica1.getPool().getStatistics().getConnectionsRequested());
+		assertEquals(2, this.replica2.getPool().getStatistics().getConnectionsRequested());
+	}
+
+	/** Replicas whose pool flags the database as down, or that fail, are skipped.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testEjection() throws SQLException {
+		this.primary.setMaxConnectionsPerPartition(1); // the write connection below is the one used for the fallback
+		this.dataSource.getConnection(true).close();
+		this.dataSource.getConnection(true).close();
+		this.replica1.getPool().getDbIsDown().set(true);
+		for (int i=0; i < 3; i++){
+			Connection connection = this.dataSource.getConnection(true);
+			assertSame(this.replica2.getPool(), poolOf(connection));
+			connection.close();
+		}
+		Replica replica2 = this.dataSource.getReplicas().get(1);
+		replica2.eject(System.currentTimeMillis() + 60000);
+		assertFalse(replica2.isAvailable(System.currentTimeMillis()));
+		Connection connection = this.dataSource.getConnection(true);
+		assertSame(this.primary.getPool(), poolOf(connection)); // no replica left
+		assertTrue(connection.isReadOnly());
+		connection.close();
+
+		connection = this.dataSource.getConnection(false);
+		assertFalse("Fallback left the primary connection read-only", connection.isReadOnly());
+		connection.close();
+
+		this.replica1.getPool().getDbIsDown().set(false);
+		connection = this.dataSource.getConnection(true);
+		assertSame(this.replica1.getPool(), poolOf(connection));
+		connection.close();
+	}
+
+	/** Slow replicas get less work when balancing by latency.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLatencyEwma() throws SQLException {
+		this.dataSource.setReplicaBalancing(ReplicaBalancing.LATENCY_EWMA);
+		assertEquals(ReplicaBalancing.LATENCY_EWMA, this.dataSource.getReplicaBalancing());
+		for (BoneCPDataSource replica: Arrays.asList(this.replica1, this.replica2)){
+			Connection connection = replica.getConnection();
+			Statement statement = connection.createStatement();
+			statement.execute("SELECT 1");
+			statement.close();
+			connection.close();
+		}
+		for (int i=0; i < 3; i++){
+			Connection connection = this.dataSource.getConnection(true);
+			assertSame(this.replica2.getPool(), poolOf(connection));
+			connection.close();
+		}
+		Replica slow = this.dataSource.getReplicas().get(0);
+		double latency = slow.getLatencyEwmaInMs();
+		assertTrue(latency >= 10);
+
+		// left idle, the slow replica's average drifts down until it gets picked and measured again.
+		long now = System.currentTimeMillis();
+		assertEquals(latency, slow.updateLatency(now), 0.001);
+		assertEquals(latency * 0.8 * 0.8, slow.updateLatency(now + 2500), 0.001);
+		Replica first = this.dataSource.pickReplica(now + TimeUnit.HOURS.toMillis(1));
+		Replica second = this.dataSource.pickReplica(now + TimeUnit.HOURS.toMillis(1));
+		assertTrue(first == slow || second == slow);
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for changing the number of partitions of a running pool.
+ * @author wallacew
+ *
+ */
+public class TestRepartition {
+	/** Pool under test. */
+	private BoneCP pool;
+
+	/** Starts a pool with 4 connections in a single partition.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:repartition");
+		config.setPoolName("repartition");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(4);
+		config.setMaxConnectionsPerPartition(4);
+		config.setAcquireIncrement(1);
+		config.setDisableJMX(false);
+		this.pool = new BoneCP(config);
+	}
+
+	/** Shuts down the pool. */
+	@After
+	public void after() {
+		this.pool.shutdown();
+		SimulatedDatabase.remove("repartition");
+	}
+
+	/** Waits for the pool to reach the given number of connections.
+	 * @param expected number of connections
+	 * @throws InterruptedException
+	 */
+	private void waitForCreatedConnections(int expected) throws InterruptedException {
+		for (int i=0; i < 500 && this.pool.getTotalCreatedConnections() != expected; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(expected, this.pool.getTotalCreatedConnections());
+	}
+
+	/** Idle connections move over right away, connections in use once they are returned.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSplitAndMerge() throws Exception {
+		Connection held = this.pool.getConnection();
+		ConnectionPartition oldPartition = this.pool.partitions[0];
+
+		this.pool.repartition(2);
+		assertEquals(2, this.pool.partitions.length);
+		assertEquals(2, this.pool.getConfig().getPartitionCount());
+		assertTrue(oldPartition.isRetired());
+		assertSame(this.pool.partitions[0], oldPartition.getSuccessor());
+		assertEquals(1, this.pool.retiredPartitions.size());
+		assertEquals(1, this.pool.getTotalLeased());
+		assertEquals(0, oldPartition.getAvailableConnections());
+
+		held.close();
+		assertEquals(0, this.pool.retiredPartitions.size());
+		assertEquals(0, oldPartition.getCreatedConnections());
+		assertEquals(0, this.pool.getTotalLeased());
+		waitForCreatedConnections(8); // topped up to the minimum of each new partition
+		assertEquals(4, this.pool.partitions[0].getCreatedConnections());
+		assertEquals(4, this.pool.partitions[1].getCreatedConnections());
+
+		Connection connection = this.pool.getConnection();
+		assertTrue(((ConnectionHandle) connection).getOriginatingPartition() != oldPartition);
+		connection.close();
+
+		// back to a single partition: the surplus is closed off.
+		this.pool.repartition(1);
+		assertEquals(1, this.pool.partitions.length);
+		assertEquals(0, this.pool.retiredPartitions.size());
+		assertEquals(4, this.pool.getTotalCreatedConnections());
+		assertEquals(4, this.pool.getTotalFree());
+	}
+
+	/** Invalid values are rejected and the partition count can be changed via JMX.
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidationAndJMX() throws Exception {
+		try {
+			this.pool.repartition(0);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		ConnectionPartition partition = this.pool.partitions[0];
+		this.pool.repartition(1); // nothing to do
+		assertSame(partition, this.pool.partitions[0]);
+
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(BoneCP.MBEAN_TUNING + "-repartition");
+		mbs.setAttribute(name, new Attribute("PartitionCount", 3));
+		assertEquals(3, mbs.getAttribute(name, "PartitionCount"));
+		assertEquals(3, this.pool.partitions.length);
+		waitForCreatedConnections(12);
+	}
+
+	/** A thread already waiting on a partition gets served once that partition is retired.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaiterMovesToSuccessor() throws Exception {
+		Connection[] held = new Connection[4];
+		for (int i=0; i < held.length; i++){
+			held[i] = this.pool.getConnection();
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Connection> waiter = executor.submit(new Callable<Connection>() {
+				public Connection call() throws Exception {
+					return TestRepartition.this.pool.getConnection();
+				}
+			});
+			Thread.sleep(200); // let it block on the only partition
+
+			this.pool.repartition(2);
+			held[0].close(); // goes to the successor, not to the queue the waiter started on
+			Connection connection = waiter.get(5, TimeUnit.SECONDS);
+			assertFalse(((ConnectionHandle) connection).getOriginatingPartition().isRetired());
+			connection.close();
+		} finally {
+			executor.shutdownNow();
+			for (int i=1; i < held.length; i++){
+				held[i].close();
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for batched session set up of new connections.
+ * @author wallacew
+ *
+ */
+public class TestSessionInitializer {
+	/** Config of the pool under test. */
+	private BoneCPConfig config;
+
+	/** Sets up the config. */
+	@Before
+	public void before() {
+		SimulatedJDBCDriver.register();
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:sim:sessioninit");
+		this.config.setPartitionCount(1);
+		this.config.setMinConnectionsPerPartition(2);
+		this.config.setMaxConnectionsPerPartition(2);
+		this.config.setStatisticsEnabled(true);
+	}
+
+	/** Drops the database. */
+	@After
+	public void after() {
+		SimulatedDatabase.remove("sessioninit");
+	}
+
+	/** initSQL and initStatements go out in one batch per connection.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testBatchedInitStatements() throws SQLException {
+		this.config.setInitSQL("SET a=1");
+		this.config.setInitStatements("SET b=2; SET c=3;");
+		assertEquals(Arrays.asList("SET a=1", "SET b=2", "SET c=3"), SessionInitializer.getInitStatements(this.config));
+		BoneCP pool = new BoneCP(this.config);
+		try {
+			assertEquals(2, SimulatedDatabase.get("sessioninit").getCalls(SimulatedOperation.EXECUTE));
+			assertTrue(pool.sessionInitializer.getBatchSupported());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Queries are never batched, and a batch the driver rejects outright is sent one statement at a time.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testBatchFallback() throws SQLException {
+		this.config.setInitSQL("SELECT 1");
+		this.config.setInitStatements("SET b=2");
+		assertTrue(SessionInitializer.containsQuery(SessionInitializer.getInitStatements(this.config)));
+		BoneCP pool = new BoneCP(this.config);
+		try {
+			assertEquals(4, SimulatedDatabase.get("sessioninit").getCalls(SimulatedOperation.EXECUTE));
+		} finally {
+			pool.shutdown();
+		}
+		SimulatedDatabase.remove("sessioninit");
+
+		this.config.setInitSQL("SET a=1");
+		SimulatedDatabase.getOrCreate("sessioninit").failNext(SimulatedOperation.EXECUTE, 1, "42000");
+		pool = new BoneCP(this.config);
+		try {
+			assertFalse(pool.sessionInitializer.getBatchSupported());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Statements a failed batch reports as done are not run again.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testBatchFallbackSkipsExecuted() throws SQLException {
+		this.config.setInitSQL("SET a=1");
+		this.config.setInitStatements("SET b=2; SET c=3");
+		BoneCP mockPool = createNiceMock(BoneCP.class);
+		expect(mockPool.getConfig()).andReturn(this.config).anyTimes();
+		Connection mockConnection = createNiceMock(Connection.class);
+		DatabaseMetaData mockMetaData = createNiceMock(DatabaseMetaData.class);
+		Statement mockStatement = createMock(Statement.class);
+		expect(mockConnection.getMetaData()).andReturn(mockMetaData).anyTimes();
+		expect(mockMetaData.supportsBatchUpdates()).andReturn(true).anyTimes();
+		expect(mockConnection.createStatement()).andReturn(mockStatement).once();
+		mockStatement.addBatch("SET a=1");
+		mockStatement.addBatch("SET b=2");
+		mockStatement.addBatch("SET c=3");
+		expect(mockStatement.executeBatch()).andThrow(new BatchUpdateException(new int[]{0, Statement.EXECUTE_FAILED}));
+		mockStatement.clearBatch();
+		expect(mockStatement.execute("SET b=2")).andReturn(false).once();
+		expect(mockStatement.execute("SET c=3")).andReturn(false).once();
+		mockStatement.close();
+		replay(mockPool, mockConnection, mockMetaData, mockStatement);
+
+		SessionInitializer initializer = new SessionInitializer(mockPool);
+		initializer.initialize(mockConnection);
+		assertFalse(initializer.getBatchSupported());
+		verify(mockStatement);
+	}
+
+	/** Session defaults matching the driver's are not sent.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSkipDriverDefaults() throws SQLException {
+		this.config.setDefaultAutoCommit(false); // as per the simulated driver
+		this.config.setDefaultReadOnly(false);
+		this.config.setSkipDriverDefaultSessionSettings(true);
+		BoneCP pool = new BoneCP(this.config);
+		try {
+			assertTrue(pool.sessionInitializer.isDriverDefaultsKnown());
+			assertEquals(Boolean.FALSE, pool.sessionInitializer.getDriverAutoCommit());
+			assertEquals(4, pool.getStatistics().getSessionStateCallsSaved());
+
+			// not caching session state: the connection asks the driver again
+			Connection connection = pool.getConnection();
+			assertFalse(connection.getAutoCommit());
+			assertEquals(4, pool.getStatistics().getSessionStateCallsSaved());
+			connection.close();
+		} finally {
+			pool.shutdown();
+		}
+
+		this.config.setSkipDriverDefaultSessionSettings(false);
+		pool = new BoneCP(this.config);
+		try {
+			assertFalse(pool.sessionInitializer.isDriverDefaultsKnown());
+			assertEquals(0, pool.getStatistics().getSessionStateCallsSaved());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the simulated driver in test-commons, and a pool running against it.
+ * @author wallacew
+ *
+ */
+public class TestSimulatedJDBCDriver {
+
+	/** Loads the driver. */
+	@BeforeClass
+	public static void setup(){
+		SimulatedJDBCDriver.register();
+	}
+
+	/** Forget about databases created by tests. */
+	@After
+	public void tearDown(){
+		for (String name: new String[]{"latency", "limit", "fault", "restart"}){
+			SimulatedDatabase.remove(name);
+		}
+	}
+
+	/**
+	 * Latency from the URL is applied and calls are counted.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLatencyAndCounters() throws SQLException{
+		Connection connection = DriverManager.getConnection("jdbc:sim:latency?executeLatency=fixed:20");
+		SimulatedDatabase db = SimulatedDatabase.get("latency");
+		PreparedStatement ps = connection.prepareStatement("SELECT 1");
+		long start = System.nanoTime();
+		ps.executeQuery().close();
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+		ps.close();
+		connection.close();
+
+		assertEquals(1, db.getCalls(SimulatedOperation.CONNECT));
+		assertEquals(1, db.getCalls(SimulatedOperation.PREPARE));
+		assertEquals(1, db.getCalls(SimulatedOperation.EXECUTE));
+		assertEquals(1, db.getCalls(SimulatedOperation.CLOSE));
+		assertEquals(0, db.getOpenConnections());
+		assertTrue(connection.isClosed());
+	}
+
+	/**
+	 * The server-side connection limit is enforced.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testConnectionLimit() throws SQLException{
+		SimulatedDatabase.getOrCreate("limit").setMaxConnections(2);
+		Connection c1 = DriverManager.getConnection("jdbc:sim:limit");
+		Connection c2 = DriverManager.getConnection("jdbc:sim:limit");
+		try {
+			DriverManager.getConnection("jdbc:sim:limit");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals(SimulatedDatabase.TOO_MANY_CONNECTIONS_STATE, e.getSQLState());
+		}
+		c1.close();
+		DriverManager.getConnection("jdbc:sim:limit").close();
+		c2.close();
+
+		SimulatedDatabase db = SimulatedDatabase.get("limit");
+		assertEquals(1, db.getConnectionsRejected());
+		assertEquals(2, db.getPeakOpenConnections());
+		assertEquals(0, db.getOpenConnections());
+	}
+
+	/**
+	 * A scripted fatal fault breaks the connection it occurred on.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testScriptedFault() throws SQLException{
+		SimulatedDatabase db = SimulatedDatabase.getOrCreate("fault");
+		db.addFault(SimulatedFault.onCalls(SimulatedOperation.EXECUTE, "57P01", 2));
+		Connection connection = DriverManager.getConnection("jdbc:sim:fault");
+		connection.createStatement().execute("SELECT 1");
+		for (int i=0; i < 2; i++){
+			try {
+				connection.createStatement().execute("SELECT 1");
+				fail("Should have thrown an exception");
+			} catch (SQLException e){
+				assertEquals("57P01", e.getSQLState());
+			}
+		}
+		assertFalse(connection.isValid(0));
+		assertEquals(1, db.getFaultsInjected(SimulatedOperation.EXECUTE));
+		connection.close();
+		assertEquals(0, db.getOpenConnections());
+	}
+
+	/**
+	 * The pool replaces its connections after a simulated database restart.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPoolRecoversFromRestart() throws SQLException{
+		SimulatedDatabase db = SimulatedDatabase.getOrCreate("restart");
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:restart");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(3);
+		config.setMaxConnectionsPerPartition(3);
+		config.setAcquireRetryDelay(1, TimeUnit.MILLISECONDS);
+		BoneCP pool = new BoneCP(config);
+		try {
+			Connection connection = pool.getConnection();
+			assertEquals(3, db.killAllConnections("57P01"));
+			try {
+				connection.createStatement().execute("SELECT 1");
+				fail("Should have thrown an exception");
+			} catch (SQLException e){
+				assertEquals("57P01", e.getSQLState());
+			}
+			connection.close();
+
+			connection = pool.getConnection();
+			connection.createStatement().execute("SELECT 1");
+			connection.close();
+			assertTrue(db.getConnectionsOpened() > 3);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+/** Tests for the slow query log.
+ * @author wallacew
+ *
+ */
+public class TestSlowQueryLog {
+
+	/** Parameters are snapshotted on record and formatted on read. */
+	@Test
+	public void testRecordAndFormat() {
+		SlowQueryLog log = new SlowQueryLog(10, 5);
+		assertEquals(5, log.getThresholdInNanos());
+		Map<Object, Object> params = new TreeMap<Object, Object>();
+		params.put(1, 123);
+		params.put(2, "bob");
+		log.record("SELECT * FROM foo WHERE id=? AND name=? AND x='?'", params, TimeUnit.MILLISECONDS.toNanos(1500));
+		params.clear(); // the statement moves on, the log entry must not change
+		log.record("SELECT 1", null, TimeUnit.MILLISECONDS.toNanos(2));
+
+		List<SlowQueryLogEntry> snapshot = log.getSnapshot();
+		assertEquals(2, snapshot.size());
+		assertEquals("SELECT 1", snapshot.get(0).getFormattedSql());
+		SlowQueryLogEntry entry = snapshot.get(1);
+		assertEquals(0, entry.getSequence());
+		assertEquals("SELECT * FROM foo WHERE id=? AND name=? AND x='?'", entry.getSql());
+		assertEquals("SELECT * FROM foo WHERE id=123 AND name='bob' AND x='?'", entry.getFormattedSql());
+		assertEquals(1500.0, entry.getExecutionTimeInMs(), 0.001);
+		assertEquals(1, entry.getExecutionTime(TimeUnit.SECONDS));
+		assertEquals(Thread.currentThread().getName(), entry.getThreadName());
+		assertTrue(entry.getTimestampInMs() <= System.currentTimeMillis());
+		assertTrue(entry.toString().contains("name='bob'"));
+		assertEquals(2, log.getSlowQueryCount());
+	}
+
+	/** Entries keep a bounded summary of the parameters, never the live objects. */
+	@Test
+	public void testParameterSummary() {
+		SlowQueryLog log = new SlowQueryLog(10, 0);
+		Map<Object, Object> params = new TreeMap<Object, Object>();
+		StringBuilder longString = new StringBuilder();
+		for (int i=0; i < 3 * SlowQueryLog.MAX_PARAMETER_LENGTH; i++){
+			longString.append('x');
+		}
+		params.put(1, new ByteArrayInputStream(new byte[10]));
+		params.put(2, new byte[16]);
+		params.put(3, longString.toString());
+		params.put(4, null);
+		log.record("INSERT INTO foo VALUES (?, ?, ?, ?)", params, 1);
+		String formatted = log.getSnapshot().get(0).getFormattedSql();
+		assertTrue(formatted, formatted.startsWith("INSERT INTO foo VALUES ((ByteArrayInputStream), (byte[16]), 'xxx"));
+		assertTrue(formatted, formatted.endsWith("...', NULL)"));
+		assertTrue(formatted.length() < 2 * SlowQueryLog.MAX_PARAMETER_LENGTH);
+
+		// only the first MAX_PARAMETERS are kept, the remaining placeholders stay as they are.
+		params.clear();
+		StringBuilder sql = new StringBuilder("SELECT ?");
+		params.put(0, 7);
+		for (int i=1; i < 2 * SlowQueryLog.MAX_PARAMETERS; i++){
+			sql.append(",?");
+			params.put(i, 7);
+		}
+		log.record(sql.toString(), params, 1);
+		formatted = log.getSnapshot().get(0).getFormattedSql();
+		assertEquals(SlowQueryLog.MAX_PARAMETERS, formatted.length() - formatted.replace("?", "").length());
+	}
+
+	/** Only the most recent entries are kept. */
+	@Test
+	public void testRingBuffer() {
+		SlowQueryLog log = new SlowQueryLog(3, 0);
+		for (int i=0; i < 10; i++){
+			log.record("SELECT " + i, null, i);
+		}
+		List<SlowQueryLogEntry> snapshot = log.getSnapshot();
+		assertEquals(3, snapshot.size());
+		assertEquals("SELECT 9", snapshot.get(0).getSql());
+		assertEquals("SELECT 7", snapshot.get(2).getSql());
+		assertEquals(10, log.getSlowQueryCount());
+
+		CompositeData[] data = log.getCompositeData();
+		assertEquals(3, data.length);
+		assertEquals("SELECT 9", data[0].get("sql"));
+		assertTrue(data[0].get("timestamp") instanceof Date);
+
+		log.reset();
+		assertEquals(0, log.getSnapshot().size());
+		assertEquals(0, log.getSlowQueryCount());
+	}
+}
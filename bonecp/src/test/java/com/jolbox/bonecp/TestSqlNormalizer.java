@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/** Tests for SQL normalization, fingerprinting and auto-parameterization.
+ * @author wallacew
+ *
+ */
+public class TestSqlNormalizer {
+
+	/** Literals, comments and whitespace. */
+	@Test
+	public void testNormalize() {
+		assertEquals("SELECT * FROM foo WHERE id=? AND name=?", SqlNormalizer.normalize("SELECT * FROM foo WHERE id=123 AND name='bob'"));
+		assertEquals("SELECT ? FROM foo WHERE a=? AND b=-?", SqlNormalizer.normalize("SELECT\t1.5e3 /* comment */\nFROM foo -- trailing\nWHERE a='it''s' AND b=-.5 "));
+		assertEquals("SELECT \"col 1\", t1.c2 FROM t1 WHERE x=?", SqlNormalizer.normalize("SELECT \"col 1\", t1.c2 FROM t1 WHERE x='?'"));
+		assertEquals("SELECT 0x1F, col3 FROM foo WHERE id IN (?, ?, ?)", SqlNormalizer.normalize("SELECT 0x1F, col3 FROM foo WHERE id IN (1, 2, 3)"));
+		assertEquals("SELECT * FROM foo WHERE a=?", SqlNormalizer.normalize("SELECT * FROM foo WHERE a=?"));
+		assertEquals("SELECT ?", SqlNormalizer.normalize("SELECT 'unterminated FROM foo"));
+		assertEquals("", SqlNormalizer.normalize("  "));
+	}
+
+	/** Statements of the same shape share a fingerprint. */
+	@Test
+	public void testFingerprint() {
+		long fingerprint = SqlNormalizer.fingerprint("SELECT * FROM foo WHERE id=123");
+		assertEquals(fingerprint, SqlNormalizer.fingerprint("SELECT * FROM foo WHERE id=456"));
+		assertEquals(fingerprint, SqlNormalizer.fingerprint("select *\n  from FOO where id = 'abc' -- comment"));
+		assertEquals(fingerprint, SqlNormalizer.fingerprint("SELECT * FROM foo WHERE id=?"));
+		assertTrue(fingerprint != SqlNormalizer.fingerprint("SELECT * FROM foo WHERE idx=123"));
+		assertTrue(fingerprint != SqlNormalizer.fingerprint("SELECT * FROM foo WHERE \"ID\"=123"));
+		assertTrue(SqlNormalizer.fingerprint("SELECT a FROM b") != SqlNormalizer.fingerprint("SELECT aFROM b"));
+		assertEquals(SqlNormalizer.fingerprint("SELECT \"A\" FROM b"), SqlNormalizer.fingerprint("SELECT \"A\" FROM b"));
+		assertTrue(SqlNormalizer.fingerprint("SELECT \"A\" FROM b") != SqlNormalizer.fingerprint("SELECT \"a\" FROM b"));
+	}
+
+	/** Only safe numeric literals in DML statements are turned into parameters. */
+	@Test
+	public void testParameterize() {
+		ParameterizedSql result = SqlNormalizer.parameterize("SELECT * FROM foo WHERE id = 123 AND name='it''s' AND code LIKE 'A%' AND x IN (1.5, 'b') ORDER BY 1 LIMIT 10");
+		assertTrue(result.isParameterized());
+		assertEquals("SELECT * FROM foo WHERE id = ? AND name='it''s' AND code LIKE 'A%' AND x IN (?, 'b') ORDER BY 1 LIMIT 10", result.getSql());
+		assertEquals(Arrays.<Object>asList(123L, new BigDecimal("1.5")), result.getParameters());
+		assertEquals(SqlNormalizer.fingerprint("SELECT * FROM foo WHERE id = 1 AND name='x' AND code LIKE 'B%' AND x IN (2, 'c') ORDER BY 1 LIMIT 10"), result.getFingerprint());
+		assertTrue(result.toString().startsWith(result.getSql()));
+
+		result = SqlNormalizer.parameterize("insert into foo (a, b, c) values (1, 'two', 12345678901234567890)");
+		assertEquals("insert into foo (a, b, c) values (?, 'two', ?)", result.getSql());
+		assertEquals(Arrays.<Object>asList(1L, new BigDecimal("12345678901234567890")), result.getParameters());
+
+		// not touched
+		assertNotParameterized("UPDATE foo SET a = 'x' WHERE d > DATE '2013-01-01' AND e = N'y' AND f = 'c:\\\\' AND g = -1 AND h BETWEEN 1 AND 2");
+		assertNotParameterized("SELECT * FROM foo WHERE created > '2020-01-01' AND id = '5'");
+		assertNotParameterized("SET search_path = 'foo'");
+		assertNotParameterized("CREATE TABLE foo (a VARCHAR(10) DEFAULT 'x')");
+		assertNotParameterized("SELECT * FROM foo WHERE a = ? AND b = 1");
+		assertNotParameterized("SELECT * FROM foo ORDER BY 1");
+		assertNotParameterized("/* only a comment */");
+		assertNotParameterized("SELECT * FROM foo WHERE a = 'unterminated");
+
+		// comments are kept in the parameterized statement
+		assertEquals("SELECT /* hint */ a FROM foo WHERE b=?", SqlNormalizer.parameterize("SELECT /* hint */ a FROM foo WHERE b=2").getSql());
+	}
+
+	/** Asserts the given statement is returned unchanged.
+	 * @param sql statement
+	 */
+	private void assertNotParameterized(String sql){
+		ParameterizedSql result = SqlNormalizer.parameterize(sql);
+		assertFalse(sql, result.isParameterized());
+		assertEquals(sql, result.getSql());
+		assertTrue(result.getParameters().isEmpty());
+	}
+
+	/** End to end: plain statements with literals hit the statement cache.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testAutoParameterizingStatements() throws SQLException {
+		SimulatedJDBCDriver.register();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:sim:autoparameterize");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setStatementsCacheSize(10);
+		config.setStatisticsEnabled(true);
+		config.setAutoParameterizeStatements(true);
+		BoneCP pool = new BoneCP(config);
+		try {
+			SimulatedDatabase db = SimulatedDatabase.get("autoparameterize");
+			Connection connection = pool.getConnection();
+			Statement statement = connection.createStatement();
+			assertTrue(statement instanceof AutoParameterizingStatementHandle);
+			for (int i=0; i < 5; i++){
+				ResultSet rs = statement.executeQuery("SELECT * FROM foo WHERE id=" + i);
+				rs.close();
+			}
+			statement.executeUpdate("UPDATE foo SET bar='x' WHERE id=1");
+			statement.execute("SELECT * FROM foo WHERE id=7");
+			statement.getGeneratedKeys();
+			statement.getWarnings();
+			statement.clearWarnings();
+			statement.getResultSet();
+			statement.getUpdateCount();
+			statement.getMoreResults();
+			statement.cancel();
+			statement.execute("SELECT 1"); // nothing to parameterize
+			statement.getResultSet();
+			statement.getMoreResults(Statement.CLOSE_CURRENT_RESULT);
+			assertEquals(7, pool.getStatistics().getStatementsPrepared());
+			assertEquals(7, db.getCalls(SimulatedOperation.PREPARE) + pool.getStatistics().getCacheHits());
+
+			statement.setMaxRows(5); // would leak into the cached statement: executed as is from now on
+			statement.executeQuery("SELECT * FROM foo WHERE id=9").close();
+			assertEquals(7, pool.getStatistics().getStatementsPrepared());
+			statement.close();
+
+			connection.close();
+		} finally {
+			pool.shutdown();
+			SimulatedDatabase.remove("autoparameterize");
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+/** Tests for the per-SQL statistics table.
+ * @author wallacew
+ *
+ */
+public class TestSqlStatistics {
+
+	/** Counts, times and histogram of a single statement. */
+	@Test
+	public void testRecord() {
+		SqlStatistics sqlStatistics = new SqlStatistics(10);
+		sqlStatistics.record("SELECT 1", TimeUnit.MICROSECONDS.toNanos(500));
+		sqlStatistics.record("SELECT 1", TimeUnit.MILLISECONDS.toNanos(5));
+		sqlStatistics.record("select  2", TimeUnit.MILLISECONDS.toNanos(2500));
+
+		List<SqlStatisticsEntry> snapshot = sqlStatistics.getSnapshot();
+		assertEquals(1, snapshot.size());
+		SqlStatisticsEntry entry = snapshot.get(0);
+		assertEquals("SELECT ?", entry.getSql());
+		assertEquals(SqlNormalizer.fingerprint("SELECT 1"), entry.getFingerprint());
+		assertEquals(3, entry.getCount());
+		assertEquals(0, entry.getError());
+		assertEquals(3, entry.getTimedCount());
+		assertEquals(2505.5, entry.getTotalTimeInMs(), 0.001);
+		assertEquals(2505.5 / 3, entry.getAverageTimeInMs(), 0.001);
+		assertEquals(2500, entry.getMaxTimeInMs(), 0.001);
+		assertArrayEquals(new long[]{1, 1, 0, 0, 1}, entry.getHistogram());
+		assertTrue(entry.toString().startsWith("SELECT ?"));
+
+		// snapshots are copies
+		sqlStatistics.record("SELECT 1", 1);
+		assertEquals(3, entry.getCount());
+	}
+
+	/** Heavy hitters survive a stream of one-off statements; newcomers inherit the evicted count as error. */
+	@Test
+	public void testSpaceSaving() {
+		SqlStatistics sqlStatistics = new SqlStatistics(3);
+		for (int i=0; i < 100; i++){
+			sqlStatistics.record("hot", 1);
+			sqlStatistics.record("one_off_" + i, 1);
+		}
+		List<SqlStatisticsEntry> snapshot = sqlStatistics.getSnapshot();
+		assertEquals(3, snapshot.size());
+		assertEquals("hot", snapshot.get(0).getSql());
+		assertEquals(100, snapshot.get(0).getCount());
+		assertEquals(0, snapshot.get(0).getError());
+
+		SqlStatisticsEntry newest = null;
+		for (SqlStatisticsEntry entry: snapshot){
+			if (entry.getSql().equals("one_off_99")){
+				newest = entry;
+			}
+		}
+		assertEquals(1, newest.getTimedCount());
+		assertEquals(newest.getError() + 1, newest.getCount());
+		assertTrue(newest.getError() > 0);
+		assertEquals(0, new SqlStatisticsEntry(0, "x", 5).getAverageTimeInMs(), 0.001);
+	}
+
+	/** JMX view.*/
+	@Test
+	public void testCompositeData() {
+		SqlStatistics sqlStatistics = new SqlStatistics(10);
+		assertEquals(10, sqlStatistics.getCapacity());
+		sqlStatistics.record("a", TimeUnit.MILLISECONDS.toNanos(20));
+		sqlStatistics.record("b", TimeUnit.MILLISECONDS.toNanos(200));
+		sqlStatistics.record("b", TimeUnit.MILLISECONDS.toNanos(200));
+
+		CompositeData[] data = sqlStatistics.getCompositeData();
+		assertEquals(2, data.length);
+		assertEquals("b", data[0].get("sql"));
+		assertEquals(2L, data[0].get("count"));
+		assertEquals(400.0, (Double) data[0].get("totalTimeInMs"), 0.001);
+		assertEquals(2L, data[0].get("under1000ms"));
+		assertEquals(1L, data[1].get("under100ms"));
+
+		sqlStatistics.reset();
+		assertEquals(0, sqlStatistics.getCompositeData().length);
+	}
+}
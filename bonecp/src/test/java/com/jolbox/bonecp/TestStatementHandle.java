@@ -20,10 +20,13 @@ package com.jolbox.bonecp;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import com.jolbox.bonecp.hooks.CoverageHook;
 import com.jolbox.bonecp.hooks.CustomHook;
 import org.easymock.EasyMock;
@@ -218,6 +221,61 @@ public class TestStatementHandle {
 		assertEquals(1, hook.queryTimeout);
 	}
 
+	/** Tests that executed statements are recorded in the per-SQL statistics table.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSqlStatistics() throws SQLException{
+		Statement mockStatement = createNiceMock(Statement.class);
+		Statistics statistics = new Statistics(mockPool);
+		statistics.setSqlStatisticsTable(new SqlStatistics(10));
+		expect(mockConnection.getPool()).andReturn(mockPool).anyTimes();
+		expect(mockPool.getConfig()).andReturn(mockConfig).anyTimes();
+		expect(mockPool.getStatistics()).andReturn(statistics).anyTimes();
+		expect(mockConfig.isStatisticsEnabled()).andReturn(true).anyTimes();
+		replay(mockConnection, mockConfig, mockPool, mockStatement);
+
+		StatementHandle handle = new StatementHandle(mockStatement, mockConnection, false);
+		handle.execute("SELECT 1");
+		handle.execute("SELECT 2"); // same shape
+		handle.executeUpdate("UPDATE foo SET bar=1");
+		handle.executeBatch(); // no SQL text available without statement logging: not recorded
+
+		assertEquals(2, statistics.getSqlStatisticsSnapshot().size());
+		assertEquals("SELECT ?", statistics.getSqlStatisticsSnapshot().get(0).getSql());
+		assertEquals(2, statistics.getSqlStatisticsSnapshot().get(0).getCount());
+		assertEquals(4, statistics.getStatementsExecuted());
+	}
+
+	/** Tests that slow statements are recorded, with their parameters, even with statement logging off.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSlowQueryLog() throws SQLException{
+		PreparedStatement mockStatement = createNiceMock(PreparedStatement.class);
+		Statistics statistics = new Statistics(mockPool);
+		statistics.setSlowQueryLog(new SlowQueryLog(10, TimeUnit.MILLISECONDS.toNanos(50)));
+		expect(mockConnection.getPool()).andReturn(mockPool).anyTimes();
+		expect(mockPool.getConfig()).andReturn(mockConfig).anyTimes();
+		expect(mockPool.getStatistics()).andReturn(statistics).anyTimes();
+		expect(mockStatement.executeQuery()).andAnswer(new IAnswer<ResultSet>() {
+			public ResultSet answer() throws Throwable {
+				Thread.sleep(100);
+				return null;
+			}
+		}).once().andReturn(null).once();
+		replay(mockConnection, mockConfig, mockPool, mockStatement);
+
+		PreparedStatementHandle handle = new PreparedStatementHandle(mockStatement, "SELECT * FROM foo WHERE id=?", mockConnection, null, null);
+		assertFalse(handle.logStatementsEnabled);
+		handle.setInt(1, 42);
+		handle.executeQuery(); // slow
+		handle.executeQuery(); // fast
+
+		assertEquals(1, statistics.getSlowQueryCount());
+		assertEquals("SELECT * FROM foo WHERE id=42", statistics.getSlowQueryLogSnapshot().get(0).getFormattedSql());
+	}
+
 	/**
 	 * Coverage.
 	 */
@@ -17,6 +17,7 @@ package com.jolbox.bonecp;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
 import java.util.concurrent.TimeUnit;
@@ -69,6 +70,11 @@ public class TestStatistics {
 		this.stats.incrementStatementsCached();
 		this.stats.incrementStatementsExecuted();
 		this.stats.incrementStatementsPrepared();
+		this.stats.incrementSessionStateCallsSaved();
+		this.stats.incrementConnectionsLeaked();
+		this.stats.addCheckoutAllocation(100);
+		this.stats.addCheckoutAllocation(200);
+		this.stats.incrementHookEventsDropped();
 		
 		expect(this.mockPool.getTotalLeased()).andReturn(1).once();
 		expect(this.mockPool.getTotalFree()).andReturn(1).once();
@@ -84,6 +90,11 @@ public class TestStatistics {
 		assertEquals(1, this.stats.getStatementsCached());
 		assertEquals(1, this.stats.getStatementsExecuted());
 		assertEquals(1, this.stats.getStatementsPrepared());
+		assertEquals(1, this.stats.getSessionStateCallsSaved());
+		assertEquals(1, this.stats.getConnectionsLeaked());
+		assertEquals(1, this.stats.getHookEventsDropped());
+		assertEquals(2, this.stats.getAllocationSamples());
+		assertEquals(150.0, this.stats.getAllocatedBytesPerCheckout(), 0.01);
 		assertEquals(1, this.stats.getConnectionsRequested());
 		assertEquals(1, this.stats.getCacheHits());
 		assertEquals(1, this.stats.getCacheMiss());
@@ -91,6 +102,11 @@ public class TestStatistics {
 		assertEquals(1, this.stats.getTotalCreatedConnections());
 		assertEquals(1, this.stats.getTotalLeased());
 		assertEquals(0.5, this.stats.getCacheHitRatio(), 0.05);
+		assertEquals(0, this.stats.getSqlStatistics().length);
+		assertTrue(this.stats.getSqlStatisticsSnapshot().isEmpty());
+		assertEquals(0, this.stats.getSlowQueries().length);
+		assertEquals(0, this.stats.getSlowQueryCount());
+		assertTrue(this.stats.getSlowQueryLogSnapshot().isEmpty());
 		
 	}
 	/**
@@ -120,6 +136,34 @@ public class TestStatistics {
 		checkValuesSetToZero(this.stats);
 	}
 
+	/** Tests that per-SQL statistics are exposed and reset.
+	 */
+	@Test
+	public void testSqlStatistics() {
+		this.stats.setSqlStatisticsTable(new SqlStatistics(10));
+		this.stats.getSqlStatisticsTable().record("SELECT 1", 1000000);
+		assertEquals(1, this.stats.getSqlStatistics().length);
+		assertEquals("SELECT ?", this.stats.getSqlStatistics()[0].get("sql"));
+		assertEquals(1L, this.stats.getSqlStatisticsSnapshot().get(0).getCount());
+		
+		this.stats.resetStats();
+		assertEquals(0, this.stats.getSqlStatistics().length);
+	}
+
+	/** Tests that the slow query log is exposed and reset.
+	 */
+	@Test
+	public void testSlowQueryLog() {
+		this.stats.setSlowQueryLog(new SlowQueryLog(10, 0));
+		this.stats.getSlowQueryLog().record("SELECT 1", null, 1000000);
+		assertEquals(1, this.stats.getSlowQueries().length);
+		assertEquals(1, this.stats.getSlowQueryCount());
+		assertEquals("SELECT 1", this.stats.getSlowQueryLogSnapshot().get(0).getSql());
+
+		this.stats.resetStats();
+		assertEquals(0, this.stats.getSlowQueryCount());
+	}
+
 	
 }
 
@@ -43,7 +43,6 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
-import com.google.common.cache.LoadingCache;
 import com.jolbox.bonecp.hooks.CoverageHook;
 import com.jolbox.bonecp.hooks.CustomHook;
 
@@ -165,13 +164,13 @@ public class TestSystemTests {
 		}
 		
 		
-		LoadingCache<UsernamePassword, BoneCPDataSource> mockLoadingCache = createNiceMock(LoadingCache.class);
-		expect(mockLoadingCache.get((UsernamePassword)anyObject())).andThrow(new ExecutionException("", new Exception())).once();
-		Field f = BoneCPDataSource.class.getDeclaredField("multiDataSource");
+		CredentialPools mockCredentialPools = createNiceMock(CredentialPools.class);
+		expect(mockCredentialPools.getConnection((String)anyObject(), (String)anyObject())).andThrow(new SQLException()).once();
+		Field f = BoneCPDataSource.class.getDeclaredField("credentialPools");
 		f.setAccessible(true);
-		f.set(dsb, mockLoadingCache);
+		f.set(dsb, mockCredentialPools);
 
-		replay(mockLoadingCache);
+		replay(mockCredentialPools);
 		try{
 			dsb.getConnection("foo", "bar");
 			fail("Should throw exception");